@@ -2,12 +2,16 @@ package eu.ehri.project.commands;
 
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import com.tinkerpop.blueprints.CloseableIterable;
 import com.tinkerpop.blueprints.TransactionalGraph;
+import com.tinkerpop.blueprints.Vertex;
 import com.tinkerpop.frames.FramedGraph;
+import com.tinkerpop.gremlin.java.GremlinPipeline;
 import eu.ehri.project.acl.PermissionType;
 import eu.ehri.project.core.GraphManager;
 import eu.ehri.project.core.GraphManagerFactory;
+import eu.ehri.project.definitions.Ontology;
 import eu.ehri.project.models.DocumentaryUnit;
 import eu.ehri.project.models.EntityClass;
 import eu.ehri.project.models.PermissionGrant;
@@ -17,15 +21,20 @@ import eu.ehri.project.models.base.Frame;
 import eu.ehri.project.models.base.IdentifiableEntity;
 import eu.ehri.project.models.base.PermissionScope;
 import eu.ehri.project.models.idgen.IdGeneratorUtils;
+import eu.ehri.project.models.utils.GroupMembershipCache;
+import eu.ehri.project.models.utils.JavaHandlerUtils;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.Option;
 
 import java.util.List;
+import java.util.Set;
 
 import static eu.ehri.project.models.EntityClass.CVOC_CONCEPT;
 import static eu.ehri.project.models.EntityClass.DOCUMENTARY_UNIT;
+import static eu.ehri.project.models.EntityClass.GROUP;
 import static eu.ehri.project.models.EntityClass.HISTORICAL_AGENT;
 import static eu.ehri.project.models.EntityClass.REPOSITORY;
+import static eu.ehri.project.models.EntityClass.USER_PROFILE;
 
 /**
  * Sanity check various parts of the graph.
@@ -71,6 +80,7 @@ public class Check extends BaseCommand implements Command {
         final GraphManager manager = GraphManagerFactory.getInstance(graph);
         checkPermissionScopes(graph, manager);
         checkOwnerPermGrantsHaveNoScope(manager);
+        checkGroupMembership(graph, manager);
 
         return 0;
     }
@@ -148,4 +158,41 @@ public class Check extends BaseCommand implements Command {
         }
 
     }
+
+    /**
+     * Check that the cached transitive group membership of every
+     * user and group matches a full traversal of the graph, and
+     * that no accessor belongs, indirectly, to itself.
+     *
+     * @param graph   The graph
+     * @param manager The graph manager
+     * @throws Exception
+     */
+    public void checkGroupMembership(final FramedGraph<? extends TransactionalGraph> graph,
+            final GraphManager manager) throws Exception {
+        for (EntityClass entityClass : Lists.newArrayList(GROUP, USER_PROFILE)) {
+            CloseableIterable<Vertex> items = manager.getVertices(entityClass);
+            try {
+                for (Vertex item : items) {
+                    Set<Object> cached = GroupMembershipCache.getAncestorIds(graph.getBaseGraph(), item);
+                    Set<Object> traversed = Sets.newHashSet();
+                    for (Vertex parent : new GremlinPipeline<Vertex, Vertex>(item).as("n")
+                            .out(Ontology.ACCESSOR_BELONGS_TO_GROUP)
+                            .loop("n", JavaHandlerUtils.defaultMaxLoops, JavaHandlerUtils.noopLoopFunc)) {
+                        traversed.add(parent.getId());
+                    }
+                    if (!traversed.equals(cached)) {
+                        System.err.println(String.format("Group membership mismatch: %s (%s): %s != %s",
+                                manager.getId(item), item.getId(), cached, traversed));
+                    }
+                    if (cached.contains(item.getId())) {
+                        System.err.println(String.format("Group membership cycle: %s (%s)",
+                                manager.getId(item), item.getId()));
+                    }
+                }
+            } finally {
+                items.close();
+            }
+        }
+    }
 }
@@ -5,12 +5,14 @@ import com.tinkerpop.blueprints.util.io.graphson.GraphSONMode;
 import com.tinkerpop.blueprints.util.io.graphson.GraphSONReader;
 import com.tinkerpop.blueprints.util.io.graphson.GraphSONWriter;
 import com.tinkerpop.frames.FramedGraph;
+import eu.ehri.project.core.GraphDumper;
 import eu.ehri.project.core.GraphReindexer;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.MissingArgumentException;
 import org.apache.commons.cli.Option;
 import org.apache.commons.cli.UnrecognizedOptionException;
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -35,6 +37,11 @@ import java.util.zip.GZIPInputStream;
  * ./scripts/cmd graphson -d in graph.json
  * - start server
  * $NEO4J_HOME/bin/neo4j start
+ * <p/>
+ * For large graphs the dump can instead be written as a directory
+ * of compressed segment files, which are written and read in parallel:
+ * ./scripts/cmd graphson -d out -segments 8 graph-dump
+ * ./scripts/cmd graphson -d in -segments 8 -batch 5000 graph-dump
  */
 public class GraphSON extends BaseCommand implements Command {
 
@@ -53,12 +60,17 @@ public class GraphSON extends BaseCommand implements Command {
 
     @Override
     public String getUsage() {
-        return "Usage: graphson -d [out|in] <filename>";
+        return "Usage: graphson -d [out|in] [-segments <n>] [-batch <size>] <filename|directory>";
     }
 
     @Override
     protected void setCustomOptions() {
         options.addOption(new Option("d", true, "Output or input a dump"));
+        options.addOption(new Option("segments", true,
+                "Dump to or restore from a directory of compressed segment files, " +
+                        "using the given number of threads"));
+        options.addOption(new Option("batch", true,
+                "Number of elements per transaction when restoring segments"));
     }
 
     /**
@@ -82,7 +94,9 @@ public class GraphSON extends BaseCommand implements Command {
         }
 
         // check if option is useful, otherwise print the help and bail out
-        if (dumpMode.contentEquals("out")) {
+        if (cmdLine.hasOption("segments")) {
+            segmentedDump(graph, cmdLine, dumpMode);
+        } else if (dumpMode.contentEquals("out")) {
             saveDump(graph, cmdLine);
         } else if (dumpMode.contentEquals("in")) {
             loadDump(graph, cmdLine);
@@ -93,6 +107,28 @@ public class GraphSON extends BaseCommand implements Command {
         return 0;
     }
 
+    private void segmentedDump(final FramedGraph<? extends TransactionalGraph> graph,
+            CommandLine cmdLine, String dumpMode) throws IOException, UnrecognizedOptionException {
+        File dir = new File((String) cmdLine.getArgList().get(0));
+        GraphDumper dumper = new GraphDumper(graph)
+                .withSegments(Integer.parseInt(cmdLine.getOptionValue("segments")));
+        if (cmdLine.hasOption("batch")) {
+            dumper = dumper.withBatchSize(Integer.parseInt(cmdLine.getOptionValue("batch")));
+        }
+
+        GraphDumper.Manifest manifest;
+        if (dumpMode.contentEquals("out")) {
+            manifest = dumper.dump(dir);
+        } else if (dumpMode.contentEquals("in")) {
+            manifest = dumper.load(dir);
+        } else {
+            throw new UnrecognizedOptionException("Unrecognised dump mode: '" + dumpMode + "'");
+        }
+        System.err.printf("%s %d vertices and %d edges in %d segments%n",
+                dumpMode.contentEquals("out") ? "Dumped" : "Restored",
+                manifest.vertices, manifest.edges, manifest.segments.size());
+    }
+
     public void saveDump(final FramedGraph<? extends TransactionalGraph> graph,
             CommandLine cmdLine) throws IOException {
 
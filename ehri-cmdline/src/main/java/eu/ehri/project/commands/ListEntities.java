@@ -1,31 +1,38 @@
 package eu.ehri.project.commands;
 
-import com.google.common.base.Optional;
+import com.google.common.base.Predicate;
+import com.google.common.collect.Iterables;
 import com.tinkerpop.blueprints.TransactionalGraph;
 import com.tinkerpop.frames.FramedGraph;
 import eu.ehri.project.core.GraphManager;
 import eu.ehri.project.core.GraphManagerFactory;
-import eu.ehri.project.exceptions.SerializationError;
+import eu.ehri.project.exceptions.ItemNotFound;
 import eu.ehri.project.models.EntityClass;
 import eu.ehri.project.models.base.AccessibleEntity;
-import eu.ehri.project.persistence.Serializer;
+import eu.ehri.project.models.base.PermissionScope;
+import eu.ehri.project.tools.ItemExporter;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.OptionBuilder;
 
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
-import java.io.IOException;
+import java.io.BufferedWriter;
+import java.io.File;
 import java.io.InputStream;
 import java.io.OutputStreamWriter;
-import java.io.UnsupportedEncodingException;
+import java.io.Writer;
 
 /**
- * Import EAD from the command line...
+ * List entities of a given type, optionally serialized as XML, JSON,
+ * or via an XSLT stylesheet.
+ * <p/>
+ * Items are serialized on a pool of worker threads (see the -threads
+ * option) and written in a stable order. With the -scope option only
+ * items within the given permission scope (e.g. a repository or
+ * country), to any depth, are listed, and with -output-dir each item
+ * is written to its own file. Throughput stats are printed to stderr.
+ * <p/>
+ * ./scripts/cmd list -f ead -scope us-005578 -output-dir /tmp/ead documentaryUnit
  */
 public class ListEntities extends BaseCommand implements Command {
 
@@ -50,6 +57,24 @@ public class ListEntities extends BaseCommand implements Command {
                 .withLongOpt("root-node").isRequired(false)
                 .hasArg(true).withArgName("r")
                 .withDescription("Name of the root node (default: '" + NAME + "')").create("r"));
+        options.addOption(OptionBuilder
+                .withType(Integer.class)
+                .withLongOpt("threads").isRequired(false)
+                .hasArg(true).withArgName("n")
+                .withDescription("Number of serialization threads " +
+                        "(default: number of processors)").create("t"));
+        options.addOption(OptionBuilder
+                .withType(String.class)
+                .withLongOpt("scope").isRequired(false)
+                .hasArg(true).withArgName("id")
+                .withDescription("Only list items within the given " +
+                        "permission scope").create("s"));
+        options.addOption(OptionBuilder
+                .withType(String.class)
+                .withLongOpt("output-dir").isRequired(false)
+                .hasArg(true).withArgName("dir")
+                .withDescription("Write each item to its own file in the " +
+                        "given directory").create("d"));
     }
 
     @Override
@@ -80,88 +105,75 @@ public class ListEntities extends BaseCommand implements Command {
             throw new RuntimeException("Unknown accessible entity: " + type);
 
         GraphManager manager = GraphManagerFactory.getInstance(graph);
-        Serializer serializer = new Serializer(graph);
         String rootName = cmdLine.getOptionValue("r", NAME);
+        Iterable<AccessibleEntity> items = cmdLine.hasOption("s")
+                ? getScopedItems(manager, type, cmdLine.getOptionValue("s"))
+                : manager.getFrames(type, AccessibleEntity.class);
 
         if (!cmdLine.hasOption("f")) {
             // default to only outputting the id's
-            printIds(manager, type);
-        } else {
-            // if there is a second argument, that might be 'json' or 'xml'
-            String format = cmdLine.getOptionValue("f");
-            if (format.equalsIgnoreCase("xml")) {
-                printXml(manager, serializer, type, getTransformer(Optional.<InputStream>absent()),
-                        rootName);
-            } else if (format.equalsIgnoreCase("json")) {
-                printJson(manager, serializer, type);
-            } else {
-                // If there's an XSLT file in the resources that is named
-                // EntityType_destinationFormat.xslt use that...
-                String xsltName = String.format("%s_%s.xslt", type.getName(), format);
-                InputStream ios = EntityClass.class.getClassLoader().getResourceAsStream(xsltName);
-                if (ios != null) {
-                    try {
-                        Transformer transformer = getTransformer(Optional.fromNullable(ios));
-                        printXml(manager, serializer, type, transformer, rootName);
-                    } finally {
-                        ios.close();
-                    }
-                } else {
-                    // unknown format
-                    throw new RuntimeException(
-                            String.format("Unknown format: '%s' and no '%s' xslt found", format, xsltName));
-                }
-            }
+            printIds(items);
+            return 0;
         }
 
-        return 0;
-    }
-
-    private void printIds(GraphManager manager, EntityClass type) {
-        for (AccessibleEntity acc : manager.getFrames(type, AccessibleEntity.class)) {
-            System.out.println(acc.getId());
+        ItemExporter exporter = new ItemExporter(graph);
+        if (cmdLine.hasOption("t")) {
+            exporter = exporter.withThreads(Integer.parseInt(cmdLine.getOptionValue("t")));
         }
-    }
 
-    private void printJson(GraphManager manager, Serializer serializer, EntityClass type)
-            throws SerializationError {
-
-        // NOTE no json root {}, but always a list []
-        System.out.print("[\n");
-
-        int cnt = 0;
-        for (AccessibleEntity acc : manager.getFrames(type, AccessibleEntity.class)) {
-            String jsonString = serializer.vertexFrameToJson(acc);
-            if (cnt != 0) System.out.print(",\n");
-            System.out.println(jsonString);
-            cnt++;
+        // if there is a second argument, that might be 'json' or 'xml'
+        String format = cmdLine.getOptionValue("f");
+        if (format.equalsIgnoreCase("json")) {
+            exporter = exporter.withFormat(ItemExporter.Format.JSON).withSeparator(",\n");
+        } else if (!format.equalsIgnoreCase("xml")) {
+            // If there's an XSLT file in the resources that is named
+            // EntityType_destinationFormat.xslt use that...
+            String xsltName = String.format("%s_%s.xslt", type.getName(), format);
+            InputStream ios = EntityClass.class.getClassLoader().getResourceAsStream(xsltName);
+            if (ios == null) {
+                // unknown format
+                throw new RuntimeException(
+                        String.format("Unknown format: '%s' and no '%s' xslt found", format, xsltName));
+            }
+            try {
+                exporter = exporter.withTemplates(TransformerFactory.newInstance()
+                        .newTemplates(new StreamSource(ios)));
+            } finally {
+                ios.close();
+            }
         }
-        System.out.print("]\n"); // end list
 
+        ItemExporter.Stats stats;
+        if (cmdLine.hasOption("d")) {
+            stats = exporter.exportToDirectory(items, new File(cmdLine.getOptionValue("d")));
+        } else {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(System.out, "UTF-8"));
+            boolean json = format.equalsIgnoreCase("json");
+            // NOTE no json root {}, but always a list []
+            writer.write(json ? "[\n" : "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<"
+                    + rootName + ">\n"); // root element
+            stats = exporter.export(items, writer);
+            writer.write(json ? "]\n" : "</" + rootName + ">\n"); // end root
+            writer.flush();
+        }
+        System.err.println("Exported " + stats);
+        return 0;
     }
 
-    private void printXml(GraphManager manager, Serializer serializer, EntityClass type,
-            Transformer transformer, String rootName)
-                throws UnsupportedEncodingException, SerializationError, TransformerException {
-        System.out.print("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
-        System.out.print("<" + rootName + ">\n"); // root element
-        for (AccessibleEntity acc : manager.getFrames(type, AccessibleEntity.class)) {
-            transformer.transform(new DOMSource(serializer.vertexFrameToXml(acc)),
-                    new StreamResult(new OutputStreamWriter(System.out, "UTF-8")));
-        }
-        System.out.print("</" + rootName + ">\n"); // root element
+    private Iterable<AccessibleEntity> getScopedItems(final GraphManager manager,
+            final EntityClass type, String scopeId) throws ItemNotFound {
+        PermissionScope scope = manager.getFrame(scopeId, PermissionScope.class);
+        return Iterables.filter(scope.getAllContainedItems(), new Predicate<AccessibleEntity>() {
+            @Override
+            public boolean apply(AccessibleEntity item) {
+                return type.equals(manager.getEntityClass(item));
+            }
+        });
     }
 
-    private static Transformer getTransformer(Optional<InputStream> xsltOpt) throws IOException, TransformerException {
-        TransformerFactory tf = TransformerFactory.newInstance();
-        Transformer transformer = xsltOpt.isPresent()
-                ? tf.newTransformer(new StreamSource(xsltOpt.get()))
-                : tf.newTransformer();
-        transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
-        transformer.setOutputProperty(OutputKeys.METHOD, "xml");
-        transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-        transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
-        transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
-        return transformer;
+    private void printIds(Iterable<AccessibleEntity> items) {
+        for (AccessibleEntity acc : items) {
+            System.out.println(acc.getId());
+        }
     }
-}
\ No newline at end of file
+}
@@ -4,17 +4,33 @@ import com.tinkerpop.blueprints.TransactionalGraph;
 import com.tinkerpop.blueprints.impls.sail.SailGraph;
 import com.tinkerpop.blueprints.oupls.sail.pg.PropertyGraphSail;
 import com.tinkerpop.frames.FramedGraph;
+import eu.ehri.project.core.GraphManager;
+import eu.ehri.project.core.GraphManagerFactory;
+import eu.ehri.project.exceptions.ItemNotFound;
+import eu.ehri.project.models.EntityClass;
+import eu.ehri.project.models.events.SystemEvent;
+import eu.ehri.project.tools.RdfExporter;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.MissingArgumentException;
 import org.apache.commons.cli.Option;
 
+import java.io.File;
 import java.io.FileOutputStream;
 import java.io.OutputStream;
 
 /**
  * Export to RDF.
- *
- * NB: This current has a problem with TP 2.4.0 which
+ * <p/>
+ * By default items are exported, partitioned by type, to a directory
+ * of N-Triples or Turtle segment files which are written concurrently.
+ * With the -since option only items changed since the given event (or
+ * timestamp) are exported. The -sail option instead exports the
+ * low-level property graph structure to a single file.
+ * <p/>
+ * ./scripts/cmd export-rdf -f turtle -threads 4 /tmp/rdf
+ * ./scripts/cmd export-rdf -since 2014-06-01T00:00:00.000Z /tmp/rdf-changes
+ * <p/>
+ * NB: The -sail export currently has a problem with TP 2.4.0 which
  * causes a crash on array properties. It seems to have
  * been fixed on TP 2.5.0-SNAPSHOT.
  *
@@ -24,51 +40,112 @@ public class RdfExport extends BaseCommand implements Command {
 
     public final static String NAME = "export-rdf";
 
-    public final static String DEFAULT_FORMAT = "turtle";
+    public final static String DEFAULT_FORMAT = "ntriples";
+    public final static String DEFAULT_SAIL_FORMAT = "turtle";
 
     @Override
     public String getHelp() {
-        return "export low-level graph structure as RDF";
+        return "export graph items as RDF";
     }
 
     @Override
     public String getUsage() {
         String sep = System.getProperty("line.separator");
         StringBuilder buffer = new StringBuilder(String.format(
-                "Usage: %s -f [format] <filename>%n%n " +
-                        "Accepted formats are: %n%n", NAME));
+                "Usage: %s [-f format] [-threads n] [-segment-size n] " +
+                        "[-since event-id|timestamp] [-base-uri uri] <directory>%n" +
+                        "       %s -sail [-f format] <filename>%n%n" +
+                        "Accepted formats are: %n%n", NAME, NAME));
+        for (RdfExporter.Format fmt : RdfExporter.Format.values()) {
+            buffer.append("  ");
+            buffer.append(fmt.name().toLowerCase());
+            buffer.append(sep);
+        }
+        buffer.append(sep);
+        buffer.append("With -sail: ");
+        buffer.append(sep);
         for (String fmt : SailGraph.formats.keySet()) {
             buffer.append("  ");
             buffer.append(fmt);
             buffer.append(sep);
         }
         buffer.append(sep);
-        buffer.append("The default format is: " + DEFAULT_FORMAT);
+        buffer.append("The default format is: " + DEFAULT_FORMAT
+                + " (" + DEFAULT_SAIL_FORMAT + " with -sail)");
         return buffer.toString();
     }
 
     @Override
     protected void setCustomOptions() {
         options.addOption(new Option("format", "f", true, "RDF format"));
+        options.addOption(new Option("threads", true,
+                "Number of segments written concurrently"));
+        options.addOption(new Option("segmentsize", "segment-size", true,
+                "Maximum number of items per segment"));
+        options.addOption(new Option("since", true,
+                "Only export items changed since the given event ID or timestamp"));
+        options.addOption(new Option("baseuri", "base-uri", true,
+                "Base URI of exported items (default: " + RdfExporter.DEFAULT_BASE_URI + ")"));
+        options.addOption(new Option("sail", false,
+                "Export the low-level graph structure to a single file"));
     }
 
     @Override
     public int execWithOptions(FramedGraph<? extends TransactionalGraph> graph, CommandLine cmdLine) throws Exception {
 
         if (cmdLine.getArgList().size() < 1) {
-            throw new MissingArgumentException("Output file path missing");
+            throw new MissingArgumentException("Output path missing");
+        }
+        String path = (String) cmdLine.getArgList().get(0);
+
+        if (cmdLine.hasOption("sail")) {
+            String fmt = cmdLine.getOptionValue("format", DEFAULT_SAIL_FORMAT);
+            PropertyGraphSail propertyGraphSail = new PropertyGraphSail(graph.getBaseGraph(), false);
+            SailGraph sailGraph = new SailGraph(propertyGraphSail);
+            OutputStream outputStream = new FileOutputStream(path);
+            try {
+                sailGraph.saveRDF(outputStream, fmt);
+            } finally {
+                outputStream.close();
+            }
+            return 0;
         }
-        String fmt = cmdLine.getOptionValue("format", DEFAULT_FORMAT);
 
-        PropertyGraphSail propertyGraphSail = new PropertyGraphSail(graph.getBaseGraph(), false);
-        SailGraph sailGraph = new SailGraph(propertyGraphSail);
-        OutputStream outputStream = new FileOutputStream((String)cmdLine.getArgList().get(0));
-        try {
-            sailGraph.saveRDF(outputStream, fmt);
-        } finally {
-            outputStream.close();
+        RdfExporter exporter = new RdfExporter(graph).withFormat(
+                RdfExporter.Format.withName(cmdLine.getOptionValue("format", DEFAULT_FORMAT)));
+        if (cmdLine.hasOption("threads")) {
+            exporter = exporter.withThreads(Integer.parseInt(cmdLine.getOptionValue("threads")));
+        }
+        if (cmdLine.hasOption("segmentsize")) {
+            exporter = exporter.withSegmentSize(
+                    Integer.parseInt(cmdLine.getOptionValue("segmentsize")));
+        }
+        if (cmdLine.hasOption("baseuri")) {
+            exporter = exporter.withBaseUri(cmdLine.getOptionValue("baseuri"));
+        }
+        if (cmdLine.hasOption("since")) {
+            exporter = exporter.withChangesSince(getTimestamp(graph, cmdLine.getOptionValue("since")));
         }
 
+        RdfExporter.Manifest manifest = exporter.export(new File(path));
+        System.err.printf("Exported %d items (%d triples) in %d segments%n",
+                manifest.items, manifest.triples, manifest.segments.size());
         return 0;
     }
+
+    /**
+     * Get a timestamp from either a system event ID or a timestamp.
+     */
+    private String getTimestamp(FramedGraph<? extends TransactionalGraph> graph, String since) {
+        GraphManager manager = GraphManagerFactory.getInstance(graph);
+        if (manager.exists(since)) {
+            try {
+                return manager.getFrame(since, EntityClass.SYSTEM_EVENT, SystemEvent.class)
+                        .getTimestamp();
+            } catch (ItemNotFound e) {
+                throw new IllegalArgumentException("Item is not a system event: " + since);
+            }
+        }
+        return since;
+    }
 }
@@ -1,13 +1,26 @@
 package eu.ehri.project.commands;
 
+import com.google.common.collect.Lists;
 import com.tinkerpop.blueprints.TransactionalGraph;
 import com.tinkerpop.frames.FramedGraph;
 import eu.ehri.project.core.GraphReindexer;
+import eu.ehri.project.models.EntityClass;
 import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+
+import java.util.List;
 
 /**
- * Import EAD from the command line...
- * 
+ * Rebuild the internal graph index.
+ * <p/>
+ * By default the index is dropped and rebuilt in a single transaction.
+ * With the -batch option a new index is instead built alongside the
+ * existing one, which continues to serve lookups, and swapped in when
+ * complete. With the -type option only the entries for vertices of the
+ * given types are refreshed, in batches.
+ * <p/>
+ * ./scripts/cmd reindex -batch 5000
+ * ./scripts/cmd reindex -type documentaryUnit -type repository
  */
 public class Reindex extends BaseCommand implements Command {
 
@@ -19,23 +32,50 @@ public class Reindex extends BaseCommand implements Command {
 
     @Override
     protected void setCustomOptions() {
+        options.addOption(new Option("batch", true,
+                "Rebuild the index in batches of the given size"));
+        options.addOption(new Option("type", true,
+                "Only reindex vertices of the given type (implies -batch)"));
     }
 
     @Override
     public String getHelp() {
-        return "Usage: reindex";
+        return "Usage: reindex [-batch <size>] [-type <type>]*";
     }
 
     @Override
     public String getUsage() {
-        return "Drop and rebuild the (internal) graph index.";
+        return "Drop and rebuild the (internal) graph index. Without -type, this " +
+                "also updates an index created by an earlier version to the format " +
+                "find/replace operations need to use it.";
     }
 
 
     @Override
     public int execWithOptions(final FramedGraph<? extends TransactionalGraph> graph, CommandLine cmdLine) throws Exception {
         GraphReindexer reIndexer = new GraphReindexer(graph);
-        reIndexer.reindex();
+        if (!cmdLine.hasOption("batch") && !cmdLine.hasOption("type")) {
+            reIndexer.reindex();
+            return 0;
+        }
+
+        if (cmdLine.hasOption("batch")) {
+            reIndexer = reIndexer.withBatchSize(Integer.parseInt(cmdLine.getOptionValue("batch")));
+        }
+        if (cmdLine.hasOption("type")) {
+            List<EntityClass> types = Lists.newArrayList();
+            for (String type : cmdLine.getOptionValues("type")) {
+                types.add(EntityClass.withName(type));
+            }
+            reIndexer = reIndexer.withTypes(types);
+        }
+        long count = reIndexer.reindexInBatches(new GraphReindexer.ProgressListener() {
+            @Override
+            public void progress(long count) {
+                System.err.printf("Indexed %d vertices%n", count);
+            }
+        });
+        System.err.printf("Reindex complete: %d vertices%n", count);
         return 0;
     }
 }
@@ -37,11 +37,13 @@ public class SkosVocabularyImport extends BaseCommand implements Command {
                 "Don't error if a file is not valid."));
         options.addOption(new Option("log", true,
                 "Log message for import action."));
+        options.addOption(new Option("batch", true,
+                "Import concepts in batches of the given size, committing after each one."));
     }
 
     @Override
     public String getHelp() {
-        return "Usage: skos-import [OPTIONS] -user <user-id> -scope <vocabulary-id> <skos.rdf>";
+        return "Usage: skos-import [OPTIONS] -user <user-id> -scope <vocabulary-id> [-batch <size>] <skos.rdf>";
     }
 
     @Override
@@ -86,6 +88,8 @@ public class SkosVocabularyImport extends BaseCommand implements Command {
             SkosImporter importer = SkosImporterFactory.newSkosImporter(graph, user, vocabulary);
             ImportLog log = importer
                     .setTolerant(cmdLine.hasOption("tolerant"))
+                    .setBatchSize(cmdLine.hasOption("batch")
+                            ? Integer.parseInt(cmdLine.getOptionValue("batch")) : 0)
                     .importFile(filePath, logMessage);
             log.printReport();
             if (log.getErrored() > 0) {
@@ -1,29 +1,48 @@
 package eu.ehri.extension;
 
+import au.com.bytecode.opencsv.CSVWriter;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
+import com.tinkerpop.blueprints.impls.neo4j.Neo4jGraph;
 import com.tinkerpop.blueprints.oupls.sail.pg.PropertyGraphSail;
 import info.aduna.iteration.CloseableIteration;
-import org.codehaus.jackson.JsonFactory;
-import org.codehaus.jackson.map.ObjectMapper;
+import info.aduna.iteration.Iteration;
+import info.aduna.iteration.TimeLimitIteration;
+import org.codehaus.jackson.JsonGenerator;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.openrdf.query.BindingSet;
 import org.openrdf.query.QueryEvaluationException;
+import org.openrdf.query.QueryInterruptedException;
+import org.openrdf.query.TupleQueryResultHandler;
+import org.openrdf.query.TupleQueryResultHandlerException;
+import org.openrdf.query.algebra.Slice;
+import org.openrdf.query.algebra.TupleExpr;
 import org.openrdf.query.impl.EmptyBindingSet;
 import org.openrdf.query.parser.ParsedQuery;
 import org.openrdf.query.parser.QueryParser;
 import org.openrdf.query.parser.sparql.SPARQLParser;
+import org.openrdf.query.resultio.sparqlxml.SPARQLResultsXMLWriter;
+import org.openrdf.sail.SailConnection;
+import org.openrdf.sail.SailException;
 
 import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.core.Variant;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Resource for executing SparQL queries on the graph
@@ -51,6 +70,13 @@ import java.util.Map;
  * LIMIT 100
  *     </code>
  * </pre>
+ * <p/>
+ * Results are streamed as they are evaluated, either as a JSON
+ * list of binding objects (the default), as SPARQL Query Results
+ * XML, or as CSV, depending on the request's Accept header. All
+ * results are returned unless the {@code limit} parameter is given,
+ * while the time spent evaluating a query is bounded by the
+ * {@code timeout} parameter, which is capped by a server-side maximum.
  *
  * @author Mike Bryant (http://github.com/mikesname)
  */
@@ -59,61 +85,255 @@ public class SparQLResource extends AbstractRestResource {
 
     public static final String HTTP_EHRI_PROJECT_EU = "http://ehri-project.eu";
     public static final String QUERY_PARAM = "q";
+    public static final String TIMEOUT_PARAM = "timeout";
+
+    public static final String SPARQL_RESULTS_XML = "application/sparql-results+xml";
+    public static final String TEXT_CSV = "text/csv";
+
+    public static final int DEFAULT_TIMEOUT_SECONDS = 60;
+    public static final int MAX_TIMEOUT_SECONDS = 300;
+    public static final int MAX_CONNECTIONS = 8;
 
     private static final QueryParser parser = new SPARQLParser();
-    private static final JsonFactory factory = new JsonFactory();
-    private static final ObjectMapper mapper = new ObjectMapper(factory);
-    private PropertyGraphSail sail;
+
+    private static final MediaType sparqlXmlType = MediaType.valueOf(SPARQL_RESULTS_XML);
+    private static final MediaType csvType = MediaType.valueOf(TEXT_CSV);
+    // NB: Json is default so it's first...
+    private static final List<Variant> variants = Variant.VariantListBuilder.newInstance()
+            .mediaTypes(MediaType.APPLICATION_JSON_TYPE, sparqlXmlType, csvType)
+            .add().build();
+
+    /**
+     * The sail is shared between requests, since it is expensive
+     * to set up, and the number of connections open on it at any
+     * one time is bounded.
+     */
+    private static PropertyGraphSail sail;
+    private static GraphDatabaseService sailDatabase;
+    private static final Semaphore connections = new Semaphore(MAX_CONNECTIONS, true);
+
+    private final GraphDatabaseService database;
+
+    @Context
+    private Request request;
 
     /**
      * @param database Injected neo4j database
      */
     public SparQLResource(@Context GraphDatabaseService database) {
         super(database);
-
+        this.database = database;
     }
 
     /**
      * Run a sparql query.
      *
-     * @param q A valid SparQL query string
-     * @return A JSON-formatted response
+     * @param q       A valid SparQL query string
+     * @param limit   The maximum number of results to return. If absent
+     *                or negative, all results are returned.
+     * @param timeout The maximum time, in seconds, to spend waiting for
+     *                a connection and evaluating the query. Values outside
+     *                the range 1 to {@link #MAX_TIMEOUT_SECONDS} are
+     *                treated as the maximum.
+     * @return A streamed JSON, SPARQL XML, or CSV response
      * @throws Exception
      */
     @GET
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, SPARQL_RESULTS_XML, TEXT_CSV})
     @Path("/")
     public Response sparqlQuery(
-            @DefaultValue("") @QueryParam(QUERY_PARAM) String q) throws Exception {
+            @DefaultValue("") @QueryParam(QUERY_PARAM) String q,
+            @QueryParam(LIMIT_PARAM) Integer limit,
+            @DefaultValue("" + DEFAULT_TIMEOUT_SECONDS) @QueryParam(TIMEOUT_PARAM) int timeout)
+            throws Exception {
 
-        initSail();
         ParsedQuery query = parser.parseQuery(q, HTTP_EHRI_PROJECT_EU);
-        CloseableIteration<? extends BindingSet, QueryEvaluationException> results
-                = sail.getConnection().evaluate(
-                query.getTupleExpr(), query.getDataset(), new EmptyBindingSet(), false);
-        try {
-            List<Map<String, String>> out = Lists.newArrayList();
+        int maxSeconds = timeout <= 0 || timeout > MAX_TIMEOUT_SECONDS
+                ? MAX_TIMEOUT_SECONDS : timeout;
+        TupleExpr expr = limit == null || limit < 0
+                ? query.getTupleExpr()
+                : new Slice(query.getTupleExpr(), 0, limit);
+        List<String> bindingNames = Lists.newArrayList(expr.getBindingNames());
+
+        Variant variant = request.selectVariant(variants);
+        MediaType mediaType = variant == null
+                ? MediaType.APPLICATION_JSON_TYPE
+                : variant.getMediaType();
+
+        // NB: The connection is not acquired until the output is
+        // written, so nothing is held if it never is, e.g. for a HEAD
+        // request or if the client has gone away.
+        StreamingOutput output = new ResultOutput(database, query, expr,
+                bindingNames, mediaType, TimeUnit.SECONDS.toMillis(maxSeconds));
+        return Response.ok(output, mediaType).build();
+    }
+
+    /**
+     * Fetch the shared sail, initialising it if necessary. A new
+     * sail will be created if the database instance has changed,
+     * as might happen if the server is restarted in-process.
+     */
+    private static PropertyGraphSail getSail(GraphDatabaseService database) throws SailException {
+        synchronized (SparQLResource.class) {
+            if (sail == null || sailDatabase != database) {
+                if (sail != null) {
+                    try {
+                        sail.shutDown();
+                    } catch (SailException e) {
+                        logger.warn("Error shutting down SparQL sail", e);
+                    }
+                }
+                PropertyGraphSail newSail = new PropertyGraphSail(new Neo4jGraph(database));
+                newSail.initialize();
+                sail = newSail;
+                sailDatabase = database;
+            }
+            return sail;
+        }
+    }
+
+    /**
+     * Output which takes a connection on the shared sail, evaluates
+     * a query on it and streams each binding set to the response as
+     * it is read, releasing the connection when done.
+     */
+    private static class ResultOutput implements StreamingOutput {
+        private final GraphDatabaseService database;
+        private final ParsedQuery query;
+        private final TupleExpr expr;
+        private final List<String> bindingNames;
+        private final MediaType mediaType;
+        private final long timeoutMillis;
+
+        ResultOutput(GraphDatabaseService database, ParsedQuery query, TupleExpr expr,
+                List<String> bindingNames, MediaType mediaType, long timeoutMillis) {
+            this.database = database;
+            this.query = query;
+            this.expr = expr;
+            this.bindingNames = bindingNames;
+            this.mediaType = mediaType;
+            this.timeoutMillis = timeoutMillis;
+        }
+
+        @Override
+        public void write(OutputStream os) throws IOException {
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            try {
+                if (!connections.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                    // Nothing has been written yet, so this still
+                    // results in an error response.
+                    throw new WebApplicationException(Response.Status.SERVICE_UNAVAILABLE);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new WebApplicationException(Response.Status.SERVICE_UNAVAILABLE);
+            }
+            try {
+                SailConnection connection = getSail(database).getConnection();
+                try {
+                    // The time limit closes the evaluation from another
+                    // thread when it expires, which also interrupts
+                    // a long-running join before it yields a result.
+                    CloseableIteration<? extends BindingSet, QueryEvaluationException> results
+                            = new QueryTimeLimitIteration(connection.evaluate(expr,
+                            query.getDataset(), new EmptyBindingSet(), false),
+                            Math.max(1L, deadline - System.currentTimeMillis()));
+                    try {
+                        if (sparqlXmlType.isCompatible(mediaType)) {
+                            writeXml(results, os);
+                        } else if (csvType.isCompatible(mediaType)) {
+                            writeCsv(results, os);
+                        } else {
+                            writeJson(results, os);
+                        }
+                    } finally {
+                        results.close();
+                    }
+                } finally {
+                    try {
+                        connection.close();
+                    } catch (SailException e) {
+                        logger.error("Error closing SparQL connection", e);
+                    }
+                }
+            } catch (SailException e) {
+                throw new RuntimeException(e);
+            } catch (QueryEvaluationException e) {
+                // Since the response will already have been committed
+                // by this point the only way to signal the error,
+                // including the query timing out, is to break off
+                // the stream.
+                throw new IOException("Error evaluating SparQL query", e);
+            } catch (TupleQueryResultHandlerException e) {
+                throw new RuntimeException(e);
+            } finally {
+                connections.release();
+            }
+        }
+
+        private void writeJson(CloseableIteration<? extends BindingSet, QueryEvaluationException> results,
+                OutputStream os) throws IOException, QueryEvaluationException {
+            JsonGenerator g = jsonFactory.createJsonGenerator(os);
+            g.writeStartArray();
             while (results.hasNext()) {
                 BindingSet next = results.next();
-                Map<String, String> set = Maps.newHashMap();
+                g.writeRaw('\n');
+                g.writeStartObject();
                 for (String name : next.getBindingNames()) {
-                    set.put(name, next.getValue(name).stringValue());
+                    if (next.getValue(name) != null) {
+                        g.writeStringField(name, next.getValue(name).stringValue());
+                    }
+                }
+                g.writeEndObject();
+            }
+            g.writeEndArray();
+            g.close();
+        }
+
+        private void writeXml(CloseableIteration<? extends BindingSet, QueryEvaluationException> results,
+                OutputStream os) throws IOException, QueryEvaluationException,
+                TupleQueryResultHandlerException {
+            TupleQueryResultHandler writer = new SPARQLResultsXMLWriter(os);
+            writer.startQueryResult(bindingNames);
+            while (results.hasNext()) {
+                writer.handleSolution(results.next());
+            }
+            writer.endQueryResult();
+        }
+
+        private void writeCsv(CloseableIteration<? extends BindingSet, QueryEvaluationException> results,
+                OutputStream os) throws IOException, QueryEvaluationException {
+            Writer writer = new OutputStreamWriter(os, "UTF-8");
+            CSVWriter csvWriter = new CSVWriter(writer);
+            csvWriter.writeNext(bindingNames.toArray(new String[bindingNames.size()]));
+            String[] row = new String[bindingNames.size()];
+            while (results.hasNext()) {
+                BindingSet next = results.next();
+                for (int i = 0; i < row.length; i++) {
+                    row[i] = next.getValue(bindingNames.get(i)) == null
+                            ? "" : next.getValue(bindingNames.get(i)).stringValue();
                 }
-                out.add(set);
+                csvWriter.writeNext(row);
             }
-            return Response.ok(mapper.writeValueAsBytes(out)).build();
-        } finally {
-            results.close();
+            csvWriter.flush();
         }
     }
 
     /**
-     * Initialise the PropertySailGraph
+     * Iteration which closes the query evaluation if it has
+     * not finished within a given time.
      */
-    private void initSail() throws Exception {
-        if (sail == null) {
-            sail = new PropertyGraphSail(graph.getBaseGraph());
-            sail.initialize();
+    private static class QueryTimeLimitIteration
+            extends TimeLimitIteration<BindingSet, QueryEvaluationException> {
+        QueryTimeLimitIteration(
+                Iteration<? extends BindingSet, ? extends QueryEvaluationException> iter,
+                long timeLimit) {
+            super(iter, timeLimit);
+        }
+
+        @Override
+        protected void throwInterruptedException() throws QueryEvaluationException {
+            throw new QueryInterruptedException("SparQL query exceeded its time limit");
         }
     }
 }
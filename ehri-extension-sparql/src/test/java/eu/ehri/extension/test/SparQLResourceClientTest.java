@@ -1,6 +1,7 @@
 package eu.ehri.extension.test;
 
 import com.sun.jersey.api.client.ClientResponse;
+import eu.ehri.extension.AbstractRestResource;
 import eu.ehri.extension.SparQLResource;
 import org.codehaus.jackson.JsonNode;
 import org.junit.Test;
@@ -35,4 +36,37 @@ public class SparQLResourceClientTest extends BaseRestClientTest {
         // changes the fixtures.
         assertEquals("linda", firstObject.path("id").asText());
     }
+
+    @Test
+    public void testSparQLQueryLimit() throws Exception {
+        String testQuery = readResourceFileAsString("testquery.sparql");
+        URI queryUri = ehriUriBuilder("sparql").queryParam(SparQLResource.QUERY_PARAM, testQuery)
+                .queryParam(AbstractRestResource.LIMIT_PARAM, 1).build();
+        ClientResponse response = callAs(getAdminUserProfileId(), queryUri).get(ClientResponse.class);
+        assertStatus(OK, response);
+        JsonNode rootNode = jsonMapper.readValue(response.getEntity(String.class), JsonNode.class);
+        assertEquals(1, rootNode.size());
+
+        // A negative limit returns all results, and a negative
+        // timeout is replaced by the server-side maximum
+        queryUri = ehriUriBuilder("sparql").queryParam(SparQLResource.QUERY_PARAM, testQuery)
+                .queryParam(AbstractRestResource.LIMIT_PARAM, -1)
+                .queryParam(SparQLResource.TIMEOUT_PARAM, -1).build();
+        response = callAs(getAdminUserProfileId(), queryUri).get(ClientResponse.class);
+        assertStatus(OK, response);
+        rootNode = jsonMapper.readValue(response.getEntity(String.class), JsonNode.class);
+        assertTrue(rootNode.size() > 1);
+    }
+
+    @Test
+    public void testHeadRequestsDoNotHoldConnections() throws Exception {
+        String testQuery = readResourceFileAsString("testquery.sparql");
+        URI queryUri = ehriUriBuilder("sparql").queryParam(SparQLResource.QUERY_PARAM, testQuery)
+                .queryParam(SparQLResource.TIMEOUT_PARAM, 1).build();
+        for (int i = 0; i <= SparQLResource.MAX_CONNECTIONS; i++) {
+            assertStatus(OK, callAs(getAdminUserProfileId(), queryUri).head());
+        }
+        ClientResponse response = callAs(getAdminUserProfileId(), queryUri).get(ClientResponse.class);
+        assertStatus(OK, response);
+    }
 }
@@ -88,7 +88,8 @@ public class AbstractAccessibleEntityResource<E extends AccessibleEntity>
      */
     public Response listItems() throws BadRequester {
         graph.getBaseGraph().checkNotInTransaction();
-        return streamingPage(getQuery(cls).page(getRequesterUserProfile()));
+        return streamingPage(getQuery(cls).setCacheKey(cls.getName())
+                .page(getRequesterUserProfile()));
     }
 
     /**
@@ -99,7 +100,7 @@ public class AbstractAccessibleEntityResource<E extends AccessibleEntity>
      */
     public long countItems() throws BadRequester {
         graph.getBaseGraph().checkNotInTransaction();
-        return getQuery(cls).count();
+        return getQuery(cls).setCacheKey(cls.getName()).count();
     }
 
     /**
@@ -1,8 +1,11 @@
 package eu.ehri.extension;
 
 import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
 import com.google.common.base.Optional;
 import com.google.common.collect.Lists;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import com.tinkerpop.blueprints.Vertex;
 import com.tinkerpop.frames.FramedGraph;
 import com.tinkerpop.frames.FramedGraphFactory;
@@ -10,6 +13,7 @@ import com.tinkerpop.frames.modules.javahandler.JavaHandlerModule;
 import eu.ehri.extension.base.TxCheckedResource;
 import eu.ehri.extension.errors.BadRequester;
 import eu.ehri.project.acl.AnonymousAccessor;
+import eu.ehri.project.core.GraphGeneration;
 import eu.ehri.project.core.GraphManager;
 import eu.ehri.project.core.GraphManagerFactory;
 import eu.ehri.project.definitions.Entities;
@@ -25,12 +29,16 @@ import eu.ehri.project.views.Query;
 import org.codehaus.jackson.JsonFactory;
 import org.codehaus.jackson.JsonGenerator;
 import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.smile.SmileFactory;
+import org.codehaus.jackson.smile.SmileGenerator;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.ws.rs.HttpMethod;
 import javax.ws.rs.core.CacheControl;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Request;
@@ -57,6 +65,7 @@ public abstract class AbstractRestResource implements TxCheckedResource {
 
     protected static final ObjectMapper jsonMapper = new ObjectMapper();
     protected static final JsonFactory jsonFactory = new JsonFactory();
+    protected static final SmileFactory smileFactory = Serializer.getSmileFactory();
 
     protected static final Logger logger = LoggerFactory.getLogger(TxCheckedResource.class);
     private static final FramedGraphFactory graphFactory = new FramedGraphFactory(new JavaHandlerModule());
@@ -78,6 +87,12 @@ public abstract class AbstractRestResource implements TxCheckedResource {
      */
     public static final String INCLUDE_PROPS_PARAM = "_ip";
 
+    /**
+     * Media types.
+     */
+    public static final String APPLICATION_SMILE = "application/x-jackson-smile";
+    public static final MediaType APPLICATION_SMILE_TYPE = MediaType.valueOf(APPLICATION_SMILE);
+
     /**
      * Header names
      */
@@ -108,7 +123,8 @@ public abstract class AbstractRestResource implements TxCheckedResource {
         MediaType applicationXml = MediaType.TEXT_XML_TYPE;
 
         // NB: Json is default so it's first...
-        MediaType[] supportedTypes = new MediaType[]{applicationJson, applicationXml};
+        MediaType[] supportedTypes = new MediaType[]{applicationJson, applicationXml,
+                APPLICATION_SMILE_TYPE};
         List<Variant> variants = Variant.VariantListBuilder.newInstance()
                 .mediaTypes(supportedTypes).add().build();
 
@@ -130,6 +146,11 @@ public abstract class AbstractRestResource implements TxCheckedResource {
     protected final FramedGraph<TxCheckedNeo4jGraph> graph;
     protected final GraphManager manager;
     private final Serializer serializer;
+    // NB: The graph generation is read when the request starts,
+    // since a write committed while we're reading must change
+    // the tag on any response containing what we've read. It
+    // advances on commits made through any API, not just ours.
+    private final String generationTag;
 
     /**
      * Constructer.
@@ -140,6 +161,7 @@ public abstract class AbstractRestResource implements TxCheckedResource {
         graph = graphFactory.create(new TxCheckedNeo4jGraph(database));
         manager = GraphManagerFactory.getInstance(graph);
         serializer = new Serializer.Builder(graph).build();
+        generationTag = GraphGeneration.getTag(graph.getBaseGraph());
     }
 
     public FramedGraph<TxCheckedNeo4jGraph> getGraph() {
@@ -318,10 +340,19 @@ public abstract class AbstractRestResource implements TxCheckedResource {
      * headers.
      */
     protected <T extends Frame> Response single(final T item) {
+        EntityTag tag = getItemTag(item);
+        Optional<Response.ResponseBuilder> notModified = evaluatePreconditions(tag);
+        if (notModified.isPresent()) {
+            return notModified.get()
+                    .tag(tag)
+                    .location(getItemUri(item))
+                    .cacheControl(getCacheControl(item)).build();
+        }
         try {
             return Response.status(Response.Status.OK)
-                    .entity(getRepresentation(item).getBytes(Charsets.UTF_8))
+                    .entity(getRepresentationBytes(item))
                     .location(getItemUri(item))
+                    .tag(tag)
                     .cacheControl(getCacheControl(item)).build();
         } catch (SerializationError e) {
             throw new RuntimeException(e);
@@ -338,7 +369,7 @@ public abstract class AbstractRestResource implements TxCheckedResource {
         try {
             // FIXME: We can add cache control and location here
             return Response.status(Response.Status.OK)
-                    .entity(getRepresentation(item).getBytes(Charsets.UTF_8))
+                    .entity(getRepresentationBytes(item))
                     .build();
         } catch (SerializationError e) {
             throw new RuntimeException(e);
@@ -366,9 +397,14 @@ public abstract class AbstractRestResource implements TxCheckedResource {
      */
     protected <T extends Frame> Response streamingPage(
             final Query.Page<T> page, final Serializer serializer) {
-        return MediaType.TEXT_XML_TYPE.equals(checkMediaType())
+        EntityTag tag = getListTag();
+        Optional<Response.ResponseBuilder> notModified = evaluatePreconditions(tag);
+        if (notModified.isPresent()) {
+            return withListHeaders(notModified.get()).build();
+        }
+        return withListHeaders(MediaType.TEXT_XML_TYPE.equals(checkMediaType())
                 ? getStreamingXmlOutput(page, serializer)
-                : getStreamingJsonOutput(page, serializer);
+                : getStreamingJsonOutput(page, serializer)).tag(tag).build();
     }
 
     /**
@@ -379,7 +415,8 @@ public abstract class AbstractRestResource implements TxCheckedResource {
      * @param <T>        The type of item in the page
      * @return An XML response.
      */
-    private <T extends Frame> Response getStreamingXmlOutput(final Query.Page<T> page, final Serializer serializer) {
+    private <T extends Frame> Response.ResponseBuilder getStreamingXmlOutput(final Query.Page<T> page,
+            final Serializer serializer) {
         final Charset utf8 = Charset.forName("UTF-8");
         final String header = String.format("<list total=\"%d\" offset=\"%d\" limit=\"%d\">%n",
                 page.getTotal(), page.getOffset(), page.getLimit());
@@ -399,8 +436,7 @@ public abstract class AbstractRestResource implements TxCheckedResource {
                 }
                 os.write(tail.getBytes(utf8));
             }
-        }).header(RANGE_HEADER_NAME, getPaginationResponseHeader(page))
-                .build();
+        }).header(RANGE_HEADER_NAME, getPaginationResponseHeader(page));
     }
 
     /**
@@ -424,16 +460,18 @@ public abstract class AbstractRestResource implements TxCheckedResource {
      * @param <T>        The type of item in the page
      * @return A JSON response
      */
-    private <T extends Frame> Response getStreamingJsonOutput(final Query.Page<T> page, final Serializer serializer) {
+    private <T extends Frame> Response.ResponseBuilder getStreamingJsonOutput(final Query.Page<T> page,
+            final Serializer serializer) {
         final Serializer cacheSerializer = serializer.withCache();
+        final JsonFactory factory = getJsonFactory();
         StreamingOutput output = new StreamingOutput() {
             @Override
             public void write(OutputStream os) throws IOException {
-                JsonGenerator g = jsonFactory.createJsonGenerator(os);
+                JsonGenerator g = factory.createJsonGenerator(os);
                 g.writeStartArray();
                 for (T item : page.getIterable()) {
                     try {
-                        g.writeRaw('\n');
+                        writeSeparator(g);
                         jsonMapper.writeValue(g, cacheSerializer.vertexFrameToData(item));
                     } catch (SerializationError e) {
                         throw new RuntimeException(e);
@@ -444,8 +482,7 @@ public abstract class AbstractRestResource implements TxCheckedResource {
             }
         };
         return Response.ok(output)
-                .header(RANGE_HEADER_NAME, getPaginationResponseHeader(page))
-                .build();
+                .header(RANGE_HEADER_NAME, getPaginationResponseHeader(page));
     }
 
     /**
@@ -468,12 +505,18 @@ public abstract class AbstractRestResource implements TxCheckedResource {
      */
     protected <T extends Frame> Response streamingList(
             final Iterable<T> list, final Serializer serializer) {
-        return MediaType.TEXT_XML_TYPE.equals(checkMediaType())
+        EntityTag tag = getListTag();
+        Optional<Response.ResponseBuilder> notModified = evaluatePreconditions(tag);
+        if (notModified.isPresent()) {
+            return withListHeaders(notModified.get()).build();
+        }
+        return withListHeaders(MediaType.TEXT_XML_TYPE.equals(checkMediaType())
                 ? getStreamingXmlOutput(list, serializer)
-                : getStreamingJsonOutput(list, serializer);
+                : getStreamingJsonOutput(list, serializer)).tag(tag).build();
     }
 
-    private <T extends Frame> Response getStreamingXmlOutput(final Iterable<T> list, final Serializer serializer) {
+    private <T extends Frame> Response.ResponseBuilder getStreamingXmlOutput(final Iterable<T> list,
+            final Serializer serializer) {
         final Charset utf8 = Charset.forName("UTF-8");
         final String header = "<list>\n";
         final String tail = "</list>\n";
@@ -492,18 +535,20 @@ public abstract class AbstractRestResource implements TxCheckedResource {
                 }
                 os.write(tail.getBytes(utf8));
             }
-        }).build();
+        });
     }
 
-    private <T extends Frame> Response getStreamingJsonOutput(final Iterable<T> list, final Serializer serializer) {
+    private <T extends Frame> Response.ResponseBuilder getStreamingJsonOutput(final Iterable<T> list,
+            final Serializer serializer) {
         final Serializer cacheSerializer = serializer.withCache();
+        final JsonFactory factory = getJsonFactory();
         return Response.ok(new StreamingOutput() {
             @Override
             public void write(OutputStream arg0) throws IOException {
-                JsonGenerator g = jsonFactory.createJsonGenerator(arg0);
+                JsonGenerator g = factory.createJsonGenerator(arg0);
                 g.writeStartArray();
                 for (T item : list) {
-                    g.writeRaw('\n');
+                    writeSeparator(g);
                     try {
                         jsonMapper.writeValue(g, cacheSerializer.vertexFrameToData(item));
                     } catch (SerializationError e) {
@@ -514,7 +559,7 @@ public abstract class AbstractRestResource implements TxCheckedResource {
                 g.writeEndArray();
                 g.close();
             }
-        }).build();
+        });
     }
 
     /**
@@ -528,14 +573,15 @@ public abstract class AbstractRestResource implements TxCheckedResource {
     protected Response streamingVertexList(
             final Iterable<Vertex> list, final Serializer serializer) {
         final Serializer cacheSerializer = serializer.withCache();
+        final JsonFactory factory = getJsonFactory();
         return Response.ok(new StreamingOutput() {
             @Override
             public void write(OutputStream arg0) throws IOException {
-                JsonGenerator g = jsonFactory.createJsonGenerator(arg0);
+                JsonGenerator g = factory.createJsonGenerator(arg0);
                 g.writeStartArray();
                 for (Vertex item : list) {
                     try {
-                        g.writeRaw('\n');
+                        writeSeparator(g);
                         jsonMapper.writeValue(g, cacheSerializer.vertexToData(item));
                     } catch (SerializationError e) {
                         throw new RuntimeException(e);
@@ -584,6 +630,51 @@ public abstract class AbstractRestResource implements TxCheckedResource {
                 : getSerializer().vertexToJson(vertex);
     }
 
+    /**
+     * Get an encoded representation (JSON, XML or Smile) of a given vertex.
+     *
+     * @param vertex A vertex
+     * @return The representation bytes, according to media type
+     */
+    protected byte[] getRepresentationBytes(Vertex vertex) throws SerializationError {
+        return APPLICATION_SMILE_TYPE.equals(checkMediaType())
+                ? getSerializer().vertexToSmile(vertex)
+                : getRepresentation(vertex).getBytes(Charsets.UTF_8);
+    }
+
+    /**
+     * Get an encoded representation (JSON, XML or Smile) of a given frame.
+     *
+     * @param frame A framed item
+     * @return The representation bytes, according to media type
+     */
+    protected byte[] getRepresentationBytes(Frame frame) throws SerializationError {
+        return APPLICATION_SMILE_TYPE.equals(checkMediaType())
+                ? getSerializer().vertexFrameToSmile(frame)
+                : getRepresentation(frame).getBytes(Charsets.UTF_8);
+    }
+
+    /**
+     * Get the factory for streaming JSON data of the requested media
+     * type, which may be text JSON or binary Smile.
+     *
+     * @return A JSON factory
+     */
+    protected JsonFactory getJsonFactory() {
+        return APPLICATION_SMILE_TYPE.equals(checkMediaType()) ? smileFactory : jsonFactory;
+    }
+
+    /**
+     * Separate items in a streamed list. Text JSON items are written
+     * on separate lines, to ease line-based processing, but this
+     * is not possible in the Smile binary format.
+     */
+    private static void writeSeparator(JsonGenerator g) throws IOException {
+        if (!(g instanceof SmileGenerator)) {
+            g.writeRaw('\n');
+        }
+    }
+
     /**
      * Get a string representation (JSON or XML) of a given frame.
      *
@@ -615,4 +706,73 @@ public abstract class AbstractRestResource implements TxCheckedResource {
         }
         return cc;
     }
+
+    /**
+     * Get a weak entity tag from the given values, which together
+     * must identify a representation.
+     *
+     * @param values The values
+     * @return An entity tag
+     */
+    protected EntityTag getEntityTag(String... values) {
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        for (String value : values) {
+            hasher.putString(String.valueOf(value), Charsets.UTF_8).putByte((byte) 0);
+        }
+        hasher.putString(String.valueOf(checkMediaType()), Charsets.UTF_8);
+        return new EntityTag(hasher.hash().toString(), true);
+    }
+
+    /**
+     * Get an entity tag for a single item. As well as the item's own
+     * data its representation includes related items and counts, which
+     * can change without the item itself being modified, so like
+     * {@link #getListTag()} this changes whenever the graph is written to.
+     *
+     * @param item The item
+     * @return An entity tag
+     */
+    protected EntityTag getItemTag(Frame item) {
+        return getEntityTag(generationTag, item.getId(),
+                uriInfo.getRequestUri().getRawQuery(), getRequesterIdentifier().or(""));
+    }
+
+    /**
+     * Get an entity tag for a list of items. Since lists can contain
+     * any items visible to the requester, this changes whenever the
+     * graph is written to.
+     *
+     * @return An entity tag
+     */
+    protected EntityTag getListTag() {
+        return getEntityTag(generationTag, uriInfo.getRequestUri().toString(),
+                getRequesterIdentifier().or(""), String.valueOf(isStreaming()));
+    }
+
+    /**
+     * If the request is a GET or HEAD, evaluate its conditional
+     * headers against the given entity tag.
+     *
+     * @param tag The current entity tag
+     * @return A not-modified response builder, if the client's copy is current
+     */
+    private Optional<Response.ResponseBuilder> evaluatePreconditions(EntityTag tag) {
+        String method = request.getMethod();
+        if (!method.equals(HttpMethod.GET) && !method.equals(HttpMethod.HEAD)) {
+            return Optional.absent();
+        }
+        return Optional.fromNullable(request.evaluatePreconditions(tag));
+    }
+
+    /**
+     * Add the caching headers for list responses, which must be
+     * revalidated and differ according to the requester.
+     */
+    private Response.ResponseBuilder withListHeaders(Response.ResponseBuilder builder) {
+        CacheControl cc = new CacheControl();
+        cc.setNoCache(true);
+        return builder.cacheControl(cc)
+                .header(HttpHeaders.VARY, Joiner.on(", ").join(HttpHeaders.ACCEPT,
+                        AUTH_HEADER_NAME, STREAM_HEADER_NAME));
+    }
 }
@@ -53,7 +53,7 @@ public class AnnotationResource
     }
 
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML, APPLICATION_SMILE})
     @Path("/{id:.+}")
     @Override
     public Response get(@PathParam("id") String id) throws ItemNotFound,
@@ -62,7 +62,7 @@ public class AnnotationResource
     }
 
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML, APPLICATION_SMILE})
     @Path("/list")
     @Override
     public Response list() throws BadRequester {
@@ -160,7 +160,7 @@ public class AnnotationResource
      * @throws PermissionDenied
      */
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML, APPLICATION_SMILE})
     @Path("/for/{id:.+}")
     public Response listAnnotationsForSubtree(
             @PathParam("id") String id)
@@ -56,7 +56,7 @@ public class AuthoritativeSetResource extends
     }
 
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML, APPLICATION_SMILE})
     @Path("/{id:.+}")
     @Override
     public Response get(@PathParam("id") String id)
@@ -65,7 +65,7 @@ public class AuthoritativeSetResource extends
     }
 
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML, APPLICATION_SMILE})
     @Path("/list")
     @Override
     public Response list() throws BadRequester {
@@ -81,7 +81,7 @@ public class AuthoritativeSetResource extends
     }
 
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML, APPLICATION_SMILE})
     @Path("/{id:.+}/list")
     @Override
     public Response listChildren(
@@ -33,7 +33,7 @@ public class ContentTypeResource extends AbstractAccessibleEntityResource<Conten
     }
 
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML, APPLICATION_SMILE})
     @Path("/{id:.+}")
     @Override
     public Response get(@PathParam("id") String id)
@@ -42,7 +42,7 @@ public class ContentTypeResource extends AbstractAccessibleEntityResource<Conten
     }
 
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML, APPLICATION_SMILE})
     @Path("/list")
     @Override
     public Response list() throws BadRequester {
@@ -51,7 +51,7 @@ public class CountryResource
     }
 
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML, APPLICATION_SMILE})
     @Path("/{id:.+}")
     @Override
     public Response get(@PathParam("id") String id)
@@ -60,7 +60,7 @@ public class CountryResource
     }
 
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML, APPLICATION_SMILE})
     @Path("/list")
     @Override
     public Response list() throws BadRequester {
@@ -76,7 +76,7 @@ public class CountryResource
     }
 
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML, APPLICATION_SMILE})
     @Path("/{id:.+}/list")
     @Override
     public Response listChildren(@PathParam("id") String id,
@@ -85,6 +85,7 @@ public class CountryResource
         Accessor user = getRequesterUserProfile();
         Country country = views.detail(id, user);
         return streamingPage(getQuery(Repository.class)
+                .setCacheKey("repositories:" + country.getId())
                 .page(country.getRepositories(), user));
     }
 
@@ -99,6 +100,7 @@ public class CountryResource
         Accessor user = getRequesterUserProfile();
         Country country = views.detail(id, user);
         return getQuery(Repository.class)
+                .setCacheKey("repositories:" + country.getId())
                 .count(country.getRepositories());
     }
 
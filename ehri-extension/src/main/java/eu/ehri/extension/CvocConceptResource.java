@@ -53,7 +53,7 @@ public class CvocConceptResource
     }
 
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML, APPLICATION_SMILE})
     @Path("/{id:.+}")
     @Override
     public Response get(@PathParam("id") String id)
@@ -62,7 +62,7 @@ public class CvocConceptResource
     }
 
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML, APPLICATION_SMILE})
     @Path("/list")
     @Override
     public Response list() throws BadRequester {
@@ -108,7 +108,7 @@ public class CvocConceptResource
     }
 
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML, APPLICATION_SMILE})
     @Path("/{id:.+}/list")
     @Override
     public Response listChildren(@PathParam("id") String id,
@@ -215,7 +215,7 @@ public class CvocConceptResource
      * @throws BadRequester
      */
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML, APPLICATION_SMILE})
     @Path("/{id:.+}/broader/list")
     public Response getCvocBroaderConcepts(@PathParam("id") String id)
             throws ItemNotFound, AccessDenied, BadRequester {
@@ -235,7 +235,7 @@ public class CvocConceptResource
      * @throws BadRequester
      */
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML, APPLICATION_SMILE})
     @Path("/{id:.+}/related/list")
     public Response getCvocRelatedConcepts(@PathParam("id") String id)
             throws ItemNotFound, AccessDenied, BadRequester {
@@ -255,7 +255,7 @@ public class CvocConceptResource
      * @throws BadRequester
      */
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML, APPLICATION_SMILE})
     @Path("/{id:.+}/relatedBy/list")
     public Response getCvocRelatedByConcepts(@PathParam("id") String id)
             throws ItemNotFound, AccessDenied, BadRequester {
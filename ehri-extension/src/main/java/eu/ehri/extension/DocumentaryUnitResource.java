@@ -1,5 +1,6 @@
 package eu.ehri.extension;
 
+import com.tinkerpop.blueprints.Vertex;
 import eu.ehri.extension.base.DeleteResource;
 import eu.ehri.extension.base.GetResource;
 import eu.ehri.extension.base.ListResource;
@@ -48,7 +49,7 @@ public class DocumentaryUnitResource
     }
 
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML, APPLICATION_SMILE})
     @Path("/{id:.+}")
     @Override
     public Response get(@PathParam("id") String id)
@@ -57,7 +58,7 @@ public class DocumentaryUnitResource
     }
 
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML, APPLICATION_SMILE})
     @Path("/list")
     @Override
     public Response list() throws BadRequester {
@@ -73,7 +74,7 @@ public class DocumentaryUnitResource
     }
 
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML, APPLICATION_SMILE})
     @Path("/{id:.+}/list")
     @Override
     public Response listChildren(
@@ -81,10 +82,9 @@ public class DocumentaryUnitResource
             @QueryParam(ALL_PARAM) @DefaultValue("false") boolean all)
             throws ItemNotFound, BadRequester, PermissionDenied {
         DocumentaryUnit parent = manager.getFrame(id, DocumentaryUnit.class);
-        Iterable<DocumentaryUnit> units = all
-                ? parent.getAllChildren()
-                : parent.getChildren();
-        return streamingPage(getQuery(cls).page(units, getRequesterUserProfile()));
+        Iterable<Vertex> units = DocumentaryUnit.Impl.getChildVertices(
+                graph.getBaseGraph(), parent.asVertex(), all);
+        return streamingPage(getQuery(cls).pageVertices(units, getRequesterUserProfile()));
     }
 
     @GET
@@ -96,9 +96,8 @@ public class DocumentaryUnitResource
             @QueryParam(ALL_PARAM) @DefaultValue("false") boolean all)
             throws ItemNotFound, BadRequester, PermissionDenied {
         DocumentaryUnit parent = manager.getFrame(id, DocumentaryUnit.class);
-        Iterable<DocumentaryUnit> units = all
-                ? parent.getAllChildren()
-                : parent.getChildren();
+        Iterable<Vertex> units = DocumentaryUnit.Impl.getChildVertices(
+                graph.getBaseGraph(), parent.asVertex(), all);
         return getQuery(cls).count(units);
     }
 
@@ -155,4 +154,9 @@ public class DocumentaryUnitResource
             cleanupTransaction();
         }
     }
+
+    /**
+     * Fetch the vertices of a unit's children, or of all its descendants,
+     * so they can be paged without first framing them.
+     */
 }
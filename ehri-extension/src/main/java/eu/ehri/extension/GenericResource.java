@@ -56,7 +56,7 @@ public class GenericResource extends AbstractAccessibleEntityResource<Accessible
      * @throws BadRequester
      */
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, APPLICATION_SMILE})
     public Response list(@QueryParam("id") List<String> ids) throws ItemNotFound,
             PermissionDenied, BadRequester {
         // Object a lazily-computed view of the ids->vertices...
@@ -97,7 +97,7 @@ public class GenericResource extends AbstractAccessibleEntityResource<Accessible
      * @throws BadRequester
      */
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, APPLICATION_SMILE})
     @Path("/listByGraphId")
     public Response listByGid(@QueryParam("gid") List<Long> ids) throws ItemNotFound,
             PermissionDenied, BadRequester {
@@ -153,7 +153,7 @@ public class GenericResource extends AbstractAccessibleEntityResource<Accessible
      * @throws BadRequester
      */
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, APPLICATION_SMILE})
     @Path("/{id:.+}")
     public Response get(@PathParam("id") String id) throws ItemNotFound, AccessDenied, BadRequester {
         Vertex item = manager.getVertex(id);
@@ -19,6 +19,7 @@ import eu.ehri.project.importers.SaxXmlHandler;
 import eu.ehri.project.importers.cvoc.SkosImporter;
 import eu.ehri.project.importers.cvoc.SkosImporterFactory;
 import eu.ehri.project.importers.exceptions.InputParseError;
+import eu.ehri.project.importers.exceptions.InvalidInputFormatError;
 import eu.ehri.project.models.UserProfile;
 import eu.ehri.project.models.base.PermissionScope;
 import eu.ehri.project.models.cvoc.Vocabulary;
@@ -63,6 +64,7 @@ public class ImportResource extends AbstractRestResource {
     public static final String IMPORTER_PARAM = "importer";
     public static final String PROPERTIES_PARAM = "properties";
     public static final String FORMAT_PARAM = "format";
+    public static final String BATCH_SIZE_PARAM = "batchSize";
 
     public ImportResource(@Context GraphDatabaseService database) {
         super(database);
@@ -88,6 +90,10 @@ public class ImportResource extends AbstractRestResource {
      * @param logMessage Log message for import. If this refers to an accessible local file
      *                   its contents will be used.
      * @param format     The RDF format of the POSTed data
+     * @param batchSize  The number of concepts to import per transaction,
+     *                   or zero to import everything in one. Batched imports
+     *                   read data grouped by subject, as in RDF/XML, without
+     *                   holding it all in memory.
      * @param stream     A stream of SKOS data in a valid format.
      * @return A JSON object showing how many records were created,
      *         updated, or unchanged.
@@ -101,10 +107,14 @@ public class ImportResource extends AbstractRestResource {
             @DefaultValue("false") @QueryParam(TOLERANT_PARAM) Boolean tolerant,
             @QueryParam(LOG_PARAM) String logMessage,
             @QueryParam(FORMAT_PARAM) String format,
+            @DefaultValue("0") @QueryParam(BATCH_SIZE_PARAM) int batchSize,
             InputStream stream)
             throws BadRequester, ItemNotFound, ValidationError,
             IOException, DeserializationError {
 
+        if (batchSize < 0) {
+            throw new DeserializationError("Batch size cannot be negative: " + batchSize);
+        }
         try {
             // Get the current user from the Authorization header and the scope
             // from the query params...
@@ -115,6 +125,7 @@ public class ImportResource extends AbstractRestResource {
             ImportLog log = importer
                     .setFormat(format)
                     .setTolerant(tolerant)
+                    .setBatchSize(batchSize)
                     .importFile(stream, getLogMessage(logMessage).orNull());
 
             graph.getBaseGraph().commit();
@@ -210,6 +221,83 @@ public class ImportResource extends AbstractRestResource {
         }
     }
 
+    /**
+     * Import a set of EAD files from a zip, tar, or tar.gz archive
+     * streamed as the body of the POST request. Archive entries are
+     * imported as they arrive, without first being written to disk,
+     * and the results for each are given in the &quot;sources&quot;
+     * object of the response.
+     * <p/>
+     * Example:
+     * <p/>
+     * <pre>
+     * <code>curl -X POST \
+     *      -H "Authorization: mike" \
+     *      -H "Content-Type: application/gzip" \
+     *      --data-binary @ead-files.tar.gz \
+     *      "http://localhost:7474/ehri/import/ead?scope=my-repo-id&log=testing&tolerant=true"
+     * </code>
+     * </pre>
+     *
+     * @param scopeId       The id of the import scope (i.e. repository)
+     * @param tolerant      Whether or not to die on the first validation error
+     * @param logMessage    Log message for import. If this refers to an accessible local file
+     *                      its contents will be used.
+     * @param handlerClass  The fully-qualified handler class name
+     *                      (defaults to EadHandler)
+     * @param importerClass The fully-qualified import class name
+     *                      (defaults to EadImporter)
+     * @param propertyFile  A local file path pointing to an import properties
+     *                      configuration file.
+     * @param stream        A zip, tar, or tar.gz stream of EAD files.
+     * @return A JSON object showing how many records were created,
+     *         updated, or unchanged, in total and for each file.
+     */
+    @POST
+    @Consumes({"application/zip", "application/x-tar", "application/gzip",
+            "application/x-gzip", MediaType.APPLICATION_OCTET_STREAM})
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/ead")
+    public Response importEadArchive(
+            @QueryParam(SCOPE_PARAM) String scopeId,
+            @DefaultValue("false") @QueryParam(TOLERANT_PARAM) Boolean tolerant,
+            @QueryParam(LOG_PARAM) String logMessage,
+            @QueryParam(PROPERTIES_PARAM) String propertyFile,
+            @QueryParam(HANDLER_PARAM) String handlerClass,
+            @QueryParam(IMPORTER_PARAM) String importerClass,
+            InputStream stream)
+            throws BadRequester, ItemNotFound, ValidationError,
+            IOException, DeserializationError {
+
+        try {
+            checkPropertyFile(propertyFile);
+            Class<? extends SaxXmlHandler> handler = getEadHandler(handlerClass);
+            Class<? extends AbstractImporter> importer = getEadImporter(importerClass);
+
+            // Get the current user from the Authorization header and the scope
+            // from the query params...
+            UserProfile user = getCurrentUser();
+            PermissionScope scope = manager.getFrame(scopeId, PermissionScope.class);
+
+            // Run the import!
+            ImportLog log = new SaxImportManager(graph, scope, user, importer, handler)
+                    .withProperties(propertyFile)
+                    .setTolerant(tolerant)
+                    .importArchive(stream, getLogMessage(logMessage).orNull());
+
+            graph.getBaseGraph().commit();
+            return Response.ok(jsonMapper.writeValueAsBytes(log.getData())).build();
+        } catch (ClassNotFoundException e) {
+            throw new DeserializationError("Class not found: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            throw new DeserializationError(e.getMessage());
+        } catch (InvalidInputFormatError e) {
+            throw new DeserializationError(e.getMessage());
+        } finally {
+            cleanupTransaction();
+        }
+    }
+
     /**
      * Import a set of CSV files. The body of the POST
      * request should be a newline separated list of file
@@ -64,7 +64,7 @@ public class LinkResource extends AbstractAccessibleEntityResource<Link>
     }
 
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML, APPLICATION_SMILE})
     @Path("/{id:.+}")
     @Override
     public Response get(@PathParam("id") String id) throws ItemNotFound,
@@ -73,7 +73,7 @@ public class LinkResource extends AbstractAccessibleEntityResource<Link>
     }
 
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML, APPLICATION_SMILE})
     @Path("/list")
     public Response list() throws BadRequester {
         return listItems();
@@ -179,7 +179,7 @@ public class LinkResource extends AbstractAccessibleEntityResource<Link>
      * Returns a list of items linked to the given description.
      */
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML, APPLICATION_SMILE})
     @Path("/for/{id:.+}")
     public Response listRelatedItems(@PathParam("id") String id)
             throws ItemNotFound, BadRequester {
@@ -1,5 +1,6 @@
 package eu.ehri.extension;
 
+import com.google.common.collect.Lists;
 import eu.ehri.extension.errors.BadRequester;
 import eu.ehri.project.acl.AclManager;
 import eu.ehri.project.acl.GlobalPermissionSet;
@@ -23,10 +24,13 @@ import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.CacheControl;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.util.List;
 
 /**
  * Provides a RESTful(ish) interface for setting PermissionTarget perms.
@@ -67,7 +71,7 @@ public class PermissionsResource extends AbstractRestResource {
      * @throws BadRequester
      */
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML, APPLICATION_SMILE})
     @Path("/list/{id:.+}")
     public Response listPermissionGrants(@PathParam("id") String id)
             throws PermissionDenied, ItemNotFound, BadRequester {
@@ -88,7 +92,7 @@ public class PermissionsResource extends AbstractRestResource {
      * @throws BadRequester
      */
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML, APPLICATION_SMILE})
     @Path("/listForItem/{id:.+}")
     public Response listPermissionGrantsForItem(@PathParam("id") String id)
             throws PermissionDenied, ItemNotFound, BadRequester {
@@ -109,7 +113,7 @@ public class PermissionsResource extends AbstractRestResource {
      * @throws BadRequester
      */
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML, APPLICATION_SMILE})
     @Path("/listForScope/{id:.+}")
     public Response listPermissionGrantsForScope(@PathParam("id") String id)
             throws PermissionDenied, ItemNotFound, BadRequester {
@@ -209,6 +213,40 @@ public class PermissionsResource extends AbstractRestResource {
         return acl.getInheritedItemPermissions(entity, accessor);
     }
 
+    /**
+     * Get the permissions a user has on each of a number of items, as
+     * a map of item IDs to permission lists. This includes permissions
+     * inherited from groups and those given by content type grants,
+     * so a list of items can be checked with a single request, i.e.:
+     * <p/>
+     * <pre>
+     * <code>GET /permission/mike/items?id=c1&id=c2</code>
+     *
+     * {"c1": ["create", "update", ...], "c2": []}
+     * </pre>
+     *
+     * @param userId The user's ID
+     * @param ids    The item IDs
+     * @return The user's permissions for each item
+     * @throws ItemNotFound
+     * @throws IOException
+     */
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/{userId:.+}/items")
+    public Response getItemPermissions(
+            @PathParam("userId") String userId,
+            @QueryParam(ID_PARAM) List<String> ids) throws ItemNotFound, IOException {
+        graph.getBaseGraph().checkNotInTransaction();
+        Accessor accessor = manager.getFrame(userId, Accessor.class);
+        List<AccessibleEntity> items = Lists.newArrayListWithExpectedSize(ids.size());
+        for (String id : ids) {
+            items.add(manager.getFrame(id, AccessibleEntity.class));
+        }
+        return Response.ok(jsonMapper.writeValueAsBytes(
+                aclManager.getItemPermissions(items, accessor))).build();
+    }
+
     /**
      * Get the user's permissions for a given scope.
      *
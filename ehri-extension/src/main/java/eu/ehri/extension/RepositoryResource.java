@@ -1,5 +1,6 @@
 package eu.ehri.extension;
 
+import com.tinkerpop.blueprints.Vertex;
 import eu.ehri.extension.base.DeleteResource;
 import eu.ehri.extension.base.GetResource;
 import eu.ehri.extension.base.ListResource;
@@ -47,7 +48,7 @@ public class RepositoryResource extends AbstractAccessibleEntityResource<Reposit
     }
 
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML, APPLICATION_SMILE})
     @Path("/{id:.+}")
     @Override
     public Response get(@PathParam("id") String id) throws ItemNotFound,
@@ -56,7 +57,7 @@ public class RepositoryResource extends AbstractAccessibleEntityResource<Reposit
     }
 
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML, APPLICATION_SMILE})
     @Path("/list")
     @Override
     public Response list() throws BadRequester {
@@ -72,7 +73,7 @@ public class RepositoryResource extends AbstractAccessibleEntityResource<Reposit
     }
 
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML, APPLICATION_SMILE})
     @Path("/{id:.+}/list")
     @Override
     public Response listChildren(
@@ -81,11 +82,11 @@ public class RepositoryResource extends AbstractAccessibleEntityResource<Reposit
             throws ItemNotFound, BadRequester {
         Accessor user = getRequesterUserProfile();
         Repository repository = views.detail(id, user);
-        Iterable<DocumentaryUnit> units = all
-                ? repository.getAllCollections()
-                : repository.getCollections();
+        Iterable<Vertex> units = Repository.Impl.getCollectionVertices(
+                graph.getBaseGraph(), repository.asVertex(), all);
         return streamingPage(getQuery(DocumentaryUnit.class)
-                .page(units, user));
+                .setCacheKey((all ? "allCollections:" : "collections:") + repository.getId())
+                .pageVertices(units, user));
     }
 
     @GET
@@ -98,10 +99,11 @@ public class RepositoryResource extends AbstractAccessibleEntityResource<Reposit
             throws ItemNotFound, BadRequester {
         Accessor user = getRequesterUserProfile();
         Repository repository = views.detail(id, user);
-        Iterable<DocumentaryUnit> units = all
-                ? repository.getAllCollections()
-                : repository.getCollections();
-        return getQuery(DocumentaryUnit.class).count(units);
+        Iterable<Vertex> units = Repository.Impl.getCollectionVertices(
+                graph.getBaseGraph(), repository.asVertex(), all);
+        return getQuery(DocumentaryUnit.class)
+                .setCacheKey((all ? "allCollections:" : "collections:") + repository.getId())
+                .count(units);
     }
 
     @PUT
@@ -168,4 +170,9 @@ public class RepositoryResource extends AbstractAccessibleEntityResource<Reposit
             cleanupTransaction();
         }
     }
+
+    /**
+     * Fetch the vertices of a repository's top-level items, or of all its
+     * items, so they can be paged without first framing them.
+     */
 }
@@ -57,7 +57,7 @@ public class SystemEventResource extends AbstractAccessibleEntityResource<System
     }
 
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML, APPLICATION_SMILE})
     @Path("/{id:.+}")
     @Override
     public Response get(@PathParam("id") String id) throws ItemNotFound,
@@ -77,7 +77,7 @@ public class SystemEventResource extends AbstractAccessibleEntityResource<System
      * @throws BadRequester
      */
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML, APPLICATION_SMILE})
     @Path("/list")
     public Response listEvents(
             final @QueryParam(EVENT_TYPE_PARAM) List<EventTypes> eventTypes,
@@ -101,7 +101,7 @@ public class SystemEventResource extends AbstractAccessibleEntityResource<System
     }
 
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML, APPLICATION_SMILE})
     @Path("/byUser/{userId:.+}")
     public Response listEventsByUser(
             final @PathParam("userId") String userId,
@@ -141,7 +141,7 @@ public class SystemEventResource extends AbstractAccessibleEntityResource<System
      * @throws BadRequester
      */
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML, APPLICATION_SMILE})
     @Path("/forUser/{userId:.+}")
     public Response listEventsForUser(
             final @PathParam("userId") String userId,
@@ -177,7 +177,7 @@ public class SystemEventResource extends AbstractAccessibleEntityResource<System
      * @throws BadRequester
      */
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML, APPLICATION_SMILE})
     @Path("/{id:.+}/subjects")
     public Response pageSubjectsForEvent(@PathParam("id") String id)
             throws ItemNotFound, BadRequester, AccessDenied {
@@ -196,7 +196,7 @@ public class SystemEventResource extends AbstractAccessibleEntityResource<System
      * @throws BadRequester
      */
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML, APPLICATION_SMILE})
     @Path("/for/{id:.+}")
     public Response pageEventsForItem(@PathParam("id") String id)
             throws ItemNotFound, BadRequester, AccessDenied {
@@ -216,7 +216,7 @@ public class SystemEventResource extends AbstractAccessibleEntityResource<System
      * @throws BadRequester
      */
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML, APPLICATION_SMILE})
     @Path("/versions/{id:.+}")
     public Response pageVersionsForItem(@PathParam("id") String id)
             throws ItemNotFound, BadRequester, AccessDenied {
@@ -33,8 +33,13 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.StringWriter;
+import java.nio.charset.Charset;
 import java.util.List;
 import java.util.regex.Pattern;
 
@@ -55,6 +60,9 @@ public class ToolsResource extends AbstractRestResource {
     public static final String SINGLE_PARAM = "single";
     public static final String LANG_PARAM = "lang";
     public static final String ACCESS_POINT_TYPE_PARAM = "apt";
+    public static final String BATCH_SIZE_PARAM = "batchSize";
+    public static final String DRY_RUN_PARAM = "dryRun";
+    public static final String CHECKPOINT_PARAM = "checkpoint";
     public static final String DEFAULT_LANG = "eng";
 
     public ToolsResource(@Context GraphDatabaseService database) {
@@ -75,6 +83,8 @@ public class ToolsResource extends AbstractRestResource {
      *                         to slug collisions in the created concepts
      * @param excludeSingle    don't create concepts/links for access points that
      *                         are unique to a single item
+     * @param batchSize        if greater than zero, create items in bulk, committing
+     *                         after every <code>batchSize</code> items
      * @return the number of links created
      * @throws ItemNotFound
      * @throws BadRequester
@@ -91,10 +101,14 @@ public class ToolsResource extends AbstractRestResource {
             @QueryParam(ACCESS_POINT_TYPE_PARAM) List<String> accessPointTypes,
             @QueryParam(LANG_PARAM) @DefaultValue(DEFAULT_LANG) String languageCode,
             @QueryParam(SINGLE_PARAM) @DefaultValue("true") boolean excludeSingle,
-            @QueryParam(TOLERANT_PARAM) @DefaultValue("false") boolean tolerant)
+            @QueryParam(TOLERANT_PARAM) @DefaultValue("false") boolean tolerant,
+            @QueryParam(BATCH_SIZE_PARAM) @DefaultValue("0") int batchSize)
             throws ItemNotFound, BadRequester, ValidationError,
             PermissionDenied, DeserializationError {
         graph.getBaseGraph().checkNotInTransaction();
+        if (batchSize < 0) {
+            throw new DeserializationError("Batch size cannot be negative: " + batchSize);
+        }
 
         try {
             UserProfile user = getCurrentUser();
@@ -107,6 +121,7 @@ public class ToolsResource extends AbstractRestResource {
                     .withExcludeSingles(excludeSingle)
                     .withDefaultLanguage(languageCode)
                     .withLogMessage(getLogMessage())
+                    .withBatchSize(batchSize)
                     .createAndLinkRepositoryVocabulary(repository, vocabulary, user);
 
             graph.getBaseGraph().commit();
@@ -123,63 +138,87 @@ public class ToolsResource extends AbstractRestResource {
      * providing a regex value <code>^www</code> and replacement <code>http://www</code> will
      * give the property a value of &quot;http://www.foo.com/bar&quot;.
      * <p/>
+     * Items are found via the index when the property is indexed for the
+     * entity class, unless the index was created by an earlier version,
+     * in which case every item of the class is checked until the index is
+     * rebuilt, e.g. with the <code>reindex</code> command.
+     * <p/>
+     * NB: This returns a {@link Response} rather than a number so that a
+     * dry run can stream its output. Otherwise, the response body is the
+     * JSON number of items changed, as before.
+     * <p/>
      * <strong>Warning: This is a sharp tool! Back up the whole database first!</strong>
      *
      * @param entityType The type of entity
      * @param propName   The name of the property to find and replace
      * @param regex      A regex specifying a substring of the property value
      * @param replace    A replacement substring
+     * @param batchSize  if greater than zero, make changes in parallel batches,
+     *                   committing after every <code>batchSize</code> items
+     * @param dryRun     make no changes, but stream the IDs of items
+     *                   that would be changed, one per line
      * @return How many items have been changed
      */
     @POST
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_PLAIN})
     @Path("/_findReplacePropertyValueRE")
-    public long renamePropertyValueRE(
+    public Response renamePropertyValueRE(
             @QueryParam("type") String entityType,
-            @QueryParam("name") String propName,
+            @QueryParam("name") final String propName,
             @QueryParam("pattern") String regex,
-            @QueryParam("replace") String replace) throws Exception {
-        graph.getBaseGraph().checkNotInTransaction();
-        EntityClass entityClass = EntityClass.withName(entityType);
-        Pattern pattern = Pattern.compile(regex);
-        try {
-            long changes = findReplace
-                    .propertyValueRE(entityClass, propName, pattern, replace);
-            graph.getBaseGraph().commit();
-            return changes;
-        } finally {
-            cleanupTransaction();
-        }
+            @QueryParam("replace") final String replace,
+            @QueryParam(BATCH_SIZE_PARAM) @DefaultValue("0") int batchSize,
+            @QueryParam(DRY_RUN_PARAM) @DefaultValue("false") boolean dryRun) throws Exception {
+        final EntityClass entityClass = EntityClass.withName(entityType);
+        final Pattern pattern = Pattern.compile(regex);
+        return findReplace(new FindReplaceOp() {
+            @Override
+            public long run(FindReplace findReplace) {
+                return findReplace.propertyValueRE(entityClass, propName, pattern, replace);
+            }
+        }, batchSize, dryRun);
     }
 
     /**
      * Change a property key name across an entire entity class.
      * <p/>
+     * Items are found via the index when the property is indexed for the
+     * entity class, unless the index was created by an earlier version,
+     * in which case every item of the class is checked until the index is
+     * rebuilt, e.g. with the <code>reindex</code> command.
+     * <p/>
+     * NB: This returns a {@link Response} rather than a number so that a
+     * dry run can stream its output. Otherwise, the response body is the
+     * JSON number of items changed, as before.
+     * <p/>
      * <strong>Warning: This is a sharp tool! Back up the whole database first!</strong>
      *
      * @param entityType The type of entity
      * @param oldKeyName The existing property key name
      * @param newKeyName The new property key name
+     * @param batchSize  if greater than zero, make changes in parallel batches,
+     *                   committing after every <code>batchSize</code> items
+     * @param dryRun     make no changes, but stream the IDs of items
+     *                   that would be changed, one per line
      * @return The number of items changed
      * @throws Exception
      */
     @POST
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_PLAIN})
     @Path("/_findReplacePropertyName")
-    public long renamePropertyName(
+    public Response renamePropertyName(
             @QueryParam("type") String entityType,
-            @QueryParam("from") String oldKeyName,
-            @QueryParam("to") String newKeyName) throws Exception {
-        graph.getBaseGraph().checkNotInTransaction();
-        EntityClass entityClass = EntityClass.withName(entityType);
-        try {
-            long changes = findReplace
-                    .propertyName(entityClass, oldKeyName, newKeyName);
-            graph.getBaseGraph().commit();
-            return changes;
-        } finally {
-            cleanupTransaction();
-        }
+            @QueryParam("from") final String oldKeyName,
+            @QueryParam("to") final String newKeyName,
+            @QueryParam(BATCH_SIZE_PARAM) @DefaultValue("0") int batchSize,
+            @QueryParam(DRY_RUN_PARAM) @DefaultValue("false") boolean dryRun) throws Exception {
+        final EntityClass entityClass = EntityClass.withName(entityType);
+        return findReplace(new FindReplaceOp() {
+            @Override
+            public long run(FindReplace findReplace) {
+                return findReplace.propertyName(entityClass, oldKeyName, newKeyName);
+            }
+        }, batchSize, dryRun);
     }
 
     /**
@@ -187,32 +226,44 @@ public class ToolsResource extends AbstractRestResource {
      * if a DocumentaryUnit has a property with name &quot;foo&quot; and value &quot;bar&quot;,
      * change the value to &quot;baz&quot; on all items.
      * <p/>
+     * Items are found via the index when the property is indexed for the
+     * entity class, unless the index was created by an earlier version,
+     * in which case every item of the class is checked until the index is
+     * rebuilt, e.g. with the <code>reindex</code> command.
+     * <p/>
+     * NB: This returns a {@link Response} rather than a number so that a
+     * dry run can stream its output. Otherwise, the response body is the
+     * JSON number of items changed, as before.
+     * <p/>
      * <strong>Warning: This is a sharp tool! Back up the whole database first!</strong>
      *
      * @param entityType The type of entity
      * @param propName   The name of the property to find and replace
      * @param oldValue   The property value to change
      * @param newValue   The new value
+     * @param batchSize  if greater than zero, make changes in parallel batches,
+     *                   committing after every <code>batchSize</code> items
+     * @param dryRun     make no changes, but stream the IDs of items
+     *                   that would be changed, one per line
      * @return How many items have been changed
      */
     @POST
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_PLAIN})
     @Path("/_findReplacePropertyValue")
-    public long renamePropertyValue(
+    public Response renamePropertyValue(
             @QueryParam("type") String entityType,
-            @QueryParam("name") String propName,
-            @QueryParam("from") String oldValue,
-            @QueryParam("to") String newValue) throws Exception {
-        graph.getBaseGraph().checkNotInTransaction();
-        EntityClass entityClass = EntityClass.withName(entityType);
-        try {
-            long changes = findReplace
-                    .propertyValue(entityClass, propName, oldValue, newValue);
-            graph.getBaseGraph().commit();
-            return changes;
-        } finally {
-            cleanupTransaction();
-        }
+            @QueryParam("name") final String propName,
+            @QueryParam("from") final String oldValue,
+            @QueryParam("to") final String newValue,
+            @QueryParam(BATCH_SIZE_PARAM) @DefaultValue("0") int batchSize,
+            @QueryParam(DRY_RUN_PARAM) @DefaultValue("false") boolean dryRun) throws Exception {
+        final EntityClass entityClass = EntityClass.withName(entityType);
+        return findReplace(new FindReplaceOp() {
+            @Override
+            public long run(FindReplace findReplace) {
+                return findReplace.propertyValue(entityClass, propName, oldValue, newValue);
+            }
+        }, batchSize, dryRun);
     }
 
     /**
@@ -277,6 +328,11 @@ public class ToolsResource extends AbstractRestResource {
      * @param tolerant   skip items that could cause collisions rather
      *                   then throwing an error
      * @param commit     whether or not to rename the items
+     * @param batchSize  if greater than zero, compute and check all new IDs
+     *                   before renaming items, committing after every
+     *                   <code>batchSize</code> renames
+     * @param checkpoint the path of a file in which to record batched
+     *                   renames, and from which to resume an interrupted run
      * @return a tab list old->new mappings, or an empty
      * body if nothing was changed
      * @throws IOException
@@ -288,7 +344,9 @@ public class ToolsResource extends AbstractRestResource {
             @PathParam("type") String type,
             @QueryParam("collisions") @DefaultValue("false") boolean collisions,
             @QueryParam("tolerant") @DefaultValue("false") boolean tolerant,
-            @QueryParam("commit") @DefaultValue("false") boolean commit)
+            @QueryParam("commit") @DefaultValue("false") boolean commit,
+            @QueryParam(BATCH_SIZE_PARAM) @DefaultValue("0") int batchSize,
+            @QueryParam(CHECKPOINT_PARAM) String checkpoint)
             throws IOException, IdRegenerator.IdCollisionError {
         try {
             EntityClass entityClass = EntityClass.withName(type);
@@ -299,6 +357,8 @@ public class ToolsResource extends AbstractRestResource {
                         .withActualRename(commit)
                         .collisionMode(collisions)
                         .skippingCollisions(tolerant)
+                        .withBatchSize(batchSize)
+                        .withCheckpoint(checkpoint == null ? null : new File(checkpoint))
                         .reGenerateIds(frames);
                 graph.getBaseGraph().commit();
                 return makeCsv(lists);
@@ -327,6 +387,11 @@ public class ToolsResource extends AbstractRestResource {
      * @param tolerant   skip items that could cause collisions rather
      *                   then throwing an error
      * @param commit     whether or not to rename the items
+     * @param batchSize  if greater than zero, compute and check all new IDs
+     *                   before renaming items, committing after every
+     *                   <code>batchSize</code> renames
+     * @param checkpoint the path of a file in which to record batched
+     *                   renames, and from which to resume an interrupted run
      * @return a tab list old->new mappings, or an empty
      * body if nothing was changed
      * @throws ItemNotFound
@@ -339,7 +404,9 @@ public class ToolsResource extends AbstractRestResource {
             @PathParam("scope") String scopeId,
             @QueryParam("collisions") @DefaultValue("false") boolean collisions,
             @QueryParam("tolerant") @DefaultValue("false") boolean tolerant,
-            @QueryParam("commit") @DefaultValue("false") boolean commit)
+            @QueryParam("commit") @DefaultValue("false") boolean commit,
+            @QueryParam(BATCH_SIZE_PARAM) @DefaultValue("0") int batchSize,
+            @QueryParam(CHECKPOINT_PARAM) String checkpoint)
             throws IOException, ItemNotFound, IdRegenerator.IdCollisionError {
         try {
             PermissionScope scope = manager.getFrame(scopeId, PermissionScope.class);
@@ -347,6 +414,8 @@ public class ToolsResource extends AbstractRestResource {
                     .withActualRename(commit)
                     .skippingCollisions(tolerant)
                     .collisionMode(collisions)
+                    .withBatchSize(batchSize)
+                    .withCheckpoint(checkpoint == null ? null : new File(checkpoint))
                     .reGenerateIds(scope.getAllContainedItems());
             graph.getBaseGraph().commit();
             return makeCsv(lists);
@@ -409,6 +478,41 @@ public class ToolsResource extends AbstractRestResource {
 
     // Helpers
 
+    private interface FindReplaceOp {
+        public long run(FindReplace findReplace);
+    }
+
+    private Response findReplace(final FindReplaceOp op, int batchSize, boolean dryRun) {
+        graph.getBaseGraph().checkNotInTransaction();
+        if (dryRun) {
+            return Response.ok(new StreamingOutput() {
+                @Override
+                public void write(final OutputStream os) throws IOException {
+                    final Charset utf8 = Charset.forName("UTF-8");
+                    op.run(findReplace.withDryRun(true)
+                            .withChangeListener(new FindReplace.ChangeListener() {
+                                @Override
+                                public void changed(String id) {
+                                    try {
+                                        os.write((id + "\n").getBytes(utf8));
+                                    } catch (IOException e) {
+                                        throw new RuntimeException(e);
+                                    }
+                                }
+                            }));
+                }
+            }, MediaType.TEXT_PLAIN_TYPE).build();
+        }
+
+        try {
+            long changes = op.run(findReplace.withBatchSize(batchSize));
+            graph.getBaseGraph().commit();
+            return Response.ok(changes).build();
+        } finally {
+            cleanupTransaction();
+        }
+    }
+
     private String makeCsv(List<List<String>> rows) throws IOException {
         StringWriter writer = new StringWriter();
         CSVWriter csvWriter = new CSVWriter(writer, '\t', CSVWriter.NO_QUOTE_CHARACTER);
@@ -59,7 +59,7 @@ public class UserProfileResource extends AbstractAccessibleEntityResource<UserPr
     }
 
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML, APPLICATION_SMILE})
     @Path("/{id:.+}")
     @Override
     public Response get(@PathParam("id") String id)
@@ -76,7 +76,7 @@ public class UserProfileResource extends AbstractAccessibleEntityResource<UserPr
     }
 
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML, APPLICATION_SMILE})
     @Path("/list")
     @Override
     public Response list() throws BadRequester {
@@ -142,7 +142,7 @@ public class UserProfileResource extends AbstractAccessibleEntityResource<UserPr
     }
 
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML, APPLICATION_SMILE})
     @Path("{userId:.+}/" + FOLLOWERS)
     public Response listFollowers(@PathParam("userId") String userId)
             throws ItemNotFound, BadRequester {
@@ -153,7 +153,7 @@ public class UserProfileResource extends AbstractAccessibleEntityResource<UserPr
     }
 
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML, APPLICATION_SMILE})
     @Path("{userId:.+}/" + FOLLOWING)
     public Response listFollowing(@PathParam("userId") String userId)
             throws ItemNotFound, BadRequester {
@@ -227,7 +227,7 @@ public class UserProfileResource extends AbstractAccessibleEntityResource<UserPr
     }
 
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML, APPLICATION_SMILE})
     @Path("{userId:.+}/" + BLOCKED)
     public Response listBlocked(@PathParam("userId") String userId)
             throws ItemNotFound, BadRequester {
@@ -287,7 +287,7 @@ public class UserProfileResource extends AbstractAccessibleEntityResource<UserPr
     }
 
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML, APPLICATION_SMILE})
     @Path("{userId:.+}/" + WATCHING)
     public Response listWatching(@PathParam("userId") String userId)
             throws ItemNotFound, BadRequester {
@@ -348,7 +348,7 @@ public class UserProfileResource extends AbstractAccessibleEntityResource<UserPr
     }
 
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML, APPLICATION_SMILE})
     @Path("{userId:.+}/" + Entities.ANNOTATION)
     public Response listAnnotations(@PathParam("userId") String userId)
             throws ItemNotFound, BadRequester {
@@ -359,7 +359,7 @@ public class UserProfileResource extends AbstractAccessibleEntityResource<UserPr
     }
 
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML, APPLICATION_SMILE})
     @Path("{userId:.+}/" + Entities.LINK)
     public Response pageLinks(@PathParam("userId") String userId)
             throws ItemNotFound, BadRequester {
@@ -369,7 +369,7 @@ public class UserProfileResource extends AbstractAccessibleEntityResource<UserPr
     }
 
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML, APPLICATION_SMILE})
     @Path("{userId:.+}/" + Entities.VIRTUAL_UNIT)
     public Response pageVirtualUnits(@PathParam("userId") String userId)
             throws ItemNotFound, BadRequester {
@@ -56,7 +56,7 @@ public class VocabularyResource extends AbstractAccessibleEntityResource<Vocabul
     }
 
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML, APPLICATION_SMILE})
     @Path("/{id:.+}")
     @Override
     public Response get(@PathParam("id") String id)
@@ -73,7 +73,7 @@ public class VocabularyResource extends AbstractAccessibleEntityResource<Vocabul
     }
 
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML, APPLICATION_SMILE})
     @Path("/list")
     @Override
     public Response list() throws BadRequester {
@@ -90,11 +90,13 @@ public class VocabularyResource extends AbstractAccessibleEntityResource<Vocabul
             throws ItemNotFound, BadRequester {
         Accessor user = getRequesterUserProfile();
         Vocabulary vocabulary = views.detail(id, user);
-        return getQuery(cls).count(vocabulary.getConcepts());
+        return getQuery(cls)
+                .setCacheKey("concepts:" + vocabulary.getId())
+                .count(vocabulary.getConcepts());
     }
 
     @GET
-    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML})
+    @Produces({MediaType.APPLICATION_JSON, MediaType.TEXT_XML, APPLICATION_SMILE})
     @Path("/{id:.+}/list")
     @Override
     public Response listChildren(
@@ -104,6 +106,7 @@ public class VocabularyResource extends AbstractAccessibleEntityResource<Vocabul
         Accessor user = getRequesterUserProfile();
         Vocabulary vocabulary = views.detail(id, user);
         return streamingPage(getQuery(Concept.class)
+                .setCacheKey("concepts:" + vocabulary.getId())
                 .page(vocabulary.getConcepts(), user));
     }
 
@@ -1,5 +1,6 @@
 package eu.ehri.extension.test;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.net.HttpHeaders;
 import com.sun.jersey.api.client.ClientResponse;
 import com.sun.jersey.api.client.WebResource;
@@ -10,11 +11,14 @@ import eu.ehri.project.definitions.Ontology;
 import eu.ehri.project.persistence.Bundle;
 import eu.ehri.project.persistence.ErrorSet;
 import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.smile.SmileFactory;
 import org.junit.Before;
 import org.junit.Test;
 
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.UriBuilder;
 import java.net.URI;
 import java.util.Collections;
 import java.util.Comparator;
@@ -24,11 +28,14 @@ import java.util.Map;
 import static com.sun.jersey.api.client.ClientResponse.Status.BAD_REQUEST;
 import static com.sun.jersey.api.client.ClientResponse.Status.CREATED;
 import static com.sun.jersey.api.client.ClientResponse.Status.NOT_FOUND;
+import static com.sun.jersey.api.client.ClientResponse.Status.NOT_MODIFIED;
 import static com.sun.jersey.api.client.ClientResponse.Status.OK;
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.not;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
@@ -101,6 +108,105 @@ public class DocumentaryUnitRestClientTest extends BaseRestClientTest {
         assertThat(c4cc, containsString("max-age=" + AbstractRestResource.ITEM_CACHE_TIME));
     }
 
+    @Test
+    public void testSmileFormat() throws Exception {
+        ClientResponse response = callAs(getAdminUserProfileId(),
+                ehriUri(Entities.DOCUMENTARY_UNIT, FIRST_DOC_ID))
+                .accept(AbstractRestResource.APPLICATION_SMILE).get(ClientResponse.class);
+        assertStatus(OK, response);
+        assertEquals(AbstractRestResource.APPLICATION_SMILE_TYPE, response.getType());
+        Bundle bundle = Bundle.fromSmileStream(response.getEntityInputStream());
+        assertEquals(FIRST_DOC_ID, bundle.getId());
+
+        response = callAs(getAdminUserProfileId(), ehriUri(Entities.DOCUMENTARY_UNIT, "list"))
+                .accept(AbstractRestResource.APPLICATION_SMILE).get(ClientResponse.class);
+        assertStatus(OK, response);
+        assertEquals(AbstractRestResource.APPLICATION_SMILE_TYPE, response.getType());
+        List<?> items = new ObjectMapper(new SmileFactory())
+                .readValue(response.getEntityInputStream(), List.class);
+        assertEquals(getPaginationTotal(response), Integer.valueOf(items.size()));
+        for (Object item : items) {
+            assertEquals(Entities.DOCUMENTARY_UNIT, Bundle.fromData(item).getType().getName());
+        }
+    }
+
+    @Test
+    public void testConditionalGet() throws Exception {
+        ClientResponse response = jsonCallAs(getAdminUserProfileId(), getCreationUri())
+                .entity(jsonDocumentaryUnitTestStr).post(ClientResponse.class);
+        assertStatus(CREATED, response);
+        URI location = response.getLocation();
+
+        // Items are tagged until the graph changes, but not dated
+        response = jsonCallAs(getAdminUserProfileId(), location).get(ClientResponse.class);
+        assertStatus(OK, response);
+        String etag = response.getHeaders().getFirst(HttpHeaders.ETAG);
+        assertNotNull(etag);
+        assertNull(response.getHeaders().getFirst(HttpHeaders.LAST_MODIFIED));
+        response = jsonCallAs(getAdminUserProfileId(), location)
+                .header(HttpHeaders.IF_NONE_MATCH, etag).get(ClientResponse.class);
+        assertStatus(NOT_MODIFIED, response);
+
+        // Adding a child changes the item's representation, via its
+        // child count, without modifying the item itself
+        response = jsonCallAs(getAdminUserProfileId(),
+                UriBuilder.fromUri(location).segment(Entities.DOCUMENTARY_UNIT).build())
+                .entity(jsonDocumentaryUnitTestStr)
+                .post(ClientResponse.class);
+        assertStatus(CREATED, response);
+        response = jsonCallAs(getAdminUserProfileId(), location)
+                .header(HttpHeaders.IF_NONE_MATCH, etag).get(ClientResponse.class);
+        assertStatus(OK, response);
+        etag = response.getHeaders().getFirst(HttpHeaders.ETAG);
+
+        // Lists are tagged until the graph changes
+        URI listUri = ehriUri(Entities.DOCUMENTARY_UNIT, "list");
+        response = jsonCallAs(getAdminUserProfileId(), listUri).get(ClientResponse.class);
+        assertStatus(OK, response);
+        String listEtag = response.getHeaders().getFirst(HttpHeaders.ETAG);
+        assertNotNull(listEtag);
+        response = jsonCallAs(getAdminUserProfileId(), listUri)
+                .header(HttpHeaders.IF_NONE_MATCH, listEtag).get(ClientResponse.class);
+        assertStatus(NOT_MODIFIED, response);
+        response = jsonCallAs(getRegularUserProfileId(), listUri)
+                .header(HttpHeaders.IF_NONE_MATCH, listEtag).get(ClientResponse.class);
+        assertStatus(OK, response);
+
+        // Updating the item changes both
+        response = jsonCallAs(getAdminUserProfileId(), location)
+                .header(AbstractRestResource.PATCH_HEADER_NAME, Boolean.TRUE.toString())
+                .entity(partialJsonDocumentaryUnitTestStr).put(ClientResponse.class);
+        assertStatus(OK, response);
+        response = jsonCallAs(getAdminUserProfileId(), location)
+                .header(HttpHeaders.IF_NONE_MATCH, etag).get(ClientResponse.class);
+        assertStatus(OK, response);
+        response = jsonCallAs(getAdminUserProfileId(), listUri)
+                .header(HttpHeaders.IF_NONE_MATCH, listEtag).get(ClientResponse.class);
+        assertStatus(OK, response);
+    }
+
+    @Test
+    public void testConditionalGetAfterCypherWrite() throws Exception {
+        URI location = ehriUri(Entities.DOCUMENTARY_UNIT, FIRST_DOC_ID);
+        ClientResponse response = jsonCallAs(getAdminUserProfileId(), location)
+                .get(ClientResponse.class);
+        assertStatus(OK, response);
+        String etag = response.getHeaders().getFirst(HttpHeaders.ETAG);
+
+        // Writes made outside the extension, e.g. via the Neo4j
+        // REST API, also change the tag
+        String query = "START n=node(*) WHERE has(n.__ID__) AND n.__ID__ = {id} SET n.test = 'changed'";
+        response = client.resource(getCypherUri())
+                .accept(MediaType.APPLICATION_JSON).type(MediaType.APPLICATION_JSON)
+                .entity(jsonMapper.writeValueAsString(ImmutableMap.of("query", query,
+                        "params", ImmutableMap.of("id", FIRST_DOC_ID))))
+                .post(ClientResponse.class);
+        assertStatus(OK, response);
+        response = jsonCallAs(getAdminUserProfileId(), location)
+                .header(HttpHeaders.IF_NONE_MATCH, etag).get(ClientResponse.class);
+        assertStatus(OK, response);
+    }
+
     @Test
     public void testCreateDeleteChildDocumentaryUnit() throws Exception {
         // Create
@@ -31,6 +31,7 @@ public class ImportResourceRestClientTest extends BaseRestClientTest {
     // NB: This file is *copied* into the extension test resources because
     // I can't figure out how to refer to resources in another module...
     protected static final String SINGLE_EAD = "single-ead.xml";
+    protected static final String EAD_ARCHIVE = "ead-archive.tar.gz";
 
     @Test
     public void testImportSkos() throws Exception {
@@ -56,6 +57,38 @@ public class ImportResourceRestClientTest extends BaseRestClientTest {
         assertEquals(0, rootNode.path("unchanged").asInt());
     }
 
+    @Test
+    public void testImportSkosInBatches() throws Exception {
+        InputStream payloadStream = ClassLoader.getSystemResourceAsStream("simple.n3");
+
+        URI uri = ehriUriBuilder("import", "skos")
+                .queryParam(LOG_PARAM, "Testing SKOS")
+                .queryParam(SCOPE_PARAM, "cvoc1")
+                .queryParam(FORMAT_PARAM, "Turtle")
+                .queryParam(BATCH_SIZE_PARAM, 1)
+                .build();
+        ClientResponse response = callAs(getAdminUserProfileId(), uri)
+                .entity(payloadStream)
+                .post(ClientResponse.class);
+
+        assertStatus(ClientResponse.Status.OK, response);
+        JsonNode rootNode = jsonMapper.readValue(response.getEntity(String.class), JsonNode.class);
+        assertEquals(1, rootNode.path("created").asInt());
+    }
+
+    @Test
+    public void testImportSkosWithNegativeBatchSize() throws Exception {
+        URI uri = ehriUriBuilder("import", "skos")
+                .queryParam(SCOPE_PARAM, "cvoc1")
+                .queryParam(FORMAT_PARAM, "Turtle")
+                .queryParam(BATCH_SIZE_PARAM, -1)
+                .build();
+        ClientResponse response = callAs(getAdminUserProfileId(), uri)
+                .entity(ClassLoader.getSystemResourceAsStream("simple.n3"))
+                .post(ClientResponse.class);
+        assertStatus(ClientResponse.Status.BAD_REQUEST, response);
+    }
+
     @Test
     public void testImportEad() throws Exception {
         // Get the path of an EAD file
@@ -146,6 +179,42 @@ public class ImportResourceRestClientTest extends BaseRestClientTest {
         assertEquals(logText, rootNode.path("message").asText());
     }
 
+    @Test
+    public void testImportEadArchive() throws Exception {
+        // The archive contains two copies of single-ead.xml
+        InputStream payloadStream = ClassLoader.getSystemResourceAsStream(EAD_ARCHIVE);
+
+        String logText = "Testing archive import";
+        URI uri = getImportUrl("r1", logText, false)
+                .queryParam(HANDLER_PARAM, IcaAtomEadHandler.class.getName())
+                .build();
+        ClientResponse response = callAs(getAdminUserProfileId(), uri)
+                .header("Content-Type", "application/gzip")
+                .entity(payloadStream)
+                .post(ClientResponse.class);
+
+        assertStatus(ClientResponse.Status.OK, response);
+        String output = response.getEntity(String.class);
+
+        JsonNode rootNode = jsonMapper.readValue(output, JsonNode.class);
+        assertEquals(1, rootNode.path("created").asInt());
+        assertEquals(1, rootNode.path("unchanged").asInt());
+        assertEquals(logText, rootNode.path("message").asText());
+        assertEquals(1, rootNode.path("sources").path("ead/single-ead.xml")
+                .path("created").asInt());
+    }
+
+    @Test
+    public void testImportEadArchiveWithBadFormat() throws Exception {
+        URI uri = getImportUrl("r1", "Test", false).build();
+        ClientResponse response = callAs(getAdminUserProfileId(), uri)
+                .header("Content-Type", "application/zip")
+                .entity(getPayloadStream(SINGLE_EAD))
+                .post(ClientResponse.class);
+
+        assertStatus(ClientResponse.Status.BAD_REQUEST, response);
+    }
+
     private UriBuilder getImportUrl(String scopeId, String log, boolean tolerant) {
         return ehriUriBuilder("import", "ead")
                 .queryParam(LOG_PARAM, log)
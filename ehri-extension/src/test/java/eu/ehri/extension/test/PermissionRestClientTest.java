@@ -24,6 +24,8 @@ import static com.sun.jersey.api.client.ClientResponse.Status.BAD_REQUEST;
 import static com.sun.jersey.api.client.ClientResponse.Status.CREATED;
 import static com.sun.jersey.api.client.ClientResponse.Status.OK;
 import static com.sun.jersey.api.client.ClientResponse.Status.UNAUTHORIZED;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
@@ -257,6 +259,28 @@ public class PermissionRestClientTest extends BaseRestClientTest {
         assertStatus(OK, response);
     }
 
+    @Test
+    public void testGetItemPermissions() throws Exception {
+        // Grant the user update permission on c4 alone
+        ClientResponse response = jsonCallAs(getAdminUserProfileId(),
+                ehriUri(Entities.PERMISSION, LIMITED_USER_NAME, "c4"))
+                .entity("[\"update\"]")
+                .post(ClientResponse.class);
+        assertStatus(OK, response);
+
+        URI uri = ehriUriBuilder(Entities.PERMISSION, LIMITED_USER_NAME, "items")
+                .queryParam("id", "c1").queryParam("id", "c4").build();
+        response = jsonCallAs(getAdminUserProfileId(), uri).get(ClientResponse.class);
+        assertStatus(OK, response);
+        Map<String, List<String>> perms = jsonMapper.readValue(response.getEntity(String.class),
+                new TypeReference<Map<String, List<String>>>() {
+                });
+        assertEquals(ImmutableList.of("c1", "c4"), ImmutableList.copyOf(perms.keySet()));
+        assertTrue(perms.get("c4").contains(PermissionType.UPDATE.getName()));
+        assertFalse(perms.get("c4").contains(PermissionType.DELETE.getName()));
+        assertFalse(perms.get("c1").contains(PermissionType.UPDATE.getName()));
+    }
+
     private List<Map<String, Map<String, List<String>>>> getInheritedMatrix(String json) throws IOException {
         TypeReference<LinkedList<HashMap<String, Map<String, List<String>>>>> typeRef = new TypeReference<LinkedList<HashMap<String, Map<String, List<String>>>>>() {
         };
@@ -39,6 +39,10 @@ public abstract class RunningServerTest {
         return runner.getServer().baseUri() + mountPoint;
     }
 
+    String getCypherUri() {
+        return runner.getServer().baseUri() + "db/data/cypher";
+    }
+
     @Before
     public void setupDb() throws Exception {
         runner.setUpData();
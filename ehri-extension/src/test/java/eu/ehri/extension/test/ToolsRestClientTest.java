@@ -6,7 +6,9 @@ import eu.ehri.project.definitions.Entities;
 import org.junit.Test;
 
 import javax.ws.rs.core.MediaType;
+import java.net.URI;
 
+import static com.sun.jersey.api.client.ClientResponse.Status.BAD_REQUEST;
 import static com.sun.jersey.api.client.ClientResponse.Status.OK;
 import static org.junit.Assert.assertEquals;
 import static eu.ehri.extension.ToolsResource.ENDPOINT;
@@ -44,6 +46,39 @@ public class ToolsRestClientTest extends BaseRestClientTest {
         assertEquals("3", response.getEntity(String.class));
     }
 
+    @Test
+    public void testGenerateConceptsWithNegativeBatchSize() throws Exception {
+        URI uri = ehriUriBuilder(ENDPOINT, "generateConcepts", "r1", "cvoc1")
+                .queryParam("batchSize", "-1").build();
+        ClientResponse response = callAs(getAdminUserProfileId(), uri)
+                .post(ClientResponse.class);
+        assertStatus(BAD_REQUEST, response);
+    }
+
+    @Test
+    public void testPropertyRenameREDryRun() throws Exception {
+        WebResource resource = client.resource(ehriUri(ENDPOINT, "_findReplacePropertyValueRE"))
+                .queryParam("type", Entities.ADDRESS)
+                .queryParam("name", "webpage")
+                .queryParam("pattern", "^http:")
+                .queryParam("replace", "https:");
+        ClientResponse response = resource.queryParam("dryRun", "true")
+                .accept(MediaType.TEXT_PLAIN)
+                .type(MediaType.APPLICATION_JSON).post(ClientResponse.class);
+        assertStatus(OK, response);
+        assertEquals(MediaType.TEXT_PLAIN_TYPE, response.getType());
+        String out = response.getEntity(String.class);
+        assertEquals(2, out.split("\r\n|\r|\n").length);
+        assertTrue(out.contains("ar1"));
+        assertTrue(out.contains("ar2"));
+
+        // Nothing should have been changed...
+        response = resource.queryParam("batchSize", "1")
+                .type(MediaType.APPLICATION_JSON).post(ClientResponse.class);
+        assertStatus(OK, response);
+        assertEquals("3", response.getEntity(String.class));
+    }
+
     @Test
     public void testPropertyKeyRename() throws Exception {
         WebResource resource = client.resource(ehriUri(ENDPOINT, "_findReplacePropertyName"))
@@ -96,6 +131,19 @@ public class ToolsRestClientTest extends BaseRestClientTest {
         assertTrue(out.contains("nl-r1-c4"));
     }
 
+    @Test
+    public void testRegenerateIdsForTypeInBatches() throws Exception {
+        WebResource resource = client.resource(ehriUri(ENDPOINT,
+                "_regenerateIdsForType", "documentaryUnit"))
+                .queryParam("commit", "true")
+                .queryParam("batchSize", "2");
+        ClientResponse response = resource.post(ClientResponse.class);
+        String out = response.getEntity(String.class);
+        assertStatus(OK, response);
+        assertEquals(4, out.split("\r\n|\r|\n").length);
+        assertTrue(out.contains("nl-r1-c1-c2-c3"));
+    }
+
     @Test
     public void testRegenerateDescriptionIds() throws Exception {
         WebResource resource = client.resource(ehriUri(ENDPOINT, "_regenerateDescriptionIds"))
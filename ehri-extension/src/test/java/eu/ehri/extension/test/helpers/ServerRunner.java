@@ -68,7 +68,7 @@ public class ServerRunner {
 
         FramedGraph<? extends TransactionalGraph> framedGraph
                 = graphFactory.create(new Neo4jGraph(neoServer.getDatabase().getGraph()));
-        fixtureLoader = FixtureLoaderFactory.getInstance(framedGraph);
+        fixtureLoader = FixtureLoaderFactory.getSnapshotInstance(framedGraph);
         graphCleaner = new GraphCleaner(framedGraph);
     }
 
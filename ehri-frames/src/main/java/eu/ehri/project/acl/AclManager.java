@@ -2,9 +2,11 @@ package eu.ehri.project.acl;
 
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
 import com.tinkerpop.blueprints.Direction;
 import com.tinkerpop.blueprints.Vertex;
@@ -26,6 +28,7 @@ import eu.ehri.project.models.base.PermissionGrantTarget;
 import eu.ehri.project.models.base.PermissionScope;
 
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -91,8 +94,8 @@ public final class AclManager {
         if (accessor.isAdmin()) {
             return true;
         }
-        for (Accessor parent : accessor.getParents()) {
-            if (belongsToAdmin(parent)) {
+        for (Accessor parent : accessor.getAllParents()) {
+            if (parent.isAdmin()) {
                 return true;
             }
         }
@@ -398,6 +401,75 @@ public final class AclManager {
         return hasScopedPermission(entity, permissionType, accessor, allScopes);
     }
 
+    /**
+     * Get the permissions an accessor has on each of a number of items,
+     * including those inherited from groups and those implied by
+     * content type grants. This is equivalent to calling
+     * {@link #hasPermission(AccessibleEntity, PermissionType, Accessor)}
+     * for every item and permission type, but the accessor's grants
+     * are loaded only once, and the ancestry of each distinct item
+     * permission scope resolved only once.
+     *
+     * @param entities The items
+     * @param accessor The user/group
+     * @return A map of item IDs to the accessor's permissions on that
+     *         item, in the order the items were given
+     */
+    public Map<String, ItemPermissionSet> getItemPermissions(
+            Iterable<? extends AccessibleEntity> entities, Accessor accessor) {
+        Map<String, ItemPermissionSet> permissions = Maps.newLinkedHashMap();
+        if (belongsToAdmin(accessor)) {
+            ItemPermissionSet all = ItemPermissionSet.from(Sets.newHashSet(PermissionType.values()));
+            for (AccessibleEntity entity : entities) {
+                permissions.put(entity.getId(), all);
+            }
+            return permissions;
+        }
+
+        // Index the grants of the accessor and its groups by target.
+        Multimap<ContentTypes, ScopedGrant> typeGrants = ArrayListMultimap.create();
+        Multimap<Object, ScopedGrant> itemGrants = ArrayListMultimap.create();
+        Set<Object> seenGrants = Sets.newHashSet();
+        List<Accessor> accessors = Lists.newArrayList(accessor);
+        Iterables.addAll(accessors, accessor.getAllParents());
+        for (Accessor acc : accessors) {
+            for (PermissionGrant grant : acc.getPermissionGrants()) {
+                Permission permission = grant.getPermission();
+                if (permission == null || !seenGrants.add(grant.asVertex().getId())) {
+                    continue;
+                }
+                PermissionScope grantScope = grant.getScope();
+                ScopedGrant scopedGrant = new ScopedGrant(enumForPermission(permission),
+                        grantScope == null ? null : grantScope.asVertex().getId());
+                for (PermissionGrantTarget target : grant.getTargets()) {
+                    if (manager.getEntityClass(target).equals(EntityClass.CONTENT_TYPE)) {
+                        typeGrants.put(contentTypeEnumMap.get(
+                                manager.cast(target, ContentType.class)), scopedGrant);
+                    } else {
+                        itemGrants.put(target.asVertex().getId(), scopedGrant);
+                    }
+                }
+            }
+        }
+
+        Set<Object> aclScopeIds = Sets.newHashSet();
+        for (PermissionScope aclScope : scopes) {
+            aclScopeIds.add(aclScope.asVertex().getId());
+        }
+        Map<Object, Set<Object>> scopeCache = Maps.newHashMap();
+        for (AccessibleEntity entity : entities) {
+            Set<Object> itemScopeIds = getScopeIds(entity.getPermissionScope(), aclScopeIds, scopeCache);
+            Set<PermissionType> perms = EnumSet.noneOf(PermissionType.class);
+            Optional<ContentTypes> contentType = getOptionalContentType(manager.getEntityClass(entity));
+            if (contentType.isPresent()) {
+                addPermissions(perms, typeGrants.get(contentType.get()), itemScopeIds);
+            }
+            addPermissions(perms, itemGrants.get(entity.asVertex().getId()), itemScopeIds);
+            permissions.put(entity.getId(), ItemPermissionSet.from(perms));
+        }
+        return permissions;
+    }
+
     // Helpers...
 
     /**
@@ -721,6 +793,62 @@ public final class AclManager {
         }
     }
 
+    private Optional<ContentTypes> getOptionalContentType(EntityClass type) {
+        try {
+            return Optional.of(ContentTypes.withName(type.getName()));
+        } catch (NoSuchElementException e) {
+            return Optional.absent();
+        }
+    }
+
+    /**
+     * Get the IDs of the given item scope, its ancestors, and the
+     * current ACL scopes, caching the result for each item scope.
+     */
+    private Set<Object> getScopeIds(PermissionScope itemScope, Set<Object> aclScopeIds,
+            Map<Object, Set<Object>> cache) {
+        if (itemScope == null) {
+            return aclScopeIds;
+        }
+        Object key = itemScope.asVertex().getId();
+        Set<Object> ids = cache.get(key);
+        if (ids == null) {
+            ids = Sets.newHashSet(aclScopeIds);
+            ids.add(key);
+            for (PermissionScope ancestor : itemScope.getPermissionScopes()) {
+                ids.add(ancestor.asVertex().getId());
+            }
+            cache.put(key, ids);
+        }
+        return ids;
+    }
+
+    private static void addPermissions(Set<PermissionType> perms,
+            Collection<ScopedGrant> grants, Set<Object> scopeIds) {
+        for (ScopedGrant grant : grants) {
+            if (grant.scopeId == null || scopeIds.contains(grant.scopeId)) {
+                for (PermissionType type : PermissionType.values()) {
+                    if (grant.permission.contains(type)) {
+                        perms.add(type);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * A permission grant's type and scope ID.
+     */
+    private static class ScopedGrant {
+        final PermissionType permission;
+        final Object scopeId;
+
+        ScopedGrant(PermissionType permission, Object scopeId) {
+            this.permission = permission;
+            this.scopeId = scopeId;
+        }
+    }
+
     private boolean hasContentTypeTargets(PermissionGrant grant) {
         for (PermissionGrantTarget tg : grant.getTargets()) {
             if (!manager.getEntityClass(tg).equals(EntityClass.CONTENT_TYPE)) {
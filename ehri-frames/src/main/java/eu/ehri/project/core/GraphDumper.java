@@ -0,0 +1,452 @@
+package eu.ehri.project.core;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Element;
+import com.tinkerpop.blueprints.TransactionalGraph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.util.io.graphson.ElementFactory;
+import com.tinkerpop.blueprints.util.io.graphson.GraphElementFactory;
+import com.tinkerpop.blueprints.util.io.graphson.GraphSONMode;
+import com.tinkerpop.blueprints.util.io.graphson.GraphSONTokens;
+import com.tinkerpop.blueprints.util.io.graphson.GraphSONUtility;
+import com.tinkerpop.frames.FramedGraph;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jettison.json.JSONException;
+import org.codehaus.jettison.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Dump a graph to, and restore it from, a directory of gzipped
+ * GraphSON segment files.
+ * <p/>
+ * Each segment holds one GraphSON element per line, and is written
+ * and read by its own thread. A manifest file records the segments
+ * along with their element counts and MD5 checksums, which are
+ * verified before a restore begins.
+ * <p/>
+ * On restore all vertices are loaded before any edges, in batches
+ * that are committed periodically, and the entity index is rebuilt
+ * once everything has been loaded. Since vertex IDs are not preserved
+ * a map of dumped to restored vertex IDs is kept for the duration of
+ * the restore.
+ * <p/>
+ * NB: The dump is only consistent if the graph is not written to
+ * while it is in progress.
+ *
+ * @author Mike Bryant (http://github.com/mikesname)
+ */
+public class GraphDumper {
+
+    private static final Logger logger = LoggerFactory.getLogger(GraphDumper.class);
+
+    public static final String MANIFEST_FILE = "manifest.json";
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    public static final int PROGRESS_INTERVAL = 10000;
+    public static final int MAX_RETRIES = 3;
+
+    private static final String VERTICES = "vertices";
+    private static final String EDGES = "edges";
+    private static final String UTF8 = "UTF-8";
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final FramedGraph<? extends TransactionalGraph> graph;
+    private final int segments;
+    private final int batchSize;
+
+    // Batches are loaded concurrently while holding the read lock, and
+    // exclusively, with the write lock, when they repeatedly deadlock.
+    private final ReadWriteLock batchLock = new ReentrantReadWriteLock();
+
+    public GraphDumper(FramedGraph<? extends TransactionalGraph> graph) {
+        this(graph, Runtime.getRuntime().availableProcessors(), DEFAULT_BATCH_SIZE);
+    }
+
+    private GraphDumper(FramedGraph<? extends TransactionalGraph> graph, int segments,
+            int batchSize) {
+        Preconditions.checkArgument(segments > 0, "Number of segments must be positive");
+        Preconditions.checkArgument(batchSize > 0, "Batch size must be positive");
+        this.graph = graph;
+        this.segments = segments;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Set the number of segments to write when dumping, which is
+     * also the number of threads used for both dumping and restoring.
+     *
+     * @param segments the number of segments
+     * @return a new dumper
+     */
+    public GraphDumper withSegments(int segments) {
+        return new GraphDumper(graph, segments, batchSize);
+    }
+
+    /**
+     * Set the number of elements per transaction when restoring.
+     *
+     * @param batchSize the batch size
+     * @return a new dumper
+     */
+    public GraphDumper withBatchSize(int batchSize) {
+        return new GraphDumper(graph, segments, batchSize);
+    }
+
+    /**
+     * A record of a segment file in the dump manifest.
+     */
+    public static class Segment {
+        public String file;
+        public String type;
+        public long count;
+        public String md5;
+    }
+
+    /**
+     * The dump manifest.
+     */
+    public static class Manifest {
+        public long vertices;
+        public long edges;
+        public List<Segment> segments = Lists.newArrayList();
+    }
+
+    /**
+     * Dump the graph to the given directory, which will be created
+     * if it does not exist.
+     *
+     * @param dir the output directory
+     * @return the dump manifest
+     * @throws IOException
+     */
+    public Manifest dump(File dir) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Unable to create dump directory: " + dir);
+        }
+
+        // Collect the element IDs up front so the segments
+        // partition a fixed set of elements.
+        List<Object> vertexIds = Lists.newArrayList();
+        for (Vertex vertex : graph.getBaseGraph().getVertices()) {
+            vertexIds.add(vertex.getId());
+        }
+        List<Object> edgeIds = Lists.newArrayList();
+        for (Edge edge : graph.getBaseGraph().getEdges()) {
+            edgeIds.add(edge.getId());
+        }
+        logger.info("Dumping {} vertices and {} edges", vertexIds.size(), edgeIds.size());
+
+        List<Callable<Segment>> tasks = Lists.newArrayList();
+        tasks.addAll(getDumpTasks(dir, VERTICES, vertexIds));
+        tasks.addAll(getDumpTasks(dir, EDGES, edgeIds));
+
+        Manifest manifest = new Manifest();
+        manifest.vertices = vertexIds.size();
+        manifest.edges = edgeIds.size();
+        manifest.segments.addAll(runAll(tasks));
+        mapper.writeValue(new File(dir, MANIFEST_FILE), manifest);
+        return manifest;
+    }
+
+    /**
+     * Restore a dump from the given directory into the graph, which
+     * is assumed to be empty.
+     *
+     * @param dir the dump directory
+     * @return the dump manifest
+     * @throws IOException if the dump cannot be read or its checksums
+     *                     do not match
+     */
+    public Manifest load(File dir) throws IOException {
+        final Manifest manifest = mapper.readValue(new File(dir, MANIFEST_FILE), Manifest.class);
+        for (Segment segment : manifest.segments) {
+            String md5 = md5(new File(dir, segment.file));
+            if (!md5.equals(segment.md5)) {
+                throw new IOException(String.format(
+                        "Checksum mismatch for segment %s: expected %s, got %s",
+                        segment.file, segment.md5, md5));
+            }
+        }
+
+        ConcurrentMap<Object, Object> vertexIds = Maps.newConcurrentMap();
+        List<Callable<Segment>> vertexTasks = Lists.newArrayList();
+        List<Callable<Segment>> edgeTasks = Lists.newArrayList();
+        AtomicLong vertexCount = new AtomicLong();
+        AtomicLong edgeCount = new AtomicLong();
+        for (Segment segment : manifest.segments) {
+            File file = new File(dir, segment.file);
+            if (VERTICES.equals(segment.type)) {
+                vertexTasks.add(new LoadTask(segment, file, vertexIds, vertexCount, manifest.vertices));
+            } else {
+                edgeTasks.add(new LoadTask(segment, file, vertexIds, edgeCount, manifest.edges));
+            }
+        }
+        runAll(vertexTasks);
+        runAll(edgeTasks);
+
+        logger.info("Rebuilding index...");
+        final long total = manifest.vertices;
+        new GraphReindexer(graph).withBatchSize(batchSize)
+                .reindexInBatches(new GraphReindexer.ProgressListener() {
+                    @Override
+                    public void progress(long count) {
+                        logProgress("index", count, total);
+                    }
+                });
+        return manifest;
+    }
+
+    private List<Callable<Segment>> getDumpTasks(File dir, String type, List<Object> ids) {
+        List<Callable<Segment>> tasks = Lists.newArrayList();
+        AtomicLong done = new AtomicLong();
+        int size = Math.max(1, (ids.size() + segments - 1) / segments);
+        int i = 0;
+        for (List<Object> part : Lists.partition(ids, size)) {
+            Segment segment = new Segment();
+            segment.file = String.format("%s-%d.json.gz", type, i++);
+            segment.type = type;
+            tasks.add(new DumpTask(segment, new File(dir, segment.file), part, done, ids.size()));
+        }
+        return tasks;
+    }
+
+    private List<Segment> runAll(List<Callable<Segment>> tasks) throws IOException {
+        List<Segment> done = Lists.newArrayList();
+        if (tasks.isEmpty()) {
+            return done;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(segments, tasks.size()));
+        try {
+            for (Future<Segment> future : executor.invokeAll(tasks)) {
+                done.add(future.get());
+            }
+            return done;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void logProgress(String type, long count, long total) {
+        if (count % PROGRESS_INTERVAL == 0 || count == total) {
+            logger.info("{}: {} of {}", type, count, total);
+        }
+    }
+
+    private static MessageDigest getDigest() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String md5(File file) throws IOException {
+        MessageDigest digest = getDigest();
+        InputStream stream = new DigestInputStream(new FileInputStream(file), digest);
+        try {
+            byte[] buffer = new byte[8192];
+            while (stream.read(buffer) != -1) {
+                // just reading...
+            }
+        } finally {
+            stream.close();
+        }
+        return toHex(digest.digest());
+    }
+
+    private static String toHex(byte[] bytes) {
+        return String.format("%032x", new BigInteger(1, bytes));
+    }
+
+    /**
+     * Write a set of elements to a segment file.
+     */
+    private class DumpTask implements Callable<Segment> {
+        private final Segment segment;
+        private final File file;
+        private final List<Object> ids;
+        private final AtomicLong done;
+        private final long total;
+
+        DumpTask(Segment segment, File file, List<Object> ids, AtomicLong done, long total) {
+            this.segment = segment;
+            this.file = file;
+            this.ids = ids;
+            this.done = done;
+            this.total = total;
+        }
+
+        @Override
+        public Segment call() throws Exception {
+            MessageDigest digest = getDigest();
+            Writer writer = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(
+                    new DigestOutputStream(new FileOutputStream(file), digest)), UTF8));
+            try {
+                for (Object id : ids) {
+                    Element element = VERTICES.equals(segment.type)
+                            ? graph.getBaseGraph().getVertex(id)
+                            : graph.getBaseGraph().getEdge(id);
+                    if (element != null) {
+                        writer.write(GraphSONUtility.jsonFromElement(
+                                element, null, GraphSONMode.EXTENDED).toString());
+                        writer.write('\n');
+                        segment.count++;
+                    }
+                    logProgress(segment.type, done.incrementAndGet(), total);
+                }
+            } finally {
+                writer.close();
+            }
+            segment.md5 = toHex(digest.digest());
+            return segment;
+        }
+    }
+
+    /**
+     * Load the elements in a segment file, committing every
+     * {@code batchSize} elements. Since concurrent edge creation
+     * can deadlock on shared vertices a failed batch is rolled back
+     * and retried, with the final attempt made while no other batches
+     * are being loaded.
+     */
+    private class LoadTask implements Callable<Segment> {
+        private final Segment segment;
+        private final File file;
+        private final ConcurrentMap<Object, Object> vertexIds;
+        private final AtomicLong done;
+        private final long total;
+        private final ElementFactory<Vertex, Edge> factory
+                = new GraphElementFactory(graph.getBaseGraph());
+
+        LoadTask(Segment segment, File file, ConcurrentMap<Object, Object> vertexIds,
+                AtomicLong done, long total) {
+            this.segment = segment;
+            this.file = file;
+            this.vertexIds = vertexIds;
+            this.done = done;
+            this.total = total;
+        }
+
+        @Override
+        public Segment call() throws Exception {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(new FileInputStream(file)), UTF8));
+            try {
+                List<String> batch = Lists.newArrayListWithCapacity(batchSize);
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    batch.add(line);
+                    if (batch.size() == batchSize) {
+                        loadBatch(batch);
+                        batch.clear();
+                    }
+                }
+                loadBatch(batch);
+            } finally {
+                reader.close();
+            }
+            return segment;
+        }
+
+        private void loadBatch(List<String> batch) throws IOException, JSONException {
+            for (int attempt = 1; ; attempt++) {
+                // After too many failed attempts load the batch on its
+                // own, which cannot deadlock.
+                boolean exclusive = attempt > MAX_RETRIES;
+                Lock lock = exclusive ? batchLock.writeLock() : batchLock.readLock();
+                lock.lock();
+                boolean committed = false;
+                try {
+                    Map<Object, Object> ids = Maps.newHashMap();
+                    for (String line : batch) {
+                        JSONObject json = new JSONObject(line);
+                        if (VERTICES.equals(segment.type)) {
+                            Vertex vertex = GraphSONUtility.vertexFromJson(
+                                    json, factory, GraphSONMode.EXTENDED, null);
+                            ids.put(json.getString(GraphSONTokens._ID), vertex.getId());
+                        } else {
+                            GraphSONUtility.edgeFromJson(json,
+                                    getVertex(json.getString(GraphSONTokens._OUT_V)),
+                                    getVertex(json.getString(GraphSONTokens._IN_V)),
+                                    factory, GraphSONMode.EXTENDED, null);
+                        }
+                    }
+                    graph.getBaseGraph().commit();
+                    committed = true;
+                    // NB: Only record vertex IDs once their batch is committed
+                    vertexIds.putAll(ids);
+                    break;
+                } catch (RuntimeException e) {
+                    // Possibly a deadlock, so worth retrying. Other errors,
+                    // such as invalid JSON, are not, and propagate at once.
+                    if (exclusive) {
+                        throw e;
+                    }
+                    logger.warn("Error loading batch from {}, retrying: {}",
+                            segment.file, e.getMessage());
+                } finally {
+                    // Don't leave a partially-loaded batch open, whatever
+                    // the error
+                    if (!committed) {
+                        graph.getBaseGraph().rollback();
+                    }
+                    lock.unlock();
+                }
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                logProgress(segment.type, done.incrementAndGet(), total);
+            }
+        }
+
+        private Vertex getVertex(String dumpedId) throws IOException {
+            Object id = vertexIds.get(dumpedId);
+            Vertex vertex = id == null ? null : graph.getBaseGraph().getVertex(id);
+            if (vertex == null) {
+                throw new IOException("Edge refers to unknown vertex: " + dumpedId);
+            }
+            return vertex;
+        }
+    }
+}
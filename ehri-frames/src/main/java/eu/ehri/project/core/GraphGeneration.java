@@ -0,0 +1,153 @@
+package eu.ehri.project.core;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.impls.neo4j.Neo4jGraph;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventHandler;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A counter of writes to a graph, which caches of data read from
+ * the graph can compare against to tell if they are out of date.
+ * <p/>
+ * The generation is incremented by the {@link GraphManager} when it
+ * creates, updates or deletes vertices, and whenever a transaction
+ * ends, which covers writes such as adding relationships that are
+ * made without the manager. The number of transactions ended is also
+ * counted, for caches of data that is only changed by particular
+ * operations. Since a new Neo4j graph wrapper may be created for each
+ * request, the generation of a Neo4j graph is held against the
+ * underlying database rather than the wrapper, and transactions are
+ * counted by a handler registered on the database, so that writes
+ * made through any API, e.g. Cypher or another graph wrapper, are
+ * seen. For other graphs transactions must be counted by calling
+ * {@link #endTransaction}.
+ *
+ * @author Mike Bryant (http://github.com/mikesname)
+ */
+public final class GraphGeneration {
+
+    private static class Generation {
+        private final long epoch = System.currentTimeMillis();
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong transactions = new AtomicLong();
+
+        private void endTransaction() {
+            transactions.incrementAndGet();
+            count.incrementAndGet();
+        }
+    }
+
+    // NB: Keys are weak and therefore compared by identity.
+    private static final LoadingCache<Object, Generation> generations = CacheBuilder
+            .newBuilder()
+            .weakKeys()
+            .build(new CacheLoader<Object, Generation>() {
+                @Override
+                public Generation load(Object store) {
+                    Generation generation = new Generation();
+                    if (store instanceof GraphDatabaseService) {
+                        ((GraphDatabaseService) store).registerTransactionEventHandler(
+                                new TransactionCounter(generation));
+                    }
+                    return generation;
+                }
+            });
+
+    /**
+     * Counts the transactions on a Neo4j database which have made
+     * changes, whether they commit or fail to.
+     */
+    private static class TransactionCounter extends TransactionEventHandler.Adapter<Object> {
+        private final Generation generation;
+
+        private TransactionCounter(Generation generation) {
+            this.generation = generation;
+        }
+
+        @Override
+        public void afterCommit(TransactionData data, Object state) {
+            generation.endTransaction();
+        }
+
+        @Override
+        public void afterRollback(TransactionData data, Object state) {
+            generation.endTransaction();
+        }
+    }
+
+    private GraphGeneration() {
+    }
+
+    /**
+     * Get the current write generation of a graph.
+     *
+     * @param graph the graph
+     * @return the generation number
+     */
+    public static long get(Graph graph) {
+        return generations.getUnchecked(getStore(graph)).count.get();
+    }
+
+    /**
+     * Get a string identifying the current write generation of a graph,
+     * which unlike the generation number is not reused if the graph is
+     * re-opened, e.g. when the server restarts.
+     *
+     * @param graph the graph
+     * @return a generation tag
+     */
+    public static String getTag(Graph graph) {
+        Generation generation = generations.getUnchecked(getStore(graph));
+        return Long.toHexString(generation.epoch) + "." + generation.count.get();
+    }
+
+    /**
+     * Record that a graph has been written to.
+     *
+     * @param graph the graph
+     */
+    public static void increment(Graph graph) {
+        generations.getUnchecked(getStore(graph)).count.incrementAndGet();
+    }
+
+    /**
+     * Get the number of transactions on a graph that have been committed
+     * or rolled back. Unlike the generation number, this is unchanged by
+     * writes within a transaction.
+     *
+     * @param graph the graph
+     * @return the number of transactions ended
+     */
+    public static long getTransactions(Graph graph) {
+        return generations.getUnchecked(getStore(graph)).transactions.get();
+    }
+
+    /**
+     * Record that a transaction on a graph has been committed or rolled
+     * back, which also counts as a write. This is done automatically
+     * for transactions on Neo4j databases which have made changes.
+     *
+     * @param graph the graph
+     */
+    public static void endTransaction(Graph graph) {
+        generations.getUnchecked(getStore(graph)).endTransaction();
+    }
+
+    /**
+     * Get the object that holds the data for a graph, i.e. the
+     * database underlying a Neo4j graph or otherwise the graph itself.
+     * This should be used to key caches that outlive graph instances.
+     *
+     * @param graph the graph
+     * @return the graph's data store
+     */
+    public static Object getStore(Graph graph) {
+        return graph instanceof Neo4jGraph ? ((Neo4jGraph) graph).getRawGraph() : graph;
+    }
+}
@@ -120,10 +120,13 @@ public interface GraphManager {
     public CloseableIterable<Vertex> getVertices(EntityClass type);
 
     /**
-     * Get a CloseableIterable of vertices with the given ids.
+     * Get a CloseableIterable of vertices with the given ids. The
+     * vertices are returned in the same order as the given ids,
+     * including duplicates.
      *
      * @param ids An iterable of String IDs
      * @return An iterable of vertices with the given IDs
+     * @throws ItemNotFound if any of the given IDs does not exist
      */
     public CloseableIterable<Vertex> getVertices(Iterable<String> ids) throws ItemNotFound;
 
@@ -137,6 +140,20 @@ public interface GraphManager {
     public CloseableIterable<Vertex> getVertices(String key,
             Object value, EntityClass type);
 
+    /**
+     * Get a CloseableIterable of vertices with the given type, and an
+     * indexed property with the given key whose value (or one of whose
+     * values, in the case of arrays) begins with the given prefix. An
+     * empty prefix matches all vertices with the property.
+     *
+     * @param key    The property key
+     * @param prefix The value prefix
+     * @param type   The entity type
+     * @return An iterable of vertices with matching properties
+     */
+    public CloseableIterable<Vertex> getVerticesWithPrefix(String key,
+            String prefix, EntityClass type);
+
     /**
      * Get an Iterable of vertices of the given type, frames with the given
      * interface class.
@@ -239,4 +256,46 @@ public interface GraphManager {
      * Rebuild the internal graph index.
      */
     public void rebuildIndex();
+
+    /**
+     * Begin building a new internal graph index alongside the live
+     * one. Until {@link #finishIndexRebuild()} is called lookups
+     * continue to use the live index, while changes are written
+     * to both.
+     */
+    public void startIndexRebuild();
+
+    /**
+     * Index the given vertex. If a rebuild is in progress the vertex
+     * is added to the new index, otherwise its entries in the live
+     * index are refreshed.
+     *
+     * @param vertex The vertex to index
+     */
+    public void reindexVertex(Vertex vertex);
+
+    /**
+     * Swap the index built since {@link #startIndexRebuild()} for the
+     * live one, which is then dropped.
+     *
+     * @throws IllegalStateException if no rebuild is in progress
+     */
+    public void finishIndexRebuild();
+
+    /**
+     * Discard the index being built since {@link #startIndexRebuild()},
+     * leaving the live one in use. This does nothing if no rebuild is
+     * in progress.
+     */
+    public void abortIndexRebuild();
+
+    /**
+     * Determine whether the live index has an entry for each value of
+     * multi-valued properties, so that lookups by property value find
+     * all matching vertices. This is not the case for an index created
+     * by earlier versions until it has been rebuilt.
+     *
+     * @return whether index lookups find each property value
+     */
+    public boolean indexesEachValue();
 }
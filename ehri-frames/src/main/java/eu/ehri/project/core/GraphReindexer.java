@@ -1,23 +1,84 @@
 package eu.ehri.project.core;
 
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Sets;
+import com.tinkerpop.blueprints.CloseableIterable;
 import com.tinkerpop.blueprints.TransactionalGraph;
+import com.tinkerpop.blueprints.Vertex;
 import com.tinkerpop.frames.FramedGraph;
+import eu.ehri.project.models.EntityClass;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
 
 /**
  * Reindex the internal graph index.
+ * <p/>
+ * Besides recreating the index in a single transaction, the reindexer
+ * can rebuild it in batches, each in its own transaction, while the
+ * existing index continues to serve lookups. When the rebuild covers
+ * all vertices a new index is built and swapped in when complete;
+ * when it is restricted to certain types the entries for vertices
+ * of those types are refreshed in place.
  *
  * @author Paul Boon (http://github.com/PaulBoon)
  */
 public class GraphReindexer {
 
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    /**
+     * Receives notification of the progress of a batched reindex.
+     */
+    public interface ProgressListener {
+        /**
+         * Called after each batch is committed.
+         *
+         * @param count the number of vertices indexed so far
+         */
+        public void progress(long count);
+    }
+
     private final FramedGraph<? extends TransactionalGraph> graph;
     private final GraphManager manager;
+    private final int batchSize;
+    private final Set<EntityClass> types;
 
     public GraphReindexer(FramedGraph<? extends TransactionalGraph> graph) {
+        this(graph, DEFAULT_BATCH_SIZE, Collections.<EntityClass>emptySet());
+    }
+
+    private GraphReindexer(FramedGraph<? extends TransactionalGraph> graph,
+            int batchSize, Set<EntityClass> types) {
+        Preconditions.checkArgument(batchSize > 0, "Batch size must be positive");
         this.graph = graph;
+        this.batchSize = batchSize;
+        this.types = types;
         manager = GraphManagerFactory.getInstance(graph);
     }
 
+    /**
+     * Set the number of vertices indexed per transaction in a
+     * batched reindex.
+     *
+     * @param batchSize the batch size
+     * @return a new reindexer
+     */
+    public GraphReindexer withBatchSize(int batchSize) {
+        return new GraphReindexer(graph, batchSize, types);
+    }
+
+    /**
+     * Restrict a batched reindex to vertices of the given types.
+     *
+     * @param types a collection of entity classes
+     * @return a new reindexer
+     */
+    public GraphReindexer withTypes(Collection<EntityClass> types) {
+        return new GraphReindexer(graph, batchSize, Sets.immutableEnumSet(types));
+    }
+
     /**
      * recreate the index for all the Entity vertices
      */
@@ -30,4 +91,75 @@ public class GraphReindexer {
             graph.getBaseGraph().rollback();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Reindex vertices in batches, committing after each one.
+     *
+     * @return the number of vertices indexed
+     */
+    public long reindexInBatches() {
+        return reindexInBatches(new ProgressListener() {
+            @Override
+            public void progress(long count) {
+            }
+        });
+    }
+
+    /**
+     * Reindex vertices in batches, committing after each one.
+     *
+     * @param listener a listener notified after each batch
+     * @return the number of vertices indexed
+     */
+    public long reindexInBatches(ProgressListener listener) {
+        TransactionalGraph baseGraph = graph.getBaseGraph();
+        boolean rebuild = types.isEmpty();
+        long count = 0;
+        try {
+            if (rebuild) {
+                manager.startIndexRebuild();
+                baseGraph.commit();
+            }
+            if (rebuild) {
+                count = reindexVertices(graph.getVertices(), count, listener);
+            } else {
+                for (EntityClass type : types) {
+                    CloseableIterable<Vertex> vertices = manager.getVertices(type);
+                    try {
+                        count = reindexVertices(vertices, count, listener);
+                    } finally {
+                        vertices.close();
+                    }
+                }
+            }
+            baseGraph.commit();
+            listener.progress(count);
+            if (rebuild) {
+                manager.finishIndexRebuild();
+                baseGraph.commit();
+            }
+            return count;
+        } catch (RuntimeException e) {
+            baseGraph.rollback();
+            if (rebuild) {
+                // Otherwise writes would continue to go to the
+                // half-built index as well as the live one.
+                manager.abortIndexRebuild();
+                baseGraph.commit();
+            }
+            throw e;
+        }
+    }
+
+    private long reindexVertices(Iterable<Vertex> vertices, long count,
+            ProgressListener listener) {
+        for (Vertex vertex : vertices) {
+            manager.reindexVertex(vertex);
+            if (++count % batchSize == 0) {
+                graph.getBaseGraph().commit();
+                listener.progress(count);
+            }
+        }
+        return count;
+    }
+}
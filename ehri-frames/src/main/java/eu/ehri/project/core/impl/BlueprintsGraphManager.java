@@ -1,15 +1,21 @@
 package eu.ehri.project.core.impl;
 
+import com.google.common.base.Functions;
+import com.google.common.base.Predicate;
 import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.tinkerpop.blueprints.CloseableIterable;
-import com.tinkerpop.blueprints.Element;
 import com.tinkerpop.blueprints.Index;
 import com.tinkerpop.blueprints.IndexableGraph;
 import com.tinkerpop.blueprints.Vertex;
 import com.tinkerpop.blueprints.util.WrappingCloseableIterable;
 import com.tinkerpop.frames.FramedGraph;
+import eu.ehri.project.core.GraphGeneration;
 import eu.ehri.project.core.GraphManager;
 import eu.ehri.project.exceptions.IntegrityError;
 import eu.ehri.project.exceptions.ItemNotFound;
@@ -20,6 +26,7 @@ import eu.ehri.project.models.utils.ClassUtils;
 import eu.ehri.project.models.utils.EmptyIterable;
 
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
@@ -35,7 +42,30 @@ import java.util.NoSuchElementException;
 public class BlueprintsGraphManager<T extends IndexableGraph> implements GraphManager {
 
     protected static final String INDEX_NAME = "entities";
+    protected static final String ALT_INDEX_NAME = INDEX_NAME + ".alt";
+    // The existence of this (always empty) index marks the alternate
+    // index, rather than the default, as the live one.
+    protected static final String ALT_INDEX_MARKER = ALT_INDEX_NAME + ".live";
+    // The existence of an (always empty) index with this suffix marks
+    // the index of the same name as having an entry for each value of a
+    // multi-valued property. Indexes created before that was done hold
+    // only the property's string form.
+    protected static final String VALUES_MARKER_SUFFIX = ".values";
+    // Likewise this suffix marks an index as having typed keys for
+    // every vertex, i.e. it was created or fully rebuilt since they
+    // were introduced, so typed lookups need not fall back to
+    // filtering the untyped entries.
+    protected static final String TYPED_KEYS_MARKER_SUFFIX = ".typed";
     protected static final String METADATA_PREFIX = "_";
+    protected static final String TYPED_KEY_SEPARATOR = "|";
+
+    // The index names in use for each data store, so they need not be
+    // looked up on every index access. NB: Keys are weak and therefore
+    // compared by identity.
+    private static final Cache<Object, IndexNames> indexNames = CacheBuilder
+            .newBuilder()
+            .weakKeys()
+            .build();
 
     protected final FramedGraph<T> graph;
 
@@ -93,14 +123,19 @@ public class BlueprintsGraphManager<T extends IndexableGraph> implements GraphMa
     }
 
     @Override
-    public <E> CloseableIterable<E> getFrames(EntityClass type, Class<E> cls) {
-        CloseableIterable<Vertex> vertices = getVertices(type);
-        try {
-            return new WrappingCloseableIterable<E>(
-                    graph.frameVertices(getVertices(type), cls));
-        } finally {
-            vertices.close();
-        }
+    public <E> CloseableIterable<E> getFrames(EntityClass type, final Class<E> cls) {
+        final CloseableIterable<Vertex> vertices = getVertices(type);
+        return new CloseableIterable<E>() {
+            @Override
+            public Iterator<E> iterator() {
+                return graph.frameVertices(vertices, cls).iterator();
+            }
+
+            @Override
+            public void close() {
+                vertices.close();
+            }
+        };
     }
 
     @Override
@@ -121,11 +156,14 @@ public class BlueprintsGraphManager<T extends IndexableGraph> implements GraphMa
     public Vertex getVertex(String id, EntityClass type) throws ItemNotFound {
         Preconditions
                 .checkNotNull(id, "attempt to fetch vertex with a null id");
-        for (Vertex v : graph.getVertices(EntityType.ID_KEY, id)) {
-            if (getEntityClass(v).equals(type))
-                return v;
+        CloseableIterable<Vertex> query = getVertices(EntityType.ID_KEY, id, type);
+        try {
+            return query.iterator().next();
+        } catch (NoSuchElementException e) {
+            throw new ItemNotFound(id);
+        } finally {
+            query.close();
         }
-        throw new ItemNotFound(id);
     }
 
     @Override
@@ -138,21 +176,39 @@ public class BlueprintsGraphManager<T extends IndexableGraph> implements GraphMa
         // Ugh, we don't want to remove duplicate results here
         // because that's not expected behaviour - if you give
         // an array with dups you expect the dups to come out...
-        List<Vertex> verts = Lists.newArrayList();
-        for (String id : ids) {
-            verts.add(getVertex(id));
+        // Instead we look up each distinct ID once and return a
+        // lazy view over the input that preserves order and dups.
+        final List<String> idList = Lists.newArrayList(ids);
+        for (String id : idList) {
+            Preconditions.checkNotNull(id, "attempt to fetch vertex with a null id");
         }
-        return new WrappingCloseableIterable<Vertex>(verts);
+        final Map<String, Vertex> vertices = getVerticesById(Sets.newLinkedHashSet(idList));
+        for (String id : idList) {
+            if (!vertices.containsKey(id)) {
+                throw new ItemNotFound(id);
+            }
+        }
+        return new WrappingCloseableIterable<Vertex>(
+                Iterables.transform(idList, Functions.forMap(vertices)));
     }
 
     @Override
     public CloseableIterable<Vertex> getVertices(String key, Object value, final EntityClass type) {
-        // NB: This is rather annoying.
-        CloseableIterable<Vertex> query = getIndex().get(key, value);
+        // NB: Indexed properties are also stored under a composite
+        // type/key, so this can be a lazy index lookup rather than
+        // a scan of every vertex with the given key/value.
+        Index<Vertex> index = getIndex();
+        if (useTypedIndexKeys() && getIndexNames(graph.getBaseGraph()).typedKeys) {
+            return index.get(getTypedKey(type.getName(), key), value);
+        }
+        // Indexes written before typed keys were introduced lack them
+        // for older vertices until the index is rebuilt, so filter the
+        // untyped matches instead.
+        CloseableIterable<Vertex> query = index.get(key, value);
         List<Vertex> elems = Lists.newArrayList();
         try {
             for (Vertex v : query) {
-                if (getEntityClass(v).equals(type)) {
+                if (type.getName().equals(getType(v))) {
                     elems.add(v);
                 }
             }
@@ -162,6 +218,40 @@ public class BlueprintsGraphManager<T extends IndexableGraph> implements GraphMa
         return new WrappingCloseableIterable<Vertex>(elems);
     }
 
+    @Override
+    public CloseableIterable<Vertex> getVerticesWithPrefix(final String key,
+            final String prefix, EntityClass type) {
+        // NB: Blueprints indexes have no generic way of querying by prefix
+        // so here we have to filter all vertices of the given type.
+        final CloseableIterable<Vertex> vertices = getVertices(type);
+        final Predicate<Vertex> hasPrefix = new Predicate<Vertex>() {
+            @Override
+            public boolean apply(Vertex vertex) {
+                Object value = vertex.getProperty(key);
+                if (value instanceof Iterable) {
+                    for (Object item : (Iterable<?>) value) {
+                        if (String.valueOf(item).startsWith(prefix)) {
+                            return true;
+                        }
+                    }
+                    return false;
+                }
+                return value != null && String.valueOf(value).startsWith(prefix);
+            }
+        };
+        return new CloseableIterable<Vertex>() {
+            @Override
+            public void close() {
+                vertices.close();
+            }
+
+            @Override
+            public Iterator<Vertex> iterator() {
+                return Iterables.filter(vertices, hasPrefix).iterator();
+            }
+        };
+    }
+
     @Override
     public Vertex createVertex(String id, EntityClass type,
             Map<String, ?> data) throws IntegrityError {
@@ -177,14 +267,15 @@ public class BlueprintsGraphManager<T extends IndexableGraph> implements GraphMa
         Map<String, ?> indexData = getVertexData(id, type, data);
         Collection<String> indexKeys = getVertexKeys(keys);
         checkExists(index, id);
+        GraphGeneration.increment(graph.getBaseGraph());
         Vertex node = graph.addVertex(null);
         for (Map.Entry<String, ?> entry : indexData.entrySet()) {
             if (entry.getValue() == null)
                 continue;
             node.setProperty(entry.getKey(), entry.getValue());
             if (keys == null || indexKeys.contains(entry.getKey())) {
-                index.put(entry.getKey(), String.valueOf(entry.getValue()),
-                        node);
+                putIndexEntry(index, node, type.getName(), entry.getKey(),
+                        getIndexValue(entry.getValue()));
             }
         }
         return node;
@@ -207,6 +298,7 @@ public class BlueprintsGraphManager<T extends IndexableGraph> implements GraphMa
         try {
             try {
                 Vertex node = get.iterator().next();
+                GraphGeneration.increment(graph.getBaseGraph());
                 replaceProperties(index, node, indexData, indexKeys);
                 return node;
             } catch (NoSuchElementException e) {
@@ -226,15 +318,17 @@ public class BlueprintsGraphManager<T extends IndexableGraph> implements GraphMa
                         key.equals(EntityType.ID_KEY) || key.equals(EntityType.TYPE_KEY)),
                 "Invalid property key: %s", key);
         Index<Vertex> index = getIndex();
+        String type = getType(vertex);
+        GraphGeneration.increment(graph.getBaseGraph());
         Object current = vertex.getProperty(key);
         if (current != null) {
-            index.remove(key, current, vertex);
+            removeIndexEntry(index, vertex, type, key, current);
         }
         if (value == null) {
             vertex.removeProperty(key);
         } else {
             vertex.setProperty(key, value);
-            index.put(key, value, vertex);
+            putIndexEntry(index, vertex, type, key, value);
         }
     }
 
@@ -243,9 +337,11 @@ public class BlueprintsGraphManager<T extends IndexableGraph> implements GraphMa
         Preconditions.checkNotNull(vertex);
         Preconditions.checkNotNull(newId);
         Index<Vertex> index = getIndex();
-        index.remove(EntityType.ID_KEY, oldId, vertex);
+        String type = getType(vertex);
+        GraphGeneration.increment(graph.getBaseGraph());
+        removeIndexEntry(index, vertex, type, EntityType.ID_KEY, oldId);
         vertex.setProperty(EntityType.ID_KEY, newId);
-        index.put(EntityType.ID_KEY, newId, vertex);
+        putIndexEntry(index, vertex, type, EntityType.ID_KEY, newId);
     }
 
     @Override
@@ -256,31 +352,177 @@ public class BlueprintsGraphManager<T extends IndexableGraph> implements GraphMa
     @Override
     public void deleteVertex(Vertex vertex) {
         Index<Vertex> index = getIndex();
+        String type = getType(vertex);
+        GraphGeneration.increment(graph.getBaseGraph());
         for (String key : vertex.getPropertyKeys()) {
-            index.remove(key, vertex.getProperty(key), vertex);
+            removeIndexEntry(index, vertex, type, key, vertex.getProperty(key));
         }
         vertex.remove();
     }
 
     @Override
     public void rebuildIndex() {
-        graph.getBaseGraph().dropIndex(INDEX_NAME);
-        Index<Vertex> index = graph.getBaseGraph().createIndex(INDEX_NAME, Vertex.class);
+        String indexName = getIndexName(graph.getBaseGraph());
+        dropIndex(graph.getBaseGraph(), indexName);
+        Index<Vertex> index = createIndex(graph.getBaseGraph(), indexName);
         // index vertices
         for (Vertex vertex : graph.getVertices()) {
             reindex(index, vertex);
         }
+        setIndexesSwapped(graph.getBaseGraph());
     }
 
-    private <E extends Element> void replaceProperties(Index<E> index, E item,
+    @Override
+    public void startIndexRebuild() {
+        IndexableGraph baseGraph = graph.getBaseGraph();
+        String newIndexName = getOtherIndexName(getIndexName(baseGraph));
+        // Discard anything left over from a previous, unfinished, rebuild.
+        if (baseGraph.getIndex(newIndexName, Vertex.class) != null) {
+            dropIndex(baseGraph, newIndexName);
+        }
+        createIndex(baseGraph, newIndexName);
+        setIndexesSwapped(baseGraph);
+    }
+
+    @Override
+    public void reindexVertex(Vertex vertex) {
+        IndexableGraph baseGraph = graph.getBaseGraph();
+        String newIndexName = getIndexNames(baseGraph).newIndex;
+        Index<Vertex> newIndex = newIndexName == null
+                ? null
+                : baseGraph.getIndex(newIndexName, Vertex.class);
+        if (newIndex != null) {
+            reindex(newIndex, vertex);
+        } else if (!Iterables.isEmpty(propertyKeysToIndex(vertex))) {
+            // Refresh the vertex's entries in the live index. Since this
+            // happens within a transaction, lookups by other transactions
+            // see either the old entries or the new ones.
+            Index<Vertex> index = getIndex();
+            removeIndexEntries(index, vertex);
+            reindex(index, vertex);
+        }
+    }
+
+    @Override
+    public void finishIndexRebuild() {
+        IndexableGraph baseGraph = graph.getBaseGraph();
+        String oldIndexName = getIndexName(baseGraph);
+        Preconditions.checkState(
+                baseGraph.getIndex(getOtherIndexName(oldIndexName), Vertex.class) != null,
+                "No index rebuild in progress");
+        if (oldIndexName.equals(INDEX_NAME)) {
+            baseGraph.createIndex(ALT_INDEX_MARKER, Vertex.class);
+        } else {
+            baseGraph.dropIndex(ALT_INDEX_MARKER);
+        }
+        dropIndex(baseGraph, oldIndexName);
+        setIndexesSwapped(baseGraph);
+    }
+
+    @Override
+    public void abortIndexRebuild() {
+        IndexableGraph baseGraph = graph.getBaseGraph();
+        String newIndexName = getOtherIndexName(getIndexName(baseGraph));
+        if (baseGraph.getIndex(newIndexName, Vertex.class) != null) {
+            dropIndex(baseGraph, newIndexName);
+            setIndexesSwapped(baseGraph);
+        }
+    }
+
+    @Override
+    public boolean indexesEachValue() {
+        IndexableGraph baseGraph = graph.getBaseGraph();
+        return baseGraph.getIndex(getIndexName(baseGraph) + VALUES_MARKER_SUFFIX,
+                Vertex.class) != null;
+    }
+
+    /**
+     * Get the name of the index currently used for lookups on the
+     * given graph. This alternates between two names each time the
+     * index is rebuilt with {@link #startIndexRebuild()} and
+     * {@link #finishIndexRebuild()}.
+     *
+     * @param graph an indexable graph
+     * @return the name of the live index
+     */
+    public static String getIndexName(IndexableGraph graph) {
+        return getIndexNames(graph).live;
+    }
+
+    private static IndexNames getIndexNames(IndexableGraph graph) {
+        Object store = GraphGeneration.getStore(graph);
+        IndexNames names = indexNames.getIfPresent(store);
+        if (names == null || names.swappedAt != IndexNames.SETTLED) {
+            // Until the transaction in which the indexes were swapped has
+            // ended, and the graph's generation moved on, we don't know if
+            // the swap was committed so the names are looked up each time.
+            if (names == null || names.swappedAt != GraphGeneration.get(graph)) {
+                names = lookupIndexNames(graph, IndexNames.SETTLED);
+                indexNames.put(store, names);
+            } else {
+                names = lookupIndexNames(graph, names.swappedAt);
+            }
+        }
+        return names;
+    }
+
+    private static IndexNames lookupIndexNames(IndexableGraph graph, long swappedAt) {
+        String live = graph.getIndex(ALT_INDEX_MARKER, Vertex.class) == null
+                ? INDEX_NAME
+                : ALT_INDEX_NAME;
+        String other = getOtherIndexName(live);
+        return new IndexNames(live,
+                graph.getIndex(other, Vertex.class) == null ? null : other,
+                graph.getIndex(live + TYPED_KEYS_MARKER_SUFFIX, Vertex.class) != null,
+                swappedAt);
+    }
+
+    private static void setIndexesSwapped(IndexableGraph graph) {
+        indexNames.put(GraphGeneration.getStore(graph),
+                lookupIndexNames(graph, GraphGeneration.get(graph)));
+    }
+
+    private static String getOtherIndexName(String indexName) {
+        return indexName.equals(INDEX_NAME) ? ALT_INDEX_NAME : INDEX_NAME;
+    }
+
+    /**
+     * Look up vertices for a set of distinct IDs. Missing IDs
+     * are simply absent from the returned map.
+     *
+     * Subclasses can override this to fetch the whole set in
+     * fewer index round-trips than one per ID.
+     *
+     * @param ids A collection of distinct string IDs
+     * @return A map of ID to vertex
+     */
+    protected Map<String, Vertex> getVerticesById(Collection<String> ids) {
+        Index<Vertex> index = getIndex();
+        Map<String, Vertex> vertices = Maps.newHashMapWithExpectedSize(ids.size());
+        for (String id : ids) {
+            CloseableIterable<Vertex> query = index.get(EntityType.ID_KEY, id);
+            try {
+                Iterator<Vertex> iterator = query.iterator();
+                if (iterator.hasNext()) {
+                    vertices.put(id, iterator.next());
+                }
+            } finally {
+                query.close();
+            }
+        }
+        return vertices;
+    }
+
+    private void replaceProperties(Index<Vertex> index, Vertex item,
             Map<String, ?> data, Collection<String> keys) {
         // remove 'old' properties
+        String type = getType(item);
         for (String key : item.getPropertyKeys()) {
             Object value = item.getProperty(key);
             if (!key.startsWith(METADATA_PREFIX)) {
                 item.removeProperty(key);
                 if (keys == null || keys.contains(key)) {
-                    index.remove(key, value, item);
+                    removeIndexEntry(index, item, type, key, value);
                 }
             }
         }
@@ -289,16 +531,17 @@ public class BlueprintsGraphManager<T extends IndexableGraph> implements GraphMa
         addProperties(index, item, data, keys);
     }
 
-    private <E extends Element> void addProperties(Index<E> index, E item,
+    private void addProperties(Index<Vertex> index, Vertex item,
             Map<String, ?> data, Collection<String> keys) {
         Preconditions.checkNotNull(data, "Data map cannot be null");
+        String type = getType(item);
         for (Map.Entry<String, ?> entry : data.entrySet()) {
             if (entry.getValue() == null)
                 continue;
             item.setProperty(entry.getKey(), entry.getValue());
             if (keys == null || keys.contains(entry.getKey()))
-                index.put(entry.getKey(), String.valueOf(entry.getValue()),
-                        item);
+                putIndexEntry(index, item, type, entry.getKey(),
+                        getIndexValue(entry.getValue()));
         }
     }
 
@@ -325,23 +568,130 @@ public class BlueprintsGraphManager<T extends IndexableGraph> implements GraphMa
     }
 
     private Index<Vertex> getIndex() {
-        Index<Vertex> index = graph.getBaseGraph().getIndex(INDEX_NAME,
-                Vertex.class);
+        IndexableGraph baseGraph = graph.getBaseGraph();
+        IndexNames names = getIndexNames(baseGraph);
+        Index<Vertex> index = baseGraph.getIndex(names.live, Vertex.class);
         if (index == null) {
-            index = graph.getBaseGraph().createIndex(INDEX_NAME, Vertex.class);
+            // The index may have been dropped since its name was cached.
+            indexNames.invalidate(GraphGeneration.getStore(baseGraph));
+            names = getIndexNames(baseGraph);
+            index = baseGraph.getIndex(names.live, Vertex.class);
+            if (index == null) {
+                index = createIndex(baseGraph, names.live);
+                setIndexesSwapped(baseGraph);
+            }
+        }
+        // If a new index is being built alongside the live one, changes
+        // must be made to both so the new one is up-to-date when swapped in.
+        Index<Vertex> newIndex = names.newIndex == null
+                ? null
+                : baseGraph.getIndex(names.newIndex, Vertex.class);
+        return newIndex == null ? index : new MirroredIndex(index, newIndex);
+    }
+
+    private Index<Vertex> createIndex(IndexableGraph graph, String indexName) {
+        Index<Vertex> index = graph.createIndex(indexName, Vertex.class);
+        createMarker(graph, indexName + VALUES_MARKER_SUFFIX);
+        if (useTypedIndexKeys()) {
+            createMarker(graph, indexName + TYPED_KEYS_MARKER_SUFFIX);
         }
         return index;
     }
 
+    private static void createMarker(IndexableGraph graph, String markerName) {
+        if (graph.getIndex(markerName, Vertex.class) == null) {
+            graph.createIndex(markerName, Vertex.class);
+        }
+    }
+
+    private static void dropIndex(IndexableGraph graph, String indexName) {
+        graph.dropIndex(indexName);
+        for (String suffix : new String[]{VALUES_MARKER_SUFFIX, TYPED_KEYS_MARKER_SUFFIX}) {
+            if (graph.getIndex(indexName + suffix, Vertex.class) != null) {
+                graph.dropIndex(indexName + suffix);
+            }
+        }
+    }
+
     private void reindex(Index<Vertex> index, Vertex vertex) {
+        String type = getType(vertex);
+        for (String key : propertyKeysToIndex(vertex)) {
+            Object val = vertex.getProperty(key);
+            if (val != null) {
+                putIndexEntry(index, vertex, type, key, val);
+            }
+        }
+    }
+
+    /**
+     * Whether indexed properties should additionally be stored under a
+     * composite type/key, allowing vertices of a given type to be looked
+     * up by property without filtering every match of that property.
+     * Implementations that can query on several keys at once do not
+     * need this.
+     *
+     * @return whether to maintain typed index keys
+     */
+    protected boolean useTypedIndexKeys() {
+        return true;
+    }
+
+    private void putIndexEntry(Index<Vertex> index, Vertex vertex, String type,
+            String key, Object value) {
+        index.put(key, value, vertex);
+        if (useTypedIndexKeys() && type != null && !key.equals(EntityType.TYPE_KEY)) {
+            index.put(getTypedKey(type, key), value, vertex);
+        }
+    }
+
+    private void removeIndexEntry(Index<Vertex> index, Vertex vertex, String type,
+            String key, Object value) {
+        index.remove(key, value, vertex);
+        if (useTypedIndexKeys() && type != null && !key.equals(EntityType.TYPE_KEY)) {
+            index.remove(getTypedKey(type, key), value, vertex);
+        }
+    }
+
+    /**
+     * Remove a vertex's entries from an index. Since Blueprints indexes
+     * can only remove entries by value, this removes those for the
+     * vertex's current property values; subclasses should override it
+     * if entries can be removed by vertex, so that those for values
+     * changed without updating the index are also removed.
+     *
+     * @param index  the index
+     * @param vertex the vertex
+     */
+    protected void removeIndexEntries(Index<Vertex> index, Vertex vertex) {
+        String type = getType(vertex);
         for (String key : propertyKeysToIndex(vertex)) {
             Object val = vertex.getProperty(key);
             if (val != null) {
-                index.put(key, val, vertex);
+                removeIndexEntry(index, vertex, type, key, val);
             }
         }
     }
 
+    /**
+     * Convert a property value to the form in which it is indexed.
+     * Multiple values are indexed individually, so a lookup finds
+     * vertices with any one of them.
+     */
+    private static Object getIndexValue(Object value) {
+        if (value instanceof Collection) {
+            List<String> values = Lists.newArrayList();
+            for (Object item : (Collection<?>) value) {
+                values.add(String.valueOf(item));
+            }
+            return values.toArray(new String[values.size()]);
+        }
+        return value.getClass().isArray() ? value : String.valueOf(value);
+    }
+
+    private static String getTypedKey(String type, String key) {
+        return type + TYPED_KEY_SEPARATOR + key;
+    }
+
     private static Iterable<String> propertyKeysToIndex(Vertex vertex) {
         String typeName = vertex.getProperty(EntityType.TYPE_KEY);
         try {
@@ -351,4 +701,78 @@ public class BlueprintsGraphManager<T extends IndexableGraph> implements GraphMa
             return new EmptyIterable<String>();
         }
     }
+
+    /**
+     * The name of the live index, and of the new index being built
+     * alongside it, if any.
+     */
+    private static class IndexNames {
+        private static final long SETTLED = -1L;
+
+        private final String live;
+        private final String newIndex;
+        // Whether the live index has typed keys for every vertex
+        private final boolean typedKeys;
+        // The graph generation at which the indexes were swapped,
+        // or SETTLED if that has since been committed or rolled back.
+        private final long swappedAt;
+
+        IndexNames(String live, String newIndex, boolean typedKeys, long swappedAt) {
+            this.live = live;
+            this.newIndex = newIndex;
+            this.typedKeys = typedKeys;
+            this.swappedAt = swappedAt;
+        }
+    }
+
+    /**
+     * An index which reads from the live index, and writes to both
+     * it and a new index that is under construction.
+     */
+    private static class MirroredIndex implements Index<Vertex> {
+        private final Index<Vertex> index;
+        private final Index<Vertex> newIndex;
+
+        MirroredIndex(Index<Vertex> index, Index<Vertex> newIndex) {
+            this.index = index;
+            this.newIndex = newIndex;
+        }
+
+        @Override
+        public String getIndexName() {
+            return index.getIndexName();
+        }
+
+        @Override
+        public Class<Vertex> getIndexClass() {
+            return index.getIndexClass();
+        }
+
+        @Override
+        public void put(String key, Object value, Vertex element) {
+            index.put(key, value, element);
+            newIndex.put(key, value, element);
+        }
+
+        @Override
+        public CloseableIterable<Vertex> get(String key, Object value) {
+            return index.get(key, value);
+        }
+
+        @Override
+        public CloseableIterable<Vertex> query(String key, Object query) {
+            return index.query(key, query);
+        }
+
+        @Override
+        public long count(String key, Object value) {
+            return index.count(key, value);
+        }
+
+        @Override
+        public void remove(String key, Object value, Vertex element) {
+            index.remove(key, value, element);
+            newIndex.remove(key, value, element);
+        }
+    }
 }
@@ -1,9 +1,15 @@
 package eu.ehri.project.core.impl;
 
+import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.tinkerpop.blueprints.CloseableIterable;
+import com.tinkerpop.blueprints.Index;
 import com.tinkerpop.blueprints.Vertex;
 import com.tinkerpop.blueprints.impls.neo4j.Neo4jGraph;
+import com.tinkerpop.blueprints.impls.neo4j.Neo4jIndex;
 import com.tinkerpop.blueprints.impls.neo4j.Neo4jVertex;
 import com.tinkerpop.blueprints.impls.neo4j.Neo4jVertexIterable;
 import com.tinkerpop.frames.FramedGraph;
@@ -11,11 +17,19 @@ import eu.ehri.project.core.GraphManager;
 import eu.ehri.project.exceptions.ItemNotFound;
 import eu.ehri.project.models.EntityClass;
 import eu.ehri.project.models.annotations.EntityType;
+import org.apache.lucene.index.Term;
 import org.apache.lucene.queryParser.QueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.TermQuery;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.index.IndexHits;
 import org.neo4j.graphdb.index.IndexManager;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 
 /**
@@ -60,9 +74,78 @@ public final class Neo4jGraphManager<T extends Neo4jGraph> extends BlueprintsGra
                 graph.getBaseGraph(), false);
     }
 
+    /**
+     * Prefix lookups are done with a Lucene prefix query, which,
+     * unlike one parsed from a query string, is not lower-cased.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public CloseableIterable<Vertex> getVerticesWithPrefix(String key, String prefix,
+            EntityClass type) {
+        BooleanQuery query = new BooleanQuery();
+        query.add(new PrefixQuery(new Term(key, prefix)), BooleanClause.Occur.MUST);
+        query.add(new TermQuery(new Term(EntityType.TYPE_KEY, type.getName())),
+                BooleanClause.Occur.MUST);
+        IndexHits<Node> rawQuery = getRawIndex().query(query);
+        return (CloseableIterable<Vertex>) new Neo4jVertexIterable(rawQuery,
+                graph.getBaseGraph(), false);
+    }
+
+    /**
+     * Typed lookups are done with a Lucene query over both the
+     * property key and the type key, so there is no need to
+     * maintain composite index keys.
+     */
+    @Override
+    protected boolean useTypedIndexKeys() {
+        return false;
+    }
+
+    /**
+     * Fetch vertices for a set of IDs with a single Lucene OR query,
+     * split into batches so as not to exceed Lucene's maximum
+     * boolean clause count.
+     */
+    @Override
+    protected Map<String, Vertex> getVerticesById(Collection<String> ids) {
+        Map<String, Vertex> vertices = Maps.newHashMapWithExpectedSize(ids.size());
+        for (List<String> batch : Iterables.partition(ids, BooleanQuery.getMaxClauseCount())) {
+            IndexHits<Node> rawQuery = getRawIndex().query(getLuceneQuery(EntityType.ID_KEY, batch));
+            try {
+                for (Node node : rawQuery) {
+                    vertices.put((String) node.getProperty(EntityType.ID_KEY),
+                            new Neo4jVertex(node, graph.getBaseGraph()));
+                }
+            } finally {
+                rawQuery.close();
+            }
+        }
+        return vertices;
+    }
+
+    /**
+     * Remove a vertex's entries from an index, including any that
+     * are for values the vertex no longer has.
+     *
+     * @param index  the index
+     * @param vertex the vertex
+     */
+    @Override
+    protected void removeIndexEntries(Index<Vertex> index, Vertex vertex) {
+        // NB: Removing the entries for current values first also starts
+        // a transaction, if necessary, which the raw index needs.
+        super.removeIndexEntries(index, vertex);
+        if (index instanceof Neo4jIndex) {
+            @SuppressWarnings("unchecked")
+            org.neo4j.graphdb.index.Index<Node> rawIndex
+                    = ((Neo4jIndex) index).getRawIndex();
+            rawIndex.remove((Node) ((Neo4jVertex) vertex).getRawVertex());
+        }
+    }
+
     private org.neo4j.graphdb.index.Index<Node> getRawIndex() {
         IndexManager index = graph.getBaseGraph().getRawGraph().index();
-        return index.forNodes(INDEX_NAME);
+        return index.forNodes(getIndexName(graph.getBaseGraph()));
     }
 
     private String getLuceneQuery(String key, Object value, String type) {
@@ -72,4 +155,13 @@ public final class Neo4jGraphManager<T extends Neo4jGraph> extends BlueprintsGra
                 QueryParser.escape(EntityType.TYPE_KEY),
                 QueryParser.escape(type));
     }
+
+    private String getLuceneQuery(String key, Iterable<String> values) {
+        List<String> terms = Lists.newArrayList();
+        for (String value : values) {
+            terms.add("\"" + QueryParser.escape(value) + "\"");
+        }
+        return String.format("%s:(%s)", QueryParser.escape(key),
+                Joiner.on(" OR ").join(terms));
+    }
 }
@@ -1,6 +1,7 @@
 package eu.ehri.project.models;
 
 import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Graph;
 import com.tinkerpop.blueprints.Vertex;
 import com.tinkerpop.frames.Adjacency;
 import com.tinkerpop.frames.modules.javahandler.JavaHandler;
@@ -15,6 +16,7 @@ import eu.ehri.project.models.annotations.Fetch;
 import eu.ehri.project.models.annotations.Meta;
 import eu.ehri.project.models.base.AbstractUnit;
 import eu.ehri.project.models.utils.JavaHandlerUtils;
+import eu.ehri.project.models.utils.TraversalUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -116,7 +118,7 @@ public interface DocumentaryUnit extends AbstractUnit {
         }
 
         public Iterable<DocumentaryUnit> getChildren() {
-            return frameVertices(gremlin().in(Ontology.DOC_IS_CHILD_OF));
+            return frameVertices(getChildVertices(g().getBaseGraph(), it(), false));
         }
 
         public void addChild(final DocumentaryUnit child) {
@@ -125,11 +127,22 @@ public interface DocumentaryUnit extends AbstractUnit {
         }
 
         public Iterable<DocumentaryUnit> getAllChildren() {
-            Pipeline<Vertex, Vertex> otherPipe = gremlin().as("n").in(Ontology.DOC_IS_CHILD_OF)
-                    .loop("n", JavaHandlerUtils.noopLoopFunc, JavaHandlerUtils.noopLoopFunc);
+            return frameVertices(getChildVertices(g().getBaseGraph(), it(), true));
+        }
 
-            return frameVertices(gremlin().in(Ontology.DOC_IS_CHILD_OF).cast(Vertex.class).copySplit(gremlin(), otherPipe)
-                    .fairMerge().cast(Vertex.class));
+        /**
+         * Get the vertices of a unit's children, as returned, framed,
+         * by {@link #getChildren()} and {@link #getAllChildren()}.
+         *
+         * @param graph the graph
+         * @param unit  a documentary unit vertex
+         * @param all   whether to include children at all lower levels
+         * @return an iterable of child vertices
+         */
+        public static Iterable<Vertex> getChildVertices(Graph graph, Vertex unit, boolean all) {
+            return all
+                    ? TraversalUtils.traverse(graph, unit, Direction.IN, Ontology.DOC_IS_CHILD_OF)
+                    : unit.getVertices(Direction.IN, Ontology.DOC_IS_CHILD_OF);
         }
 
 
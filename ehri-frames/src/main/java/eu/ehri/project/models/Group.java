@@ -19,6 +19,7 @@ import eu.ehri.project.models.base.IdentifiableEntity;
 import eu.ehri.project.models.base.ItemHolder;
 import eu.ehri.project.models.base.NamedEntity;
 import eu.ehri.project.models.base.PermissionScope;
+import eu.ehri.project.models.utils.GroupMembershipCache;
 import eu.ehri.project.models.utils.JavaHandlerUtils;
 
 /**
@@ -102,13 +103,18 @@ public interface Group extends Accessor, AccessibleEntity, IdentifiableEntity,
         }
 
         public void addMember(final Accessor accessor) {
-            JavaHandlerUtils.addUniqueRelationship(accessor.asVertex(), it(),
-                    Ontology.ACCESSOR_BELONGS_TO_GROUP);
+            if (JavaHandlerUtils.addUniqueRelationship(accessor.asVertex(), it(),
+                    Ontology.ACCESSOR_BELONGS_TO_GROUP)) {
+                // This changes the membership of everything in the accessor...
+                GroupMembershipCache.invalidate(g().getBaseGraph());
+            }
         }
 
         public void removeMember(final Accessor accessor) {
-            JavaHandlerUtils.removeAllRelationships(accessor.asVertex(),
-                    it(), Ontology.ACCESSOR_BELONGS_TO_GROUP);
+            if (JavaHandlerUtils.removeAllRelationships(accessor.asVertex(),
+                    it(), Ontology.ACCESSOR_BELONGS_TO_GROUP)) {
+                GroupMembershipCache.invalidate(g().getBaseGraph());
+            }
         }
 
         public Iterable<AccessibleEntity> getAllUserProfileMembers() {
@@ -1,11 +1,11 @@
 package eu.ehri.project.models;
 
 import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Graph;
 import com.tinkerpop.blueprints.Vertex;
 import com.tinkerpop.frames.Adjacency;
 import com.tinkerpop.frames.modules.javahandler.JavaHandler;
 import com.tinkerpop.frames.modules.javahandler.JavaHandlerContext;
-import com.tinkerpop.pipes.util.Pipeline;
 import eu.ehri.project.definitions.Ontology;
 import eu.ehri.project.models.annotations.EntityType;
 import eu.ehri.project.models.annotations.Fetch;
@@ -17,6 +17,7 @@ import eu.ehri.project.models.base.ItemHolder;
 import eu.ehri.project.models.base.PermissionScope;
 import eu.ehri.project.models.base.Watchable;
 import eu.ehri.project.models.utils.JavaHandlerUtils;
+import eu.ehri.project.models.utils.TraversalUtils;
 
 
 /**
@@ -102,12 +103,26 @@ public interface Repository extends AccessibleEntity, DescribedEntity,
         }
 
         public Iterable<DocumentaryUnit> getAllCollections() {
-            Pipeline<Vertex, Vertex> otherPipe = gremlin().as("n").in(Ontology.DOC_IS_CHILD_OF)
-                    .loop("n", JavaHandlerUtils.noopLoopFunc, JavaHandlerUtils.noopLoopFunc);
+            return frameVertices(getCollectionVertices(g().getBaseGraph(), it(), true));
+        }
 
-            return frameVertices(gremlin().in(Ontology.DOC_HELD_BY_REPOSITORY)
-                    .cast(Vertex.class).copySplit(gremlin(), otherPipe)
-                    .fairMerge().cast(Vertex.class));
+        /**
+         * Get the vertices of a repository's items, as returned, framed,
+         * by {@link #getCollections()} and {@link #getAllCollections()}.
+         *
+         * @param graph      the graph
+         * @param repository a repository vertex
+         * @param all        whether to include items at all levels
+         * @return an iterable of documentary unit vertices
+         */
+        public static Iterable<Vertex> getCollectionVertices(Graph graph, Vertex repository,
+                boolean all) {
+            // Top-level items are held by the repository, and
+            // their descendants are children of those items
+            return all
+                    ? TraversalUtils.traverse(graph, repository, Direction.IN,
+                            Ontology.DOC_HELD_BY_REPOSITORY, Ontology.DOC_IS_CHILD_OF)
+                    : repository.getVertices(Direction.IN, Ontology.DOC_HELD_BY_REPOSITORY);
         }
     }
 }
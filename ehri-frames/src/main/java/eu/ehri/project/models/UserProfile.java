@@ -5,6 +5,7 @@ import com.tinkerpop.blueprints.Vertex;
 import com.tinkerpop.frames.Adjacency;
 import com.tinkerpop.frames.modules.javahandler.JavaHandler;
 import com.tinkerpop.frames.modules.javahandler.JavaHandlerContext;
+import com.tinkerpop.gremlin.java.GremlinPipeline;
 import com.tinkerpop.pipes.PipeFunction;
 import eu.ehri.project.definitions.Entities;
 import eu.ehri.project.definitions.Ontology;
@@ -18,6 +19,7 @@ import eu.ehri.project.models.base.Annotator;
 import eu.ehri.project.models.base.IdentifiableEntity;
 import eu.ehri.project.models.base.NamedEntity;
 import eu.ehri.project.models.base.Watchable;
+import eu.ehri.project.models.utils.GroupMembershipCache;
 
 import static eu.ehri.project.definitions.Ontology.ACCESSOR_BELONGS_TO_GROUP;
 import static eu.ehri.project.definitions.Ontology.USER_FOLLOWS_USER;
@@ -261,9 +263,8 @@ public interface UserProfile extends Accessor, AccessibleEntity, IdentifiableEnt
 
         @Override
         public Iterable<UserProfile> coGroupMembers() {
-            return frameVertices(gremlin().as("n")
-                    .out(Ontology.ACCESSOR_BELONGS_TO_GROUP)
-                    .loop("n", defaultMaxLoops, noopLoopFunc)
+            return frameVertices(new GremlinPipeline<Vertex, Vertex>(
+                    GroupMembershipCache.getAncestors(g().getBaseGraph(), it()))
                     .in(Ontology.ACCESSOR_BELONGS_TO_GROUP).filter(new PipeFunction<Vertex, Boolean>() {
                         @Override
                         public Boolean compute(Vertex vertex) {
@@ -7,7 +7,6 @@ import com.tinkerpop.frames.Adjacency;
 import com.tinkerpop.frames.modules.javahandler.JavaHandler;
 import com.tinkerpop.frames.modules.javahandler.JavaHandlerContext;
 import com.tinkerpop.gremlin.java.GremlinPipeline;
-import com.tinkerpop.pipes.util.Pipeline;
 import eu.ehri.project.definitions.Ontology;
 import eu.ehri.project.models.annotations.EntityType;
 import eu.ehri.project.models.annotations.Fetch;
@@ -15,6 +14,7 @@ import eu.ehri.project.models.annotations.Meta;
 import eu.ehri.project.models.base.AbstractUnit;
 import eu.ehri.project.models.base.Accessor;
 import eu.ehri.project.models.utils.JavaHandlerUtils;
+import eu.ehri.project.models.utils.TraversalUtils;
 
 import static eu.ehri.project.models.utils.JavaHandlerUtils.addSingleRelationship;
 import static eu.ehri.project.models.utils.JavaHandlerUtils.addUniqueRelationship;
@@ -188,11 +188,8 @@ public interface VirtualUnit extends AbstractUnit {
         }
 
         public Iterable<VirtualUnit> getAllChildren() {
-            Pipeline<Vertex, Vertex> otherPipe = gremlin().as("n").in(Ontology.VC_IS_PART_OF)
-                    .loop("n", JavaHandlerUtils.noopLoopFunc, JavaHandlerUtils.noopLoopFunc);
-
-            return frameVertices(gremlin().in(Ontology.VC_IS_PART_OF).cast(Vertex.class).copySplit(gremlin(), otherPipe)
-                    .fairMerge().cast(Vertex.class));
+            return frameVertices(TraversalUtils.traverse(g().getBaseGraph(), it(), Direction.IN,
+                    Ontology.VC_IS_PART_OF));
         }
 
         public Iterable<VirtualUnit> getAncestors() {
@@ -10,6 +10,8 @@ import eu.ehri.project.definitions.Ontology;
 import eu.ehri.project.models.annotations.Fetch;
 import eu.ehri.project.models.events.SystemEvent;
 import eu.ehri.project.models.utils.JavaHandlerUtils;
+import eu.ehri.project.models.utils.PermissionScopeCache;
+import eu.ehri.project.models.utils.TraversalUtils;
 
 import static eu.ehri.project.models.utils.JavaHandlerUtils.addSingleRelationship;
 import static eu.ehri.project.models.utils.JavaHandlerUtils.addUniqueRelationship;
@@ -102,8 +104,16 @@ public interface AccessibleEntity extends PermissionGrantTarget, VersionedEntity
         }
 
         public void setPermissionScope(final PermissionScope scope) {
-            addSingleRelationship(it(), scope.asVertex(),
-                    Ontology.HAS_PERMISSION_SCOPE);
+            Vertex current = PermissionScopeCache.getParent(it());
+            if (addSingleRelationship(it(), scope.asVertex(),
+                    Ontology.HAS_PERMISSION_SCOPE) && (current != null
+                    || it().getVertices(Direction.IN, Ontology.HAS_PERMISSION_SCOPE)
+                            .iterator().hasNext())) {
+                // Moving an item, or giving a scope to one with items
+                // beneath it, invalidates their cached scope ancestry.
+                // (The item's own is checked against its parent.)
+                PermissionScopeCache.invalidate(g().getBaseGraph());
+            }
         }
 
         public SystemEvent getLatestEvent() {
@@ -114,14 +124,13 @@ public interface AccessibleEntity extends PermissionGrantTarget, VersionedEntity
         }
 
         public Iterable<PermissionScope> getPermissionScopes() {
-            return frameVertices(gremlin().as("n")
-                    .out(Ontology.HAS_PERMISSION_SCOPE)
-                    .loop("n", JavaHandlerUtils.defaultMaxLoops, JavaHandlerUtils.noopLoopFunc));
+            return frameVertices(PermissionScopeCache.getAncestors(g().getBaseGraph(), it()));
         }
 
         public Iterable<SystemEvent> getHistory() {
-            return frameVertices(gremlin().as("n").out(Ontology.ENTITY_HAS_LIFECYCLE_EVENT)
-                    .loop("n", JavaHandlerUtils.noopLoopFunc, JavaHandlerUtils.noopLoopFunc)
+            return frameVertices(new GremlinPipeline<Vertex, Vertex>(
+                    TraversalUtils.traverse(g().getBaseGraph(), it(), Direction.OUT,
+                            Ontology.ENTITY_HAS_LIFECYCLE_EVENT))
                     .out(Ontology.ENTITY_HAS_EVENT));
         }
 
@@ -8,7 +8,7 @@ import com.tinkerpop.frames.modules.javahandler.JavaHandlerContext;
 import eu.ehri.project.definitions.Ontology;
 import eu.ehri.project.models.Group;
 import eu.ehri.project.models.PermissionGrant;
-import eu.ehri.project.models.utils.JavaHandlerUtils;
+import eu.ehri.project.models.utils.GroupMembershipCache;
 
 /**
  * Interface frame representing an entity that can access
@@ -78,9 +78,7 @@ public interface Accessor extends IdentifiableEntity {
         }
 
         public Iterable<Accessor> getAllParents() {
-            return frameVertices(gremlin().as("n")
-                    .out(Ontology.ACCESSOR_BELONGS_TO_GROUP)
-                    .loop("n", JavaHandlerUtils.defaultMaxLoops, JavaHandlerUtils.noopLoopFunc));
+            return frameVertices(GroupMembershipCache.getAncestors(g().getBaseGraph(), it()));
         }
     }
 }
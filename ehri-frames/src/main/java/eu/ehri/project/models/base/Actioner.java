@@ -1,11 +1,13 @@
 package eu.ehri.project.models.base;
 
+import com.tinkerpop.blueprints.Direction;
 import com.tinkerpop.blueprints.Vertex;
 import com.tinkerpop.frames.modules.javahandler.JavaHandler;
 import com.tinkerpop.frames.modules.javahandler.JavaHandlerContext;
+import com.tinkerpop.gremlin.java.GremlinPipeline;
 import eu.ehri.project.definitions.Ontology;
 import eu.ehri.project.models.events.SystemEvent;
-import eu.ehri.project.models.utils.JavaHandlerUtils;
+import eu.ehri.project.models.utils.TraversalUtils;
 
 /**
  * Interface frame for an entity that can initiate an event
@@ -40,8 +42,9 @@ public interface Actioner extends NamedEntity {
         }
 
         public Iterable<SystemEvent> getActions() {
-            return frameVertices(gremlin().as("n").out(Ontology.ACTIONER_HAS_LIFECYCLE_ACTION)
-                    .loop("n", JavaHandlerUtils.noopLoopFunc, JavaHandlerUtils.noopLoopFunc)
+            return frameVertices(new GremlinPipeline<Vertex, Vertex>(
+                    TraversalUtils.traverse(g().getBaseGraph(), it(), Direction.OUT,
+                            Ontology.ACTIONER_HAS_LIFECYCLE_ACTION))
                     .out(Ontology.ACTION_HAS_EVENT));
         }
     }
@@ -6,10 +6,10 @@ import com.tinkerpop.blueprints.Vertex;
 import com.tinkerpop.frames.Adjacency;
 import com.tinkerpop.frames.modules.javahandler.JavaHandler;
 import com.tinkerpop.frames.modules.javahandler.JavaHandlerContext;
-import com.tinkerpop.pipes.PipeFunction;
 import eu.ehri.project.definitions.Ontology;
 import eu.ehri.project.models.PermissionGrant;
-import eu.ehri.project.models.utils.JavaHandlerUtils;
+import eu.ehri.project.models.utils.PermissionScopeCache;
+import eu.ehri.project.models.utils.TraversalUtils;
 
 import java.util.Collection;
 import java.util.List;
@@ -65,28 +65,20 @@ public interface PermissionScope extends IdentifiableEntity {
 
     abstract class Impl implements JavaHandlerContext<Vertex>, PermissionScope {
         public Iterable<AccessibleEntity> getAllContainedItems() {
-            return frameVertices(gremlin().as("n")
-                    .in(Ontology.HAS_PERMISSION_SCOPE)
-                    .loop("n", JavaHandlerUtils.noopLoopFunc, JavaHandlerUtils.noopLoopFunc));
+            return frameVertices(TraversalUtils.traverse(g().getBaseGraph(), it(), Direction.IN,
+                    Ontology.HAS_PERMISSION_SCOPE));
         }
 
         public Iterable<PermissionScope> getPermissionScopes() {
-            return frameVertices(gremlin().as("n")
-                    .out(Ontology.HAS_PERMISSION_SCOPE)
-                    .loop("n", JavaHandlerUtils.defaultMaxLoops, JavaHandlerUtils.noopLoopFunc));
+            return frameVertices(PermissionScopeCache.getAncestors(g().getBaseGraph(), it()));
         }
 
         public Collection<String> idPath() {
-            // Sigh - duplication...
-            List<String> pIds = Lists.reverse(gremlin().as("n")
-                    .out(Ontology.HAS_PERMISSION_SCOPE)
-                    .loop("n", JavaHandlerUtils.defaultMaxLoops, JavaHandlerUtils.noopLoopFunc)
-                    .transform(new PipeFunction<Vertex, String>() {
-                        @Override
-                        public String compute(Vertex vertex) {
-                            return vertex.getProperty(Ontology.IDENTIFIER_KEY);
-                        }
-                    }).toList());
+            List<String> pIds = Lists.newArrayList();
+            for (Vertex vertex : Lists.reverse(
+                    PermissionScopeCache.getAncestors(g().getBaseGraph(), it()))) {
+                pIds.add((String) vertex.getProperty(Ontology.IDENTIFIER_KEY));
+            }
             pIds.add((String) it().getProperty(Ontology.IDENTIFIER_KEY));
             return pIds;
         }
@@ -7,7 +7,7 @@ import com.tinkerpop.frames.modules.javahandler.JavaHandler;
 import com.tinkerpop.frames.modules.javahandler.JavaHandlerContext;
 import eu.ehri.project.definitions.Ontology;
 import eu.ehri.project.models.events.Version;
-import eu.ehri.project.models.utils.JavaHandlerUtils;
+import eu.ehri.project.models.utils.TraversalUtils;
 
 public interface VersionedEntity extends Frame {
     @Adjacency(label = Ontology.ENTITY_HAS_PRIOR_VERSION, direction = Direction.OUT)
@@ -24,8 +24,8 @@ public interface VersionedEntity extends Frame {
          * @return
          */
         public Iterable<Version> getAllPriorVersions() {
-            return frameVertices(gremlin().as("n").out(Ontology.ENTITY_HAS_PRIOR_VERSION)
-                    .loop("n", JavaHandlerUtils.noopLoopFunc, JavaHandlerUtils.noopLoopFunc));
+            return frameVertices(TraversalUtils.traverse(g().getBaseGraph(), it(), Direction.OUT,
+                    Ontology.ENTITY_HAS_PRIOR_VERSION));
         }
 
     }
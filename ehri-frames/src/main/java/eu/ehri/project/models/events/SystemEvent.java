@@ -1,14 +1,13 @@
 package eu.ehri.project.models.events;
 
+import com.google.common.base.Predicate;
+import com.google.common.collect.Iterables;
 import com.tinkerpop.blueprints.Direction;
 import com.tinkerpop.blueprints.Vertex;
 import com.tinkerpop.frames.Adjacency;
 import com.tinkerpop.frames.Property;
 import com.tinkerpop.frames.modules.javahandler.JavaHandler;
 import com.tinkerpop.frames.modules.javahandler.JavaHandlerContext;
-import com.tinkerpop.gremlin.java.GremlinPipeline;
-import com.tinkerpop.pipes.PipeFunction;
-import com.tinkerpop.pipes.branch.LoopPipe;
 import eu.ehri.project.definitions.EventTypes;
 import eu.ehri.project.definitions.Ontology;
 import eu.ehri.project.models.EntityClass;
@@ -20,7 +19,9 @@ import eu.ehri.project.models.base.AccessibleEntity;
 import eu.ehri.project.models.base.Actioner;
 import eu.ehri.project.models.base.Frame;
 import eu.ehri.project.models.base.ItemHolder;
-import eu.ehri.project.models.utils.JavaHandlerUtils;
+import eu.ehri.project.models.utils.TraversalUtils;
+
+import java.util.Iterator;
 
 /**
  * Frame class representing an event that happened in the
@@ -133,47 +134,39 @@ public interface SystemEvent extends AccessibleEntity {
 
         @Override
         public Iterable<AccessibleEntity> getSubjects() {
-            return frameVertices(gremlin().in(Ontology.ENTITY_HAS_EVENT)
-                    .as("n").in(Ontology.ENTITY_HAS_LIFECYCLE_EVENT)
-                    .loop("n", JavaHandlerUtils.noopLoopFunc, new PipeFunction<LoopPipe.LoopBundle<Vertex>, Boolean>() {
-                        @Override
-                        public Boolean compute(LoopPipe.LoopBundle<Vertex> vertexLoopBundle) {
-                            return isValidTarget(vertexLoopBundle.getObject());
-                        }
-                    }));
+            return frameVertices(traverseSubjects());
         }
 
         @Override
         public AccessibleEntity getFirstSubject() {
-            // Ugh: horrible code duplication is horrible - unfortunately
-            // just calling getSubjects() fails for an obscure reason to do
-            // with Frames not being thinking it has an iterable???
-            GremlinPipeline<Vertex,Vertex> subjects = gremlin().in(Ontology.ENTITY_HAS_EVENT)
-                    .as("n").in(Ontology.ENTITY_HAS_LIFECYCLE_EVENT)
-                    .loop("n", JavaHandlerUtils.noopLoopFunc, new PipeFunction<LoopPipe.LoopBundle<Vertex>, Boolean>() {
-                        @Override
-                        public Boolean compute(LoopPipe.LoopBundle<Vertex> vertexLoopBundle) {
-                            return isValidTarget(vertexLoopBundle.getObject());
-                        }
-                    });
-            return (AccessibleEntity)(subjects.iterator().hasNext()
-                ? frame(subjects.iterator().next())
-                : null);
+            Iterator<Vertex> subjects = traverseSubjects().iterator();
+            return (AccessibleEntity)(subjects.hasNext() ? frame(subjects.next()) : null);
         }
 
         @Override
         public Actioner getActioner() {
-            GremlinPipeline<Vertex, Vertex> actioners = gremlin().in(Ontology.ACTION_HAS_EVENT)
-                    .as("n").in(Ontology.ACTIONER_HAS_LIFECYCLE_ACTION)
-                    .loop("n", JavaHandlerUtils.noopLoopFunc, new PipeFunction<LoopPipe.LoopBundle<Vertex>, Boolean>() {
-                        @Override
-                        public Boolean compute(LoopPipe.LoopBundle<Vertex> vertexLoopBundle) {
-                            return isValidActioner(vertexLoopBundle.getObject());
-                        }
-                    });
-            return (Actioner)(actioners.iterator().hasNext()
-                    ? frame(actioners.iterator().next())
-                    : null);
+            Iterator<Vertex> actioners = Iterables.filter(TraversalUtils.traverseAll(g().getBaseGraph(),
+                    it().getVertices(Direction.IN, Ontology.ACTION_HAS_EVENT),
+                    Direction.IN, Ontology.ACTIONER_HAS_LIFECYCLE_ACTION), new Predicate<Vertex>() {
+                @Override
+                public boolean apply(Vertex vertex) {
+                    return isValidActioner(vertex);
+                }
+            }).iterator();
+            return (Actioner)(actioners.hasNext() ? frame(actioners.next()) : null);
+        }
+
+        // Subjects are found at the head of the lifecycle event
+        // chains which include this event
+        private Iterable<Vertex> traverseSubjects() {
+            return Iterables.filter(TraversalUtils.traverseAll(g().getBaseGraph(),
+                    it().getVertices(Direction.IN, Ontology.ENTITY_HAS_EVENT),
+                    Direction.IN, Ontology.ENTITY_HAS_LIFECYCLE_EVENT), new Predicate<Vertex>() {
+                @Override
+                public boolean apply(Vertex vertex) {
+                    return isValidTarget(vertex);
+                }
+            });
         }
 
         private boolean isValidActioner(Vertex vertex) {
@@ -0,0 +1,113 @@
+package eu.ehri.project.models.utils;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.tinkerpop.blueprints.Graph;
+import eu.ehri.project.core.GraphGeneration;
+
+/**
+ * A cache of values read from graphs that are only changed by particular
+ * operations, held separately for each graph's data store so that it
+ * outlives graph instances, e.g. those created for each REST request.
+ * <p/>
+ * Values are only returned until a transaction on the graph's data store
+ * is committed or rolled back, as counted by
+ * {@link GraphGeneration#getTransactions}, which for Neo4j includes
+ * transactions made through any API or graph instance. They therefore
+ * survive writes within a long-running transaction such as an import. The operations that change cached values must invalidate the
+ * cache, after which nothing is cached until a transaction has ended,
+ * since until the change is committed other transactions do not see it.
+ *
+ * @author Mike Bryant (http://github.com/mikesname)
+ */
+final class GenerationCache<V> {
+
+    private static final long NONE = -1L;
+
+    private static final class Entry<V> {
+        private final long transactions;
+        private final V value;
+
+        private Entry(long transactions, V value) {
+            this.transactions = transactions;
+            this.value = value;
+        }
+    }
+
+    private static final class Store<V> {
+        private final Cache<Object, Entry<V>> entries;
+        private volatile long changedAt = NONE;
+
+        private Store(Cache<Object, Entry<V>> entries) {
+            this.entries = entries;
+        }
+    }
+
+    // NB: Store keys are weak and therefore compared by identity.
+    private final LoadingCache<Object, Store<V>> stores;
+
+    GenerationCache(final int maxSize) {
+        stores = CacheBuilder.newBuilder()
+                .weakKeys()
+                .build(new CacheLoader<Object, Store<V>>() {
+                    @Override
+                    public Store<V> load(Object store) {
+                        return new Store<V>(CacheBuilder.newBuilder()
+                                .maximumSize(maxSize)
+                                .<Object, Entry<V>>build());
+                    }
+                });
+    }
+
+    /**
+     * Get a cached value.
+     *
+     * @param graph        the graph
+     * @param key          the key
+     * @param transactions the graph's current transaction count
+     * @return the value, or null if none is cached
+     */
+    V get(Graph graph, Object key, long transactions) {
+        Store<V> store = stores.getUnchecked(GraphGeneration.getStore(graph));
+        if (store.changedAt == transactions) {
+            return null;
+        }
+        Entry<V> entry = store.entries.getIfPresent(key);
+        if (entry != null && entry.transactions != transactions) {
+            store.entries.invalidate(key);
+            return null;
+        }
+        return entry == null ? null : entry.value;
+    }
+
+    /**
+     * Cache a value.
+     *
+     * @param graph        the graph
+     * @param key          the key
+     * @param transactions the graph's transaction count before the
+     *                     value was read
+     * @param value        the value
+     */
+    void put(Graph graph, Object key, long transactions, V value) {
+        Store<V> store = stores.getUnchecked(GraphGeneration.getStore(graph));
+        if (store.changedAt != transactions
+                && transactions == GraphGeneration.getTransactions(graph)) {
+            store.entries.put(key, new Entry<V>(transactions, value));
+        }
+    }
+
+    /**
+     * Discard all cached values for the given graph, and cache no
+     * more until a transaction on it has ended.
+     *
+     * @param graph the graph
+     */
+    void invalidate(Graph graph) {
+        Store<V> store = stores.getUnchecked(GraphGeneration.getStore(graph));
+        store.changedAt = GraphGeneration.getTransactions(graph);
+        store.entries.invalidateAll();
+    }
+}
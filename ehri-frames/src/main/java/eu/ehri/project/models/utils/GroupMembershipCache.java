@@ -0,0 +1,161 @@
+package eu.ehri.project.models.utils;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import eu.ehri.project.core.GraphGeneration;
+import eu.ehri.project.definitions.Ontology;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A cache of the transitive group membership of accessors, i.e. the
+ * set of vertices reached by following {@link Ontology#ACCESSOR_BELONGS_TO_GROUP}
+ * relationships outwards to any depth.
+ * <p/>
+ * Closures are cached separately for each graph's data store, by vertex
+ * ID, and are built from the cached closures of the groups they
+ * contain, so once a hierarchy has been seen ancestor sets and
+ * membership checks cost a hash lookup plus reading the vertex's
+ * own membership relationships. A cached closure is only used until a
+ * transaction on the graph's data store is committed or rolled back,
+ * by whatever means it was written, and while the
+ * vertex's immediate groups are the same. Since changing a group's
+ * membership also changes the closure of all its members, the cache
+ * must be invalidated when that happens, after which nothing is cached
+ * until a transaction has ended (see {@link GenerationCache}.)
+ *
+ * @author Mike Bryant (http://github.com/mikesname)
+ */
+public final class GroupMembershipCache {
+
+    public static final int MAX_CACHED_VERTICES = 100000;
+
+    private static final GenerationCache<Closure> cache
+            = new GenerationCache<Closure>(MAX_CACHED_VERTICES);
+
+    private static final class Closure {
+        private final Set<Object> parents;
+        private final Set<Object> ancestors;
+
+        private Closure(Set<Object> parents, Set<Object> ancestors) {
+            this.parents = parents;
+            this.ancestors = ancestors;
+        }
+    }
+
+    private GroupMembershipCache() {
+    }
+
+    /**
+     * Get the groups to which a vertex belongs, to all depths.
+     *
+     * @param graph  the graph
+     * @param vertex a user or group vertex
+     * @return a list of group vertices
+     */
+    public static List<Vertex> getAncestors(Graph graph, Vertex vertex) {
+        Set<Object> ids = getAncestorIds(graph, vertex);
+        List<Vertex> ancestors = Lists.newArrayListWithCapacity(ids.size());
+        for (Object id : ids) {
+            Vertex ancestor = graph.getVertex(id);
+            if (ancestor == null) {
+                // A group has been deleted, so start afresh
+                invalidate(graph);
+                return getAncestors(graph, vertex);
+            }
+            ancestors.add(ancestor);
+        }
+        return ancestors;
+    }
+
+    /**
+     * Get the IDs of the groups to which a vertex belongs,
+     * to all depths.
+     *
+     * @param graph  the graph
+     * @param vertex a user or group vertex
+     * @return an immutable set of vertex IDs
+     */
+    public static Set<Object> getAncestorIds(Graph graph, Vertex vertex) {
+        return getClosure(graph, GraphGeneration.getTransactions(graph), vertex).ancestors;
+    }
+
+    /**
+     * Determine if a vertex belongs to a group, either directly or
+     * via membership of other groups.
+     *
+     * @param graph  the graph
+     * @param vertex a user or group vertex
+     * @param group  a group vertex
+     * @return whether the vertex is a member of the group
+     */
+    public static boolean isMemberOf(Graph graph, Vertex vertex, Vertex group) {
+        return getAncestorIds(graph, vertex).contains(group.getId());
+    }
+
+    /**
+     * Discard all cached membership for the given graph.
+     *
+     * @param graph the graph
+     */
+    public static void invalidate(Graph graph) {
+        cache.invalidate(graph);
+    }
+
+    private static List<Vertex> getParents(Vertex vertex) {
+        return Lists.newArrayList(
+                vertex.getVertices(Direction.OUT, Ontology.ACCESSOR_BELONGS_TO_GROUP));
+    }
+
+    private static Set<Object> getIds(List<Vertex> vertices) {
+        Set<Object> ids = Sets.newLinkedHashSet();
+        for (Vertex vertex : vertices) {
+            ids.add(vertex.getId());
+        }
+        return ids;
+    }
+
+    private static Closure getValidClosure(Graph graph, long transactions, Vertex vertex,
+            Set<Object> parents) {
+        Closure cached = cache.get(graph, vertex.getId(), transactions);
+        return cached != null && cached.parents.equals(parents) ? cached : null;
+    }
+
+    private static Closure getClosure(Graph graph, long transactions, Vertex vertex) {
+        List<Vertex> parents = getParents(vertex);
+        Set<Object> parentIds = getIds(parents);
+        Closure cached = getValidClosure(graph, transactions, vertex, parentIds);
+        if (cached != null) {
+            return cached;
+        }
+
+        // Breadth-first search which stops at any group whose
+        // closure is already known. Since cached closures are
+        // complete this is safe even if there are cycles.
+        Set<Object> ancestors = Sets.newLinkedHashSet();
+        LinkedList<Vertex> queue = Lists.newLinkedList(parents);
+        while (!queue.isEmpty()) {
+            Vertex group = queue.removeFirst();
+            if (!ancestors.add(group.getId())) {
+                continue;
+            }
+            List<Vertex> groupParents = getParents(group);
+            Closure known = getValidClosure(graph, transactions, group, getIds(groupParents));
+            if (known != null) {
+                ancestors.addAll(known.ancestors);
+            } else {
+                queue.addAll(groupParents);
+            }
+        }
+        Closure closure = new Closure(ImmutableSet.copyOf(parentIds),
+                ImmutableSet.copyOf(ancestors));
+        cache.put(graph, vertex.getId(), transactions, closure);
+        return closure;
+    }
+}
@@ -0,0 +1,106 @@
+package eu.ehri.project.models.utils;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import eu.ehri.project.core.GraphGeneration;
+import eu.ehri.project.definitions.Ontology;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A cache of the permission scope ancestry of vertices, i.e. the
+ * chain of vertices reached by following {@link Ontology#HAS_PERMISSION_SCOPE}
+ * relationships outwards, nearest first.
+ * <p/>
+ * Ancestries are cached separately for each graph's data store, by
+ * vertex ID. A cached ancestry is only used until a transaction on the
+ * graph's data store is committed or rolled back, including one made
+ * through another API such as Cypher, so that ancestors moved by any
+ * means are seen, and while its first entry is still
+ * the vertex's immediate parent scope. Since moving an item to another
+ * scope also changes the ancestry of everything beneath it, the cache
+ * must be invalidated when that happens, after which nothing is cached
+ * until a transaction has ended (see {@link GenerationCache}.)
+ *
+ * @author Mike Bryant (http://github.com/mikesname)
+ */
+public final class PermissionScopeCache {
+
+    public static final int MAX_CACHED_VERTICES = 100000;
+
+    private static final GenerationCache<List<Object>> cache
+            = new GenerationCache<List<Object>>(MAX_CACHED_VERTICES);
+
+    private PermissionScopeCache() {
+    }
+
+    /**
+     * Get the permission scope ancestors of a vertex, nearest first.
+     *
+     * @param graph  the graph
+     * @param vertex the vertex
+     * @return a list of ancestor vertices
+     */
+    public static List<Vertex> getAncestors(Graph graph, Vertex vertex) {
+        List<Object> ids = getAncestorIds(graph, GraphGeneration.getTransactions(graph), vertex, 0);
+        List<Vertex> ancestors = Lists.newArrayListWithCapacity(ids.size());
+        for (Object id : ids) {
+            Vertex ancestor = graph.getVertex(id);
+            if (ancestor == null) {
+                // An ancestor has been deleted, so start afresh
+                invalidate(graph);
+                return getAncestors(graph, vertex);
+            }
+            ancestors.add(ancestor);
+        }
+        return ancestors;
+    }
+
+    /**
+     * Discard all cached ancestries for the given graph.
+     *
+     * @param graph the graph
+     */
+    public static void invalidate(Graph graph) {
+        cache.invalidate(graph);
+    }
+
+    /**
+     * Get the immediate permission scope of a vertex.
+     *
+     * @param vertex the vertex
+     * @return the parent scope vertex, or null
+     */
+    public static Vertex getParent(Vertex vertex) {
+        Iterator<Vertex> parents = vertex
+                .getVertices(Direction.OUT, Ontology.HAS_PERMISSION_SCOPE).iterator();
+        return parents.hasNext() ? parents.next() : null;
+    }
+
+    private static List<Object> getAncestorIds(Graph graph, long transactions,
+            Vertex vertex, int depth) {
+        Vertex parent = getParent(vertex);
+        List<Object> cached = cache.get(graph, vertex.getId(), transactions);
+        if (cached != null && (parent == null
+                ? cached.isEmpty()
+                : !cached.isEmpty() && cached.get(0).equals(parent.getId()))) {
+            return cached;
+        }
+
+        List<Object> ancestors;
+        if (parent == null || depth >= JavaHandlerUtils.LOOP_MAX) {
+            ancestors = ImmutableList.of();
+        } else {
+            ancestors = ImmutableList.builder()
+                    .add(parent.getId())
+                    .addAll(getAncestorIds(graph, transactions, parent, depth + 1))
+                    .build();
+        }
+        cache.put(graph, vertex.getId(), transactions, ancestors);
+        return ancestors;
+    }
+}
@@ -0,0 +1,139 @@
+package eu.ehri.project.models.utils;
+
+import com.google.common.base.Function;
+import com.google.common.base.Joiner;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Maps;
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.neo4j.Neo4jGraph;
+import com.tinkerpop.blueprints.impls.neo4j.Neo4jVertex;
+import com.tinkerpop.gremlin.java.GremlinPipeline;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.traversal.Evaluators;
+import org.neo4j.graphdb.traversal.TraversalDescription;
+import org.neo4j.kernel.Traversal;
+import org.neo4j.kernel.Uniqueness;
+
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Helpers for walking relationships of one or more types to all
+ * depths, as used by many of the model's {@code @JavaHandler} methods.
+ * <p/>
+ * When the graph is a Neo4j graph the walk is done with a Neo4j
+ * traversal, which iterates relationships directly rather than via
+ * a Gremlin loop pipeline. Otherwise an equivalent Gremlin pipeline
+ * is used. In both cases the results are lazy, do not include the
+ * starting vertex, and contain each vertex only once. Along a single
+ * chain of relationships they are in order, nearest first.
+ *
+ * @author Mike Bryant (http://github.com/mikesname)
+ */
+public final class TraversalUtils {
+
+    // Traversal descriptions are immutable, so one is
+    // shared for each combination of direction and labels.
+    private static final ConcurrentMap<String, TraversalDescription> descriptions
+            = Maps.newConcurrentMap();
+
+    private TraversalUtils() {
+    }
+
+    /**
+     * Get all vertices reachable from a vertex by following
+     * relationships with the given labels in the given direction.
+     *
+     * @param graph     the graph
+     * @param vertex    the starting vertex
+     * @param direction the direction of the relationships
+     * @param labels    the relationship labels
+     * @return an iterable of vertices
+     */
+    public static Iterable<Vertex> traverse(Graph graph, Vertex vertex,
+            Direction direction, String... labels) {
+        if (graph instanceof Neo4jGraph && vertex instanceof Neo4jVertex) {
+            return traverseNeo4j((Neo4jGraph) graph, (Neo4jVertex) vertex, direction, labels);
+        }
+        return traverseGremlin(vertex, direction, labels);
+    }
+
+    /**
+     * Get all vertices reachable from any of the given vertices
+     * by following relationships with the given labels in the
+     * given direction.
+     *
+     * @param graph     the graph
+     * @param vertices  the starting vertices
+     * @param direction the direction of the relationships
+     * @param labels    the relationship labels
+     * @return an iterable of vertices
+     */
+    public static Iterable<Vertex> traverseAll(final Graph graph, Iterable<Vertex> vertices,
+            final Direction direction, final String... labels) {
+        return Iterables.concat(Iterables.transform(vertices, new Function<Vertex, Iterable<Vertex>>() {
+            @Override
+            public Iterable<Vertex> apply(Vertex vertex) {
+                return traverse(graph, vertex, direction, labels);
+            }
+        }));
+    }
+
+    static Iterable<Vertex> traverseNeo4j(final Neo4jGraph graph, Neo4jVertex vertex,
+            Direction direction, String... labels) {
+        Iterable<Node> nodes = getDescription(direction, labels)
+                .traverse(vertex.getRawVertex()).nodes();
+        return Iterables.transform(nodes, new Function<Node, Vertex>() {
+            @Override
+            public Vertex apply(Node node) {
+                return new Neo4jVertex(node, graph);
+            }
+        });
+    }
+
+    static Iterable<Vertex> traverseGremlin(Vertex vertex, Direction direction, String... labels) {
+        GremlinPipeline<Vertex, Vertex> pipe = new GremlinPipeline<Vertex, Vertex>(vertex).as("n");
+        switch (direction) {
+            case IN:
+                pipe = pipe.in(labels);
+                break;
+            case OUT:
+                pipe = pipe.out(labels);
+                break;
+            default:
+                pipe = pipe.both(labels);
+        }
+        return pipe.loop("n", JavaHandlerUtils.noopLoopFunc, JavaHandlerUtils.noopLoopFunc)
+                .dedup();
+    }
+
+    private static TraversalDescription getDescription(Direction direction, String... labels) {
+        String key = direction + ":" + Joiner.on(',').join(labels);
+        TraversalDescription description = descriptions.get(key);
+        if (description == null) {
+            description = Traversal.description()
+                    .breadthFirst()
+                    .uniqueness(Uniqueness.NODE_GLOBAL)
+                    .evaluator(Evaluators.excludeStartPosition());
+            for (String label : labels) {
+                description = description.relationships(
+                        DynamicRelationshipType.withName(label), toNeo4jDirection(direction));
+            }
+            descriptions.putIfAbsent(key, description);
+        }
+        return description;
+    }
+
+    private static org.neo4j.graphdb.Direction toNeo4jDirection(Direction direction) {
+        switch (direction) {
+            case IN:
+                return org.neo4j.graphdb.Direction.INCOMING;
+            case OUT:
+                return org.neo4j.graphdb.Direction.OUTGOING;
+            default:
+                return org.neo4j.graphdb.Direction.BOTH;
+        }
+    }
+}
@@ -554,6 +554,17 @@ public final class Bundle {
         return DataConverter.streamToBundle(stream);
     }
 
+    /**
+     * Create a bundle from a stream containing Smile binary JSON data.
+     *
+     * @param stream A Smile stream
+     * @return A bundle
+     * @throws DeserializationError
+     */
+    public static Bundle fromSmileStream(InputStream stream) throws DeserializationError {
+        return DataConverter.smileStreamToBundle(stream);
+    }
+
     @Override
     public String toString() {
         return "<" + getType() + ": '" + (id == null ? "?" : id) + "'> (" + getData() + " + Rels: " + relations + ")";
@@ -572,6 +583,16 @@ public final class Bundle {
         }
     }
 
+    /**
+     * Serialize a bundle to Smile binary JSON.
+     *
+     * @return Smile-encoded bytes
+     * @throws SerializationError
+     */
+    public byte[] toSmile() throws SerializationError {
+        return DataConverter.bundleToSmile(this);
+    }
+
     /**
      * Serialize a bundle to a JSON string.
      *
@@ -10,6 +10,8 @@ import eu.ehri.project.models.EntityClass;
 import eu.ehri.project.persistence.utils.DataUtils;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.map.ObjectWriter;
+import org.codehaus.jackson.smile.SmileFactory;
+import org.codehaus.jackson.smile.SmileGenerator;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
@@ -35,6 +37,26 @@ import java.util.Map.Entry;
 class DataConverter {
 
     private static ObjectMapper mapper = new ObjectMapper();
+    private static final SmileFactory smileFactory = createSmileFactory();
+    private static ObjectMapper smileMapper = new ObjectMapper(smileFactory);
+
+    // Since bundles repeat the same keys and type names many times
+    // over, Smile writes these once and back-references them.
+    private static SmileFactory createSmileFactory() {
+        SmileFactory factory = new SmileFactory();
+        factory.configure(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES, true);
+        return factory;
+    }
+
+    /**
+     * Get the factory with which bundle data is read and written
+     * as Smile binary JSON.
+     *
+     * @return A Smile factory
+     */
+    static SmileFactory getSmileFactory() {
+        return smileFactory;
+    }
 
     /**
      * Convert an error set to a generic data structure.
@@ -127,6 +149,38 @@ class DataConverter {
         }
     }
 
+    /**
+     * Convert a bundle to Smile binary JSON.
+     *
+     * @param bundle The bundle
+     * @return The Smile-encoded bundle data
+     * @throws SerializationError
+     */
+    public static byte[] bundleToSmile(Bundle bundle) throws SerializationError {
+        try {
+            return smileMapper.writeValueAsBytes(bundleToData(bundle));
+        } catch (Exception e) {
+            throw new SerializationError("Error writing bundle to Smile", e);
+        }
+    }
+
+    /**
+     * Convert some Smile binary JSON into an EntityBundle.
+     *
+     * @param inputStream An input stream containing Smile data representing the bundle
+     * @return The bundle
+     * @throws DeserializationError
+     */
+    public static Bundle smileStreamToBundle(InputStream inputStream) throws DeserializationError {
+        try {
+            return dataToBundle(smileMapper.readValue(inputStream, Map.class));
+        } catch (DeserializationError e) {
+            throw e;
+        } catch (Exception e) {
+            throw new DeserializationError("Error decoding Smile", e);
+        }
+    }
+
     /**
      * Convert some JSON into an EntityBundle.
      *
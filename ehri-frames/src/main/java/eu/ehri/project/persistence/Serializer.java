@@ -14,6 +14,7 @@ import eu.ehri.project.models.annotations.EntityType;
 import eu.ehri.project.models.annotations.Fetch;
 import eu.ehri.project.models.base.Frame;
 import eu.ehri.project.models.utils.ClassUtils;
+import org.codehaus.jackson.smile.SmileFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.w3c.dom.Document;
@@ -252,6 +253,40 @@ public final class Serializer {
         return DataConverter.bundleToJson(vertexFrameToBundle(item));
     }
 
+    /**
+     * Serialise a vertex frame to Smile binary JSON.
+     *
+     * @param item The framed item
+     * @return Smile-encoded bytes
+     * @throws SerializationError
+     */
+    public <T extends Frame> byte[] vertexFrameToSmile(T item)
+            throws SerializationError {
+        return DataConverter.bundleToSmile(vertexFrameToBundle(item));
+    }
+
+    /**
+     * Serialise a vertex to Smile binary JSON.
+     *
+     * @param item The item vertex
+     * @return Smile-encoded bytes
+     * @throws SerializationError
+     */
+    public byte[] vertexToSmile(Vertex item)
+            throws SerializationError {
+        return DataConverter.bundleToSmile(vertexFrameToBundle(item));
+    }
+
+    /**
+     * Get the factory used to encode items as Smile binary JSON, for
+     * streaming items in the same format.
+     *
+     * @return A Smile factory
+     */
+    public static SmileFactory getSmileFactory() {
+        return DataConverter.getSmileFactory();
+    }
+
     /**
      * Serialise a vertex frame to XML.
      *
@@ -1,15 +1,28 @@
 package eu.ehri.project.tools;
 
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import com.tinkerpop.blueprints.CloseableIterable;
+import com.tinkerpop.blueprints.TransactionalGraph;
 import com.tinkerpop.blueprints.Vertex;
 import com.tinkerpop.frames.FramedGraph;
 import eu.ehri.project.core.GraphManager;
 import eu.ehri.project.core.GraphManagerFactory;
+import eu.ehri.project.exceptions.ItemNotFound;
 import eu.ehri.project.models.EntityClass;
 import eu.ehri.project.models.annotations.EntityType;
+import eu.ehri.project.models.utils.ClassUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -21,14 +34,111 @@ import java.util.regex.Pattern;
  * with mutating Cypher but that's an even sharper tool. The purpose
  * here is to formalise some very common operations with specific
  * checks in place.
+ * <p/>
+ * Where the property in question is indexed for the given item class,
+ * candidate items are selected via the index rather than by checking
+ * every item of the class. This requires an index with an entry for each
+ * value of multi-valued properties: an index created by an earlier version
+ * holds only their string form, and until it is rebuilt (for example with
+ * the <code>reindex</code> command) every item of the class is checked
+ * instead. By default changes are made in the caller's
+ * transaction; given a batch size they are instead made by a number of
+ * worker threads, each committing after every batch of items. In dry-run
+ * mode no changes are made, but the affected items are still counted
+ * and reported to the change listener.
  *
  * @author Mike Bryant (http://github.com/mikesname)
  */
 public class FindReplace {
+
+    private static final Logger logger = LoggerFactory.getLogger(FindReplace.class);
+
+    /**
+     * Receives the IDs of items that are (or, in dry-run
+     * mode, would be) changed.
+     * <p/>
+     * NB: When changes are made in batches the listener will
+     * be called from several threads.
+     */
+    public interface ChangeListener {
+        public void changed(String id);
+    }
+
+    private static final ChangeListener noOpListener = new ChangeListener() {
+        @Override
+        public void changed(String id) {
+        }
+    };
+
+    // Regex metacharacters which end a pattern's literal prefix.
+    private static final String REGEX_META = "\\^$.|?*+()[]{}";
+
+    private final FramedGraph<?> graph;
     private final GraphManager manager;
+    private final int batchSize;
+    private final int threads;
+    private final boolean dryRun;
+    private final ChangeListener listener;
 
     public FindReplace(FramedGraph<?> graph) {
+        this(graph, 0, Runtime.getRuntime().availableProcessors(), false, noOpListener);
+    }
+
+    private FindReplace(FramedGraph<?> graph, int batchSize, int threads,
+            boolean dryRun, ChangeListener listener) {
+        Preconditions.checkArgument(batchSize >= 0, "Batch size cannot be negative");
+        Preconditions.checkArgument(threads > 0, "Number of threads must be positive");
+        Preconditions.checkArgument(batchSize == 0
+                || graph.getBaseGraph() instanceof TransactionalGraph,
+                "Batched changes require a transactional graph");
+        this.graph = graph;
         this.manager = GraphManagerFactory.getInstance(graph);
+        this.batchSize = batchSize;
+        this.threads = threads;
+        this.dryRun = dryRun;
+        this.listener = listener;
+    }
+
+    /**
+     * Make changes in batches of the given size, committing after
+     * each one. A batch size of zero (the default) means changes
+     * are made in the caller's transaction.
+     *
+     * @param batchSize the number of items per transaction
+     * @return a new FindReplace
+     */
+    public FindReplace withBatchSize(int batchSize) {
+        return new FindReplace(graph, batchSize, threads, dryRun, listener);
+    }
+
+    /**
+     * Set the number of threads making batched changes.
+     *
+     * @param threads the number of worker threads
+     * @return a new FindReplace
+     */
+    public FindReplace withThreads(int threads) {
+        return new FindReplace(graph, batchSize, threads, dryRun, listener);
+    }
+
+    /**
+     * Find the items that would be changed, without changing them.
+     *
+     * @param dryRun whether to make any changes
+     * @return a new FindReplace
+     */
+    public FindReplace withDryRun(boolean dryRun) {
+        return new FindReplace(graph, batchSize, threads, dryRun, listener);
+    }
+
+    /**
+     * Notify a listener of the ID of each item changed.
+     *
+     * @param listener a change listener
+     * @return a new FindReplace
+     */
+    public FindReplace withChangeListener(ChangeListener listener) {
+        return new FindReplace(graph, batchSize, threads, dryRun, listener);
     }
 
     /**
@@ -41,32 +151,34 @@ public class FindReplace {
      * @param newValue      the new value
      * @return the number of items changed
      */
-    public long propertyValue(EntityClass entityClass, String propertyName,
-            String existingValue, String newValue) {
+    public long propertyValue(EntityClass entityClass, final String propertyName,
+            final String existingValue, final String newValue) {
         checkLegalPropertyName(propertyName);
-        CloseableIterable<Vertex> vertices = manager.getVertices(entityClass);
-        try {
-            long changes = 0L;
-            for (Vertex v : vertices) {
+        CloseableIterable<Vertex> vertices = isIndexed(entityClass, propertyName)
+                ? manager.getVertices(propertyName, existingValue, entityClass)
+                : manager.getVertices(entityClass);
+        return apply(vertices, new Change() {
+            @Override
+            public int apply(Vertex v, boolean commit) {
                 Object current = v.getProperty(propertyName);
                 if (current instanceof List) {
                     List<String> stringList = v.getProperty(propertyName);
                     int valuesChanged = replaceInList(stringList, existingValue, newValue);
-                    if (valuesChanged > 0) {
-                        changes += valuesChanged;
+                    if (valuesChanged > 0 && commit) {
                         manager.setProperty(v, propertyName, stringList.toArray(new String[stringList.size()]));
                     }
+                    return valuesChanged;
                 } else if (current instanceof String) {
                     if (existingValue.equals(current)) {
-                        changes++;
-                        manager.setProperty(v, propertyName, newValue);
+                        if (commit) {
+                            manager.setProperty(v, propertyName, newValue);
+                        }
+                        return 1;
                     }
                 }
+                return 0;
             }
-            return changes;
-        } finally {
-            vertices.close();
-        }
+        });
     }
 
     /**
@@ -80,33 +192,36 @@ public class FindReplace {
      * @param replacement  the new value
      * @return the number of properties changed
      */
-    public long propertyValueRE(EntityClass entityClass, String propertyName,
-            Pattern pattern, String replacement) {
+    public long propertyValueRE(EntityClass entityClass, final String propertyName,
+            final Pattern pattern, final String replacement) {
         checkLegalPropertyName(propertyName);
-        CloseableIterable<Vertex> vertices = manager.getVertices(entityClass);
-        try {
-            long changes = 0L;
-            for (Vertex v : vertices) {
+        String prefix = getLiteralPrefix(pattern);
+        CloseableIterable<Vertex> vertices = !prefix.isEmpty() && isIndexed(entityClass, propertyName)
+                ? manager.getVerticesWithPrefix(propertyName, prefix, entityClass)
+                : manager.getVertices(entityClass);
+        return apply(vertices, new Change() {
+            @Override
+            public int apply(Vertex v, boolean commit) {
                 Object current = v.getProperty(propertyName);
                 if (current instanceof List) {
                     List<String> stringList = v.getProperty(propertyName);
                     int valuesChanged = regexReplaceInList(stringList, pattern, replacement);
-                    if (valuesChanged > 0) {
-                        changes += valuesChanged;
+                    if (valuesChanged > 0 && commit) {
                         manager.setProperty(v, propertyName, stringList.toArray(new String[stringList.size()]));
                     }
+                    return valuesChanged;
                 } else if (current instanceof String) {
                     Matcher matcher = pattern.matcher((String) current);
                     if (matcher.find()) {
-                        changes++;
-                        manager.setProperty(v, propertyName, matcher.replaceAll(replacement));
+                        if (commit) {
+                            manager.setProperty(v, propertyName, matcher.replaceAll(replacement));
+                        }
+                        return 1;
                     }
                 }
+                return 0;
             }
-            return changes;
-        } finally {
-            vertices.close();
-        }
+        });
     }
 
     /**
@@ -117,27 +232,170 @@ public class FindReplace {
      * @param newPropertyName the new property name
      * @return the number of items changed
      */
-    public long propertyName(EntityClass entityClass, String propertyName, String newPropertyName) {
+    public long propertyName(EntityClass entityClass, final String propertyName,
+            final String newPropertyName) {
         checkLegalPropertyName(propertyName);
-        CloseableIterable<Vertex> vertices = manager.getVertices(entityClass);
-        try {
-            long changes = 0L;
-            for (Vertex v : vertices) {
+        CloseableIterable<Vertex> vertices = isIndexed(entityClass, propertyName)
+                ? manager.getVerticesWithPrefix(propertyName, "", entityClass)
+                : manager.getVertices(entityClass);
+        return apply(vertices, new Change() {
+            @Override
+            public int apply(Vertex v, boolean commit) {
                 Set<String> propertyKeys = v.getPropertyKeys();
                 if (propertyKeys.contains(propertyName)) {
-                    Object current = v.getProperty(propertyName);
-                    manager.setProperty(v, newPropertyName, current);
-                    manager.setProperty(v, propertyName, null);
-                    changes++;
+                    if (commit) {
+                        Object current = v.getProperty(propertyName);
+                        manager.setProperty(v, newPropertyName, current);
+                        manager.setProperty(v, propertyName, null);
+                    }
+                    return 1;
                 }
+                return 0;
             }
-            return changes;
+        });
+    }
+
+    // Helpers
+
+    /**
+     * A change to a single vertex.
+     */
+    private interface Change {
+        /**
+         * Apply the change to a vertex, if it is applicable.
+         *
+         * @param v      the vertex
+         * @param commit whether to actually make the change
+         * @return the number of changes made (or that would be)
+         */
+        public int apply(Vertex v, boolean commit);
+    }
+
+    private long apply(CloseableIterable<Vertex> vertices, Change change) {
+        List<Vertex> candidates = Lists.newArrayList();
+        try {
+            if (dryRun) {
+                return applyAll(vertices, change, false);
+            }
+            // Collect the candidates before changing anything, since
+            // the index they come from will be changed underneath us.
+            Iterables.addAll(candidates, vertices);
         } finally {
             vertices.close();
         }
+        if (batchSize == 0) {
+            return applyAll(candidates, change, true);
+        }
+        // Worker threads load the vertices for themselves by ID.
+        List<String> ids = Lists.newArrayListWithCapacity(candidates.size());
+        for (Vertex v : candidates) {
+            ids.add(manager.getId(v));
+        }
+        return applyInBatches(ids, change);
     }
 
-    // Helpers
+    private long applyAll(Iterable<Vertex> vertices, Change change, boolean commit) {
+        long changes = 0L;
+        for (Vertex v : vertices) {
+            int changed = change.apply(v, commit);
+            if (changed > 0) {
+                changes += changed;
+                listener.changed(manager.getId(v));
+            }
+        }
+        return changes;
+    }
+
+    private long applyInBatches(List<String> ids, final Change change) {
+        final TransactionalGraph baseGraph = (TransactionalGraph) graph.getBaseGraph();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Long>> results = Lists.newArrayList();
+            for (final List<String> batch : Iterables.partition(ids, batchSize)) {
+                results.add(executor.submit(new Callable<Long>() {
+                    @Override
+                    public Long call() throws Exception {
+                        try {
+                            List<Vertex> vertices = Lists.newArrayListWithCapacity(batch.size());
+                            for (String id : batch) {
+                                try {
+                                    vertices.add(manager.getVertex(id));
+                                } catch (ItemNotFound e) {
+                                    // Deleted since the candidates were found.
+                                }
+                            }
+                            long changes = applyAll(vertices, change, true);
+                            baseGraph.commit();
+                            return changes;
+                        } catch (Exception e) {
+                            baseGraph.rollback();
+                            throw e;
+                        }
+                    }
+                }));
+            }
+            long changes = 0L;
+            for (Future<Long> result : results) {
+                changes += result.get();
+            }
+            return changes;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private boolean isIndexed(EntityClass entityClass, String propertyName) {
+        if (!ClassUtils.getPropertyKeys(entityClass.getEntityClass()).contains(propertyName)) {
+            return false;
+        }
+        if (!manager.indexesEachValue()) {
+            logger.warn("The index predates per-value entries and cannot be used " +
+                    "to find items: checking every item of type {}. " +
+                    "Rebuild the index to avoid this.", entityClass);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Get the literal prefix which any string must begin with to
+     * match the given pattern, or an empty string if there is no
+     * such prefix, as when the pattern is not anchored at the start
+     * of the input.
+     *
+     * @param pattern a regular expression pattern
+     * @return a literal prefix string, which may be empty
+     */
+    private static String getLiteralPrefix(Pattern pattern) {
+        String regex = pattern.pattern();
+        if (pattern.flags() != 0 || !regex.startsWith("^") || regex.contains("|")) {
+            return "";
+        }
+        StringBuilder prefix = new StringBuilder();
+        for (int i = 1; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\' && i + 1 < regex.length()
+                    && !Character.isLetterOrDigit(regex.charAt(i + 1))) {
+                c = regex.charAt(++i);
+            } else if (REGEX_META.indexOf(c) != -1) {
+                // A quantifier makes the preceding character optional.
+                if ((c == '?' || c == '*' || c == '{') && prefix.length() > 0) {
+                    prefix.setLength(prefix.length() - 1);
+                }
+                break;
+            }
+            prefix.append(c);
+        }
+        return prefix.toString();
+    }
 
     private void checkLegalPropertyName(String propertyName) {
         if (propertyName == null
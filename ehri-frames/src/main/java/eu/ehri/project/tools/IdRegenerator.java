@@ -1,7 +1,15 @@
 package eu.ehri.project.tools;
 
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
 import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.io.Files;
 import com.tinkerpop.blueprints.TransactionalGraph;
 import com.tinkerpop.frames.FramedGraph;
 import eu.ehri.project.acl.SystemScope;
@@ -22,8 +30,13 @@ import eu.ehri.project.models.idgen.IdGenerator;
 import eu.ehri.project.persistence.Bundle;
 import eu.ehri.project.persistence.Serializer;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Util class for re-generating the IDs for a given
@@ -35,6 +48,14 @@ import java.util.List;
  * <p/>
  * We also sometimes tweak the ID generation algorithm itself, which
  * necessitates bulk ID re-generation.
+ * <p/>
+ * Given a batch size, {@link #reGenerateIds(Iterable)} works in two
+ * phases: first the new IDs of all items are computed and checked for
+ * collisions, both with existing items and with each other, and only
+ * then are the items renamed, committing after each batch. If a
+ * checkpoint file is given the renames in each committed batch are
+ * appended to it, and items already renamed are skipped when the
+ * same file is used to resume an interrupted run.
  *
  * @author Mike Bryant (http://github.com/mikesname)
  */
@@ -45,6 +66,11 @@ public class IdRegenerator {
     private final boolean dryrun;
     private final boolean skipCollisions;
     private final boolean collisionMode;
+    private final int batchSize;
+    private final Optional<File> checkpoint;
+
+    private static final Joiner tabJoiner = Joiner.on('\t');
+    private static final Splitter tabSplitter = Splitter.on('\t');
 
     public static class IdCollisionError extends Exception {
         public IdCollisionError(String from, String to) {
@@ -53,18 +79,45 @@ public class IdRegenerator {
         }
     }
 
+    /**
+     * A planned rename of an item.
+     */
+    private static class Rename {
+        private final Frame item;
+        private final String currentId;
+        private final String newId;
+        private final Collection<String> idChain;
+        private final String idBase;
+
+        Rename(Frame item, String currentId, String newId, Collection<String> idChain,
+                String idBase) {
+            this.item = item;
+            this.currentId = currentId;
+            this.newId = newId;
+            this.idChain = idChain;
+            this.idBase = idBase;
+        }
+
+        List<String> toList() {
+            return Lists.newArrayList(currentId, newId);
+        }
+    }
+
     public IdRegenerator(FramedGraph<? extends TransactionalGraph> graph) {
-        this(graph, true, false, false);
+        this(graph, true, false, false, 0, Optional.<File>absent());
     }
 
     private IdRegenerator(FramedGraph<? extends TransactionalGraph> graph, boolean dryrun, boolean skipCollisions,
-            boolean collisionMode) {
+            boolean collisionMode, int batchSize, Optional<File> checkpoint) {
+        Preconditions.checkArgument(batchSize >= 0, "Batch size cannot be negative");
         this.graph = graph;
         this.manager = GraphManagerFactory.getInstance(graph);
         this.depSerializer = new Serializer.Builder(graph).dependentOnly().build();
         this.dryrun = dryrun;
         this.skipCollisions = skipCollisions;
         this.collisionMode = collisionMode;
+        this.batchSize = batchSize;
+        this.checkpoint = checkpoint;
     }
 
     public List<List<String>> reGenerateIds(PermissionScope scope, Iterable<? extends Frame> items) throws
@@ -80,6 +133,9 @@ public class IdRegenerator {
     }
 
     public List<List<String>> reGenerateIds(Iterable<? extends AccessibleEntity> items) throws IdCollisionError {
+        if (batchSize > 0) {
+            return reGenerateIdsInBatches(items);
+        }
         List<List<String>> remaps = Lists.newArrayList();
         for (AccessibleEntity item: items) {
             Optional<List<String>> optionalRemap = reGenerateId(item);
@@ -124,22 +180,8 @@ public class IdRegenerator {
                         }
                     } else {
                         if (!dryrun) {
-                            manager.renameVertex(item.asVertex(), currentId, newId);
-
-                            // Rename all the descriptions
-                            String idBase = idgen.getIdBase(itemBundle);
-                            Collection<String> descIdChain = Lists.newArrayList(idChain);
-                            descIdChain.add(idBase);
-                            for (Description d : manager.cast(item, DescribedEntity.class).getDescriptions()) {
-                                Bundle desc = depSerializer.vertexFrameToBundle(d);
-                                String newDescriptionId = desc.getType().getIdgen().generateId(descIdChain, desc);
-                                manager.renameVertex(d.asVertex(), d.getId(), newDescriptionId);
-                            }
-
-                            // Change the ID on any versions...
-                            for (Version v : manager.cast(item, VersionedEntity.class).getAllPriorVersions()) {
-                                manager.setProperty(v.asVertex(), Ontology.VERSION_ENTITY_ID, newId);
-                            }
+                            rename(new Rename(item, currentId, newId, idChain,
+                                    idgen.getIdBase(itemBundle)));
                         }
                         List<String> remap = Lists.newArrayList(currentId, newId);
                         return Optional.of(remap);
@@ -153,6 +195,182 @@ public class IdRegenerator {
         }
     }
 
+    private void rename(Rename rename) throws SerializationError {
+        manager.renameVertex(rename.item.asVertex(), rename.currentId, rename.newId);
+
+        // Rename all the descriptions
+        Collection<String> descIdChain = Lists.newArrayList(rename.idChain);
+        descIdChain.add(rename.idBase);
+        for (Description d : manager.cast(rename.item, DescribedEntity.class).getDescriptions()) {
+            Bundle desc = depSerializer.vertexFrameToBundle(d);
+            String newDescriptionId = desc.getType().getIdgen().generateId(descIdChain, desc);
+            manager.renameVertex(d.asVertex(), d.getId(), newDescriptionId);
+        }
+
+        // Change the ID on any versions...
+        for (Version v : manager.cast(rename.item, VersionedEntity.class).getAllPriorVersions()) {
+            manager.setProperty(v.asVertex(), Ontology.VERSION_ENTITY_ID, rename.newId);
+        }
+    }
+
+    private List<List<String>> reGenerateIdsInBatches(Iterable<? extends AccessibleEntity> items)
+            throws IdCollisionError {
+        try {
+            Set<String> done = readCheckpoint();
+
+            // Phase one: work out the new ID for every item that
+            // needs renaming.
+            Map<String, Rename> renames = Maps.newLinkedHashMap();
+            for (AccessibleEntity item : items) {
+                if (done.contains(item.getId())) {
+                    continue;
+                }
+                Optional<Rename> rename = planRename(item.getPermissionScope(), item);
+                if (rename.isPresent()) {
+                    renames.put(rename.get().currentId, rename.get());
+                }
+            }
+
+            List<Rename> collisions = Lists.newArrayList();
+            List<Rename> ordered = orderRenames(renames, collisions);
+            if (collisionMode) {
+                return toLists(collisions);
+            } else if (!collisions.isEmpty() && !skipCollisions) {
+                Rename collision = collisions.get(0);
+                throw new IdCollisionError(collision.currentId, collision.newId);
+            }
+
+            // Phase two: rename the items, committing as we go.
+            if (!dryrun) {
+                for (List<Rename> batch : Iterables.partition(ordered, batchSize)) {
+                    for (Rename rename : batch) {
+                        rename(rename);
+                    }
+                    graph.getBaseGraph().commit();
+                    writeCheckpoint(batch);
+                }
+            }
+            return toLists(ordered);
+        } catch (SerializationError e) {
+            throw new RuntimeException(e);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private Optional<Rename> planRename(PermissionScope permissionScope, Frame item)
+            throws SerializationError {
+        Collection<String> idChain = Lists.newArrayList();
+        if (permissionScope != null && !permissionScope.equals(SystemScope.getInstance())) {
+            idChain.addAll(permissionScope.idPath());
+        }
+        IdGenerator idgen = manager.getEntityClass(item).getIdgen();
+        Bundle itemBundle = depSerializer.vertexFrameToBundle(item);
+        String newId = idgen.generateId(idChain, itemBundle);
+        return newId.equals(item.getId())
+                ? Optional.<Rename>absent()
+                : Optional.of(new Rename(item, item.getId(), newId, idChain,
+                idgen.getIdBase(itemBundle)));
+    }
+
+    /**
+     * Order a set of renames so that any item whose new ID is that of
+     * another item being renamed comes after it. Renames which would
+     * collide, with an item that is not being renamed, with each other,
+     * or in a cycle, are removed and added to the given collision list.
+     *
+     * @param renames    a map of current ID to planned rename
+     * @param collisions a list to which colliding renames are added
+     * @return a list of renames which can safely be made in order
+     */
+    private List<Rename> orderRenames(Map<String, Rename> renames, List<Rename> collisions) {
+        Map<String, Rename> pending = Maps.newLinkedHashMap(renames);
+
+        // Several items with the same new ID all collide.
+        Map<String, Integer> targets = Maps.newHashMap();
+        for (Rename rename : pending.values()) {
+            Integer count = targets.get(rename.newId);
+            targets.put(rename.newId, count == null ? 1 : count + 1);
+        }
+        for (Iterator<Rename> iter = pending.values().iterator(); iter.hasNext(); ) {
+            Rename rename = iter.next();
+            if (targets.get(rename.newId) > 1) {
+                collisions.add(rename);
+                iter.remove();
+            }
+        }
+
+        // Repeatedly take the renames whose new IDs are free. Those that
+        // remain are waiting on an item that is not itself being renamed,
+        // or that is waiting on them.
+        List<Rename> ordered = Lists.newArrayListWithExpectedSize(pending.size());
+        boolean progress = true;
+        while (progress && !pending.isEmpty()) {
+            progress = false;
+            for (Iterator<Rename> iter = pending.values().iterator(); iter.hasNext(); ) {
+                Rename rename = iter.next();
+                if (!pending.containsKey(rename.newId)) {
+                    if (!renames.containsKey(rename.newId) && manager.exists(rename.newId)) {
+                        collisions.add(rename);
+                    } else {
+                        ordered.add(rename);
+                    }
+                    iter.remove();
+                    progress = true;
+                }
+            }
+        }
+        collisions.addAll(pending.values());
+
+        // If collisions are skipped rather than fatal, anything waiting
+        // on a collision that stays put now collides with it.
+        Set<String> staying = Sets.newHashSet();
+        for (Rename collision : collisions) {
+            staying.add(collision.currentId);
+        }
+        List<Rename> safe = Lists.newArrayListWithExpectedSize(ordered.size());
+        for (Rename rename : ordered) {
+            if (staying.contains(rename.newId)) {
+                collisions.add(rename);
+                staying.add(rename.currentId);
+            } else {
+                safe.add(rename);
+            }
+        }
+        return safe;
+    }
+
+    private Set<String> readCheckpoint() throws IOException {
+        Set<String> done = Sets.newHashSet();
+        if (checkpoint.isPresent() && checkpoint.get().exists()) {
+            for (String line : Files.readLines(checkpoint.get(), Charsets.UTF_8)) {
+                List<String> remap = Lists.newArrayList(tabSplitter.split(line));
+                if (remap.size() == 2) {
+                    done.add(remap.get(1));
+                }
+            }
+        }
+        return done;
+    }
+
+    private void writeCheckpoint(List<Rename> batch) throws IOException {
+        if (checkpoint.isPresent()) {
+            StringBuilder lines = new StringBuilder();
+            for (Rename rename : batch) {
+                lines.append(tabJoiner.join(rename.currentId, rename.newId)).append('\n');
+            }
+            Files.append(lines, checkpoint.get(), Charsets.UTF_8);
+        }
+    }
+
+    private static List<List<String>> toLists(List<Rename> renames) {
+        List<List<String>> lists = Lists.newArrayListWithExpectedSize(renames.size());
+        for (Rename rename : renames) {
+            lists.add(rename.toList());
+        }
+        return lists;
+    }
+
     /**
      * Obtain a re-generator that will actually perform the rename
      * step.
@@ -162,7 +380,7 @@ public class IdRegenerator {
      * @return a new, more dangerous, re-generator
      */
     public IdRegenerator withActualRename(boolean doIt) {
-        return new IdRegenerator(graph, !doIt, skipCollisions, collisionMode);
+        return new IdRegenerator(graph, !doIt, skipCollisions, collisionMode, batchSize, checkpoint);
     }
 
     /**
@@ -174,7 +392,7 @@ public class IdRegenerator {
      * @return a new, more tolerant, re-generator
      */
     public IdRegenerator skippingCollisions(boolean skipCollisions) {
-        return new IdRegenerator(graph, dryrun, skipCollisions, collisionMode);
+        return new IdRegenerator(graph, dryrun, skipCollisions, collisionMode, batchSize, checkpoint);
     }
 
     /**
@@ -186,6 +404,33 @@ public class IdRegenerator {
      * @return a new, more tolerant, re-generator
      */
     public IdRegenerator collisionMode(boolean collisionMode) {
-        return new IdRegenerator(graph, dryrun, skipCollisions, collisionMode);
+        return new IdRegenerator(graph, dryrun, skipCollisions, collisionMode, batchSize, checkpoint);
+    }
+
+    /**
+     * Obtain a re-generator that, when re-generating the IDs of many
+     * items, computes all the new IDs before renaming anything, and
+     * then renames items in batches, committing after each one.
+     *
+     * @param batchSize the number of items to rename per transaction,
+     *                  or zero to rename each item as it is processed
+     *
+     * @return a new, two-phase, re-generator
+     */
+    public IdRegenerator withBatchSize(int batchSize) {
+        return new IdRegenerator(graph, dryrun, skipCollisions, collisionMode, batchSize, checkpoint);
+    }
+
+    /**
+     * Obtain a re-generator that records batched renames in, and
+     * resumes from, the given checkpoint file.
+     *
+     * @param checkpoint a checkpoint file, which need not exist
+     *
+     * @return a new, resumable, re-generator
+     */
+    public IdRegenerator withCheckpoint(File checkpoint) {
+        return new IdRegenerator(graph, dryrun, skipCollisions, collisionMode, batchSize,
+                Optional.fromNullable(checkpoint));
     }
 }
@@ -0,0 +1,306 @@
+package eu.ehri.project.tools;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.tinkerpop.blueprints.TransactionalGraph;
+import com.tinkerpop.frames.FramedGraph;
+import eu.ehri.project.exceptions.SerializationError;
+import eu.ehri.project.models.base.AccessibleEntity;
+import eu.ehri.project.persistence.Serializer;
+
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.URLEncoder;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Serialize items to XML (optionally transformed via XSLT) or JSON
+ * using a pool of worker threads.
+ * <p/>
+ * Items can either be written, in the order given, to a single
+ * writer, or each to its own file in a directory. In the former case
+ * only a bounded number of serialized items are held in memory while
+ * waiting to be written.
+ * <p/>
+ * The XSLT stylesheet, if any, is compiled once and each worker
+ * thread uses its own transformer.
+ *
+ * @author Mike Bryant (http://github.com/mikesname)
+ */
+public class ItemExporter {
+
+    private static final String UTF8 = "UTF-8";
+
+    /**
+     * Export formats.
+     */
+    public static enum Format {
+        XML("xml"),
+        JSON("json");
+
+        private final String extension;
+
+        private Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    /**
+     * Counts and timings for an export.
+     */
+    public static class Stats {
+        private final long start = System.currentTimeMillis();
+        private long items = 0;
+        private long millis = 0;
+
+        public long getItems() {
+            return items;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d items in %d ms (%.1f items/s)",
+                    items, millis,
+                    millis == 0 ? 0.0 : items * 1000.0 / millis);
+        }
+    }
+
+    private final Serializer serializer;
+    private final Format format;
+    private final Templates templates;
+    private final int threads;
+    private final String separator;
+
+    private final ThreadLocal<Transformer> transformers = new ThreadLocal<Transformer>() {
+        @Override
+        protected Transformer initialValue() {
+            try {
+                return getTransformer();
+            } catch (TransformerConfigurationException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    };
+
+    public ItemExporter(FramedGraph<? extends TransactionalGraph> graph) {
+        this(new Serializer(graph), Format.XML, null,
+                Runtime.getRuntime().availableProcessors(), "\n");
+    }
+
+    private ItemExporter(Serializer serializer, Format format, Templates templates,
+            int threads, String separator) {
+        Preconditions.checkArgument(threads > 0, "Number of threads must be positive");
+        this.serializer = serializer;
+        this.format = format;
+        this.templates = templates;
+        this.threads = threads;
+        this.separator = separator;
+    }
+
+    /**
+     * Set the export format.
+     *
+     * @param format the format
+     * @return a new exporter
+     */
+    public ItemExporter withFormat(Format format) {
+        return new ItemExporter(serializer, format, templates, threads, separator);
+    }
+
+    /**
+     * Transform the XML of each item with the given compiled stylesheet.
+     *
+     * @param templates a compiled stylesheet
+     * @return a new exporter
+     */
+    public ItemExporter withTemplates(Templates templates) {
+        return new ItemExporter(serializer, format, templates, threads, separator);
+    }
+
+    /**
+     * Set the number of worker threads.
+     *
+     * @param threads the number of threads
+     * @return a new exporter
+     */
+    public ItemExporter withThreads(int threads) {
+        return new ItemExporter(serializer, format, templates, threads, separator);
+    }
+
+    /**
+     * Set the separator written between items when exporting
+     * to a single writer (default: a newline.)
+     *
+     * @param separator the separator
+     * @return a new exporter
+     */
+    public ItemExporter withSeparator(String separator) {
+        return new ItemExporter(serializer, format, templates, threads, separator);
+    }
+
+    /**
+     * Write items, in order, to the given writer. Items are separated
+     * by the separator and the last is followed by a newline.
+     *
+     * @param items  an iterable of items
+     * @param writer a writer
+     * @return the export stats
+     * @throws IOException
+     * @throws SerializationError
+     */
+    public Stats export(Iterable<? extends AccessibleEntity> items, Writer writer)
+            throws IOException, SerializationError {
+        Stats stats = new Stats();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            LinkedList<Future<String>> pending = Lists.newLinkedList();
+            for (final AccessibleEntity item : items) {
+                pending.add(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        return serialize(item);
+                    }
+                }));
+                // Keep a few items per thread in hand, but no more
+                if (pending.size() >= threads * 4) {
+                    write(writer, getResult(pending.removeFirst()), stats);
+                }
+            }
+            while (!pending.isEmpty()) {
+                write(writer, getResult(pending.removeFirst()), stats);
+            }
+            if (stats.items > 0) {
+                writer.write('\n');
+            }
+            writer.flush();
+        } finally {
+            executor.shutdownNow();
+        }
+        stats.millis = System.currentTimeMillis() - stats.start;
+        return stats;
+    }
+
+    /**
+     * Write each item to its own file, named after its ID, in the
+     * given directory, which will be created if it does not exist.
+     *
+     * @param items an iterable of items
+     * @param dir   the output directory
+     * @return the export stats
+     * @throws IOException
+     * @throws SerializationError
+     */
+    public Stats exportToDirectory(Iterable<? extends AccessibleEntity> items, final File dir)
+            throws IOException, SerializationError {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Unable to create export directory: " + dir);
+        }
+        Stats stats = new Stats();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            LinkedList<Future<Void>> pending = Lists.newLinkedList();
+            for (final AccessibleEntity item : items) {
+                pending.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        File file = new File(dir, URLEncoder.encode(item.getId(), UTF8)
+                                + "." + format.getExtension());
+                        Writer writer = new BufferedWriter(new OutputStreamWriter(
+                                new FileOutputStream(file), UTF8));
+                        try {
+                            writer.write(serialize(item));
+                            return null;
+                        } finally {
+                            writer.close();
+                        }
+                    }
+                }));
+                if (pending.size() >= threads * 4) {
+                    getResult(pending.removeFirst());
+                    stats.items++;
+                }
+            }
+            while (!pending.isEmpty()) {
+                getResult(pending.removeFirst());
+                stats.items++;
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        stats.millis = System.currentTimeMillis() - stats.start;
+        return stats;
+    }
+
+    private String serialize(AccessibleEntity item) throws SerializationError, TransformerException {
+        if (format == Format.JSON) {
+            return serializer.vertexFrameToJson(item);
+        }
+        StringWriter out = new StringWriter();
+        transformers.get().transform(new DOMSource(serializer.vertexFrameToXml(item)),
+                new StreamResult(out));
+        return out.toString();
+    }
+
+    private Transformer getTransformer() throws TransformerConfigurationException {
+        Transformer transformer = templates != null
+                ? templates.newTransformer()
+                : TransformerFactory.newInstance().newTransformer();
+        transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+        transformer.setOutputProperty(OutputKeys.METHOD, "xml");
+        transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+        transformer.setOutputProperty(OutputKeys.ENCODING, UTF8);
+        transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
+        return transformer;
+    }
+
+    private void write(Writer writer, String data, Stats stats) throws IOException {
+        if (stats.items > 0) {
+            writer.write(separator);
+        }
+        writer.write(data);
+        stats.items++;
+    }
+
+    private static <T> T getResult(Future<T> future) throws IOException, SerializationError {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SerializationError) {
+                throw (SerializationError) cause;
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+}
@@ -1,9 +1,13 @@
 package eu.ehri.project.tools;
 
 import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.tinkerpop.blueprints.TransactionalGraph;
 import com.tinkerpop.frames.FramedGraph;
+import eu.ehri.project.acl.ContentTypes;
+import eu.ehri.project.acl.PermissionType;
 import eu.ehri.project.definitions.EventTypes;
 import eu.ehri.project.definitions.Ontology;
 import eu.ehri.project.exceptions.ItemNotFound;
@@ -20,7 +24,9 @@ import eu.ehri.project.models.cvoc.Concept;
 import eu.ehri.project.models.cvoc.Vocabulary;
 import eu.ehri.project.persistence.ActionManager;
 import eu.ehri.project.persistence.Bundle;
+import eu.ehri.project.persistence.BundleDAO;
 import eu.ehri.project.utils.Slugify;
+import eu.ehri.project.views.ViewHelper;
 import eu.ehri.project.views.impl.CrudViews;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,6 +35,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 
@@ -52,21 +59,23 @@ public class Linker {
     private final Set<String> accessPointTypes;
     private final String defaultLanguageCode;
     private final Optional<String> logMessage;
+    private final int batchSize;
 
     private Linker(FramedGraph<?> graph, final Set<String> accessPointTypes,
             final String defaultLanguageCode, final Optional<String> logMessage,
-            boolean tolerant, boolean excludeSingles) {
+            boolean tolerant, boolean excludeSingles, int batchSize) {
         this.graph = graph;
         this.accessPointTypes = accessPointTypes;
         this.defaultLanguageCode = defaultLanguageCode;
         this.tolerant = tolerant;
         this.excludeSingles = excludeSingles;
         this.logMessage = logMessage;
+        this.batchSize = batchSize;
     }
 
     public Linker(FramedGraph<?> graph) {
         this(graph, Sets.<String>newHashSet(),
-                DEFAULT_LANG, Optional.<String>absent(), false, true);
+                DEFAULT_LANG, Optional.<String>absent(), false, true, 0);
     }
 
     /**
@@ -82,6 +91,11 @@ public class Linker {
      * It should be advised that this function is not idempotent and
      * running it twice will generate concepts/links twice.
      * <p/>
+     * If a batch size has been set (see {@link #withBatchSize(int)}) the
+     * concepts and links are written in bulk: permissions are checked
+     * once up-front rather than per item, no per-item owner permissions
+     * are granted, and the transaction is committed after each batch.
+     * <p/>
      * NB. One could argue this function does too much...
      *
      * @param repository       the repository
@@ -98,10 +112,12 @@ public class Linker {
             UserProfile user)
             throws ItemNotFound, ValidationError, PermissionDenied {
 
-        // First, build a map of access point names to (null) concepts
+        // First, build a map of access point names to (null) concepts,
+        // keeping hold of the access points themselves so we don't
+        // have to walk the repository's collections a second time.
         Map<String, String> conceptIdentifierNames = Maps.newHashMap();
-        Map<String, Optional<Concept>> identifierConcept = Maps.newHashMap();
         Map<String, Integer> identifierCount = Maps.newHashMap();
+        List<AccessPoint> accessPoints = Lists.newArrayList();
 
         for (DocumentaryUnit doc : repository.getAllCollections()) {
             for (DocumentDescription description : doc.getDocumentDescriptions()) {
@@ -113,17 +129,18 @@ public class Linker {
                         String prior = conceptIdentifierNames.get(identifier);
                         if (identifier.isEmpty() || trimmedName.isEmpty()) {
                             logger.warn("Ignoring empty access point name");
+                            continue;
                         } else if (prior != null && !prior.equals(trimmedName)) {
                             logger.warn("Concept name/slug collision: '{}' -> '{}'", trimmedName,
                                     prior);
                         } else {
                             conceptIdentifierNames.put(identifier, trimmedName);
-                            identifierConcept.put(identifier, Optional.<Concept>absent());
                             int count = identifierCount.containsKey(identifier)
                                     ? identifierCount.get(identifier)
                                     : 0;
                             identifierCount.put(identifier, count + 1);
                         }
+                        accessPoints.add(new AccessPoint(doc, relationship, identifier));
                     }
                 }
             }
@@ -135,90 +152,11 @@ public class Linker {
             return 0L;
         }
 
-        // Now create concepts for all the names
-        ActionManager actionManager = new ActionManager(graph);
-        ActionManager.EventContext conceptEvent = actionManager
-                .setScope(vocabulary)
-                .logEvent(user, EventTypes.creation, logMessage);
-        CrudViews<Concept> conceptMaker = new CrudViews<Concept>(graph, Concept.class, vocabulary);
-
-        for (Map.Entry<String, String> idName : conceptIdentifierNames.entrySet()) {
-            String identifier = idName.getKey();
-            String name = idName.getValue();
-
-            // if we're excluding "unique" access points, skip this...
-            if (identifierCount.get(identifier) < 2 && excludeSingles) {
-                continue;
-            }
-
-            Bundle conceptBundle = Bundle.Builder.withClass(EntityClass.CVOC_CONCEPT)
-                    .addDataValue(Ontology.IDENTIFIER_KEY, identifier)
-                    .addRelation(Ontology.DESCRIPTION_FOR_ENTITY, Bundle.Builder
-                            .withClass(EntityClass.CVOC_CONCEPT_DESCRIPTION)
-                            .addDataValue(Ontology.LANGUAGE_OF_DESCRIPTION, defaultLanguageCode)
-                            .addDataValue(Ontology.NAME_KEY, name)
-                            .build())
-                    .build();
-
-            try {
-                Concept concept = conceptMaker.create(conceptBundle, user);
-                concept.setVocabulary(vocabulary);
-                identifierConcept.put(identifier, Optional.fromNullable(concept));
-                conceptEvent.addSubjects(concept);
-            } catch (ValidationError validationError) {
-                // If this happens it is most likely because two access points
-                // slugified to the same name due to the removal of diacritics
-                // etc. The createOrUpdate operation currently doesn't seem to
-                // work in the same transaction (possibly due to the graph index
-                // not being flushed), so for the moment we're just going to log
-                // the error and continue.
-                logger.warn("Id/name collision error: '{}' -> '{}' ('{}')", identifier, name,
-                        conceptIdentifierNames.get(identifier));
-                logger.error("Link integrity error: ", validationError);
-                if (!tolerant) {
-                    throw validationError;
-                }
-            }
-        }
-
-        // Now link the concepts with elements having the access point from
-        // which the concept originally derived.
-        ActionManager.EventContext linkEvent = actionManager
-                .logEvent(user, EventTypes.creation, logMessage);
-        CrudViews<Link> linkMaker = new CrudViews<Link>(graph, Link.class);
-
-        long linkCount = 0L;
-        for (DocumentaryUnit doc : repository.getAllCollections()) {
-            for (DocumentDescription description : doc.getDocumentDescriptions()) {
-                for (UndeterminedRelationship relationship : description.getUndeterminedRelationships()) {
-                    if (accessPointTypes.isEmpty() || accessPointTypes
-                            .contains(relationship.getRelationshipType())) {
-
-                        String identifier = getIdentifier(relationship);
-                        // if we're excluding "unique" access points, skip this...
-                        if (identifierCount.get(identifier) < 2 && excludeSingles) {
-                            continue;
-                        }
-
-                        Optional<Concept> conceptOpt = identifierConcept.get(identifier);
-                        if (conceptOpt != null && conceptOpt.isPresent()) {
-                            Concept concept = conceptOpt.get();
-                            Bundle linkBundle = Bundle.Builder.withClass(EntityClass.LINK)
-                                    .addDataValue(Ontology.LINK_HAS_TYPE, LINK_TYPE)
-                                    .build();
-                            Link link = linkMaker.create(linkBundle, user);
-                            link.addLinkTarget(doc);
-                            link.addLinkTarget(concept);
-                            link.addLinkBody(relationship);
-                            linkEvent.addSubjects(link);
-                            linkCount++;
-                        }
-                    }
-                }
-            }
-        }
-
-        return linkCount;
+        return batchSize > 0
+                ? createAndLinkInBatches(vocabulary, user, conceptIdentifierNames,
+                        identifierCount, accessPoints)
+                : createAndLink(vocabulary, user, conceptIdentifierNames,
+                        identifierCount, accessPoints);
     }
 
     /**
@@ -230,7 +168,7 @@ public class Linker {
      */
     public Linker withExcludeSingles(boolean excludeSingles) {
         return new Linker(graph, accessPointTypes, DEFAULT_LANG,
-                logMessage, tolerant, excludeSingles);
+                logMessage, tolerant, excludeSingles, batchSize);
     }
 
     /**
@@ -243,7 +181,7 @@ public class Linker {
      */
     public Linker withTolerant(boolean tolerant) {
         return new Linker(graph, accessPointTypes, DEFAULT_LANG,
-                logMessage, tolerant, excludeSingles);
+                logMessage, tolerant, excludeSingles, batchSize);
     }
 
     /**
@@ -254,7 +192,7 @@ public class Linker {
      */
     public Linker withDefaultLanguage(String defaultLanguageCode) {
         return new Linker(graph, accessPointTypes, checkNotNull(defaultLanguageCode),
-                logMessage, tolerant, excludeSingles);
+                logMessage, tolerant, excludeSingles, batchSize);
     }
 
     /**
@@ -265,7 +203,7 @@ public class Linker {
      */
     public Linker withLogMessage(String logMessage) {
         return new Linker(graph, accessPointTypes, checkNotNull(defaultLanguageCode),
-                Optional.fromNullable(logMessage), tolerant, excludeSingles);
+                Optional.fromNullable(logMessage), tolerant, excludeSingles, batchSize);
     }
 
     /**
@@ -276,7 +214,7 @@ public class Linker {
      */
     public Linker withLogMessage(Optional<String> logMessage) {
         return new Linker(graph, accessPointTypes, checkNotNull(defaultLanguageCode),
-                checkNotNull(logMessage), tolerant, excludeSingles);
+                checkNotNull(logMessage), tolerant, excludeSingles, batchSize);
     }
 
     /**
@@ -289,7 +227,7 @@ public class Linker {
      */
     public Linker withAccessPointTypes(List<String> accessPointTypes) {
         return new Linker(graph, Sets.newHashSet(checkNotNull(accessPointTypes)),
-                defaultLanguageCode, logMessage, tolerant, excludeSingles);
+                defaultLanguageCode, logMessage, tolerant, excludeSingles, batchSize);
     }
 
     /**
@@ -303,11 +241,214 @@ public class Linker {
         Set<String> tmp = Sets.newHashSet(checkNotNull(accessPointTypes));
         tmp.add(accessPointType);
         return new Linker(graph, tmp, defaultLanguageCode,
-                logMessage, tolerant, excludeSingles);
+                logMessage, tolerant, excludeSingles, batchSize);
+    }
+
+    /**
+     * Set the linker to write concepts and links in bulk, committing
+     * the current transaction after every <code>batchSize</code> items.
+     * A batch size of zero (the default) creates everything in the
+     * caller's transaction with full per-item permission checks.
+     *
+     * @param batchSize the number of items to create per transaction
+     * @return a new linker object
+     */
+    public Linker withBatchSize(int batchSize) {
+        checkArgument(batchSize >= 0, "Batch size cannot be negative: %s", batchSize);
+        return new Linker(graph, accessPointTypes, defaultLanguageCode,
+                logMessage, tolerant, excludeSingles, batchSize);
     }
 
     // Helpers...
 
+    /**
+     * An access point on a particular documentary unit.
+     */
+    private static class AccessPoint {
+        private final DocumentaryUnit doc;
+        private final UndeterminedRelationship relationship;
+        private final String identifier;
+
+        private AccessPoint(DocumentaryUnit doc, UndeterminedRelationship relationship,
+                String identifier) {
+            this.doc = doc;
+            this.relationship = relationship;
+            this.identifier = identifier;
+        }
+    }
+
+    private long createAndLink(Vocabulary vocabulary, UserProfile user,
+            Map<String, String> conceptIdentifierNames, Map<String, Integer> identifierCount,
+            List<AccessPoint> accessPoints) throws ValidationError, PermissionDenied {
+
+        // Now create concepts for all the names
+        ActionManager actionManager = new ActionManager(graph);
+        ActionManager.EventContext conceptEvent = actionManager
+                .setScope(vocabulary)
+                .logEvent(user, EventTypes.creation, logMessage);
+        CrudViews<Concept> conceptMaker = new CrudViews<Concept>(graph, Concept.class, vocabulary);
+        Map<String, Concept> identifierConcept = Maps.newHashMap();
+
+        for (Map.Entry<String, String> idName : conceptIdentifierNames.entrySet()) {
+            String identifier = idName.getKey();
+            String name = idName.getValue();
+
+            // if we're excluding "unique" access points, skip this...
+            if (identifierCount.get(identifier) < 2 && excludeSingles) {
+                continue;
+            }
+
+            try {
+                Concept concept = conceptMaker.create(getConceptBundle(identifier, name), user);
+                concept.setVocabulary(vocabulary);
+                identifierConcept.put(identifier, concept);
+                conceptEvent.addSubjects(concept);
+            } catch (ValidationError validationError) {
+                handleCollision(identifier, name, validationError);
+            }
+        }
+
+        // Now link the concepts with elements having the access point from
+        // which the concept originally derived.
+        ActionManager.EventContext linkEvent = actionManager
+                .logEvent(user, EventTypes.creation, logMessage);
+        CrudViews<Link> linkMaker = new CrudViews<Link>(graph, Link.class);
+
+        long linkCount = 0L;
+        for (AccessPoint accessPoint : accessPoints) {
+            // if we're excluding "unique" access points, skip this...
+            if (identifierCount.get(accessPoint.identifier) < 2 && excludeSingles) {
+                continue;
+            }
+
+            Concept concept = identifierConcept.get(accessPoint.identifier);
+            if (concept != null) {
+                Link link = linkMaker.create(getLinkBundle(), user);
+                link.addLinkTarget(accessPoint.doc);
+                link.addLinkTarget(concept);
+                link.addLinkBody(accessPoint.relationship);
+                linkEvent.addSubjects(link);
+                linkCount++;
+            }
+        }
+
+        return linkCount;
+    }
+
+    private long createAndLinkInBatches(Vocabulary vocabulary, UserProfile user,
+            Map<String, String> conceptIdentifierNames, Map<String, Integer> identifierCount,
+            List<AccessPoint> accessPoints) throws ValidationError, PermissionDenied {
+
+        // Check permissions once, rather than for every item
+        new ViewHelper(graph, vocabulary)
+                .checkContentPermission(user, ContentTypes.CVOC_CONCEPT, PermissionType.CREATE);
+        new ViewHelper(graph)
+                .checkContentPermission(user, ContentTypes.LINK, PermissionType.CREATE);
+
+        ActionManager actionManager = new ActionManager(graph);
+        ActionManager.EventContext conceptEvent = actionManager
+                .setScope(vocabulary)
+                .logEvent(user, EventTypes.creation, logMessage);
+        BundleDAO conceptWriter = new BundleDAO(graph, vocabulary.idPath());
+        Map<String, Concept> identifierConcept = Maps.newHashMap();
+
+        long conceptCount = 0L;
+        for (Map.Entry<String, String> idName : conceptIdentifierNames.entrySet()) {
+            String identifier = idName.getKey();
+            String name = idName.getValue();
+
+            if (identifierCount.get(identifier) < 2 && excludeSingles) {
+                continue;
+            }
+
+            try {
+                Concept concept = conceptWriter.create(getConceptBundle(identifier, name),
+                        Concept.class);
+                concept.setVocabulary(vocabulary);
+                concept.setPermissionScope(vocabulary);
+                identifierConcept.put(identifier, concept);
+                conceptEvent.addSubjects(concept);
+                conceptCount++;
+                if (conceptCount % batchSize == 0) {
+                    commitBatch();
+                    logger.info("Created {} concepts from {} access point names",
+                            conceptCount, conceptIdentifierNames.size());
+                }
+            } catch (ValidationError validationError) {
+                handleCollision(identifier, name, validationError);
+            }
+        }
+        commitBatch();
+        logger.info("Created {} concepts", conceptCount);
+
+        ActionManager.EventContext linkEvent = actionManager
+                .logEvent(user, EventTypes.creation, logMessage);
+        BundleDAO linkWriter = new BundleDAO(graph);
+
+        long linkCount = 0L;
+        for (AccessPoint accessPoint : accessPoints) {
+            if (identifierCount.get(accessPoint.identifier) < 2 && excludeSingles) {
+                continue;
+            }
+
+            Concept concept = identifierConcept.get(accessPoint.identifier);
+            if (concept != null) {
+                Link link = linkWriter.create(getLinkBundle(), Link.class);
+                link.addLinkTarget(accessPoint.doc);
+                link.addLinkTarget(concept);
+                link.addLinkBody(accessPoint.relationship);
+                linkEvent.addSubjects(link);
+                linkCount++;
+                if (linkCount % batchSize == 0) {
+                    commitBatch();
+                    logger.info("Created {} links from {} access points", linkCount,
+                            accessPoints.size());
+                }
+            }
+        }
+        logger.info("Created {} links", linkCount);
+
+        return linkCount;
+    }
+
+    private void commitBatch() {
+        if (graph.getBaseGraph() instanceof TransactionalGraph) {
+            ((TransactionalGraph) graph.getBaseGraph()).commit();
+        }
+    }
+
+    private void handleCollision(String identifier, String name, ValidationError validationError)
+            throws ValidationError {
+        // If this happens it is most likely because two access points
+        // slugified to the same name due to the removal of diacritics
+        // etc. The createOrUpdate operation currently doesn't seem to
+        // work in the same transaction (possibly due to the graph index
+        // not being flushed), so for the moment we're just going to log
+        // the error and continue.
+        logger.warn("Id/name collision error: '{}' -> '{}'", identifier, name);
+        logger.error("Link integrity error: ", validationError);
+        if (!tolerant) {
+            throw validationError;
+        }
+    }
+
+    private Bundle getConceptBundle(String identifier, String name) {
+        return Bundle.Builder.withClass(EntityClass.CVOC_CONCEPT)
+                .addDataValue(Ontology.IDENTIFIER_KEY, identifier)
+                .addRelation(Ontology.DESCRIPTION_FOR_ENTITY, Bundle.Builder
+                        .withClass(EntityClass.CVOC_CONCEPT_DESCRIPTION)
+                        .addDataValue(Ontology.LANGUAGE_OF_DESCRIPTION, defaultLanguageCode)
+                        .addDataValue(Ontology.NAME_KEY, name)
+                        .build())
+                .build();
+    }
+
+    private static Bundle getLinkBundle() {
+        return Bundle.Builder.withClass(EntityClass.LINK)
+                .addDataValue(Ontology.LINK_HAS_TYPE, LINK_TYPE)
+                .build();
+    }
+
     private static boolean willCreateItems(Map<String, Integer> identifierCounts, boolean excludeSingles) {
         if (identifierCounts.size() == 0) {
             return false;
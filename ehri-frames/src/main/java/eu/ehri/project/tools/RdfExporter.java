@@ -0,0 +1,543 @@
+package eu.ehri.project.tools;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.tinkerpop.blueprints.CloseableIterable;
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.TransactionalGraph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.frames.FramedGraph;
+import eu.ehri.project.core.GraphManager;
+import eu.ehri.project.core.GraphManagerFactory;
+import eu.ehri.project.models.EntityClass;
+import eu.ehri.project.models.annotations.EntityType;
+import eu.ehri.project.models.base.AccessibleEntity;
+import eu.ehri.project.models.events.SystemEvent;
+import eu.ehri.project.models.utils.ClassUtils;
+import eu.ehri.project.persistence.ActionManager;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.joda.time.DateTime;
+import org.joda.time.format.ISODateTimeFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.lang.reflect.Array;
+import java.net.URLEncoder;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Export the graph's items as RDF to a directory of segment files.
+ * <p/>
+ * Items are partitioned by entity class, and each partition is divided
+ * into segments of at most a fixed number of items, which are
+ * serialized concurrently as N-Triples or Turtle. Each segment file
+ * is written as a stream and, since only a bounded number of segments
+ * are queued for writing at any time, memory use does not grow with
+ * the size of the graph. A manifest file records the segments along
+ * with their item and triple counts.
+ * <p/>
+ * Each item becomes a resource identified by its type and ID, relative
+ * to a base URI, with its properties as literals and its relationships
+ * to other items as resource-valued statements, e.g:
+ * <p/>
+ * <pre>
+ *     <code>
+ * &lt;http://data.ehri-project.eu/documentaryUnit/c1&gt;
+ *     &lt;http://data.ehri-project.eu/ontology#heldBy&gt;
+ *     &lt;http://data.ehri-project.eu/repository/r1&gt; .
+ *     </code>
+ * </pre>
+ * <p/>
+ * Optionally, only items changed since a given time can be exported.
+ * These are the subjects of system events logged after that time, along
+ * with their dependent items (descriptions, dates, etc.) Deleted items
+ * are not included in an incremental export.
+ *
+ * @author Mike Bryant (http://github.com/mikesname)
+ */
+public class RdfExporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(RdfExporter.class);
+
+    public static final String MANIFEST_FILE = "manifest.json";
+    public static final String DEFAULT_BASE_URI = "http://data.ehri-project.eu/";
+    public static final int DEFAULT_SEGMENT_SIZE = 10000;
+
+    private static final String RDF_TYPE = "http://www.w3.org/1999/02/22-rdf-syntax-ns#type";
+    private static final String XSD = "http://www.w3.org/2001/XMLSchema#";
+    private static final String UTF8 = "UTF-8";
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * Supported RDF serializations.
+     */
+    public static enum Format {
+        NTRIPLES("nt"),
+        TURTLE("ttl");
+
+        private final String extension;
+
+        private Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public static Format withName(String name) {
+            for (Format format : values()) {
+                if (format.name().equalsIgnoreCase(name)
+                        || format.extension.equalsIgnoreCase(name)) {
+                    return format;
+                }
+            }
+            throw new IllegalArgumentException("Unknown RDF format: " + name);
+        }
+    }
+
+    /**
+     * A record of a segment file in the export manifest.
+     */
+    public static class Segment {
+        public String file;
+        public String type;
+        public long items;
+        public long triples;
+    }
+
+    /**
+     * The export manifest.
+     */
+    public static class Manifest {
+        public String baseUri;
+        public String format;
+        public String since;
+        public long items;
+        public long triples;
+        public List<Segment> segments = Lists.newArrayList();
+    }
+
+    private final FramedGraph<? extends TransactionalGraph> graph;
+    private final GraphManager manager;
+    private final Format format;
+    private final String baseUri;
+    private final int threads;
+    private final int segmentSize;
+    private final DateTime since;
+
+    public RdfExporter(FramedGraph<? extends TransactionalGraph> graph) {
+        this(graph, Format.NTRIPLES, DEFAULT_BASE_URI,
+                Runtime.getRuntime().availableProcessors(), DEFAULT_SEGMENT_SIZE, null);
+    }
+
+    private RdfExporter(FramedGraph<? extends TransactionalGraph> graph, Format format,
+            String baseUri, int threads, int segmentSize, DateTime since) {
+        Preconditions.checkArgument(threads > 0, "Number of threads must be positive");
+        Preconditions.checkArgument(segmentSize > 0, "Segment size must be positive");
+        this.graph = graph;
+        this.format = format;
+        this.baseUri = baseUri;
+        this.threads = threads;
+        this.segmentSize = segmentSize;
+        this.since = since;
+        manager = GraphManagerFactory.getInstance(graph);
+    }
+
+    /**
+     * Set the RDF serialization format.
+     *
+     * @param format the format
+     * @return a new exporter
+     */
+    public RdfExporter withFormat(Format format) {
+        return new RdfExporter(graph, format, baseUri, threads, segmentSize, since);
+    }
+
+    /**
+     * Set the base URI of exported resources.
+     *
+     * @param baseUri the base URI
+     * @return a new exporter
+     */
+    public RdfExporter withBaseUri(String baseUri) {
+        return new RdfExporter(graph, format, baseUri, threads, segmentSize, since);
+    }
+
+    /**
+     * Set the number of threads used to write segments.
+     *
+     * @param threads the number of threads
+     * @return a new exporter
+     */
+    public RdfExporter withThreads(int threads) {
+        return new RdfExporter(graph, format, baseUri, threads, segmentSize, since);
+    }
+
+    /**
+     * Set the maximum number of items written to each segment.
+     *
+     * @param segmentSize the segment size
+     * @return a new exporter
+     */
+    public RdfExporter withSegmentSize(int segmentSize) {
+        return new RdfExporter(graph, format, baseUri, threads, segmentSize, since);
+    }
+
+    /**
+     * Only export items changed after the given time.
+     *
+     * @param timestamp an ISO date-time, as used by system
+     *                  event timestamps
+     * @return a new exporter
+     */
+    public RdfExporter withChangesSince(String timestamp) {
+        DateTime time = ISODateTimeFormat.dateTimeParser().parseDateTime(timestamp);
+        return new RdfExporter(graph, format, baseUri, threads, segmentSize, time);
+    }
+
+    /**
+     * Export to the given directory, which will be created
+     * if it does not exist.
+     *
+     * @param dir the output directory
+     * @return the export manifest
+     * @throws IOException
+     */
+    public Manifest export(File dir) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Unable to create export directory: " + dir);
+        }
+
+        Map<EntityClass, Set<Object>> changed = since == null
+                ? Collections.<EntityClass, Set<Object>>emptyMap()
+                : getChangedVertexIds();
+
+        // NB: When the queue is full the calling thread writes
+        // the segment itself, which bounds the number of pending
+        // segments (and their item IDs) held in memory.
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+                0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(threads),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        List<Future<Segment>> futures = Lists.newArrayList();
+        try {
+            for (EntityClass entityClass : EntityClass.values()) {
+                if (since == null) {
+                    CloseableIterable<Vertex> vertices = manager.getVertices(entityClass);
+                    try {
+                        submitAll(executor, futures, dir, entityClass, vertices);
+                    } finally {
+                        vertices.close();
+                    }
+                } else if (changed.containsKey(entityClass)) {
+                    List<Vertex> vertices = Lists.newArrayList();
+                    for (Object id : changed.get(entityClass)) {
+                        vertices.add(graph.getBaseGraph().getVertex(id));
+                    }
+                    submitAll(executor, futures, dir, entityClass, vertices);
+                }
+            }
+
+            Manifest manifest = new Manifest();
+            manifest.baseUri = baseUri;
+            manifest.format = format.name().toLowerCase();
+            manifest.since = since == null ? null : since.toString();
+            for (Future<Segment> future : futures) {
+                Segment segment = future.get();
+                manifest.items += segment.items;
+                manifest.triples += segment.triples;
+                manifest.segments.add(segment);
+            }
+            mapper.writeValue(new File(dir, MANIFEST_FILE), manifest);
+            logger.info("Exported {} items as {} triples in {} segments",
+                    manifest.items, manifest.triples, manifest.segments.size());
+            return manifest;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void submitAll(ExecutorService executor, List<Future<Segment>> futures,
+            File dir, EntityClass entityClass, Iterable<Vertex> vertices) {
+        int i = 0;
+        List<Object> part = Lists.newArrayListWithCapacity(segmentSize);
+        for (Vertex vertex : vertices) {
+            part.add(vertex.getId());
+            if (part.size() == segmentSize) {
+                futures.add(executor.submit(newTask(dir, entityClass, i++, part)));
+                part = Lists.newArrayListWithCapacity(segmentSize);
+            }
+        }
+        if (!part.isEmpty()) {
+            futures.add(executor.submit(newTask(dir, entityClass, i, part)));
+        }
+    }
+
+    private Callable<Segment> newTask(File dir, EntityClass entityClass, int i, List<Object> ids) {
+        Segment segment = new Segment();
+        segment.type = entityClass.getName();
+        segment.file = String.format("%s-%d.%s", segment.type, i, format.getExtension());
+        return new ExportTask(segment, new File(dir, segment.file), ids);
+    }
+
+    /**
+     * Get the IDs of the subjects of events logged since the given time,
+     * and their dependents, grouped by entity class.
+     */
+    private Map<EntityClass, Set<Object>> getChangedVertexIds() {
+        Map<EntityClass, Set<Object>> changed = Maps.newEnumMap(EntityClass.class);
+        for (SystemEvent event : new ActionManager(graph).getLatestGlobalEvents()) {
+            String timestamp = event.getTimestamp();
+            if (timestamp != null && !ISODateTimeFormat.dateTimeParser()
+                    .parseDateTime(timestamp).isAfter(since)) {
+                break;
+            }
+            for (AccessibleEntity subject : event.getSubjects()) {
+                addWithDependents(changed, subject.asVertex());
+            }
+        }
+        return changed;
+    }
+
+    private void addWithDependents(Map<EntityClass, Set<Object>> changed, Vertex vertex) {
+        String type = vertex.getProperty(EntityType.TYPE_KEY);
+        if (type == null) {
+            return;
+        }
+        EntityClass entityClass = EntityClass.withName(type);
+        Set<Object> ids = changed.get(entityClass);
+        if (ids == null) {
+            ids = Sets.newLinkedHashSet();
+            changed.put(entityClass, ids);
+        }
+        if (ids.add(vertex.getId())) {
+            Map<String, Direction> dependents
+                    = ClassUtils.getDependentRelations(entityClass.getEntityClass());
+            for (Map.Entry<String, Direction> entry : dependents.entrySet()) {
+                for (Vertex dependent : vertex.getVertices(entry.getValue(), entry.getKey())) {
+                    addWithDependents(changed, dependent);
+                }
+            }
+        }
+    }
+
+    /**
+     * Write the items in a segment to a file.
+     */
+    private class ExportTask implements Callable<Segment> {
+        private final Segment segment;
+        private final File file;
+        private final List<Object> ids;
+
+        ExportTask(Segment segment, File file, List<Object> ids) {
+            this.segment = segment;
+            this.file = file;
+            this.ids = ids;
+        }
+
+        @Override
+        public Segment call() throws Exception {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(file), UTF8));
+            try {
+                for (Object id : ids) {
+                    Vertex vertex = graph.getBaseGraph().getVertex(id);
+                    if (vertex != null) {
+                        segment.triples += writeVertex(writer, vertex);
+                        segment.items++;
+                    }
+                }
+            } finally {
+                writer.close();
+            }
+            logger.debug("Wrote segment {}: {} items", segment.file, segment.items);
+            return segment;
+        }
+    }
+
+    private long writeVertex(Writer writer, Vertex vertex) throws IOException {
+        String subject = getUri(vertex);
+        if (subject == null) {
+            return 0;
+        }
+        TripleWriter triples = format == Format.TURTLE
+                ? new TurtleWriter(writer, subject)
+                : new NTriplesWriter(writer, subject);
+        triples.write(iri(RDF_TYPE),
+                iri(baseUri + "ontology#" + vertex.getProperty(EntityType.TYPE_KEY)));
+        for (String key : vertex.getPropertyKeys()) {
+            // Skip internal properties...
+            if (key.startsWith("_")) {
+                continue;
+            }
+            String predicate = iri(baseUri + "ontology#" + encode(key));
+            Object value = vertex.getProperty(key);
+            if (value instanceof Iterable) {
+                for (Object item : (Iterable<?>) value) {
+                    triples.write(predicate, literal(item));
+                }
+            } else if (value != null && value.getClass().isArray()) {
+                for (int i = 0; i < Array.getLength(value); i++) {
+                    triples.write(predicate, literal(Array.get(value, i)));
+                }
+            } else if (value != null) {
+                triples.write(predicate, literal(value));
+            }
+        }
+        for (Edge edge : vertex.getEdges(Direction.OUT)) {
+            String object = getUri(edge.getVertex(Direction.IN));
+            if (object != null) {
+                triples.write(iri(baseUri + "ontology#" + encode(edge.getLabel())), object);
+            }
+        }
+        triples.close();
+        return triples.count;
+    }
+
+    private String getUri(Vertex vertex) {
+        String id = vertex.getProperty(EntityType.ID_KEY);
+        String type = vertex.getProperty(EntityType.TYPE_KEY);
+        return id == null || type == null ? null : iri(baseUri + type + "/" + encode(id));
+    }
+
+    /**
+     * Writes the statements about a single subject.
+     */
+    private static abstract class TripleWriter {
+        protected final Writer writer;
+        protected final String subject;
+        long count = 0;
+
+        TripleWriter(Writer writer, String subject) {
+            this.writer = writer;
+            this.subject = subject;
+        }
+
+        abstract void write(String predicate, String object) throws IOException;
+
+        abstract void close() throws IOException;
+    }
+
+    private static class NTriplesWriter extends TripleWriter {
+        NTriplesWriter(Writer writer, String subject) {
+            super(writer, subject);
+        }
+
+        @Override
+        void write(String predicate, String object) throws IOException {
+            writer.write(subject + " " + predicate + " " + object + " .\n");
+            count++;
+        }
+
+        @Override
+        void close() throws IOException {
+        }
+    }
+
+    private static class TurtleWriter extends TripleWriter {
+        TurtleWriter(Writer writer, String subject) {
+            super(writer, subject);
+        }
+
+        @Override
+        void write(String predicate, String object) throws IOException {
+            writer.write(count++ == 0 ? subject + " " : " ;\n    ");
+            writer.write(predicate + " " + object);
+        }
+
+        @Override
+        void close() throws IOException {
+            if (count > 0) {
+                writer.write(" .\n\n");
+            }
+        }
+    }
+
+    private static String iri(String uri) {
+        return "<" + uri + ">";
+    }
+
+    private static String literal(Object value) {
+        if (value instanceof Boolean) {
+            return typedLiteral(value, "boolean");
+        } else if (value instanceof Integer || value instanceof Short) {
+            return typedLiteral(value, "int");
+        } else if (value instanceof Long) {
+            return typedLiteral(value, "long");
+        } else if (value instanceof Double) {
+            return typedLiteral(floatingPoint((Double) value), "double");
+        } else if (value instanceof Float) {
+            return typedLiteral(floatingPoint((Float) value), "float");
+        }
+        return "\"" + escape(String.valueOf(value)) + "\"";
+    }
+
+    /**
+     * Java writes infinite values as "Infinity", but XML Schema
+     * spells them "INF" and "-INF".
+     */
+    private static Object floatingPoint(Number value) {
+        double d = value.doubleValue();
+        if (Double.isInfinite(d)) {
+            return d > 0 ? "INF" : "-INF";
+        }
+        return Double.isNaN(d) ? "NaN" : value;
+    }
+
+    private static String typedLiteral(Object value, String xsdType) {
+        return "\"" + value + "\"^^" + iri(XSD + xsdType);
+    }
+
+    private static String escape(String value) {
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\': sb.append("\\\\"); break;
+                case '"': sb.append("\\\""); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default: sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, UTF8).replace("+", "%20");
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package eu.ehri.project.utils;
 
 import com.tinkerpop.blueprints.impls.neo4j.Neo4jGraph;
+import eu.ehri.project.core.GraphGeneration;
+import eu.ehri.project.core.impl.BlueprintsGraphManager;
 import eu.ehri.project.models.annotations.EntityType;
 import eu.ehri.project.persistence.ActionManager;
 import org.neo4j.graphdb.GraphDatabaseService;
@@ -30,8 +32,6 @@ import java.util.Map;
  */
 public class TxCheckedNeo4jGraph extends Neo4jGraph {
 
-    private static final String INDEX_NAME = "entities";
-
     private Node cachedEventChain = null;
 
     public TxCheckedNeo4jGraph(String directory) {
@@ -63,6 +63,21 @@ public class TxCheckedNeo4jGraph extends Neo4jGraph {
         }
     }
 
+    /**
+     * Roll back the current transaction, if any. This also counts as
+     * a write, since data read during the transaction may have been
+     * cached. (Committed transactions are counted by the database's
+     * transaction handler, but Neo4j does not report rollbacks to it.)
+     */
+    @Override
+    public void rollback() {
+        boolean inTransaction = isInTransaction();
+        super.rollback();
+        if (inTransaction) {
+            GraphGeneration.endTransaction(this);
+        }
+    }
+
     /**
      * Throw an exception if we're currently in a transaction
      */
@@ -94,8 +109,14 @@ public class TxCheckedNeo4jGraph extends Neo4jGraph {
     // Helper - look up the event chain in the index and cache it.
     private Node getCachedEventChain() {
         if (cachedEventChain == null) {
+            // NB: Don't create the index here if it doesn't yet exist, so
+            // that the graph manager creates it along with its format marker.
+            String indexName = BlueprintsGraphManager.getIndexName(this);
+            if (!getRawGraph().index().existsForNodes(indexName)) {
+                return null;
+            }
             IndexHits<Node> entities = getRawGraph().index()
-                    .forNodes(INDEX_NAME).get(EntityType.ID_KEY, ActionManager
+                    .forNodes(indexName).get(EntityType.ID_KEY, ActionManager
                             .GLOBAL_EVENT_ROOT);
             try {
                 cachedEventChain = entities.getSingle();
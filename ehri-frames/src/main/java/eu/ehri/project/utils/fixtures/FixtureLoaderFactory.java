@@ -2,6 +2,7 @@ package eu.ehri.project.utils.fixtures;
 
 import com.tinkerpop.blueprints.TransactionalGraph;
 import com.tinkerpop.frames.FramedGraph;
+import eu.ehri.project.utils.fixtures.impl.SnapshotFixtureLoader;
 import eu.ehri.project.utils.fixtures.impl.YamlFixtureLoader;
 
 /**
@@ -33,4 +34,28 @@ public class FixtureLoaderFactory {
     public static FixtureLoader getInstance(FramedGraph<? extends TransactionalGraph> graph, boolean initialize) {
         return new YamlFixtureLoader(graph, initialize);
     }
+
+    /**
+     * Get an instance of a fixture loader which copies a snapshot
+     * of previously-loaded fixtures into empty graphs, rather than
+     * loading them from scratch.
+     *
+     * @param graph
+     * @return
+     */
+    public static FixtureLoader getSnapshotInstance(FramedGraph<? extends TransactionalGraph> graph) {
+        return new SnapshotFixtureLoader(graph);
+    }
+
+    /**
+     * Get an instance of a snapshot fixture loader, specifying
+     * whether or not to initialize the graph before loading.
+     *
+     * @param graph
+     * @param initialize
+     * @return
+     */
+    public static FixtureLoader getSnapshotInstance(FramedGraph<? extends TransactionalGraph> graph, boolean initialize) {
+        return new SnapshotFixtureLoader(graph, initialize);
+    }
 }
@@ -0,0 +1,303 @@
+package eu.ehri.project.utils.fixtures.impl;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Element;
+import com.tinkerpop.blueprints.TransactionalGraph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.frames.FramedGraph;
+import eu.ehri.project.core.GraphManager;
+import eu.ehri.project.core.GraphManagerFactory;
+import eu.ehri.project.models.annotations.EntityType;
+import eu.ehri.project.utils.fixtures.FixtureLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load fixtures by copying a pre-built snapshot of the fixture graph.
+ * <p/>
+ * The first time a given set of fixtures is loaded into an empty graph
+ * it is loaded from YAML, as with the {@link YamlFixtureLoader}, and the
+ * resulting vertices and edges are then recorded in memory. Subsequent
+ * loads of the same fixtures into an empty graph copy that snapshot
+ * directly, which avoids re-parsing the YAML and creating each item
+ * via the bundle persister. If the target graph already contains
+ * items the fixtures are loaded from YAML as normal.
+ * <p/>
+ * Snapshots are held for the lifetime of the JVM and are identified by
+ * a checksum of the fixture data and whether or not the graph is also
+ * initialized. Cumulative timings are available via {@link #getTimings()}
+ * and are logged when the JVM exits.
+ *
+ * @author Mike Bryant (http://github.com/mikesname)
+ */
+public class SnapshotFixtureLoader implements FixtureLoader {
+
+    private static final Logger logger = LoggerFactory.getLogger(SnapshotFixtureLoader.class);
+
+    private static final boolean DEFAULT_INIT = true;
+    private static final String DEFAULT_FIXTURE_FILE = "testdata.yaml";
+
+    private static final ConcurrentMap<String, Snapshot> snapshots = Maps.newConcurrentMap();
+    private static final Timings timings = new Timings();
+
+    static {
+        // Report how long fixture loading took overall
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+                if (timings.getBuilds() + timings.getFallbacks() > 0) {
+                    logger.info(timings.toString());
+                }
+            }
+        });
+    }
+
+    private final FramedGraph<? extends TransactionalGraph> graph;
+    private final GraphManager manager;
+    private final boolean initialize;
+
+    /**
+     * Constructor
+     *
+     * @param graph      The graph
+     * @param initialize Whether or not to initialize the graph
+     */
+    public SnapshotFixtureLoader(FramedGraph<? extends TransactionalGraph> graph, boolean initialize) {
+        this.graph = graph;
+        this.initialize = initialize;
+        manager = GraphManagerFactory.getInstance(graph);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param graph The graph
+     */
+    public SnapshotFixtureLoader(FramedGraph<? extends TransactionalGraph> graph) {
+        this(graph, DEFAULT_INIT);
+    }
+
+    /**
+     * Cumulative timings for fixture loading in this JVM.
+     */
+    public static class Timings {
+        private final AtomicLong builds = new AtomicLong();
+        private final AtomicLong buildMillis = new AtomicLong();
+        private final AtomicLong copies = new AtomicLong();
+        private final AtomicLong copyMillis = new AtomicLong();
+        private final AtomicLong fallbacks = new AtomicLong();
+        private final AtomicLong fallbackMillis = new AtomicLong();
+
+        public long getBuilds() {
+            return builds.get();
+        }
+
+        public long getCopies() {
+            return copies.get();
+        }
+
+        public long getFallbacks() {
+            return fallbacks.get();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Fixture snapshots: %d built (%d ms), " +
+                    "%d copied (%d ms, avg %d ms), %d loaded from YAML (%d ms)",
+                    builds.get(), buildMillis.get(),
+                    copies.get(), copyMillis.get(),
+                    copies.get() == 0 ? 0 : copyMillis.get() / copies.get(),
+                    fallbacks.get(), fallbackMillis.get());
+        }
+    }
+
+    /**
+     * Get the cumulative fixture loading timings.
+     *
+     * @return a timings object
+     */
+    public static Timings getTimings() {
+        return timings;
+    }
+
+    @Override
+    public SnapshotFixtureLoader setInitializing(boolean initialize) {
+        return new SnapshotFixtureLoader(graph, initialize);
+    }
+
+    @Override
+    public void loadTestData() {
+        loadTestData(DEFAULT_FIXTURE_FILE);
+    }
+
+    @Override
+    public void loadTestData(String resourceNameOrPath) {
+        File file = new File(resourceNameOrPath);
+        try {
+            InputStream stream = file.exists() && file.isFile()
+                    ? new FileInputStream(file)
+                    : this.getClass().getClassLoader()
+                    .getResourceAsStream(resourceNameOrPath);
+            if (stream == null) {
+                throw new IOException("Fixture file not found: " + resourceNameOrPath);
+            }
+            loadTestData(stream);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void loadTestData(InputStream stream) {
+        byte[] data;
+        try {
+            try {
+                data = ByteStreams.toByteArray(stream);
+            } finally {
+                stream.close();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        long start = System.currentTimeMillis();
+        if (!isEmpty()) {
+            loadYaml(data);
+            timings.fallbacks.incrementAndGet();
+            timings.fallbackMillis.addAndGet(System.currentTimeMillis() - start);
+            return;
+        }
+
+        String key = initialize + ":" + Hashing.md5().hashBytes(data);
+        Snapshot snapshot = snapshots.get(key);
+        if (snapshot == null) {
+            loadYaml(data);
+            snapshot = Snapshot.of(graph);
+            snapshots.putIfAbsent(key, snapshot);
+            long time = System.currentTimeMillis() - start;
+            timings.builds.incrementAndGet();
+            timings.buildMillis.addAndGet(time);
+            logger.info("Built fixture snapshot with {} vertices and {} edges in {} ms",
+                    snapshot.vertices.size(), snapshot.edges.size(), time);
+        } else {
+            copySnapshot(snapshot);
+            long time = System.currentTimeMillis() - start;
+            timings.copies.incrementAndGet();
+            timings.copyMillis.addAndGet(time);
+            logger.debug("Copied fixture snapshot in {} ms", time);
+        }
+    }
+
+    private void loadYaml(byte[] data) {
+        new YamlFixtureLoader(graph, initialize).loadTestData(new ByteArrayInputStream(data));
+    }
+
+    private boolean isEmpty() {
+        for (Vertex vertex : graph.getBaseGraph().getVertices()) {
+            if (vertex.getProperty(EntityType.TYPE_KEY) != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void copySnapshot(Snapshot snapshot) {
+        TransactionalGraph baseGraph = graph.getBaseGraph();
+        try {
+            List<Vertex> vertices = Lists.newArrayListWithCapacity(snapshot.vertices.size());
+            for (Map<String, Object> props : snapshot.vertices) {
+                vertices.add(setProperties(baseGraph.addVertex(null), props));
+            }
+            for (EdgeData edge : snapshot.edges) {
+                setProperties(baseGraph.addEdge(null, vertices.get(edge.out),
+                        vertices.get(edge.in), edge.label), edge.properties);
+            }
+            for (Vertex vertex : vertices) {
+                manager.reindexVertex(vertex);
+            }
+            baseGraph.commit();
+        } catch (RuntimeException e) {
+            baseGraph.rollback();
+            throw e;
+        }
+    }
+
+    private static <E extends Element> E setProperties(E element, Map<String, Object> props) {
+        for (Map.Entry<String, Object> entry : props.entrySet()) {
+            element.setProperty(entry.getKey(), entry.getValue());
+        }
+        return element;
+    }
+
+    private static Map<String, Object> getProperties(Element element) {
+        Map<String, Object> props = Maps.newHashMap();
+        for (String key : element.getPropertyKeys()) {
+            props.put(key, element.getProperty(key));
+        }
+        return Collections.unmodifiableMap(props);
+    }
+
+    private static class EdgeData {
+        final int out;
+        final int in;
+        final String label;
+        final Map<String, Object> properties;
+
+        EdgeData(int out, int in, String label, Map<String, Object> properties) {
+            this.out = out;
+            this.in = in;
+            this.label = label;
+            this.properties = properties;
+        }
+    }
+
+    /**
+     * The typed vertices of a fixture graph and the edges between
+     * them, with vertices referred to by their position in the list.
+     */
+    private static class Snapshot {
+        final List<Map<String, Object>> vertices;
+        final List<EdgeData> edges;
+
+        Snapshot(List<Map<String, Object>> vertices, List<EdgeData> edges) {
+            this.vertices = vertices;
+            this.edges = edges;
+        }
+
+        static Snapshot of(FramedGraph<? extends TransactionalGraph> graph) {
+            Map<Object, Integer> positions = Maps.newHashMap();
+            List<Map<String, Object>> vertices = Lists.newArrayList();
+            for (Vertex vertex : graph.getBaseGraph().getVertices()) {
+                if (vertex.getProperty(EntityType.TYPE_KEY) != null) {
+                    positions.put(vertex.getId(), vertices.size());
+                    vertices.add(getProperties(vertex));
+                }
+            }
+            List<EdgeData> edges = Lists.newArrayList();
+            for (Edge edge : graph.getBaseGraph().getEdges()) {
+                Integer out = positions.get(edge.getVertex(Direction.OUT).getId());
+                Integer in = positions.get(edge.getVertex(Direction.IN).getId());
+                if (out != null && in != null) {
+                    edges.add(new EdgeData(out, in, edge.getLabel(), getProperties(edge)));
+                }
+            }
+            return new Snapshot(vertices, edges);
+        }
+    }
+}
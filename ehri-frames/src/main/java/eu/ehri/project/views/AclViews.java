@@ -21,6 +21,7 @@ import eu.ehri.project.models.base.Accessor;
 import eu.ehri.project.models.base.Actioner;
 import eu.ehri.project.models.base.PermissionGrantTarget;
 import eu.ehri.project.models.base.PermissionScope;
+import eu.ehri.project.models.utils.GroupMembershipCache;
 import eu.ehri.project.persistence.ActionManager;
 
 import java.util.Collection;
@@ -226,14 +227,8 @@ public final class AclViews implements Scoped<AclViews> {
         // b) they have the modify permission on that group, and
         // c) they have grant permissions for the user
         if (!acl.belongsToAdmin(grantee)) {
-            boolean found = false;
-            for (Accessor acc : grantee.getAllParents()) {
-                if (group.equals(acc)) {
-                    found = true;
-                    break;
-                }
-            }
-            if (!found) {
+            if (acl.isAnonymous(grantee) || !GroupMembershipCache
+                    .isMemberOf(graph.getBaseGraph(), grantee.asVertex(), group.asVertex())) {
                 throw new PermissionDenied(grantee.getId(), group.getId(),
                         "Non-admin users cannot add other users to groups that they" +
                                 " do not themselves belong to.");
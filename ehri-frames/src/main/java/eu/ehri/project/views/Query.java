@@ -1,5 +1,6 @@
 package eu.ehri.project.views;
 
+import com.google.common.base.Joiner;
 import com.google.common.base.Optional;
 import com.google.common.collect.ComparisonChain;
 import com.google.common.collect.ImmutableList;
@@ -17,9 +18,11 @@ import com.tinkerpop.pipes.PipeFunction;
 import com.tinkerpop.pipes.util.structures.Pair;
 import eu.ehri.project.acl.AclManager;
 import eu.ehri.project.acl.SystemScope;
+import eu.ehri.project.core.GraphGeneration;
 import eu.ehri.project.core.GraphManager;
 import eu.ehri.project.core.GraphManagerFactory;
 import eu.ehri.project.models.EntityClass;
+import eu.ehri.project.models.Group;
 import eu.ehri.project.models.base.AccessibleEntity;
 import eu.ehri.project.models.base.Accessor;
 import eu.ehri.project.models.base.Frame;
@@ -61,6 +64,7 @@ public final class Query<E extends AccessibleEntity> implements Scoped<Query> {
     private final ImmutableMap<Pair<String, Direction>, Integer> depthFilters;
     private final List<GremlinPipeline<Vertex, Vertex>> traversalFilters;
     private final boolean stream;
+    private final Optional<String> cacheKey;
 
     private final FramedGraph<?> graph;
     private final GraphManager manager;
@@ -97,7 +101,8 @@ public final class Query<E extends AccessibleEntity> implements Scoped<Query> {
             final SortedMap<String, Pair<FilterPredicate, String>> filters,
             final Map<Pair<String, Direction>, Integer> depthFilters,
             final List<GremlinPipeline<Vertex, Vertex>> traversalFilters,
-            final boolean stream) {
+            final boolean stream,
+            final Optional<String> cacheKey) {
         this.graph = graph;
         this.cls = cls;
         this.scope = scope;
@@ -111,6 +116,7 @@ public final class Query<E extends AccessibleEntity> implements Scoped<Query> {
         this.stream = stream;
         this.depthFilters = ImmutableMap.copyOf(depthFilters);
         this.traversalFilters = ImmutableList.copyOf(traversalFilters);
+        this.cacheKey = cacheKey;
         manager = GraphManagerFactory.getInstance(graph);
     }
 
@@ -125,7 +131,8 @@ public final class Query<E extends AccessibleEntity> implements Scoped<Query> {
                 .<Pair<String, Sort>>absent(), ImmutableSortedMap
                 .<String, Pair<FilterPredicate, String>>of(), Maps
                 .<Pair<String, Direction>, Integer>newHashMap(),
-                ImmutableList.<GremlinPipeline<Vertex, Vertex>>of(), false);
+                ImmutableList.<GremlinPipeline<Vertex, Vertex>>of(), false,
+                Optional.<String>absent());
     }
 
     /**
@@ -134,7 +141,8 @@ public final class Query<E extends AccessibleEntity> implements Scoped<Query> {
     public Query<E> copy(Query<E> other) {
         return new Query<E>(other.graph, other.cls, other.scope, other.offset,
                 other.limit, other.sort, other.traversalSort, other.defaultSort, other.filters,
-                other.depthFilters, other.traversalFilters, other.stream);
+                other.depthFilters, other.traversalFilters, other.stream,
+                other.cacheKey);
     }
 
 
@@ -186,6 +194,9 @@ public final class Query<E extends AccessibleEntity> implements Scoped<Query> {
     /**
      * Wrapper method for FramedVertexIterables that converts a
      * FramedVertexIterable<T> back into a plain Iterable<Vertex>.
+     * <p/>
+     * Callers that already have raw vertices should page them with
+     * {@link #pageVertices(Iterable, Accessor)} instead.
      *
      * @param <T>
      */
@@ -229,7 +240,13 @@ public final class Query<E extends AccessibleEntity> implements Scoped<Query> {
      * for the given page/count.
      */
     public Page<E> page(EntityClass type, Accessor user) {
-        return page(manager.getFrames(type, cls), user);
+        CloseableIterable<Vertex> vertices = manager.getVertices(type);
+        Page<E> page = filterAndPage(vertices, user, cls, "type:" + type);
+        if (!stream) {
+            // All the items have been read
+            vertices.close();
+        }
+        return page;
     }
 
     /**
@@ -246,25 +263,18 @@ public final class Query<E extends AccessibleEntity> implements Scoped<Query> {
      */
     public <T extends Frame> Page<T> page(Iterable<T> vertices,
             Accessor user, Class<T> cls) {
-        PipeFunction<Vertex, Boolean> aclFilterFunction = new AclManager(graph)
-                .getAclFilterFunction(user);
-
-        GremlinPipeline<E, Vertex> pipeline = new GremlinPipeline<E, Vertex>(
-                new FramedVertexIterableAdaptor<T>(vertices))
-                .filter(aclFilterFunction);
+        return filterAndPage(new FramedVertexIterableAdaptor<T>(vertices), user, cls,
+                "items:" + cls.getName());
+    }
 
-        if (stream) {
-            return new Page<T>(graph.frameVertices(
-                    setPipelineRange(setOrder(applyFilters(pipeline))), cls), offset, limit, NO_COUNT);
-        } else {
-            // FIXME: We have to read the vertices into memory here since we
-            // can't re-use the iterator for counting and streaming.
-            ArrayList<Vertex> userVerts = Lists.newArrayList(applyFilters(pipeline).iterator());
-            Iterable<T> iterable = graph.frameVertices(
-                    setPipelineRange(setOrder(new GremlinPipeline<Vertex, Vertex>(
-                            userVerts))), cls);
-            return new Page<T>(iterable, offset, limit, userVerts.size());
-        }
+    /**
+     * Return a Page instance containing a total of total items, and an iterable
+     * for the given page/count, from raw vertices. Only the items in the page
+     * are framed, so this is preferable to paging framed items where the
+     * vertices are available.
+     */
+    public Page<E> pageVertices(Iterable<Vertex> vertices, Accessor user) {
+        return filterAndPage(vertices, user, cls, "vertices:" + cls.getName());
     }
 
     /**
@@ -272,29 +282,61 @@ public final class Query<E extends AccessibleEntity> implements Scoped<Query> {
      * for the given page/count.
      */
     public Page<E> page(String key, String query, Accessor user) {
-        CloseableIterable<Vertex> countQ = manager.getVertices(key, query,
-                ClassUtils.getEntityType(cls));
+        CloseableIterable<Vertex> indexQ = manager.getVertices(key,
+                query, ClassUtils.getEntityType(cls));
         try {
-            CloseableIterable<Vertex> indexQ = manager.getVertices(key,
-                    query, ClassUtils.getEntityType(cls));
-            try {
-                PipeFunction<Vertex, Boolean> aclFilterFunction = new AclManager(
-                        graph).getAclFilterFunction(user);
-                long numItems = stream
-                        ? NO_COUNT
-                        : applyFilters(new GremlinPipeline<Vertex, Vertex>(countQ)
-                            .filter(aclFilterFunction)).count();
-
-                return new Page<E>(
-                        graph.frameVertices(
-                                setPipelineRange(setOrder(applyFilters(new GremlinPipeline<Vertex, Vertex>(
-                                        indexQ).filter(aclFilterFunction)))),
-                                cls), offset, limit, numItems);
-            } finally {
-                indexQ.close();
-            }
+            return filterAndPage(indexQ, user, cls, "index:" + key + "=" + query);
         } finally {
-            countQ.close();
+            indexQ.close();
+        }
+    }
+
+    /**
+     * Filter, order and page raw vertices. Only the vertices in the
+     * resulting page are framed, as and when they are iterated.
+     */
+    private <T extends Frame> Page<T> filterAndPage(Iterable<Vertex> vertices,
+            Accessor user, Class<T> cls, String source) {
+        long generation = GraphGeneration.get(graph.getBaseGraph());
+        AclManager acl = new AclManager(graph);
+        Optional<String> key = cacheKey.isPresent()
+                ? getCacheKey(source, getAccessorKey(acl, user))
+                : Optional.<String>absent();
+        if (key.isPresent()) {
+            List<Object> ids = QueryCache.getIds(graph.getBaseGraph(), key.get(), generation);
+            if (ids != null) {
+                Optional<List<Vertex>> pageVerts = getVertices(slice(ids));
+                if (pageVerts.isPresent()) {
+                    return new Page<T>(graph.frameVertices(pageVerts.get(), cls), offset, limit,
+                            stream ? NO_COUNT : ids.size());
+                }
+            }
+        }
+
+        GremlinPipeline<Vertex, Vertex> pipeline = new GremlinPipeline<Vertex, Vertex>(
+                vertices).filter(acl.getAclFilterFunction(user));
+
+        if (stream) {
+            return new Page<T>(graph.frameVertices(
+                    setPipelineRange(setOrder(applyFilters(pipeline))), cls), offset, limit, NO_COUNT);
+        } else if (key.isPresent()) {
+            // Keep the IDs of all the ordered items for subsequent pages
+            List<Vertex> userVerts = Lists.newArrayList(setOrder(applyFilters(pipeline)).iterator());
+            List<Object> ids = Lists.newArrayListWithCapacity(userVerts.size());
+            for (Vertex vertex : userVerts) {
+                ids.add(vertex.getId());
+            }
+            QueryCache.putIds(graph.getBaseGraph(), key.get(), generation, ids);
+            return new Page<T>(graph.frameVertices(slice(userVerts), cls), offset, limit,
+                    userVerts.size());
+        } else {
+            // FIXME: We have to read the vertices into memory here since we
+            // can't re-use the iterator for counting and streaming.
+            ArrayList<Vertex> userVerts = Lists.newArrayList(applyFilters(pipeline).iterator());
+            List<Vertex> pageVerts = Lists.newArrayList(
+                    setPipelineRange(setOrder(new GremlinPipeline<Vertex, Vertex>(
+                            userVerts))).iterator());
+            return new Page<T>(graph.frameVertices(pageVerts, cls), offset, limit, userVerts.size());
         }
     }
 
@@ -320,9 +362,7 @@ public final class Query<E extends AccessibleEntity> implements Scoped<Query> {
      * NB: Count doesn't 'account' for ACL privileges!
      */
     public <T> long count(Iterable<T> vertices) {
-        GremlinPipeline<T, Vertex> filter = new GremlinPipeline<T, Vertex>(vertices);
-
-        return applyFilters(filter).count();
+        return count(vertices, "items");
     }
 
     /**
@@ -331,7 +371,23 @@ public final class Query<E extends AccessibleEntity> implements Scoped<Query> {
      * NB: Count doesn't 'account' for ACL privileges!
      */
     public long count(EntityClass type) {
-        return count(manager.getVertices(type));
+        return count(manager.getVertices(type), "type:" + type);
+    }
+
+    private <T> long count(Iterable<T> vertices, String source) {
+        long generation = GraphGeneration.get(graph.getBaseGraph());
+        Optional<String> key = getCacheKey(source, "*");
+        if (key.isPresent()) {
+            Long count = QueryCache.getCount(graph.getBaseGraph(), key.get(), generation);
+            if (count != null) {
+                return count;
+            }
+        }
+        long count = applyFilters(new GremlinPipeline<T, Vertex>(vertices)).count();
+        if (key.isPresent()) {
+            QueryCache.putCount(graph.getBaseGraph(), key.get(), generation, count);
+        }
+        return count;
     }
 
     /**
@@ -341,7 +397,8 @@ public final class Query<E extends AccessibleEntity> implements Scoped<Query> {
      */
     public Query<E> setOffset(int offset) {
         return new Query<E>(graph, cls, scope, offset,
-                limit, sort, traversalSort, defaultSort, filters, depthFilters, traversalFilters, stream);
+                limit, sort, traversalSort, defaultSort, filters, depthFilters, traversalFilters,
+                stream, cacheKey);
     }
 
     /**
@@ -352,7 +409,7 @@ public final class Query<E extends AccessibleEntity> implements Scoped<Query> {
     public Query<E> setLimit(int limit) {
         return new Query<E>(graph, cls, scope, offset,
                 limit, sort, traversalSort, defaultSort, filters,
-                depthFilters, traversalFilters, stream);
+                depthFilters, traversalFilters, stream, cacheKey);
     }
 
     /**
@@ -365,7 +422,27 @@ public final class Query<E extends AccessibleEntity> implements Scoped<Query> {
     public Query<E> setStream(boolean stream) {
         return new Query<E>(graph, cls, scope, offset,
                 limit, sort, traversalSort, defaultSort, filters,
-                depthFilters, traversalFilters, stream);
+                depthFilters, traversalFilters, stream, cacheKey);
+    }
+
+    /**
+     * Cache the ordered IDs of the items matched by this query, so that
+     * repeated requests for pages of the same listing, or its count, are
+     * served without re-running it. Cached results are shared between
+     * accessors with the same group memberships, and are discarded when
+     * the graph is next written to, or a transaction that changes its
+     * database is committed by any other means.
+     * <p/>
+     * Queries with traversal filters are never cached.
+     *
+     * @param key A key identifying the items being listed. For listings of
+     *            related items this must include the ID of the item they are
+     *            related to, and the relationship.
+     */
+    public Query<E> setCacheKey(String key) {
+        return new Query<E>(graph, cls, scope, offset,
+                limit, sort, traversalSort, defaultSort, filters,
+                depthFilters, traversalFilters, stream, Optional.of(key));
     }
 
     /**
@@ -375,7 +452,7 @@ public final class Query<E extends AccessibleEntity> implements Scoped<Query> {
 
         return new Query<E>(graph, cls, scope, offset, limit, sort, traversalSort,
                 Optional.of(new Pair<String, Sort>(field, order)), filters,
-                depthFilters, traversalFilters, stream);
+                depthFilters, traversalFilters, stream, cacheKey);
     }
 
     /**
@@ -385,7 +462,7 @@ public final class Query<E extends AccessibleEntity> implements Scoped<Query> {
         SortedMap<String, Sort> tmp = new ImmutableSortedMap.Builder<String, Sort>(
                 Ordering.natural()).putAll(sort).put(field, order).build();
         return new Query<E>(graph, cls, scope, offset, limit, tmp, traversalSort, defaultSort,
-                filters, depthFilters, traversalFilters, stream);
+                filters, depthFilters, traversalFilters, stream, cacheKey);
     }
 
     public Query<E> orderByTraversal(QueryUtils.TraversalPath tp, Sort order) {
@@ -393,7 +470,7 @@ public final class Query<E extends AccessibleEntity> implements Scoped<Query> {
                 Ordering.arbitrary()).putAll(traversalSort);
         tmp.put(tp, order);
         return new Query<E>(graph, cls, scope, offset, limit, sort, tmp.build(), defaultSort,
-                filters, depthFilters, traversalFilters, stream);
+                filters, depthFilters, traversalFilters, stream, cacheKey);
     }
 
 
@@ -435,7 +512,7 @@ public final class Query<E extends AccessibleEntity> implements Scoped<Query> {
                 defaultSort,
                 ImmutableSortedMap.<String, Pair<FilterPredicate, String>>of(),
                 depthFilters, traversalFilters,
-                stream);
+                stream, cacheKey);
     }
 
     /**
@@ -453,7 +530,7 @@ public final class Query<E extends AccessibleEntity> implements Scoped<Query> {
                 defaultSort,
                 filters,
                 depthFilters, traversalFilters,
-                stream);
+                stream, cacheKey);
     }
 
     /**
@@ -464,7 +541,7 @@ public final class Query<E extends AccessibleEntity> implements Scoped<Query> {
         Map<Pair<String, Direction>, Integer> tmp = Maps.newHashMap(depthFilters);
         tmp.put(new Pair<String, Direction>(label, direction), depth);
         return new Query<E>(graph, cls, scope, offset, limit, sort,
-                traversalSort, defaultSort, filters, tmp, traversalFilters, stream);
+                traversalSort, defaultSort, filters, tmp, traversalFilters, stream, cacheKey);
     }
 
     /**
@@ -483,7 +560,7 @@ public final class Query<E extends AccessibleEntity> implements Scoped<Query> {
         builder.put(property, new Pair<FilterPredicate, String>(predicate, value));
 
         return new Query<E>(graph, cls, scope, offset, limit, sort,
-                traversalSort, defaultSort, builder.build(), depthFilters, traversalFilters, stream);
+                traversalSort, defaultSort, builder.build(), depthFilters, traversalFilters, stream, cacheKey);
     }
 
     /**
@@ -494,7 +571,7 @@ public final class Query<E extends AccessibleEntity> implements Scoped<Query> {
         ArrayList<GremlinPipeline<Vertex, Vertex>> tmp = Lists.newArrayList(traversalFilters);
         tmp.add(getFilterTraversalPipeline(path, new Pair<FilterPredicate, String>(predicate, value)));
         return new Query<E>(graph, cls, scope, offset, limit, sort,
-                traversalSort, defaultSort, filters, depthFilters, tmp, stream);
+                traversalSort, defaultSort, filters, depthFilters, tmp, stream, cacheKey);
     }
 
     /**
@@ -528,6 +605,80 @@ public final class Query<E extends AccessibleEntity> implements Scoped<Query> {
 
     // Helpers
 
+    /**
+     * Get the key under which the results of this query are cached, from
+     * the given source of items and accessor, if caching is enabled. The
+     * key must account for everything that affects which items are
+     * selected and their order, but not the offset and limit.
+     */
+    private Optional<String> getCacheKey(String source, String accessorKey) {
+        if (!cacheKey.isPresent() || !traversalFilters.isEmpty()) {
+            return Optional.absent();
+        }
+        List<String> parts = Lists.newArrayList(cacheKey.get(), source,
+                cls.getName(), scope.getId(), accessorKey);
+        for (Entry<String, Pair<FilterPredicate, String>> entry : filters.entrySet()) {
+            parts.add("filter:" + entry.getKey() + ":" + entry.getValue().getA()
+                    + ":" + entry.getValue().getB());
+        }
+        List<String> depths = Lists.newArrayList();
+        for (Entry<Pair<String, Direction>, Integer> entry : depthFilters.entrySet()) {
+            depths.add("depth:" + entry.getKey().getA() + ":" + entry.getKey().getB()
+                    + ":" + entry.getValue());
+        }
+        parts.addAll(Ordering.natural().sortedCopy(depths));
+        for (Entry<String, Sort> entry : sort.entrySet()) {
+            parts.add("sort:" + entry.getKey() + ":" + entry.getValue());
+        }
+        for (Entry<QueryUtils.TraversalPath, Sort> entry : traversalSort.entrySet()) {
+            parts.add("traversalSort:" + entry.getKey() + ":" + entry.getValue());
+        }
+        if (defaultSort.isPresent()) {
+            parts.add("defaultSort:" + defaultSort.get().getA() + ":" + defaultSort.get().getB());
+        }
+        return Optional.of(Joiner.on('\n').join(parts));
+    }
+
+    /**
+     * Get a key for the items an accessor can see. All admin users can
+     * see everything, otherwise it depends on the accessor and the groups
+     * they belong to.
+     */
+    private String getAccessorKey(AclManager acl, Accessor user) {
+        if (acl.belongsToAdmin(user)) {
+            return Group.ADMIN_GROUP_IDENTIFIER;
+        }
+        List<String> groups = Lists.newArrayList();
+        for (Accessor parent : user.getAllParents()) {
+            groups.add(parent.getId());
+        }
+        return user.getId() + ":" + Joiner.on(',').join(Ordering.natural().sortedCopy(groups));
+    }
+
+    /**
+     * Look up vertices by ID, or return absent if any no longer exist.
+     */
+    private Optional<List<Vertex>> getVertices(List<Object> ids) {
+        List<Vertex> vertices = Lists.newArrayListWithCapacity(ids.size());
+        for (Object id : ids) {
+            Vertex vertex = graph.getBaseGraph().getVertex(id);
+            if (vertex == null) {
+                return Optional.absent();
+            }
+            vertices.add(vertex);
+        }
+        return Optional.of(vertices);
+    }
+
+    /**
+     * Get the range of a list covered by the offset and limit.
+     */
+    private <EE> List<EE> slice(List<EE> items) {
+        int low = Math.min(Math.max(0, offset), items.size());
+        int high = limit < 0 ? items.size() : Math.min(items.size(), low + limit);
+        return items.subList(low, high);
+    }
+
     private <EE> GremlinPipeline<EE, Vertex> setPipelineRange(
             GremlinPipeline<EE, Vertex> filter) {
         int low = Math.max(0, offset);
@@ -806,6 +957,6 @@ public final class Query<E extends AccessibleEntity> implements Scoped<Query> {
                 defaultSort,
                 filters,
                 depthFilters, traversalFilters,
-                stream);
+                stream, cacheKey);
     }
 }
@@ -0,0 +1,143 @@
+package eu.ehri.project.views;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.ImmutableList;
+import com.tinkerpop.blueprints.Graph;
+import eu.ehri.project.core.GraphGeneration;
+
+import java.util.List;
+
+/**
+ * A cache of the results of {@link Query} listings, i.e. the ordered
+ * IDs of the items matched, and of query counts.
+ * <p/>
+ * Results are cached separately for each graph's data store, against
+ * the {@link GraphGeneration} at which they were read, and are only
+ * returned while the graph's generation is unchanged, which for Neo4j
+ * means until a write is committed to the database by any means, not
+ * only through the {@link eu.ehri.project.core.GraphManager}. Each cache is
+ * bounded by the total number of IDs it holds.
+ *
+ * @author Mike Bryant (http://github.com/mikesname)
+ */
+final class QueryCache {
+
+    public static final long MAX_CACHED_IDS = 1000000L;
+
+    private static class Result {
+        private final long generation;
+        private final List<Object> ids;
+        private final long count;
+
+        Result(long generation, List<Object> ids, long count) {
+            this.generation = generation;
+            this.ids = ids;
+            this.count = count;
+        }
+    }
+
+    // NB: Store keys are weak and therefore compared by identity.
+    private static final LoadingCache<Object, Cache<String, Result>> caches = CacheBuilder
+            .newBuilder()
+            .weakKeys()
+            .build(new CacheLoader<Object, Cache<String, Result>>() {
+                @Override
+                public Cache<String, Result> load(Object store) {
+                    return CacheBuilder.newBuilder()
+                            .maximumWeight(MAX_CACHED_IDS)
+                            .weigher(new Weigher<String, Result>() {
+                                @Override
+                                public int weigh(String key, Result result) {
+                                    return result.ids == null ? 1 : result.ids.size() + 1;
+                                }
+                            })
+                            .build();
+                }
+            });
+
+    private QueryCache() {
+    }
+
+    /**
+     * Get the cached item IDs for a query.
+     *
+     * @param graph      the graph
+     * @param key        the query's cache key
+     * @param generation the graph's current generation
+     * @return a list of item IDs, or null if none are cached
+     */
+    static List<Object> getIds(Graph graph, String key, long generation) {
+        Result result = get(graph, key, generation);
+        return result == null ? null : result.ids;
+    }
+
+    /**
+     * Cache the item IDs for a query.
+     *
+     * @param graph      the graph
+     * @param key        the query's cache key
+     * @param generation the graph's generation before the query was run
+     * @param ids        the item IDs
+     */
+    static void putIds(Graph graph, String key, long generation, List<Object> ids) {
+        put(graph, key, new Result(generation, ImmutableList.copyOf(ids), ids.size()));
+    }
+
+    /**
+     * Get the cached count for a query.
+     *
+     * @param graph      the graph
+     * @param key        the query's cache key
+     * @param generation the graph's current generation
+     * @return the count, or null if none is cached
+     */
+    static Long getCount(Graph graph, String key, long generation) {
+        Result result = get(graph, key, generation);
+        return result == null ? null : result.count;
+    }
+
+    /**
+     * Cache the count for a query.
+     *
+     * @param graph      the graph
+     * @param key        the query's cache key
+     * @param generation the graph's generation before the query was run
+     * @param count      the count
+     */
+    static void putCount(Graph graph, String key, long generation, long count) {
+        put(graph, key, new Result(generation, null, count));
+    }
+
+    /**
+     * Discard all cached results for the given graph.
+     *
+     * @param graph the graph
+     */
+    static void invalidate(Graph graph) {
+        Cache<String, Result> cache = caches.getIfPresent(GraphGeneration.getStore(graph));
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+    private static Result get(Graph graph, String key, long generation) {
+        Cache<String, Result> cache = caches.getUnchecked(GraphGeneration.getStore(graph));
+        Result result = cache.getIfPresent(key);
+        if (result != null && result.generation != generation) {
+            cache.invalidate(key);
+            return null;
+        }
+        return result;
+    }
+
+    private static void put(Graph graph, String key, Result result) {
+        // Results read before a write are never used, so don't bother
+        if (result.generation == GraphGeneration.get(graph)) {
+            caches.getUnchecked(GraphGeneration.getStore(graph)).put(key, result);
+        }
+    }
+}
@@ -11,9 +11,11 @@ import eu.ehri.project.exceptions.ItemNotFound;
 import eu.ehri.project.exceptions.PermissionDenied;
 import eu.ehri.project.exceptions.SerializationError;
 import eu.ehri.project.exceptions.ValidationError;
+import eu.ehri.project.models.EntityClass;
 import eu.ehri.project.models.base.AccessibleEntity;
 import eu.ehri.project.models.base.Accessor;
 import eu.ehri.project.models.base.PermissionScope;
+import eu.ehri.project.models.utils.GroupMembershipCache;
 import eu.ehri.project.persistence.Bundle;
 import eu.ehri.project.persistence.BundleDAO;
 import eu.ehri.project.persistence.Mutation;
@@ -157,7 +159,14 @@ public final class CrudViews<E extends AccessibleEntity> implements Crud<E> {
             ValidationError, SerializationError, ItemNotFound {
         E item = manager.getFrame(id, cls);
         helper.checkEntityPermission(item, user, PermissionType.DELETE);
-        return getPersister(scope).delete(serializer.vertexFrameToBundle(item));
+        EntityClass entityClass = manager.getEntityClass(item);
+        int deleted = getPersister(scope).delete(serializer.vertexFrameToBundle(item));
+        if (entityClass == EntityClass.GROUP || entityClass == EntityClass.USER_PROFILE) {
+            // Deleting an accessor changes group membership, and its
+            // vertex ID may be reused...
+            GroupMembershipCache.invalidate(graph.getBaseGraph());
+        }
+        return deleted;
     }
 
     /**
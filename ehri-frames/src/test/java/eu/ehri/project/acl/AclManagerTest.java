@@ -10,6 +10,7 @@ import eu.ehri.project.definitions.Ontology;
 import eu.ehri.project.models.Annotation;
 import eu.ehri.project.models.Country;
 import eu.ehri.project.models.DocumentaryUnit;
+import eu.ehri.project.models.EntityClass;
 import eu.ehri.project.models.Group;
 import eu.ehri.project.models.PermissionGrant;
 import eu.ehri.project.models.Repository;
@@ -170,6 +171,35 @@ public class AclManagerTest extends GraphTestBase {
         assertFalse(permissions2.has(OWNER));
     }
 
+    @Test
+    public void testGetItemPermissions() throws Exception {
+        loader.loadTestData();
+        AclManager acl = new AclManager(graph);
+        UserProfile user = manager.getFrame("reto", UserProfile.class);
+        DocumentaryUnit c4 = manager.getFrame("c4", DocumentaryUnit.class);
+        acl.grantPermission(c4, UPDATE, user);
+
+        List<DocumentaryUnit> docs = Lists.newArrayList(
+                manager.getFrames(EntityClass.DOCUMENTARY_UNIT, DocumentaryUnit.class));
+        for (String userId : Lists.newArrayList("reto", "linda", "tim", "mike")) {
+            Accessor accessor = manager.getFrame(userId, Accessor.class);
+            Map<String, ItemPermissionSet> permissions = acl.getItemPermissions(docs, accessor);
+            assertEquals(docs.size(), permissions.size());
+            for (DocumentaryUnit doc : docs) {
+                for (PermissionType type : PermissionType.values()) {
+                    assertEquals(userId + " " + type + " " + doc.getId(),
+                            acl.hasPermission(doc, type, accessor),
+                            permissions.get(doc.getId()).has(type));
+                }
+            }
+        }
+        Map<String, ItemPermissionSet> permissions = acl.getItemPermissions(
+                Lists.newArrayList(c4), user);
+        assertTrue(permissions.get("c4").has(CREATE));
+        assertTrue(permissions.get("c4").has(UPDATE));
+        assertFalse(permissions.get("c4").has(DELETE));
+    }
+
     @Test
     public void testSetPermissionMatrix() throws Exception {
         loader.loadTestData();
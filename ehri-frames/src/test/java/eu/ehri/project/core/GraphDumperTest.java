@@ -0,0 +1,176 @@
+package eu.ehri.project.core;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hashing;
+import com.google.common.io.CharStreams;
+import com.google.common.io.Files;
+import com.tinkerpop.blueprints.TransactionalGraph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.util.io.graphson.GraphSONTokens;
+import com.tinkerpop.frames.FramedGraph;
+import eu.ehri.project.models.annotations.EntityType;
+import eu.ehri.project.test.GraphTestBase;
+import eu.ehri.project.utils.fixtures.FixtureLoaderFactory;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jettison.json.JSONObject;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Mike Bryant (http://github.com/mikesname)
+ */
+public class GraphDumperTest extends GraphTestBase {
+
+    @Test
+    public void testDumpAndLoad() throws Exception {
+        FixtureLoaderFactory.getInstance(graph).loadTestData();
+        File dir = Files.createTempDir();
+        try {
+            GraphDumper.Manifest manifest = new GraphDumper(graph)
+                    .withSegments(3).dump(dir);
+            assertEquals(getNodeCount(graph), manifest.vertices);
+            assertEquals(getEdgeCount(graph), manifest.edges);
+            assertEquals(6, manifest.segments.size());
+
+            FramedGraph<? extends TransactionalGraph> graph2 = getFramedGraph();
+            try {
+                // Remove the Neo4j reference node, which is dumped along
+                // with everything else...
+                graph2.getBaseGraph().removeVertex(graph2.getVertex(0));
+                new GraphDumper(graph2).withSegments(3).withBatchSize(10).load(dir);
+
+                assertEquals(getNodeCount(graph), getNodeCount(graph2));
+                assertEquals(getEdgeCount(graph), getEdgeCount(graph2));
+                assertEquals(getVertexData(graph), getVertexData(graph2));
+
+                // Check the index has been rebuilt
+                Vertex mike = GraphManagerFactory.getInstance(graph2).getVertex("mike");
+                assertEquals("mike", mike.getProperty(EntityType.ID_KEY));
+            } finally {
+                graph2.shutdown();
+            }
+        } finally {
+            deleteDir(dir);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testLoadWithBadChecksum() throws Exception {
+        FixtureLoaderFactory.getInstance(graph).loadTestData();
+        File dir = Files.createTempDir();
+        try {
+            GraphDumper.Manifest manifest = new GraphDumper(graph).dump(dir);
+            FileOutputStream out = new FileOutputStream(
+                    new File(dir, manifest.segments.get(0).file), true);
+            out.write(0);
+            out.close();
+            new GraphDumper(graph).load(dir);
+        } finally {
+            deleteDir(dir);
+        }
+    }
+
+    @Test
+    public void testLoadWithUnknownVertex() throws Exception {
+        FixtureLoaderFactory.getInstance(graph).loadTestData();
+        File dir = Files.createTempDir();
+        try {
+            GraphDumper.Manifest manifest = new GraphDumper(graph).withSegments(1).dump(dir);
+            // Append an edge from a vertex that isn't in the dump
+            // to the edges segment, and fix up its checksum
+            GraphDumper.Segment edges = manifest.segments.get(1);
+            File file = new File(dir, edges.file);
+            List<String> lines = readLines(file);
+            JSONObject edge = new JSONObject(lines.get(0));
+            edge.put(GraphSONTokens._OUT_V, "unknown");
+            lines.add(edge.toString());
+            writeLines(file, lines);
+            edges.md5 = Files.hash(file, Hashing.md5()).toString();
+            new ObjectMapper().writeValue(new File(dir, GraphDumper.MANIFEST_FILE), manifest);
+
+            FramedGraph<? extends TransactionalGraph> graph2 = getFramedGraph();
+            try {
+                graph2.getBaseGraph().removeVertex(graph2.getVertex(0));
+                try {
+                    new GraphDumper(graph2).withSegments(1).load(dir);
+                    fail("Restoring an edge to an unknown vertex should fail");
+                } catch (IOException e) {
+                    // The batch with the bad edge is not partially loaded
+                    assertEquals(getNodeCount(graph), getNodeCount(graph2));
+                    assertEquals(0, getEdgeCount(graph2));
+                }
+            } finally {
+                graph2.shutdown();
+            }
+        } finally {
+            deleteDir(dir);
+        }
+    }
+
+    private static List<String> readLines(File file) throws IOException {
+        InputStream stream = new GZIPInputStream(new FileInputStream(file));
+        try {
+            return CharStreams.readLines(new InputStreamReader(stream, Charsets.UTF_8));
+        } finally {
+            stream.close();
+        }
+    }
+
+    private static void writeLines(File file, List<String> lines) throws IOException {
+        Writer writer = new OutputStreamWriter(
+                new GZIPOutputStream(new FileOutputStream(file)), Charsets.UTF_8);
+        try {
+            for (String line : lines) {
+                writer.write(line);
+                writer.write('\n');
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    private Set<Map<String, Object>> getVertexData(FramedGraph<?> graph) {
+        Set<Map<String, Object>> data = Sets.newHashSet();
+        for (Vertex v : graph.getVertices()) {
+            Map<String, Object> props = Maps.newHashMap();
+            for (String key : v.getPropertyKeys()) {
+                Object value = v.getProperty(key);
+                props.put(key, value instanceof Object[]
+                        ? Arrays.asList((Object[]) value) : value);
+            }
+            data.add(props);
+        }
+        assertTrue(data.size() > 0);
+        return data;
+    }
+
+    private static void deleteDir(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+}
@@ -3,7 +3,9 @@ package eu.ehri.project.core;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.tinkerpop.blueprints.CloseableIterable;
+import com.tinkerpop.blueprints.Index;
 import com.tinkerpop.blueprints.TransactionalGraph;
 import com.tinkerpop.blueprints.Vertex;
 import com.tinkerpop.blueprints.impls.neo4j.Neo4jGraph;
@@ -11,6 +13,7 @@ import com.tinkerpop.frames.FramedGraph;
 import com.tinkerpop.frames.FramedGraphFactory;
 import eu.ehri.project.core.impl.BlueprintsGraphManager;
 import eu.ehri.project.core.impl.Neo4jGraphManager;
+import eu.ehri.project.definitions.Ontology;
 import eu.ehri.project.exceptions.IntegrityError;
 import eu.ehri.project.exceptions.ItemNotFound;
 import eu.ehri.project.models.EntityClass;
@@ -241,6 +244,78 @@ public class GraphManagerTest {
             manager.setProperty(vertex, EntityType.ID_KEY, "foo");
         }
 
+        @Test
+        public void testGetVerticesByIds() throws Exception {
+            Map<String, String> data = ImmutableMap.of(TEST_KEY, TEST_VALUE);
+            Vertex v1 = manager.createVertex("id1", TEST_TYPE, data);
+            Vertex v2 = manager.createVertex("id2", TEST_TYPE, data);
+            Vertex v3 = manager.createVertex("id3", TEST_TYPE, data);
+
+            // Order and duplicates should be preserved
+            CloseableIterable<Vertex> vertices = manager.getVertices(
+                    Lists.newArrayList("id3", "id1", "id3", "id2"));
+            assertEquals(Lists.newArrayList(v3, v1, v3, v2),
+                    Lists.newArrayList(vertices));
+        }
+
+        @Test(expected = ItemNotFound.class)
+        public void testGetVerticesByIdsWithMissingId() throws Exception {
+            Map<String, String> data = ImmutableMap.of(TEST_KEY, TEST_VALUE);
+            manager.createVertex(TEST_ID1, TEST_TYPE, data);
+            manager.getVertices(Lists.newArrayList(TEST_ID1, NON_EXISTING_ID));
+        }
+
+        @Test
+        public void testGetVerticesByKeyValueAndType() throws Exception {
+            Map<String, String> data = ImmutableMap.of(TEST_KEY, TEST_VALUE);
+            Vertex v1 = manager.createVertex("id1", TEST_TYPE, data);
+            manager.createVertex("id2", EntityClass.GROUP, data);
+
+            assertEquals(Lists.newArrayList(v1), Lists.newArrayList(
+                    manager.getVertices(TEST_KEY, TEST_VALUE, TEST_TYPE)));
+
+            // Changing a property should update typed lookups
+            manager.setProperty(v1, TEST_KEY, "foo");
+            assertFalse(manager.getVertices(TEST_KEY, TEST_VALUE, TEST_TYPE)
+                    .iterator().hasNext());
+            assertEquals(Lists.newArrayList(v1), Lists.newArrayList(
+                    manager.getVertices(TEST_KEY, "foo", TEST_TYPE)));
+
+            // ...as should renaming
+            manager.renameVertex(v1, "id1", "id3");
+            assertEquals(v1, manager.getVertex("id3", TEST_TYPE));
+        }
+
+        @Test
+        public void testGetVertexByTypeWithoutTypedIndexKeys() throws Exception {
+            // Simulate an index created, and a vertex indexed, before
+            // typed keys were introduced
+            Neo4jGraph baseGraph = (Neo4jGraph) graph.getBaseGraph();
+            Index<Vertex> index = baseGraph.createIndex(
+                    BlueprintsGraphManager.getIndexName(baseGraph), Vertex.class);
+            Vertex v1 = baseGraph.addVertex(null);
+            v1.setProperty(EntityType.ID_KEY, TEST_ID1);
+            v1.setProperty(EntityType.TYPE_KEY, TEST_TYPE.getName());
+            v1.setProperty(Ontology.NAME_KEY, TEST_VALUE);
+            index.put(EntityType.ID_KEY, TEST_ID1, v1);
+            index.put(EntityType.TYPE_KEY, TEST_TYPE.getName(), v1);
+            index.put(Ontology.NAME_KEY, TEST_VALUE, v1);
+
+            // Vertices indexed since have typed keys, but the older
+            // ones must still be found...
+            Vertex v2 = manager.createVertex("id2", TEST_TYPE,
+                    ImmutableMap.of(Ontology.NAME_KEY, TEST_VALUE));
+            assertEquals(v1, manager.getVertex(TEST_ID1, TEST_TYPE));
+            assertEquals(Sets.newHashSet(v1, v2), Sets.newHashSet(
+                    manager.getVertices(Ontology.NAME_KEY, TEST_VALUE, TEST_TYPE)));
+
+            // ... as they are once the index has been rebuilt
+            manager.rebuildIndex();
+            assertEquals(v1, manager.getVertex(TEST_ID1, TEST_TYPE));
+            assertEquals(Sets.newHashSet(v1, v2), Sets.newHashSet(
+                    manager.getVertices(Ontology.NAME_KEY, TEST_VALUE, TEST_TYPE)));
+        }
+
         @Test
         public void testSelectiveIndexing() throws Exception,
                 IntegrityError {
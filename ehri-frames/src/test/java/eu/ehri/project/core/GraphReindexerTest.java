@@ -1,5 +1,8 @@
 package eu.ehri.project.core;
 
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import com.tinkerpop.blueprints.CloseableIterable;
 import com.tinkerpop.blueprints.Index;
 import com.tinkerpop.blueprints.IndexableGraph;
@@ -12,8 +15,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.HashMap;
+import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -42,6 +48,111 @@ public class GraphReindexerTest extends ModelTestBase {
     	checkIndex();
     }
     
+    @Test
+    public void reindexInBatches() throws Exception {
+        HashMap<EntityClass, Long> countBefore = countManagedTypes();
+        final List<Long> progress = Lists.newArrayList();
+        GraphReindexer reindexer = new GraphReindexer(graph).withBatchSize(10);
+
+        long count = reindexer.reindexInBatches(new GraphReindexer.ProgressListener() {
+            @Override
+            public void progress(long count) {
+                progress.add(count);
+            }
+        });
+        assertEquals(getNodeCount(graph), count);
+        assertEquals(Long.valueOf(count), progress.get(progress.size() - 1));
+        assertTrue(progress.size() > 1);
+        assertEquals(countBefore, countManagedTypes());
+        // The new index has been swapped in for the old one...
+        assertEquals(null, ((IndexableGraph)graph.getBaseGraph()).getIndex(INDEX_NAME,
+                Vertex.class));
+        assertEquals("mike", manager.getId(manager.getVertex("mike")));
+
+        // ... and is replaced in turn by the next rebuild.
+        reindexer.reindexInBatches();
+        assertEquals(countBefore, countManagedTypes());
+        checkIndex();
+    }
+
+    @Test
+    public void reindexInBatchesWithTypes() throws Exception {
+        long count = new GraphReindexer(graph)
+                .withTypes(Lists.newArrayList(EntityClass.USER_PROFILE, EntityClass.GROUP))
+                .withBatchSize(2)
+                .reindexInBatches();
+        assertEquals(Iterables.size(manager.getVertices(EntityClass.USER_PROFILE))
+                + Iterables.size(manager.getVertices(EntityClass.GROUP)), count);
+        assertNotNull(((IndexableGraph)graph.getBaseGraph()).getIndex(INDEX_NAME,
+                Vertex.class));
+        checkIndex();
+    }
+
+    @Test
+    public void reindexInBatchesWithTypesRemovesStaleEntries() throws Exception {
+        Vertex mike = manager.getVertex("mike");
+        ((IndexableGraph)graph.getBaseGraph()).getIndex(INDEX_NAME, Vertex.class)
+                .put(EntityType.ID_KEY, "old-mike", mike);
+        assertTrue(manager.exists("old-mike"));
+        new GraphReindexer(graph)
+                .withTypes(Lists.newArrayList(EntityClass.USER_PROFILE))
+                .reindexInBatches();
+        assertFalse(manager.exists("old-mike"));
+        assertEquals(mike, manager.getVertex("mike"));
+    }
+
+    @Test
+    public void writesDuringRebuildAreIndexed() throws Exception {
+        List<Vertex> vertices = Lists.newArrayList(graph.getVertices());
+        manager.startIndexRebuild();
+        Vertex vertex = manager.createVertex("foo", EntityClass.USER_PROFILE,
+                ImmutableMap.of("name", "Foo"));
+        for (Vertex v : vertices) {
+            manager.reindexVertex(v);
+        }
+        manager.finishIndexRebuild();
+        assertEquals(vertex, manager.getVertex("foo"));
+        assertEquals(vertex, manager.getVertex("foo", EntityClass.USER_PROFILE));
+    }
+
+    @Test
+    public void reindexInBatchesAbortsRebuildOnError() throws Exception {
+        try {
+            new GraphReindexer(graph).withBatchSize(10)
+                    .reindexInBatches(new GraphReindexer.ProgressListener() {
+                        @Override
+                        public void progress(long count) {
+                            throw new RuntimeException("Failed!");
+                        }
+                    });
+            fail("Reindex should have failed");
+        } catch (RuntimeException e) {
+            assertEquals("Failed!", e.getMessage());
+        }
+        // The partial index is discarded, leaving the live one in use
+        assertEquals(null, ((IndexableGraph)graph.getBaseGraph()).getIndex(
+                INDEX_NAME + ".alt", Vertex.class));
+        assertNotNull(((IndexableGraph)graph.getBaseGraph()).getIndex(INDEX_NAME,
+                Vertex.class));
+        manager.createVertex("foo", EntityClass.USER_PROFILE,
+                ImmutableMap.of("name", "Foo"));
+        assertTrue(manager.exists("foo"));
+        checkIndex();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void finishIndexRebuildWithoutStart() throws Exception {
+        manager.finishIndexRebuild();
+    }
+
+    private HashMap<EntityClass, Long> countManagedTypes() {
+        HashMap<EntityClass, Long> counts = new HashMap<EntityClass, Long>();
+        for (EntityClass entityClass : EntityClass.values()) {
+            counts.put(entityClass, (long) Iterables.size(manager.getVertices(entityClass)));
+        }
+        return counts;
+    }
+
     /**
      * create a 'histogram' with the counts for each type of entity being indexed
 	 *
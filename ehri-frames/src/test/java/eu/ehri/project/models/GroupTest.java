@@ -9,6 +9,7 @@ import org.junit.Test;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class GroupTest extends AbstractFixtureTest {
 
@@ -44,6 +45,22 @@ public class GroupTest extends AbstractFixtureTest {
         assertEquals(numMembers - 1L, Iterables.size(admin.getMembers()));
     }
 
+    @Test
+    public void testMembershipChangesAllParents() throws Exception {
+        Group niod = manager.getFrame("niod", Group.class);
+        Group kcl = manager.getFrame("kcl", Group.class);
+        UserProfile reto = manager.getFrame("reto", UserProfile.class);
+        assertEquals(Lists.newArrayList(kcl), toList(reto.getAllParents()));
+        // Adding reto's group to niod makes reto a member of niod and admin
+        niod.addMember(kcl);
+        List<Accessor> parents = toList(reto.getAllParents());
+        assertEquals(3, parents.size());
+        assertTrue(parents.contains(niod));
+        assertTrue(parents.contains(manager.getFrame(Group.ADMIN_GROUP_IDENTIFIER, Group.class)));
+        niod.removeMember(kcl);
+        assertEquals(Lists.newArrayList(kcl), toList(reto.getAllParents()));
+    }
+
     @Test
     public void testGetAllUserProfileMembers() throws Exception {
         Group admin = manager.getFrame(Group.ADMIN_GROUP_IDENTIFIER, Group.class);
@@ -71,6 +71,14 @@ public class PermissionScopeTest extends AbstractFixtureTest {
         assertEquals(Lists.newArrayList("nl", "r1", "c1", "c2"), doc.idPath());
     }
 
+    @Test
+    public void testIdChainAfterMovingAncestor() throws Exception {
+        DocumentaryUnit c3 = manager.getFrame("c3", DocumentaryUnit.class);
+        assertEquals(Lists.newArrayList("nl", "r1", "c1", "c2", "c3"), c3.idPath());
+        doc.setPermissionScope(manager.getFrame("r1", PermissionScope.class));
+        assertEquals(Lists.newArrayList("nl", "r1", "c2", "c3"), c3.idPath());
+    }
+
     @Test
     public void testIdentifierIdRelationships() throws Exception {
 
@@ -0,0 +1,187 @@
+package eu.ehri.project.models.utils;
+
+import com.google.common.collect.ImmutableSet;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.neo4j.Neo4jGraph;
+import com.tinkerpop.blueprints.impls.neo4j.Neo4jVertex;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraphFactory;
+import eu.ehri.project.core.GraphGeneration;
+import eu.ehri.project.definitions.Ontology;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.test.TestGraphDatabaseFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Mike Bryant (http://github.com/mikesname)
+ */
+public class GroupMembershipCacheTest {
+
+    private Graph graph;
+
+    @Before
+    public void setUp() throws Exception {
+        graph = TinkerGraphFactory.createTinkerGraph();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        graph.shutdown();
+    }
+
+    @Test
+    public void testGetAncestors() throws Exception {
+        Vertex g1 = graph.addVertex(null);
+        Vertex g2 = graph.addVertex(null);
+        Vertex g3 = graph.addVertex(null);
+        Vertex user = graph.addVertex(null);
+        g2.addEdge(Ontology.ACCESSOR_BELONGS_TO_GROUP, g1);
+        g3.addEdge(Ontology.ACCESSOR_BELONGS_TO_GROUP, g1);
+        user.addEdge(Ontology.ACCESSOR_BELONGS_TO_GROUP, g2);
+        user.addEdge(Ontology.ACCESSOR_BELONGS_TO_GROUP, g3);
+        assertTrue(GroupMembershipCache.getAncestors(graph, g1).isEmpty());
+        assertEquals(ImmutableSet.of(g1), ImmutableSet.copyOf(
+                GroupMembershipCache.getAncestors(graph, g2)));
+        // Shared ancestors are only returned once
+        assertEquals(ImmutableSet.of(g1, g2, g3), ImmutableSet.copyOf(
+                GroupMembershipCache.getAncestors(graph, user)));
+        assertEquals(3, GroupMembershipCache.getAncestors(graph, user).size());
+        assertTrue(GroupMembershipCache.isMemberOf(graph, user, g1));
+        assertFalse(GroupMembershipCache.isMemberOf(graph, g2, g3));
+    }
+
+    @Test
+    public void testGetAncestorsWithChangedMembership() throws Exception {
+        Vertex g1 = graph.addVertex(null);
+        Vertex g2 = graph.addVertex(null);
+        Vertex user = graph.addVertex(null);
+        Edge edge = user.addEdge(Ontology.ACCESSOR_BELONGS_TO_GROUP, g1);
+        assertEquals(ImmutableSet.of(g1.getId()), GroupMembershipCache.getAncestorIds(graph, user));
+
+        // Changing immediate membership is detected without invalidation
+        edge.remove();
+        user.addEdge(Ontology.ACCESSOR_BELONGS_TO_GROUP, g2);
+        assertEquals(ImmutableSet.of(g2.getId()), GroupMembershipCache.getAncestorIds(graph, user));
+
+        // ...but changing a group's membership requires the cache to be invalidated
+        g2.addEdge(Ontology.ACCESSOR_BELONGS_TO_GROUP, g1);
+        GroupMembershipCache.invalidate(graph);
+        assertEquals(ImmutableSet.of(g2.getId(), g1.getId()),
+                GroupMembershipCache.getAncestorIds(graph, user));
+    }
+
+    @Test
+    public void testGetAncestorsAfterTransactionEnds() throws Exception {
+        Vertex g1 = graph.addVertex(null);
+        Vertex g2 = graph.addVertex(null);
+        Vertex user = graph.addVertex(null);
+        user.addEdge(Ontology.ACCESSOR_BELONGS_TO_GROUP, g1);
+        assertEquals(ImmutableSet.of(g1.getId()), GroupMembershipCache.getAncestorIds(graph, user));
+
+        // Changes made without invalidating the cache, e.g. ones that
+        // have been rolled back, are seen once a transaction has ended
+        g1.addEdge(Ontology.ACCESSOR_BELONGS_TO_GROUP, g2);
+        GraphGeneration.endTransaction(graph);
+        assertEquals(ImmutableSet.of(g1.getId(), g2.getId()),
+                GroupMembershipCache.getAncestorIds(graph, user));
+    }
+
+    @Test
+    public void testInvalidateWithAnotherGraphInstance() throws Exception {
+        GraphDatabaseService database = new TestGraphDatabaseFactory()
+                .newImpermanentDatabase();
+        Neo4jGraph graph1 = new Neo4jGraph(database);
+        Neo4jGraph graph2 = new Neo4jGraph(database);
+        try {
+            Vertex g1 = graph1.addVertex(null);
+            Vertex g2 = graph1.addVertex(null);
+            Vertex user = graph1.addVertex(null);
+            user.addEdge(Ontology.ACCESSOR_BELONGS_TO_GROUP, g1);
+            graph1.commit();
+            assertEquals(ImmutableSet.of(g1.getId()),
+                    GroupMembershipCache.getAncestorIds(graph1, user));
+
+            // The cache is shared by graphs with the same database
+            g1.addEdge(Ontology.ACCESSOR_BELONGS_TO_GROUP, g2);
+            graph1.commit();
+            GroupMembershipCache.invalidate(graph2);
+            assertEquals(ImmutableSet.of(g1.getId(), g2.getId()),
+                    GroupMembershipCache.getAncestorIds(graph1, user));
+        } finally {
+            graph1.shutdown();
+        }
+    }
+
+    @Test
+    public void testGetAncestorsAfterDatabaseWrite() throws Exception {
+        GraphDatabaseService database = new TestGraphDatabaseFactory()
+                .newImpermanentDatabase();
+        Neo4jGraph graph1 = new Neo4jGraph(database);
+        try {
+            Vertex g1 = graph1.addVertex(null);
+            Vertex g2 = graph1.addVertex(null);
+            Vertex user = graph1.addVertex(null);
+            user.addEdge(Ontology.ACCESSOR_BELONGS_TO_GROUP, g1);
+            g1.addEdge(Ontology.ACCESSOR_BELONGS_TO_GROUP, g2);
+            graph1.commit();
+            assertEquals(ImmutableSet.of(g1.getId(), g2.getId()),
+                    GroupMembershipCache.getAncestorIds(graph1, user));
+
+            // Removing a group's membership directly through the
+            // database, without invalidating the cache, is seen once
+            // the change is committed
+            Transaction tx = database.beginTx();
+            try {
+                for (Relationship rel : ((Node) ((Neo4jVertex) g1).getRawVertex())
+                        .getRelationships(Direction.OUTGOING)) {
+                    rel.delete();
+                }
+                tx.success();
+            } finally {
+                tx.finish();
+            }
+            assertEquals(ImmutableSet.of(g1.getId()),
+                    GroupMembershipCache.getAncestorIds(graph1, user));
+        } finally {
+            graph1.shutdown();
+        }
+    }
+
+    @Test
+    public void testGetAncestorsWithCycle() throws Exception {
+        Vertex g1 = graph.addVertex(null);
+        Vertex g2 = graph.addVertex(null);
+        Vertex user = graph.addVertex(null);
+        g1.addEdge(Ontology.ACCESSOR_BELONGS_TO_GROUP, g2);
+        g2.addEdge(Ontology.ACCESSOR_BELONGS_TO_GROUP, g1);
+        user.addEdge(Ontology.ACCESSOR_BELONGS_TO_GROUP, g1);
+        assertEquals(ImmutableSet.of(g2.getId(), g1.getId()),
+                GroupMembershipCache.getAncestorIds(graph, g1));
+        assertEquals(ImmutableSet.of(g1.getId(), g2.getId()),
+                GroupMembershipCache.getAncestorIds(graph, user));
+    }
+
+    @Test
+    public void testGetAncestorsWithDeletedGroup() throws Exception {
+        Vertex g1 = graph.addVertex(null);
+        Vertex g2 = graph.addVertex(null);
+        Vertex user = graph.addVertex(null);
+        g2.addEdge(Ontology.ACCESSOR_BELONGS_TO_GROUP, g1);
+        user.addEdge(Ontology.ACCESSOR_BELONGS_TO_GROUP, g2);
+        assertEquals(2, GroupMembershipCache.getAncestors(graph, user).size());
+        graph.removeVertex(g1);
+        assertEquals(ImmutableSet.of(g2), ImmutableSet.copyOf(
+                GroupMembershipCache.getAncestors(graph, user)));
+    }
+}
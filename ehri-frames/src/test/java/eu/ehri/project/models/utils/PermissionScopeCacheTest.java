@@ -0,0 +1,136 @@
+package eu.ehri.project.models.utils;
+
+import com.google.common.collect.ImmutableList;
+import com.tinkerpop.blueprints.Edge;
+import com.tinkerpop.blueprints.Graph;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.neo4j.Neo4jGraph;
+import com.tinkerpop.blueprints.impls.neo4j.Neo4jVertex;
+import com.tinkerpop.blueprints.impls.tg.TinkerGraphFactory;
+import eu.ehri.project.core.GraphGeneration;
+import eu.ehri.project.definitions.Ontology;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.test.TestGraphDatabaseFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Mike Bryant (http://github.com/mikesname)
+ */
+public class PermissionScopeCacheTest {
+
+    private Graph graph;
+
+    @Before
+    public void setUp() throws Exception {
+        graph = TinkerGraphFactory.createTinkerGraph();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        graph.shutdown();
+    }
+
+    @Test
+    public void testGetAncestors() throws Exception {
+        Vertex v1 = graph.addVertex(null);
+        Vertex v2 = graph.addVertex(null);
+        Vertex v3 = graph.addVertex(null);
+        v2.addEdge(Ontology.HAS_PERMISSION_SCOPE, v1);
+        v3.addEdge(Ontology.HAS_PERMISSION_SCOPE, v2);
+        assertTrue(PermissionScopeCache.getAncestors(graph, v1).isEmpty());
+        assertEquals(ImmutableList.of(v2, v1), PermissionScopeCache.getAncestors(graph, v3));
+        // Again, from the cache...
+        assertEquals(ImmutableList.of(v2, v1), PermissionScopeCache.getAncestors(graph, v3));
+        assertEquals(ImmutableList.of(v1), PermissionScopeCache.getAncestors(graph, v2));
+    }
+
+    @Test
+    public void testGetAncestorsWithChangedParent() throws Exception {
+        Vertex v1 = graph.addVertex(null);
+        Vertex v2 = graph.addVertex(null);
+        Vertex v3 = graph.addVertex(null);
+        Edge edge = v3.addEdge(Ontology.HAS_PERMISSION_SCOPE, v1);
+        assertEquals(ImmutableList.of(v1), PermissionScopeCache.getAncestors(graph, v3));
+
+        // Changing the immediate parent is detected without invalidation
+        edge.remove();
+        v3.addEdge(Ontology.HAS_PERMISSION_SCOPE, v2);
+        assertEquals(ImmutableList.of(v2), PermissionScopeCache.getAncestors(graph, v3));
+
+        // ...but moving an ancestor requires the cache to be invalidated
+        v2.addEdge(Ontology.HAS_PERMISSION_SCOPE, v1);
+        PermissionScopeCache.invalidate(graph);
+        assertEquals(ImmutableList.of(v2, v1), PermissionScopeCache.getAncestors(graph, v3));
+    }
+
+    @Test
+    public void testGetAncestorsAfterTransactionEnds() throws Exception {
+        Vertex v1 = graph.addVertex(null);
+        Vertex v2 = graph.addVertex(null);
+        Vertex v3 = graph.addVertex(null);
+        v3.addEdge(Ontology.HAS_PERMISSION_SCOPE, v2);
+        assertEquals(ImmutableList.of(v2), PermissionScopeCache.getAncestors(graph, v3));
+
+        // Changes further up made without invalidating the cache, e.g.
+        // ones that have been rolled back, are seen once a transaction
+        // has ended
+        v2.addEdge(Ontology.HAS_PERMISSION_SCOPE, v1);
+        GraphGeneration.endTransaction(graph);
+        assertEquals(ImmutableList.of(v2, v1), PermissionScopeCache.getAncestors(graph, v3));
+    }
+
+    @Test
+    public void testGetAncestorsAfterDatabaseWrite() throws Exception {
+        GraphDatabaseService database = new TestGraphDatabaseFactory()
+                .newImpermanentDatabase();
+        Neo4jGraph graph1 = new Neo4jGraph(database);
+        try {
+            Vertex v0 = graph1.addVertex(null);
+            Vertex v1 = graph1.addVertex(null);
+            Vertex v2 = graph1.addVertex(null);
+            Vertex v3 = graph1.addVertex(null);
+            v2.addEdge(Ontology.HAS_PERMISSION_SCOPE, v1);
+            v3.addEdge(Ontology.HAS_PERMISSION_SCOPE, v2);
+            graph1.commit();
+            assertEquals(ImmutableList.of(v2, v1), PermissionScopeCache.getAncestors(graph1, v3));
+
+            // Moving an ancestor directly through the database, without
+            // invalidating the cache, is seen once the change is committed
+            Transaction tx = database.beginTx();
+            try {
+                Node node = (Node) ((Neo4jVertex) v2).getRawVertex();
+                node.getSingleRelationship(DynamicRelationshipType.withName(
+                        Ontology.HAS_PERMISSION_SCOPE), Direction.OUTGOING).delete();
+                node.createRelationshipTo((Node) ((Neo4jVertex) v0).getRawVertex(),
+                        DynamicRelationshipType.withName(Ontology.HAS_PERMISSION_SCOPE));
+                tx.success();
+            } finally {
+                tx.finish();
+            }
+            assertEquals(ImmutableList.of(v2, v0), PermissionScopeCache.getAncestors(graph1, v3));
+        } finally {
+            graph1.shutdown();
+        }
+    }
+
+    @Test
+    public void testGetAncestorsWithDeletedAncestor() throws Exception {
+        Vertex v1 = graph.addVertex(null);
+        Vertex v2 = graph.addVertex(null);
+        Vertex v3 = graph.addVertex(null);
+        v2.addEdge(Ontology.HAS_PERMISSION_SCOPE, v1);
+        v3.addEdge(Ontology.HAS_PERMISSION_SCOPE, v2);
+        assertEquals(ImmutableList.of(v2, v1), PermissionScopeCache.getAncestors(graph, v3));
+        graph.removeVertex(v1);
+        assertEquals(ImmutableList.of(v2), PermissionScopeCache.getAncestors(graph, v3));
+    }
+}
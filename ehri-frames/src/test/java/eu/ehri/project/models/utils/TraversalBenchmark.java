@@ -0,0 +1,124 @@
+package eu.ehri.project.models.utils;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.neo4j.Neo4jGraph;
+import com.tinkerpop.blueprints.impls.neo4j.Neo4jVertex;
+import com.tinkerpop.frames.FramedGraph;
+import com.tinkerpop.frames.FramedGraphFactory;
+import com.tinkerpop.frames.modules.javahandler.JavaHandlerModule;
+import eu.ehri.project.core.GraphManager;
+import eu.ehri.project.core.GraphManagerFactory;
+import eu.ehri.project.definitions.Ontology;
+import eu.ehri.project.models.EntityClass;
+import eu.ehri.project.utils.fixtures.FixtureLoaderFactory;
+import org.neo4j.test.TestGraphDatabaseFactory;
+
+import java.util.List;
+
+/**
+ * Compare the throughput of the Neo4j-native traversals used by
+ * {@link TraversalUtils} with the equivalent Gremlin loop pipelines
+ * over the walks the models make on the fixture graph: permission
+ * scope contents, documentary unit descendants, and lifecycle event
+ * chains.
+ * <p/>
+ * Run from the ehri-frames directory with:
+ * <p/>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ * -Dexec.mainClass=eu.ehri.project.models.utils.TraversalBenchmark \
+ * [-Dexec.args="2000"]
+ *
+ * @author Mike Bryant (http://github.com/mikesname)
+ */
+public class TraversalBenchmark {
+
+    private static class Walk {
+        private final String name;
+        private final Direction direction;
+        private final String label;
+        private final List<Vertex> starts;
+
+        Walk(String name, Direction direction, String label, List<Vertex> starts) {
+            this.name = name;
+            this.direction = direction;
+            this.label = label;
+            this.starts = starts;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        Neo4jGraph neo4jGraph = new Neo4jGraph(new TestGraphDatabaseFactory()
+                .newImpermanentDatabaseBuilder().newGraphDatabase());
+        try {
+            FramedGraph<Neo4jGraph> graph = new FramedGraphFactory(new JavaHandlerModule())
+                    .create(neo4jGraph);
+            FixtureLoaderFactory.getSnapshotInstance(graph).loadTestData();
+            GraphManager manager = GraphManagerFactory.getInstance(graph);
+
+            List<Vertex> scopes = Lists.newArrayList(Iterables.concat(
+                    manager.getVertices(EntityClass.COUNTRY),
+                    manager.getVertices(EntityClass.REPOSITORY)));
+            List<Vertex> units = Lists.newArrayList(manager.getVertices(EntityClass.DOCUMENTARY_UNIT));
+            List<Vertex> accessors = Lists.newArrayList(Iterables.concat(
+                    manager.getVertices(EntityClass.USER_PROFILE),
+                    manager.getVertices(EntityClass.GROUP)));
+
+            List<Walk> walks = ImmutableList.of(
+                    new Walk("contained items", Direction.IN, Ontology.HAS_PERMISSION_SCOPE, scopes),
+                    new Walk("child units", Direction.IN, Ontology.DOC_IS_CHILD_OF, units),
+                    new Walk("item history", Direction.OUT, Ontology.ENTITY_HAS_LIFECYCLE_EVENT, units),
+                    new Walk("user actions", Direction.OUT, Ontology.ACTIONER_HAS_LIFECYCLE_ACTION,
+                            accessors));
+
+            for (Walk walk : walks) {
+                // Warm up both before timing
+                for (int i = 0; i < rounds / 10; i++) {
+                    runGremlin(walk);
+                    runNeo4j(neo4jGraph, walk);
+                }
+                long gremlin = 0, neo4j = 0, vertices = 0;
+                for (int i = 0; i < rounds; i++) {
+                    long start = System.nanoTime();
+                    vertices += runGremlin(walk);
+                    gremlin += System.nanoTime() - start;
+                    start = System.nanoTime();
+                    runNeo4j(neo4jGraph, walk);
+                    neo4j += System.nanoTime() - start;
+                }
+                System.out.printf("%s: %d starts, %d vertices%n", walk.name,
+                        walk.starts.size() * rounds, vertices);
+                report("  gremlin", gremlin, walk.starts.size() * rounds);
+                report("  neo4j", neo4j, walk.starts.size() * rounds);
+            }
+        } finally {
+            neo4jGraph.shutdown();
+        }
+    }
+
+    private static void report(String name, long nanos, long walks) {
+        System.out.printf("%-10s %8.1f ms %12.0f walks/s%n", name, nanos / 1e6,
+                walks * 1e9 / Math.max(1, nanos));
+    }
+
+    private static long runGremlin(Walk walk) {
+        long count = 0;
+        for (Vertex vertex : walk.starts) {
+            count += Iterables.size(TraversalUtils.traverseGremlin(vertex, walk.direction, walk.label));
+        }
+        return count;
+    }
+
+    private static long runNeo4j(Neo4jGraph graph, Walk walk) {
+        long count = 0;
+        for (Vertex vertex : walk.starts) {
+            count += Iterables.size(TraversalUtils.traverseNeo4j(graph, (Neo4jVertex) vertex,
+                    walk.direction, walk.label));
+        }
+        return count;
+    }
+}
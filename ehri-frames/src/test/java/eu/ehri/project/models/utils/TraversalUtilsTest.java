@@ -0,0 +1,68 @@
+package eu.ehri.project.models.utils;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.neo4j.Neo4jGraph;
+import com.tinkerpop.blueprints.impls.neo4j.Neo4jVertex;
+import eu.ehri.project.definitions.Ontology;
+import eu.ehri.project.models.EntityClass;
+import eu.ehri.project.test.AbstractFixtureTest;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Mike Bryant (http://github.com/mikesname)
+ */
+public class TraversalUtilsTest extends AbstractFixtureTest {
+
+    @Test
+    public void testTraverseUsesNeo4j() throws Exception {
+        Vertex r1 = manager.getVertex("r1");
+        assertTrue(graph.getBaseGraph() instanceof Neo4jGraph);
+        for (Vertex v : TraversalUtils.traverse(graph.getBaseGraph(), r1, Direction.IN,
+                Ontology.HAS_PERMISSION_SCOPE)) {
+            assertTrue(v instanceof Neo4jVertex);
+        }
+    }
+
+    @Test
+    public void testTraverseMatchesGremlin() throws Exception {
+        Neo4jGraph neo4jGraph = (Neo4jGraph) graph.getBaseGraph();
+        for (EntityClass type : ImmutableList.of(EntityClass.REPOSITORY,
+                EntityClass.DOCUMENTARY_UNIT, EntityClass.USER_PROFILE)) {
+            for (Vertex vertex : manager.getVertices(type)) {
+                for (Direction direction : ImmutableList.of(Direction.IN, Direction.OUT)) {
+                    String[] labels = {Ontology.HAS_PERMISSION_SCOPE,
+                            Ontology.DOC_IS_CHILD_OF, Ontology.ENTITY_HAS_LIFECYCLE_EVENT};
+                    List<Vertex> neo4j = Lists.newArrayList(TraversalUtils.traverseNeo4j(neo4jGraph,
+                            (Neo4jVertex) vertex, direction, labels));
+                    List<Vertex> gremlin = Lists.newArrayList(
+                            TraversalUtils.traverseGremlin(vertex, direction, labels));
+                    assertEquals(gremlin.size(), neo4j.size());
+                    assertEquals(ImmutableSet.copyOf(gremlin), ImmutableSet.copyOf(neo4j));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testTraverseChainIsOrdered() throws Exception {
+        Vertex c3 = manager.getVertex("c3");
+        Vertex c2 = manager.getVertex("c2");
+        Vertex c1 = manager.getVertex("c1");
+        Vertex r1 = manager.getVertex("r1");
+        Vertex nl = manager.getVertex("nl");
+        assertEquals(ImmutableList.of(c2, c1, r1, nl), ImmutableList.copyOf(
+                TraversalUtils.traverse(graph.getBaseGraph(), c3, Direction.OUT,
+                        Ontology.HAS_PERMISSION_SCOPE)));
+        assertEquals(ImmutableList.of(c2, c1), ImmutableList.copyOf(
+                TraversalUtils.traverseGremlin(c3, Direction.OUT, Ontology.DOC_IS_CHILD_OF)));
+    }
+}
@@ -0,0 +1,140 @@
+package eu.ehri.project.persistence;
+
+import com.google.common.collect.Lists;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.neo4j.Neo4jGraph;
+import com.tinkerpop.frames.FramedGraph;
+import com.tinkerpop.frames.FramedGraphFactory;
+import com.tinkerpop.frames.modules.javahandler.JavaHandlerModule;
+import eu.ehri.project.core.GraphManager;
+import eu.ehri.project.core.GraphManagerFactory;
+import eu.ehri.project.models.EntityClass;
+import eu.ehri.project.utils.fixtures.FixtureLoaderFactory;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.smile.SmileFactory;
+import org.codehaus.jackson.smile.SmileGenerator;
+import org.neo4j.test.TestGraphDatabaseFactory;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compare the encoded size and the encode and decode throughput of
+ * the text JSON and binary Smile formats for the bundles of the
+ * fixture items, both as individual items and as a single list,
+ * as streamed by list responses.
+ * <p/>
+ * Run from the ehri-frames directory with:
+ * <p/>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ * -Dexec.mainClass=eu.ehri.project.persistence.BundleFormatBenchmark \
+ * [-Dexec.args="2000"]
+ *
+ * @author Mike Bryant (http://github.com/mikesname)
+ */
+public class BundleFormatBenchmark {
+
+    private static class Format {
+        private final String name;
+        private final ObjectMapper mapper;
+
+        Format(String name, JsonFactory factory) {
+            this.name = name;
+            this.mapper = new ObjectMapper(factory);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        Neo4jGraph neo4jGraph = new Neo4jGraph(new TestGraphDatabaseFactory()
+                .newImpermanentDatabaseBuilder().newGraphDatabase());
+        try {
+            FramedGraph<Neo4jGraph> graph = new FramedGraphFactory(new JavaHandlerModule())
+                    .create(neo4jGraph);
+            FixtureLoaderFactory.getSnapshotInstance(graph).loadTestData();
+            GraphManager manager = GraphManagerFactory.getInstance(graph);
+            Serializer serializer = new Serializer(graph);
+
+            List<Map<String, Object>> items = Lists.newArrayList();
+            for (EntityClass type : new EntityClass[]{EntityClass.DOCUMENTARY_UNIT,
+                    EntityClass.REPOSITORY, EntityClass.COUNTRY, EntityClass.HISTORICAL_AGENT,
+                    EntityClass.CVOC_CONCEPT, EntityClass.USER_PROFILE, EntityClass.GROUP}) {
+                for (Vertex vertex : manager.getVertices(type)) {
+                    items.add(serializer.vertexFrameToBundle(vertex).toData());
+                }
+            }
+
+            SmileFactory smileFactory = new SmileFactory();
+            smileFactory.configure(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES, true);
+            Format[] formats = {new Format("json", new JsonFactory()),
+                    new Format("smile", smileFactory)};
+
+            System.out.printf("%d items, %d rounds%n", items.size(), rounds);
+            for (Format format : formats) {
+                // Warm up before timing
+                for (int i = 0; i < rounds / 10; i++) {
+                    decodeItems(format, encodeItems(format, items));
+                    decodeList(format, format.mapper.writeValueAsBytes(items));
+                }
+                long itemBytes = 0, listBytes = 0;
+                long itemEncode = 0, itemDecode = 0, listEncode = 0, listDecode = 0;
+                for (int i = 0; i < rounds; i++) {
+                    long start = System.nanoTime();
+                    List<byte[]> encoded = encodeItems(format, items);
+                    itemEncode += System.nanoTime() - start;
+                    start = System.nanoTime();
+                    decodeItems(format, encoded);
+                    itemDecode += System.nanoTime() - start;
+                    start = System.nanoTime();
+                    byte[] list = format.mapper.writeValueAsBytes(items);
+                    listEncode += System.nanoTime() - start;
+                    start = System.nanoTime();
+                    decodeList(format, list);
+                    listDecode += System.nanoTime() - start;
+                    if (i == 0) {
+                        for (byte[] bytes : encoded) {
+                            itemBytes += bytes.length;
+                        }
+                        listBytes = list.length;
+                    }
+                }
+                long count = (long) items.size() * rounds;
+                System.out.printf("%s: %d bytes as items, %d bytes as a list%n",
+                        format.name, itemBytes, listBytes);
+                report("  item encode", itemEncode, count);
+                report("  item decode", itemDecode, count);
+                report("  list encode", listEncode, count);
+                report("  list decode", listDecode, count);
+            }
+        } finally {
+            neo4jGraph.shutdown();
+        }
+    }
+
+    private static void report(String name, long nanos, long items) {
+        System.out.printf("%-14s %8.1f ms %12.0f items/s%n", name, nanos / 1e6,
+                items * 1e9 / Math.max(1, nanos));
+    }
+
+    private static List<byte[]> encodeItems(Format format, List<Map<String, Object>> items)
+            throws Exception {
+        List<byte[]> encoded = Lists.newArrayListWithCapacity(items.size());
+        for (Map<String, Object> item : items) {
+            encoded.add(format.mapper.writeValueAsBytes(item));
+        }
+        return encoded;
+    }
+
+    private static void decodeItems(Format format, List<byte[]> encoded) throws Exception {
+        for (byte[] bytes : encoded) {
+            DataConverter.dataToBundle(format.mapper.readValue(bytes, Map.class));
+        }
+    }
+
+    private static void decodeList(Format format, byte[] encoded) throws Exception {
+        for (Object item : format.mapper.readValue(encoded, List.class)) {
+            DataConverter.dataToBundle(item);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package eu.ehri.project.persistence;
 
+import com.google.common.base.Charsets;
 import eu.ehri.project.models.DocumentaryUnit;
 import eu.ehri.project.models.EntityClass;
 import eu.ehri.project.test.AbstractFixtureTest;
@@ -8,6 +9,8 @@ import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
+import java.io.ByteArrayInputStream;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
@@ -38,4 +41,15 @@ public class DataConverterTest extends AbstractFixtureTest {
         // TODO: Check properties and relationships are serialized properly
         System.out.println(bundle.toXmlString());
     }
+
+    @Test
+    public void testBundleToSmile() throws Exception {
+        DocumentaryUnit c1 = manager.getFrame("c1", DocumentaryUnit.class);
+        Bundle bundle = new Serializer(graph).vertexFrameToBundle(c1);
+        byte[] smile = bundle.toSmile();
+        assertTrue(smile.length < bundle.toJson().getBytes(Charsets.UTF_8).length);
+        Bundle decoded = Bundle.fromSmileStream(new ByteArrayInputStream(smile));
+        assertEquals("c1", decoded.getId());
+        assertEquals(Bundle.fromString(bundle.toJson()), decoded);
+    }
 }
@@ -28,7 +28,7 @@ public abstract class ModelTestBase extends GraphTestBase {
     @Before
     public void setUp() throws Exception {
         super.setUp();
-        helper = FixtureLoaderFactory.getInstance(graph);
+        helper = FixtureLoaderFactory.getSnapshotInstance(graph);
         helper.loadTestData();
     }
 
@@ -1,8 +1,10 @@
 package eu.ehri.project.tools;
 
+import com.google.common.base.Charsets;
 import com.google.common.base.Optional;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
+import com.google.common.io.Files;
 import eu.ehri.project.definitions.Ontology;
 import eu.ehri.project.models.DocumentDescription;
 import eu.ehri.project.models.DocumentaryUnit;
@@ -15,6 +17,7 @@ import eu.ehri.project.utils.Slugify;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.File;
 import java.util.List;
 import java.util.Map;
 
@@ -137,4 +140,66 @@ public class IdRegeneratorTest extends AbstractFixtureTest {
         assertEquals("nl-r1-c1-c2-c3", remap.get("c3"));
         assertEquals("nl-r1-c4", remap.get("c4"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testReGenerateIdsInBatches() throws Exception {
+        File checkpoint = File.createTempFile("regenerate", ".tsv");
+        checkpoint.deleteOnExit();
+        IdRegenerator regenerator = idRegenerator.withActualRename(true)
+                .withBatchSize(3).withCheckpoint(checkpoint);
+        List<List<String>> remaps = regenerator.reGenerateIds(
+                manager.getFrames(EntityClass.DOCUMENTARY_UNIT, DocumentaryUnit.class));
+        assertEquals(4, remaps.size());
+        assertTrue(manager.exists("nl-r1-c1-c2-c3"));
+        assertFalse(manager.exists("c3"));
+        assertEquals(4, Files.readLines(checkpoint, Charsets.UTF_8).size());
+        // Doing it again should do nothing...
+        assertTrue(regenerator.reGenerateIds(manager.getFrames(
+                EntityClass.DOCUMENTARY_UNIT, DocumentaryUnit.class)).isEmpty());
+    }
+
+    @Test
+    public void testReGenerateIdsInBatchesResumesFromCheckpoint() throws Exception {
+        File checkpoint = File.createTempFile("regenerate", ".tsv");
+        checkpoint.deleteOnExit();
+        Files.write("foo\tc2\n", checkpoint, Charsets.UTF_8);
+        List<List<String>> remaps = idRegenerator.withActualRename(true)
+                .withBatchSize(3).withCheckpoint(checkpoint)
+                .reGenerateIds(manager.getFrames(EntityClass.DOCUMENTARY_UNIT,
+                        DocumentaryUnit.class));
+        assertEquals(3, remaps.size());
+        assertTrue(manager.exists("c2"));
+        assertEquals(4, Files.readLines(checkpoint, Charsets.UTF_8).size());
+    }
+
+    @Test
+    public void testReGenerateIdsInBatchesWithCollisions() throws Exception {
+        // Give two items the same identifier, so they will
+        // collide with each other rather than an existing item.
+        DocumentaryUnit doc1 = manager.getFrame("c1", DocumentaryUnit.class);
+        manager.setProperty(doc1.asVertex(), Ontology.IDENTIFIER_KEY, "c4");
+        IdRegenerator regenerator = idRegenerator.withActualRename(true).withBatchSize(3);
+
+        List<List<String>> collisions = regenerator.collisionMode(true).reGenerateIds(
+                manager.getFrames(EntityClass.DOCUMENTARY_UNIT, DocumentaryUnit.class));
+        assertEquals(2, collisions.size());
+        assertEquals("nl-r1-c4", collisions.get(0).get(1));
+        assertEquals("nl-r1-c4", collisions.get(1).get(1));
+
+        try {
+            regenerator.reGenerateIds(manager.getFrames(
+                    EntityClass.DOCUMENTARY_UNIT, DocumentaryUnit.class));
+            fail("Batched regeneration should have thrown a collision error");
+        } catch (IdRegenerator.IdCollisionError e) {
+            // Nothing should have been renamed
+            assertTrue(manager.exists("c2"));
+        }
+
+        List<List<String>> remaps = regenerator.skippingCollisions(true).reGenerateIds(
+                manager.getFrames(EntityClass.DOCUMENTARY_UNIT, DocumentaryUnit.class));
+        assertEquals(2, remaps.size());
+        assertTrue(manager.exists("c1"));
+        assertTrue(manager.exists("c4"));
+        assertFalse(manager.exists("c2"));
+    }
+}
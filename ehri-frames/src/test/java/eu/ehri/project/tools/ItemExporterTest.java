@@ -0,0 +1,75 @@
+package eu.ehri.project.tools;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import eu.ehri.project.models.EntityClass;
+import eu.ehri.project.models.base.AccessibleEntity;
+import eu.ehri.project.persistence.Bundle;
+import eu.ehri.project.test.AbstractFixtureTest;
+import org.junit.Test;
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stream.StreamSource;
+import java.io.File;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ItemExporterTest extends AbstractFixtureTest {
+
+    private static final String XSLT = "<xsl:stylesheet version=\"1.0\" " +
+            "xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">" +
+            "<xsl:output omit-xml-declaration=\"yes\"/>" +
+            "<xsl:template match=\"/\"><xsl:value-of select=\"/item/@" + Bundle.ID_KEY +
+            "\"/></xsl:template></xsl:stylesheet>";
+
+    @Test
+    public void testExportInOrder() throws Exception {
+        List<AccessibleEntity> items = Lists.newArrayList(
+                manager.getFrames(EntityClass.DOCUMENTARY_UNIT, AccessibleEntity.class));
+        // Repeat items to make sure ordering is preserved across batches
+        List<AccessibleEntity> all = Lists.newArrayList();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            for (AccessibleEntity item : items) {
+                all.add(item);
+                expected.append(item.getId()).append("\n");
+            }
+        }
+        Templates templates = TransformerFactory.newInstance()
+                .newTemplates(new StreamSource(new StringReader(XSLT)));
+        StringWriter out = new StringWriter();
+        ItemExporter.Stats stats = new ItemExporter(graph)
+                .withThreads(3)
+                .withTemplates(templates)
+                .export(all, out);
+        assertEquals(all.size(), stats.getItems());
+        assertEquals(expected.toString(), out.toString());
+    }
+
+    @Test
+    public void testExportXml() throws Exception {
+        StringWriter out = new StringWriter();
+        new ItemExporter(graph).export(Lists.newArrayList(item), out);
+        assertTrue(out.toString().startsWith("<item "));
+        assertTrue(out.toString().contains("c1"));
+    }
+
+    @Test
+    public void testExportToDirectory() throws Exception {
+        File dir = Files.createTempDir();
+        ItemExporter.Stats stats = new ItemExporter(graph)
+                .withFormat(ItemExporter.Format.JSON)
+                .exportToDirectory(manager.getFrames(
+                        EntityClass.DOCUMENTARY_UNIT, AccessibleEntity.class), dir);
+        assertEquals(5L, stats.getItems());
+        File file = new File(dir, "c1.json");
+        assertTrue(file.exists());
+        assertTrue(Files.toString(file, Charsets.UTF_8).contains("\"c1\""));
+    }
+}
@@ -44,6 +44,22 @@ public class LinkerTest extends AbstractFixtureTest {
         assertEquals(actionManager.getLatestGlobalEvent().getLogMessage(), logMessage);
     }
 
+    @Test
+    public void testCreateConceptsForRepositoryInBatches() throws Exception {
+        Repository repository = manager.getFrame("r1", Repository.class);
+        Vocabulary vocabulary = manager.getFrame("cvoc2", Vocabulary.class);
+        int eventCount = Iterables.size(actionManager.getLatestGlobalEvents());
+        int conceptCount = Iterables.size(vocabulary.getConcepts());
+        long newLinkCount = linker
+                .withExcludeSingles(false)
+                .withBatchSize(1)
+                .createAndLinkRepositoryVocabulary(repository, vocabulary, validUser);
+        assertEquals(2, newLinkCount);
+        assertEquals(conceptCount + 2, Iterables.size(vocabulary.getConcepts()));
+        assertEquals(eventCount + 2,
+                Iterables.size(actionManager.getLatestGlobalEvents()));
+    }
+
     @Test
     public void testCreateConceptsForRepositoryWithBadAccessPointTypes() throws Exception {
         Repository repository = manager.getFrame("r1", Repository.class);
@@ -0,0 +1,111 @@
+package eu.ehri.project.tools;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Sets;
+import com.google.common.io.Files;
+import com.tinkerpop.blueprints.Vertex;
+import eu.ehri.project.definitions.EventTypes;
+import eu.ehri.project.models.annotations.EntityType;
+import eu.ehri.project.models.base.Actioner;
+import eu.ehri.project.persistence.ActionManager;
+import eu.ehri.project.test.AbstractFixtureTest;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RdfExporterTest extends AbstractFixtureTest {
+
+    private static final String BASE = RdfExporter.DEFAULT_BASE_URI;
+
+    @Test
+    public void testExport() throws Exception {
+        File dir = Files.createTempDir();
+        RdfExporter.Manifest manifest = new RdfExporter(graph)
+                .withThreads(2)
+                .withSegmentSize(2)
+                .export(dir);
+        long items = 0;
+        for (Vertex v : graph.getVertices()) {
+            if (v.getProperty(EntityType.ID_KEY) != null) {
+                items++;
+            }
+        }
+        assertEquals(items, manifest.items);
+        assertTrue(new File(dir, RdfExporter.MANIFEST_FILE).exists());
+
+        String descriptions = readSegments(dir, manifest, "documentDescription");
+        assertTrue(descriptions.contains("<" + BASE + "documentDescription/cd1> <"
+                + BASE + "ontology#describes> <" + BASE + "documentaryUnit/c1> .\n"));
+        assertTrue(descriptions.contains("<" + BASE + "documentDescription/cd1> <"
+                + BASE + "ontology#name> \"Documentary Unit 1\" .\n"));
+    }
+
+    @Test
+    public void testExportTurtle() throws Exception {
+        File dir = Files.createTempDir();
+        RdfExporter.Manifest manifest = new RdfExporter(graph)
+                .withFormat(RdfExporter.Format.TURTLE)
+                .export(dir);
+        String docs = readSegments(dir, manifest, "documentaryUnit");
+        assertTrue(docs.contains("<" + BASE + "documentaryUnit/c1> "
+                + "<http://www.w3.org/1999/02/22-rdf-syntax-ns#type> <"
+                + BASE + "ontology#documentaryUnit> ;\n"));
+    }
+
+    @Test
+    public void testExportSpecialFloatingPointValues() throws Exception {
+        item.asVertex().setProperty("max", Double.POSITIVE_INFINITY);
+        item.asVertex().setProperty("min", Double.NEGATIVE_INFINITY);
+        item.asVertex().setProperty("none", Float.NaN);
+        graph.getBaseGraph().commit();
+        File dir = Files.createTempDir();
+        RdfExporter.Manifest manifest = new RdfExporter(graph).export(dir);
+        String docs = readSegments(dir, manifest, "documentaryUnit");
+        String xsd = "http://www.w3.org/2001/XMLSchema#";
+        assertTrue(docs.contains("<" + BASE + "ontology#max> \"INF\"^^<" + xsd + "double>"));
+        assertTrue(docs.contains("<" + BASE + "ontology#min> \"-INF\"^^<" + xsd + "double>"));
+        assertTrue(docs.contains("<" + BASE + "ontology#none> \"NaN\"^^<" + xsd + "float>"));
+    }
+
+    @Test
+    public void testExportChangesSince() throws Exception {
+        String since = ActionManager.getTimestamp();
+        Thread.sleep(10);
+        new ActionManager(graph).logEvent(item,
+                graph.frame(validUser.asVertex(), Actioner.class),
+                EventTypes.modification);
+        graph.getBaseGraph().commit();
+
+        File dir = Files.createTempDir();
+        RdfExporter.Manifest manifest = new RdfExporter(graph)
+                .withChangesSince(since)
+                .export(dir);
+        Set<String> types = Sets.newHashSet();
+        for (RdfExporter.Segment segment : manifest.segments) {
+            types.add(segment.type);
+            if (segment.type.equals("documentaryUnit")) {
+                assertEquals(1L, segment.items);
+            }
+        }
+        // The item and its dependents only...
+        assertEquals(Sets.newHashSet("documentaryUnit", "documentDescription",
+                "datePeriod", "relationship"), types);
+        String docs = readSegments(dir, manifest, "documentaryUnit");
+        assertTrue(docs.contains("<" + BASE + "documentaryUnit/c1> "));
+    }
+
+    private String readSegments(File dir, RdfExporter.Manifest manifest, String type)
+            throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (RdfExporter.Segment segment : manifest.segments) {
+            if (segment.type.equals(type)) {
+                sb.append(Files.toString(new File(dir, segment.file), Charsets.UTF_8));
+            }
+        }
+        return sb.toString();
+    }
+}
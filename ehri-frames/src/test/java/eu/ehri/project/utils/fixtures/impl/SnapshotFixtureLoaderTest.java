@@ -0,0 +1,89 @@
+package eu.ehri.project.utils.fixtures.impl;
+
+import com.google.common.collect.Lists;
+import com.tinkerpop.blueprints.TransactionalGraph;
+import com.tinkerpop.frames.FramedGraph;
+import eu.ehri.project.core.GraphManager;
+import eu.ehri.project.core.GraphManagerFactory;
+import eu.ehri.project.models.DocumentaryUnit;
+import eu.ehri.project.models.EntityClass;
+import eu.ehri.project.models.base.Frame;
+import eu.ehri.project.test.GraphTestBase;
+import eu.ehri.project.utils.GraphInitializer;
+import eu.ehri.project.utils.fixtures.FixtureLoader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Mike Bryant (http://github.com/mikesname)
+ */
+public class SnapshotFixtureLoaderTest extends GraphTestBase {
+
+    private FramedGraph<? extends TransactionalGraph> yamlGraph;
+    private FramedGraph<? extends TransactionalGraph> snapshotGraph;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        yamlGraph = getFramedGraph();
+        snapshotGraph = getFramedGraph();
+        new YamlFixtureLoader(yamlGraph).loadTestData();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        yamlGraph.shutdown();
+        snapshotGraph.shutdown();
+        super.tearDown();
+    }
+
+    @Test
+    public void testLoadTestData() throws Exception {
+        // Ensure a snapshot exists and is then copied
+        new SnapshotFixtureLoader(graph).loadTestData();
+        long copies = SnapshotFixtureLoader.getTimings().getCopies();
+        new SnapshotFixtureLoader(snapshotGraph).loadTestData();
+        assertEquals(copies + 1, SnapshotFixtureLoader.getTimings().getCopies());
+
+        assertEquals(getNodeCount(yamlGraph), getNodeCount(snapshotGraph));
+        assertEquals(getEdgeCount(yamlGraph), getEdgeCount(snapshotGraph));
+
+        // Check the index and relationships are intact
+        GraphManager yamlManager = GraphManagerFactory.getInstance(yamlGraph);
+        GraphManager snapshotManager = GraphManagerFactory.getInstance(snapshotGraph);
+        for (EntityClass entityClass : EntityClass.values()) {
+            assertEquals(entityClass.getName(),
+                    Lists.newArrayList(yamlManager.getFrames(entityClass, Frame.class)).size(),
+                    Lists.newArrayList(snapshotManager.getFrames(entityClass, Frame.class)).size());
+        }
+        DocumentaryUnit c3 = snapshotManager.getFrame("c3", DocumentaryUnit.class);
+        assertEquals(Lists.newArrayList("nl", "r1", "c1", "c2", "c3"), c3.idPath());
+    }
+
+    @Test
+    public void testLoadTestDataWithoutInitialization() throws Exception {
+        FixtureLoader loader = new SnapshotFixtureLoader(snapshotGraph).setInitializing(false);
+        new GraphInitializer(snapshotGraph).initialize();
+        long fallbacks = SnapshotFixtureLoader.getTimings().getFallbacks();
+        loader.loadTestData();
+        assertEquals(fallbacks + 1, SnapshotFixtureLoader.getTimings().getFallbacks());
+        assertEquals(getNodeCount(yamlGraph), getNodeCount(snapshotGraph));
+    }
+
+    @Test
+    public void testWithInitializationError() throws Exception {
+        try {
+            new GraphInitializer(snapshotGraph).initialize();
+            new SnapshotFixtureLoader(snapshotGraph).loadTestData();
+            fail("Loading fixtures on an initialized graph should have" +
+                    " thrown an integrity error");
+        } catch (Exception e) {
+            assertTrue(e.getMessage().contains("Integrity error"));
+        }
+    }
+}
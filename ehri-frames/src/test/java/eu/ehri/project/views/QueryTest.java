@@ -1,20 +1,27 @@
 package eu.ehri.project.views;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.tinkerpop.blueprints.Direction;
 import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.blueprints.impls.neo4j.Neo4jGraph;
+import com.tinkerpop.blueprints.impls.neo4j.Neo4jVertex;
 import eu.ehri.project.acl.AclManager;
 import eu.ehri.project.definitions.Ontology;
 import eu.ehri.project.models.DocumentaryUnit;
 import eu.ehri.project.models.EntityClass;
 import eu.ehri.project.models.Repository;
 import eu.ehri.project.models.base.Accessor;
+import eu.ehri.project.models.utils.TraversalUtils;
 import eu.ehri.project.test.AbstractFixtureTest;
 import eu.ehri.project.views.Query.Page;
 import org.junit.Before;
 import org.junit.Test;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
 
 import java.util.List;
 
@@ -94,12 +101,112 @@ public class QueryTest extends AbstractFixtureTest {
         assertEquals(toList(allDocs).size(), page.getTotal());
     }
 
+    @Test
+    public void testPageFramedIterable() throws Exception {
+        Query<DocumentaryUnit> query = new Query<DocumentaryUnit>(graph,
+                DocumentaryUnit.class);
+        Repository repository = manager.getFrame("r1", Repository.class);
+
+        // The page can be iterated more than once
+        Page<DocumentaryUnit> page = query.setLimit(2).page(repository.getAllCollections(), validUser);
+        assertEquals(Iterables.size(repository.getAllCollections()), page.getTotal());
+        List<DocumentaryUnit> list = toList(page);
+        assertEquals(2, list.size());
+        assertEquals(list, toList(page));
+        assertTrue(list.get(0) instanceof DocumentaryUnit);
+
+        // As can a plain list of frames
+        page = query.page(Lists.newArrayList(repository.getAllCollections()), validUser);
+        assertEquals(Iterables.size(repository.getAllCollections()), page.getTotal());
+    }
+
+    @Test
+    public void testPageVertices() throws Exception {
+        Query<DocumentaryUnit> query = new Query<DocumentaryUnit>(graph,
+                DocumentaryUnit.class).setLimit(2);
+        Repository repository = manager.getFrame("r1", Repository.class);
+        Iterable<Vertex> vertices = TraversalUtils.traverse(graph.getBaseGraph(),
+                repository.asVertex(), Direction.IN,
+                Ontology.DOC_HELD_BY_REPOSITORY, Ontology.DOC_IS_CHILD_OF);
+
+        // Raw vertices are paged the same as their frames
+        Page<DocumentaryUnit> page = query.pageVertices(vertices, validUser);
+        assertEquals(Iterables.size(repository.getAllCollections()), page.getTotal());
+        List<DocumentaryUnit> list = toList(page);
+        assertEquals(2, list.size());
+        assertEquals(toList(query.page(repository.getAllCollections(), validUser)), list);
+        assertEquals(page.getTotal(), query.count(vertices));
+    }
+
     @Test
     public void testCount() throws Exception {
         Query<DocumentaryUnit> query = new Query<DocumentaryUnit>(graph, DocumentaryUnit.class);
         assertEquals(5, query.count());
     }
 
+    @Test
+    public void testCachedPage() throws Exception {
+        Query<DocumentaryUnit> query = new Query<DocumentaryUnit>(graph, DocumentaryUnit.class)
+                .setCacheKey("test").orderBy(Ontology.IDENTIFIER_KEY, Query.Sort.ASC);
+        List<DocumentaryUnit> all = toList(query.setLimit(-1).page(validUser));
+        assertEquals(5, all.size());
+
+        // Pages are slices of the cached listing
+        Page<DocumentaryUnit> page = query.setOffset(2).setLimit(2).page(validUser);
+        assertEquals(5L, page.getTotal());
+        assertEquals(all.subList(2, 4), toList(page));
+        assertEquals(all.subList(4, 5), toList(query.setOffset(4).page(validUser)));
+
+        // Other accessors' listings are cached separately
+        Accessor accessor = manager.getFrame("reto", Accessor.class);
+        assertFalse(toList(query.page(accessor)).contains(all.get(0)));
+
+        // Changes made without writing via the manager are not seen...
+        Vertex first = all.get(0).asVertex();
+        first.setProperty(Ontology.IDENTIFIER_KEY, "zzz");
+        assertEquals(all, toList(query.setLimit(-1).page(validUser)));
+
+        // ... until the graph is written to
+        manager.setProperty(first, Ontology.IDENTIFIER_KEY, "zzz");
+        List<DocumentaryUnit> reordered = toList(query.setLimit(-1).page(validUser));
+        assertEquals(all.get(0), reordered.get(4));
+        assertEquals(all.subList(1, 5), reordered.subList(0, 4));
+    }
+
+    @Test
+    public void testCachedPageAfterDatabaseWrite() throws Exception {
+        Query<DocumentaryUnit> query = new Query<DocumentaryUnit>(graph, DocumentaryUnit.class)
+                .setCacheKey("test").orderBy(Ontology.IDENTIFIER_KEY, Query.Sort.ASC)
+                .setLimit(-1);
+        graph.getBaseGraph().commit();
+        List<DocumentaryUnit> all = toList(query.page(validUser));
+
+        // Changes committed directly to the database, e.g. via Cypher,
+        // are seen, even though the graph itself was not written to
+        GraphDatabaseService database = ((Neo4jGraph) graph.getBaseGraph()).getRawGraph();
+        Transaction tx = database.beginTx();
+        try {
+            ((Node) ((Neo4jVertex) all.get(0).asVertex()).getRawVertex())
+                    .setProperty(Ontology.IDENTIFIER_KEY, "zzz");
+            tx.success();
+        } finally {
+            tx.finish();
+        }
+        List<DocumentaryUnit> reordered = toList(query.page(validUser));
+        assertEquals(all.get(0), reordered.get(4));
+        assertEquals(all.subList(1, 5), reordered.subList(0, 4));
+    }
+
+    @Test
+    public void testCachedCount() throws Exception {
+        Query<DocumentaryUnit> query = new Query<DocumentaryUnit>(graph, DocumentaryUnit.class)
+                .setCacheKey("test");
+        assertEquals(5, query.count());
+        manager.createVertex("c5", EntityClass.DOCUMENTARY_UNIT,
+                ImmutableMap.of(Ontology.IDENTIFIER_KEY, "c5"));
+        assertEquals(6, query.count());
+    }
+
     @Test
     public void testUserCannotListPrivate() throws Exception {
         Query<DocumentaryUnit> query = new Query<DocumentaryUnit>(graph,
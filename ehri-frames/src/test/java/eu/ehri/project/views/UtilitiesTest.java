@@ -1,6 +1,14 @@
 package eu.ehri.project.views;
 
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.tinkerpop.blueprints.Index;
+import com.tinkerpop.blueprints.IndexableGraph;
+import com.tinkerpop.blueprints.Vertex;
+import eu.ehri.project.definitions.Ontology;
 import eu.ehri.project.models.Address;
+import eu.ehri.project.models.DocumentaryUnit;
 import eu.ehri.project.models.EntityClass;
 import eu.ehri.project.models.annotations.EntityType;
 import eu.ehri.project.test.AbstractFixtureTest;
@@ -70,6 +78,80 @@ public class UtilitiesTest extends AbstractFixtureTest {
                 "webpage", Pattern.compile(badRe), "https:");
     }
 
+    @Test
+    public void testFindReplaceIndexedPropertyValue() throws Exception {
+        long count = findReplace.propertyValue(EntityClass.DOCUMENTARY_UNIT,
+                Ontology.IDENTIFIER_KEY, "c1", "x1");
+        assertEquals(1L, count);
+        assertEquals("x1", manager.getFrame("c1", DocumentaryUnit.class).getIdentifier());
+        graph.getBaseGraph().commit();
+        assertEquals(1, Iterables.size(manager.getVertices(Ontology.IDENTIFIER_KEY,
+                "x1", EntityClass.DOCUMENTARY_UNIT)));
+        assertEquals(0, Iterables.size(manager.getVertices(Ontology.IDENTIFIER_KEY,
+                "c1", EntityClass.DOCUMENTARY_UNIT)));
+    }
+
+    @Test
+    public void testFindReplaceWithOldIndexFormat() throws Exception {
+        // Simulate an index created by an earlier version, in which
+        // c1's identifier isn't found by its value.
+        assertTrue(manager.indexesEachValue());
+        IndexableGraph baseGraph = (IndexableGraph) graph.getBaseGraph();
+        baseGraph.dropIndex("entities.values");
+        Vertex c1 = manager.getVertex("c1");
+        Index<Vertex> index = baseGraph.getIndex("entities", Vertex.class);
+        index.remove(Ontology.IDENTIFIER_KEY, "c1", c1);
+        index.remove(EntityClass.DOCUMENTARY_UNIT.getName() + "|" + Ontology.IDENTIFIER_KEY, "c1", c1);
+        assertFalse(manager.indexesEachValue());
+
+        long count = findReplace.propertyValue(EntityClass.DOCUMENTARY_UNIT,
+                Ontology.IDENTIFIER_KEY, "c1", "x1");
+        assertEquals(1L, count);
+        assertEquals("x1", manager.getFrame("c1", DocumentaryUnit.class).getIdentifier());
+    }
+
+    @Test
+    public void testFindReplaceIndexedPropertyValueREWithPrefix() throws Exception {
+        long count = findReplace.propertyValueRE(EntityClass.DOCUMENTARY_UNIT,
+                Ontology.IDENTIFIER_KEY, Pattern.compile("^c[12]$"), "x");
+        assertEquals(2L, count);
+        assertEquals("x", manager.getFrame("c2", DocumentaryUnit.class).getIdentifier());
+        assertEquals("c3", manager.getFrame("c3", DocumentaryUnit.class).getIdentifier());
+    }
+
+    @Test
+    public void testFindReplaceDryRun() throws Exception {
+        final List<String> ids = Lists.newArrayList();
+        long count = findReplace
+                .withDryRun(true)
+                .withChangeListener(new FindReplace.ChangeListener() {
+                    @Override
+                    public void changed(String id) {
+                        ids.add(id);
+                    }
+                })
+                .propertyValueRE(EntityClass.ADDRESS, "webpage",
+                        Pattern.compile("^http:"), "https:");
+        assertEquals(3L, count);
+        assertEquals(Sets.newHashSet("ar1", "ar2"), Sets.newHashSet(ids));
+        assertEquals("http://www.kcl.ac.uk", manager.getFrame("ar2", Address.class)
+                .asVertex().getProperty("webpage"));
+    }
+
+    @Test
+    public void testFindReplaceInBatches() throws Exception {
+        graph.getBaseGraph().commit();
+        long count = findReplace.withBatchSize(1).withThreads(2)
+                .propertyValueRE(EntityClass.ADDRESS, "webpage",
+                        Pattern.compile("^http:"), "https:");
+        assertEquals(3L, count);
+        assertEquals("https://www.kcl.ac.uk", manager.getFrame("ar2", Address.class)
+                .asVertex().getProperty("webpage"));
+        assertEquals(1L, findReplace.withBatchSize(10).propertyValue(
+                EntityClass.DOCUMENTARY_UNIT, Ontology.IDENTIFIER_KEY, "c4", "x4"));
+        assertEquals("x4", manager.getFrame("c4", DocumentaryUnit.class).getIdentifier());
+    }
+
     @Test
     public void testReplacePropertyName() throws Exception {
         long count = findReplace.propertyName(EntityClass.ADDRESS, "webpage", "url");
@@ -9,6 +9,8 @@ import eu.ehri.project.exceptions.ValidationError;
 import eu.ehri.project.importers.exceptions.InputParseError;
 import eu.ehri.project.importers.exceptions.InvalidInputFormatError;
 import eu.ehri.project.importers.exceptions.InvalidXmlDocument;
+import eu.ehri.project.importers.util.ArchiveEntryStream;
+import eu.ehri.project.importers.util.AuthoritativeItemLookup;
 import eu.ehri.project.models.base.Actioner;
 import eu.ehri.project.models.base.PermissionScope;
 import eu.ehri.project.persistence.ActionManager;
@@ -40,6 +42,10 @@ public abstract class AbstractImportManager implements ImportManager {
     // and reporting errors usefully...
     private String currentFile = null;
     private Integer currentPosition = null;
+
+    // Lookup of authoritative items, shared by all the importers
+    // of a single import run.
+    protected AuthoritativeItemLookup itemLookup = null;
     protected Class<? extends AbstractImporter> importerClass;
 
     /**
@@ -110,6 +116,7 @@ public abstract class AbstractImportManager implements ImportManager {
     public ImportLog importFile(InputStream ios, String logMessage)
             throws IOException, ValidationError, InputParseError {
         try {
+            itemLookup = new AuthoritativeItemLookup(framedGraph);
             // Create a new action for this import
             final ActionManager.EventContext action = new ActionManager(
                     framedGraph, permissionScope).logEvent(actioner,
@@ -146,7 +153,7 @@ public abstract class AbstractImportManager implements ImportManager {
             throws IOException, ValidationError {
 
         try {
-
+            itemLookup = new AuthoritativeItemLookup(framedGraph);
             final ActionManager.EventContext action = new ActionManager(
                     framedGraph, permissionScope).logEvent(actioner,
                     EventTypes.ingest, getLogMessage(logMessage));
@@ -184,6 +191,81 @@ public abstract class AbstractImportManager implements ImportManager {
         }
     }
 
+    /**
+     * Import each of the files in a zip, tar, or gzipped tar archive in
+     * the same batch/transaction. The archive is read as a stream and
+     * entries are not extracted to disk. Entries which this manager
+     * cannot import, as determined by {@link #isImportable(String)},
+     * are skipped. The results for each entry are recorded in the
+     * import log's sources.
+     *
+     * @param stream        an archive stream
+     * @param logMessage    a log message
+     *
+     * @throws IOException
+     * @throws ValidationError
+     * @throws InvalidInputFormatError if the stream is not a recognised archive
+     */
+    @Override
+    public ImportLog importArchive(InputStream stream, String logMessage)
+            throws IOException, ValidationError, InvalidInputFormatError {
+        try {
+            ArchiveEntryStream archive = ArchiveEntryStream.open(stream);
+            itemLookup = new AuthoritativeItemLookup(framedGraph);
+            final ActionManager.EventContext action = new ActionManager(
+                    framedGraph, permissionScope).logEvent(actioner,
+                    EventTypes.ingest, getLogMessage(logMessage));
+            final ImportLog log = new ImportLog(action);
+            String entry;
+            while ((entry = archive.nextEntry()) != null) {
+                if (!isImportable(entry)) {
+                    logger.info("Skipping archive entry: " + entry);
+                    continue;
+                }
+                currentFile = entry;
+                log.startSource(entry);
+                try {
+                    logger.info("Importing archive entry: " + entry);
+                    importFile(archive.getEntryStream(), action, log);
+                } catch (InvalidXmlDocument e) {
+                    log.setErrored(formatErrorLocation(), e.getMessage());
+                    if (!tolerant) {
+                        throw e;
+                    }
+                } finally {
+                    log.endSource();
+                }
+            }
+
+            commitOrRollback(log.hasDoneWork());
+
+            return log;
+        } catch (ValidationError e) {
+            commitOrRollback(false);
+            throw e;
+        } catch (IOException e) {
+            commitOrRollback(false);
+            throw e;
+        } catch (InvalidInputFormatError e) {
+            commitOrRollback(false);
+            throw e;
+        } catch (Exception e) {
+            commitOrRollback(false);
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Determine whether an archive entry should be imported,
+     * by default if it is an XML file.
+     *
+     * @param name the entry name
+     * @return whether the entry can be imported
+     */
+    protected boolean isImportable(String name) {
+        return name.toLowerCase().endsWith(".xml");
+    }
+
     /**
      * Import an InputStream with an event context.
      * @param ios the InputStream to import
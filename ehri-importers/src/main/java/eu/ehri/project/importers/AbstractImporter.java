@@ -7,6 +7,7 @@ import eu.ehri.project.core.GraphManager;
 import eu.ehri.project.core.GraphManagerFactory;
 import eu.ehri.project.exceptions.ValidationError;
 import eu.ehri.project.importers.properties.NodeProperties;
+import eu.ehri.project.importers.util.AuthoritativeItemLookup;
 import eu.ehri.project.models.EntityClass;
 import eu.ehri.project.models.MaintenanceEvent;
 import eu.ehri.project.models.base.AccessibleEntity;
@@ -45,6 +46,7 @@ public abstract class AbstractImporter<T> {
     protected final GraphManager manager;
     protected final ImportLog log;
     protected List<ImportCallback> callbacks = new LinkedList<ImportCallback>();
+    protected AuthoritativeItemLookup itemLookup;
 
     private NodeProperties pc;
 
@@ -83,6 +85,18 @@ public abstract class AbstractImporter<T> {
         this.framedGraph = graph;
         this.log = log;
         manager = GraphManagerFactory.getInstance(graph);
+        itemLookup = new AuthoritativeItemLookup(graph);
+    }
+
+    /**
+     * Use the given lookup to resolve links to items in authoritative
+     * sets, allowing it to be shared between importers of the same
+     * import run.
+     *
+     * @param itemLookup an authoritative item lookup
+     */
+    public void setItemLookup(final AuthoritativeItemLookup itemLookup) {
+        this.itemLookup = itemLookup;
     }
 
     /**
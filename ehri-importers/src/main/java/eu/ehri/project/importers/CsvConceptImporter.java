@@ -46,8 +46,10 @@ public class CsvConceptImporter extends CsvAuthoritativeItemImporter {
 
         if (!permissionScope.equals(SystemScope.getInstance())
                 && mutation.created()) {
-            manager.cast(permissionScope, Vocabulary.class).addItem(frame);
+            Vocabulary vocabulary = manager.cast(permissionScope, Vocabulary.class);
+            vocabulary.addItem(frame);
             frame.setPermissionScope(permissionScope);
+            itemLookup.add(vocabulary, frame);
         }
 
         handleCallbacks(mutation);
@@ -37,6 +37,11 @@ public class CsvImportManager extends AbstractImportManager {
         super(framedGraph, permissionScope, actioner, importerClass);
     }
 
+    @Override
+    protected boolean isImportable(String name) {
+        return name.toLowerCase().endsWith(".csv");
+    }
+
     /**
      * Import CSV from the given InputStream, as part of the given action.
      *
@@ -54,6 +59,9 @@ public class CsvImportManager extends AbstractImportManager {
         try {
             AbstractImporter importer = importerClass.getConstructor(FramedGraph.class, PermissionScope.class,
                     ImportLog.class).newInstance(framedGraph, permissionScope, log);
+            if (itemLookup != null) {
+                importer.setItemLookup(itemLookup);
+            }
             logger.debug("importer of class " + importer.getClass());
 
             importer.addCallback(new ImportCallback() {
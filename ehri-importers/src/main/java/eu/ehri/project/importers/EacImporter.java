@@ -17,7 +17,6 @@ import eu.ehri.project.models.base.Description;
 import eu.ehri.project.models.base.PermissionScope;
 import eu.ehri.project.models.cvoc.AuthoritativeSet;
 import eu.ehri.project.models.cvoc.Concept;
-import eu.ehri.project.models.cvoc.Vocabulary;
 import eu.ehri.project.persistence.Bundle;
 import eu.ehri.project.persistence.BundleDAO;
 import eu.ehri.project.persistence.Mutation;
@@ -223,12 +222,8 @@ public class EacImporter extends EaImporter {
                     String cvoc_id = (String) rel.asVertex().getProperty("cvoc");
                     String concept_id = (String) rel.asVertex().getProperty(LINK_TARGET);
                     logger.debug(cvoc_id + "  " + concept_id);
-                    Vocabulary vocabulary;
                     try {
-                        vocabulary = manager.getFrame(cvoc_id, Vocabulary.class);
-                        for (Concept concept : vocabulary.getConcepts()) {
-                        logger.debug("*********************" + concept.getId() + " " + concept.getIdentifier());
-                        if (concept.getIdentifier().equals(concept_id)) {
+                        for (Concept concept : itemLookup.find(cvoc_id, concept_id, Concept.class)) {
                             try {
                                 Bundle linkBundle = new Bundle(EntityClass.LINK)
                                         .withDataValue(Ontology.LINK_HAS_TYPE, rel.asVertex().getProperty("type").toString())
@@ -241,10 +236,7 @@ public class EacImporter extends EaImporter {
                             } catch (PermissionDenied ex) {
                                 logger.error(ex.getMessage());
                             }
-
                         }
-
-                    }
                     } catch (ItemNotFound ex) {
                         logger.error("Vocabulary with id " + cvoc_id +" not found. "+ex.getMessage());
                     }
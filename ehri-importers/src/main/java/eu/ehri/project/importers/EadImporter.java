@@ -20,7 +20,6 @@ import eu.ehri.project.models.base.AccessibleEntity;
 import eu.ehri.project.models.base.Description;
 import eu.ehri.project.models.base.PermissionScope;
 import eu.ehri.project.models.cvoc.Concept;
-import eu.ehri.project.models.cvoc.Vocabulary;
 import eu.ehri.project.models.idgen.DescriptionIdGenerator;
 import eu.ehri.project.models.idgen.IdGeneratorUtils;
 import eu.ehri.project.persistence.Bundle;
@@ -278,12 +277,8 @@ public class EadImporter extends EaImporter {
                       concept_id = (String) rel.asVertex().getProperty("target");
                     }
                     logger.debug("cvoc:"+cvoc_id + "  concept:" + concept_id);
-                    Vocabulary vocabulary;
                     try {
-                        vocabulary = manager.getFrame(cvoc_id, Vocabulary.class);
-                        for (Concept concept : vocabulary.getConcepts()) {
-                        logger.debug("*********************" + concept.getId() + " " + concept.getIdentifier());
-                        if (concept.getIdentifier().equalsIgnoreCase(concept_id)) {
+                        for (Concept concept : itemLookup.findIgnoreCase(cvoc_id, concept_id, Concept.class)) {
                             try {
                                 Bundle linkBundle = new Bundle(EntityClass.LINK)
                                         .withDataValue(Ontology.LINK_HAS_TYPE, rel.asVertex().getProperty("type").toString())
@@ -297,10 +292,7 @@ public class EadImporter extends EaImporter {
                             } catch (PermissionDenied ex) {
                                 logger.error(ex.getMessage());
                             }
-
                         }
-
-                    }
                     } catch (ItemNotFound ex) {
                         logger.error("Vocabulary with id " + cvoc_id +" not found. "+ex.getMessage());
                     }
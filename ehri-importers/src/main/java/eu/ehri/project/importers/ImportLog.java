@@ -23,6 +23,9 @@ public class ImportLog {
     private int errored = 0;
     private EventContext eventContext;
     private Map<String, String> errors = Maps.newHashMap();
+    private Map<String, Map<String, Object>> sources = Maps.newLinkedHashMap();
+    private String currentSource = null;
+    private int[] sourceCounts = null;
 
 
     /**
@@ -100,6 +103,45 @@ public class ImportLog {
     public void setErrored(String item, String error) {
         errors.put(item, error);
         errored++;
+        if (currentSource != null) {
+            sources.get(currentSource).put("error", error);
+        }
+    }
+
+    /**
+     * Start attributing subsequent results to the given source,
+     * e.g. a file within an archive, until {@link #endSource()}
+     * is called.
+     *
+     * @param source the source name
+     */
+    public void startSource(String source) {
+        endSource();
+        currentSource = source;
+        sourceCounts = new int[]{created, updated, unchanged};
+        sources.put(source, Maps.<String, Object>newHashMap());
+    }
+
+    /**
+     * Record the results for the current source, if any.
+     */
+    public void endSource() {
+        if (currentSource != null) {
+            Map<String, Object> result = sources.get(currentSource);
+            result.put("created", created - sourceCounts[0]);
+            result.put("updated", updated - sourceCounts[1]);
+            result.put("unchanged", unchanged - sourceCounts[2]);
+            currentSource = null;
+            sourceCounts = null;
+        }
+    }
+
+    /**
+     * @return returns the results for each source, in the order
+     *         they were imported
+     */
+    public Map<String, Map<String, Object>> getSources() {
+        return sources;
     }
 
     /**
@@ -140,6 +182,9 @@ public class ImportLog {
         data.put("updated", updated);
         data.put("unchanged", unchanged);
         data.put("message", eventContext.getLogMessage().orNull());
+        if (!sources.isEmpty()) {
+            data.put("sources", sources);
+        }
         return data;
     }
 
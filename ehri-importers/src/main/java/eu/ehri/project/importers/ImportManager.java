@@ -2,6 +2,7 @@ package eu.ehri.project.importers;
 
 import eu.ehri.project.exceptions.ValidationError;
 import eu.ehri.project.importers.exceptions.InputParseError;
+import eu.ehri.project.importers.exceptions.InvalidInputFormatError;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -36,4 +37,18 @@ public interface ImportManager {
     
     public ImportLog importFiles(List<String> paths, String logMessage)
             throws IOException, ValidationError;
+
+    /**
+     * Import the files in an archive, such as a zip or tar.gz, from a stream.
+     *
+     * @param stream           an archive stream
+     * @param logMessage       an optional message to describe the import
+     * @return                 an ImportLog for the archive
+     *
+     * @throws IOException     when reading the archive fails
+     * @throws ValidationError when the content of a file is invalid
+     * @throws InvalidInputFormatError when the stream is not a recognised archive
+     */
+    public ImportLog importArchive(InputStream stream, String logMessage)
+            throws IOException, ValidationError, InvalidInputFormatError;
 }
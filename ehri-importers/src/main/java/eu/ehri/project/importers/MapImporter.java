@@ -4,28 +4,22 @@ import com.tinkerpop.frames.FramedGraph;
 import eu.ehri.project.definitions.Ontology;
 import eu.ehri.project.exceptions.ValidationError;
 import eu.ehri.project.importers.properties.XmlImportProperties;
+import eu.ehri.project.importers.util.DateNormaliser;
 import eu.ehri.project.models.EntityClass;
 import eu.ehri.project.models.MaintenanceEvent;
 import eu.ehri.project.models.base.PermissionScope;
 import eu.ehri.project.persistence.Bundle;
 import eu.ehri.project.persistence.BundleDAO;
 import eu.ehri.project.persistence.Mutation;
-import org.joda.time.DateTime;
-import org.joda.time.format.DateTimeFormatter;
-import org.joda.time.format.ISODateTimeFormat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.text.ParsePosition;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Importer of Map based representations of documentary units, historical agents,
@@ -39,28 +33,7 @@ public abstract class MapImporter extends AbstractImporter<Map<String, Object>>
     private static final Logger logger = LoggerFactory.getLogger(MapImporter.class);
     protected final String OBJECT_ID = "objectIdentifier";
     protected final String DESCRIPTION_ID = "descriptionIdentifier";
-    private final XmlImportProperties dates = new XmlImportProperties("dates.properties");
-    // Various date patterns
-    private final Pattern[] datePatterns = {
-        // Yad Vashem, ICA-Atom style: 1924-1-1 - 1947-12-31
-        // Yad Vashem in Wp2: 12-15-1941, 9-30-1944
-        Pattern.compile("^(\\d{4}-\\d{1,2}-\\d{1,2})\\s?-\\s?(\\d{4}-\\d{1,2}-\\d{1,2})$"),
-        Pattern.compile("^(\\d{4}-\\d{1,2}-\\d{1,2})$"),
-        Pattern.compile("^(\\d{4})\\s?-\\s?(\\d{4})$"),
-        Pattern.compile("^(\\d{4})-\\[(\\d{4})\\]$"),
-        Pattern.compile("^(\\d{4})-\\[(\\d{4})\\]$"),
-        Pattern.compile("^(\\d{4}s)-\\[(\\d{4}s)\\]$"),
-        Pattern.compile("^\\[(\\d{4})\\]$"), Pattern.compile("^(\\d{4})$"),
-        Pattern.compile("^(\\d{2})th century$"),
-//        Pattern.compile("^(\\d{1,2}-\\d{1,2}-\\d{4}) - (\\d{1,2}-\\d{1,2}-\\d{4})$"),
-        Pattern.compile("^\\s*(\\d{4})\\s*-\\s*(\\d{4})"),
-        //bundesarchive: 1906/19
-        Pattern.compile("^\\s*(\\d{4})/(\\d{2})"),
-        Pattern.compile("^\\s*(\\d{4})\\s*/\\s*(\\d{4})"),
-//       1935-03/1935-05
-        Pattern.compile("^(\\d{4}-\\d{1,2})/(\\d{4}-\\d{1,2})"),
-        Pattern.compile("^(\\d{4}-\\d{1,2}-\\d{1,2})/(\\d{4}-\\d{1,2}-\\d{1,2})")
-    };
+    private static final XmlImportProperties dates = new XmlImportProperties("dates.properties");
 
     public MapImporter(FramedGraph<?> framedGraph, PermissionScope permissionScope, ImportLog log) {
         super(framedGraph, permissionScope, log);
@@ -241,25 +214,10 @@ public abstract class MapImporter extends AbstractImporter<Map<String, Object>>
     }
 
     private Map<String, Object> matchDate(String date) {
-        Map<String, Object> data = new HashMap<String, Object>();
-        for (Pattern re : datePatterns) {
-            Matcher matcher = re.matcher(date);
-            if (matcher.matches()) {
-                logger.debug("matched "+ date);
-                data.put(Ontology.DATE_PERIOD_START_DATE, normaliseDate(matcher.group(1)));
-                data.put(Ontology.DATE_PERIOD_END_DATE, normaliseDate(matcher.group(matcher
-                        .groupCount() > 1 ? 2 : 1), Ontology.DATE_PERIOD_END_DATE));
-                data.put(Ontology.DATE_HAS_DESCRIPTION, date);
-                break;
-            }
-        }
-        return data;
+        Map<String, Object> data = DateNormaliser.extractDate(date);
+        return data == null ? new HashMap<String, Object>() : data;
     }
 
-    private static String normaliseDate(String date) {
-        return normaliseDate(date, Ontology.DATE_PERIOD_START_DATE);
-    }
-    
     /**
      * Normalise a date in a string.
      * 
@@ -267,32 +225,10 @@ public abstract class MapImporter extends AbstractImporter<Map<String, Object>>
      * @param beginOrEnd a string signifying whether this date is the begin of
      * a period or the end of a period
      * @return a String containing the formatted date.
+     * @see DateNormaliser#normaliseDate(String, String)
      */
     public static String normaliseDate(String date, String beginOrEnd) {
-        DateTimeFormatter fmt = ISODateTimeFormat.date();
-        String returndate = fmt.print(DateTime.parse(date));
-        if (returndate.startsWith("00")) {
-//            logger.debug("strange date: " + returndate);
-            returndate = "19" + returndate.substring(2);
-            date = "19" + date;
-//            logger.debug("strange date: " + returndate);
-        }
-        if (Ontology.DATE_PERIOD_END_DATE.equals(beginOrEnd)) {
-            if (!date.equals(returndate)) {
-                ParsePosition p = new ParsePosition(0);
-                new SimpleDateFormat("yyyy-MM").parse(date, p);
-                if (p.getIndex() > 0) {
-                    returndate = fmt.print(DateTime.parse(date).plusMonths(1).minusDays(1));
-                } else {
-                    p = new ParsePosition(0);
-                    new SimpleDateFormat("yyyy").parse(date, p);
-                    if (p.getIndex() > 0) {
-                        returndate = fmt.print(DateTime.parse(date).plusYears(1).minusDays(1));
-                    }
-                }
-            }
-        }
-        return returndate;
+        return DateNormaliser.normaliseDate(date, beginOrEnd);
     }
     
     //TODO: for now, it only returns 1 unknown node object, but it could be more accurate to return several
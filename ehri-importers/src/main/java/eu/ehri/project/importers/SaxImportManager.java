@@ -123,7 +123,10 @@ public class SaxImportManager extends AbstractImportManager {
         try {
             AbstractImporter<Map<String, Object>> importer = importerClass.getConstructor(FramedGraph.class, PermissionScope.class,
                     ImportLog.class).newInstance(framedGraph, permissionScope, log);
-            
+            if (itemLookup != null) {
+                importer.setItemLookup(itemLookup);
+            }
+
             for (ImportCallback callback : extraCallbacks) {
                 importer.addCallback(callback);
             }
@@ -62,6 +62,13 @@ public abstract class SaxXmlHandler extends DefaultHandler implements LexicalHan
     protected final Stack<String> currentPath = new Stack<String>();
     protected final Stack<StringBuilder> currentText = new Stack<StringBuilder>();
 
+    /**
+     * The property name for each element of the current path, looked up
+     * on demand. Entries are dropped when a new element is pushed at
+     * their depth or above.
+     */
+    private final List<String> importantPaths = new ArrayList<String>();
+
     protected String currentEntity = null;
 
     protected final AbstractImporter<Map<String, Object>> importer;
@@ -141,6 +148,9 @@ public abstract class SaxXmlHandler extends DefaultHandler implements LexicalHan
 
         // Update the path with the new element name
         currentPath.push(withoutNamespace(qName));
+        while (importantPaths.size() >= currentPath.size()) {
+            importantPaths.remove(importantPaths.size() - 1);
+        }
         if (needToCreateSubNode(qName)) { //a new subgraph should be created
             depth++;
             logger.debug("Pushing depth... " + depth + " -> " + qName);
@@ -337,7 +347,21 @@ public abstract class SaxXmlHandler extends DefaultHandler implements LexicalHan
      * replacing the /
      */
     protected String getImportantPath(Stack<String> path) {
-        return getImportantPath(path, "", "");
+        if (path != currentPath || path.isEmpty()) {
+            return getImportantPath(path, "", "");
+        }
+        // Element ends (and some starts) look up the same path
+        // several times, so remember it while the element is open
+        int index = path.size() - 1;
+        while (importantPaths.size() <= index) {
+            importantPaths.add(null);
+        }
+        String importantPath = importantPaths.get(index);
+        if (importantPath == null) {
+            importantPath = getImportantPath(path, "", "");
+            importantPaths.set(index, importantPath);
+        }
+        return importantPath;
     }
     
     /**
@@ -354,15 +378,15 @@ public abstract class SaxXmlHandler extends DefaultHandler implements LexicalHan
      * replacing the /
      */
     private String getImportantPath(Stack<String> path, String attribute, String attributevalue) {
-        
-        String all = "";
-        for (int i = path.size(); i > 0; i--) {
-            all = path.get(i - 1) + "/" + all;
-            if (properties.getProperty(all+attribute+attributevalue) != null) {
-                return properties.getProperty(all+attribute+attributevalue);
-            }
+        String value = properties.getPathProperty(path, attribute + attributevalue);
+        if (value != null) {
+            return value;
+        }
+        StringBuilder all = new StringBuilder(UNKNOWN);
+        for (String element : path) {
+            all.append(element).append("_");
         }
-        return UNKNOWN + all.replace("/", "_");
+        return all.toString();
     }
     /**
      * did/unitid/@ehrilabel$ehri_main_identifier=objectIdentifier
@@ -376,15 +400,7 @@ public abstract class SaxXmlHandler extends DefaultHandler implements LexicalHan
      * If this path has no corresponding value in the properties file, it will return false
      */
     private boolean isKeyInPropertyFile(Stack<String> path, String attribute, String attributevalue) {
-        
-        String all = "";
-        for (int i = path.size(); i > 0; i--) {
-            all = path.get(i - 1) + "/" + all;
-            if (properties.getProperty(all+attribute+attributevalue) != null) {
-                return true;
-            }
-        }
-        return false;
+        return properties.getPathProperty(path, attribute + attributevalue) != null;
     }
     
     /**
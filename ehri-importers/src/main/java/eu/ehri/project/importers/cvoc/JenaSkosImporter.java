@@ -1,13 +1,21 @@
 package eu.ehri.project.importers.cvoc;
 
 import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.NodeFactory;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.graph.TripleMatch;
+import com.hp.hpl.jena.graph.impl.GraphBase;
 import com.hp.hpl.jena.ontology.OntClass;
 import com.hp.hpl.jena.ontology.OntModel;
 import com.hp.hpl.jena.ontology.OntResource;
 import com.hp.hpl.jena.rdf.model.Literal;
+import com.hp.hpl.jena.rdf.model.Model;
 import com.hp.hpl.jena.rdf.model.ModelFactory;
 import com.hp.hpl.jena.rdf.model.RDFNode;
 import com.hp.hpl.jena.rdf.model.Resource;
@@ -15,6 +23,9 @@ import com.hp.hpl.jena.rdf.model.Statement;
 import com.hp.hpl.jena.util.iterator.ExtendedIterator;
 import com.hp.hpl.jena.util.iterator.Filter;
 import com.hp.hpl.jena.util.iterator.Map1;
+import com.hp.hpl.jena.util.iterator.NullIterator;
+import com.hp.hpl.jena.vocabulary.RDF;
+import com.hp.hpl.jena.vocabulary.RDFS;
 import com.tinkerpop.blueprints.TransactionalGraph;
 import com.tinkerpop.frames.FramedGraph;
 import eu.ehri.project.core.GraphManager;
@@ -26,13 +37,14 @@ import eu.ehri.project.exceptions.PermissionDenied;
 import eu.ehri.project.exceptions.ValidationError;
 import eu.ehri.project.importers.EaImporter;
 import eu.ehri.project.importers.ImportLog;
+import eu.ehri.project.importers.exceptions.InputParseError;
+import eu.ehri.project.importers.util.AuthoritativeItemLookup;
 import eu.ehri.project.importers.util.Helpers;
 import eu.ehri.project.models.EntityClass;
 import eu.ehri.project.models.Link;
 import eu.ehri.project.models.UserProfile;
 import eu.ehri.project.models.base.Actioner;
 import eu.ehri.project.models.cvoc.AuthoritativeItem;
-import eu.ehri.project.models.cvoc.AuthoritativeSet;
 import eu.ehri.project.models.cvoc.Concept;
 import eu.ehri.project.models.cvoc.Vocabulary;
 import eu.ehri.project.persistence.ActionManager;
@@ -49,6 +61,7 @@ import java.io.InputStream;
 import java.net.URI;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -67,7 +80,18 @@ public final class JenaSkosImporter implements SkosImporter {
     private final boolean tolerant;
     private final String format;
     private final String defaultLang;
+    private final int batchSize;
+    private AuthoritativeItemLookup itemLookup;
     public static final String DEFAULT_LANG = "eng";
+
+    /**
+     * The maximum number of distinct subjects whose statements are
+     * held in memory when importing in batches.
+     */
+    public static final int SUBJECT_BUFFER_SIZE = 1000;
+
+    private static final Node CONCEPT_NODE = NodeFactory
+            .createURI(SkosRDFVocabulary.CONCEPT.getURI().toString());
     // Language-sensitive properties.
     private static void addToMap(Map<String, Set<URI>> map, String key, URI value){
         if(map.containsKey(key)){
@@ -111,6 +135,28 @@ public final class JenaSkosImporter implements SkosImporter {
             .put("sem:placeAccess", URI.create("http://semanticweb.cs.vu.nl/2009/11/sem/hasPlace"))
             .build();
 
+    // Properties that connect concepts in the same vocabulary.
+    private static final Map<URI, ConnectFunc> CONCEPT_RELATIONS = ImmutableMap.<URI, ConnectFunc>builder()
+            .put(SkosRDFVocabulary.BROADER.getURI(), new ConnectFunc() {
+                @Override
+                public void connect(Concept current, Concept related) {
+                    related.addNarrowerConcept(current);
+                }
+            })
+            .put(SkosRDFVocabulary.NARROWER.getURI(), new ConnectFunc() {
+                @Override
+                public void connect(Concept current, Concept related) {
+                    current.addNarrowerConcept(related);
+                }
+            })
+            .put(SkosRDFVocabulary.RELATED.getURI(), new ConnectFunc() {
+                @Override
+                public void connect(Concept current, Concept related) {
+                    current.addRelatedConcept(related);
+                }
+            })
+            .build();
+
     /**
      * Constructor
      *
@@ -120,18 +166,37 @@ public final class JenaSkosImporter implements SkosImporter {
      * @param tolerant Whether or not to ignore single item validation errors.
      * @param format The RDF format
      * @param defaultLang The language to use for elements without specified language
+     * @param batchSize The number of concepts to import per transaction, or zero
+     *                  to import the whole file in a single transaction
      */
     public JenaSkosImporter(FramedGraph<? extends TransactionalGraph> framedGraph, Actioner actioner,
-            Vocabulary vocabulary, boolean tolerant, String format, String defaultLang) {
+            Vocabulary vocabulary, boolean tolerant, String format, String defaultLang, int batchSize) {
+        Preconditions.checkArgument(batchSize >= 0, "Batch size cannot be negative");
         this.framedGraph = framedGraph;
         this.actioner = actioner;
         this.vocabulary = vocabulary;
         this.tolerant = tolerant;
         this.format = format;
         this.defaultLang = defaultLang;
+        this.batchSize = batchSize;
         this.dao = new BundleDAO(framedGraph, vocabulary.idPath());
     }
 
+    /**
+     * Constructor
+     *
+     * @param framedGraph The framed graph
+     * @param actioner The actioner
+     * @param vocabulary The target vocabulary
+     * @param tolerant Whether or not to ignore single item validation errors.
+     * @param format The RDF format
+     * @param defaultLang The language to use for elements without specified language
+     */
+    public JenaSkosImporter(FramedGraph<? extends TransactionalGraph> framedGraph, Actioner actioner,
+            Vocabulary vocabulary, boolean tolerant, String format, String defaultLang) {
+        this(framedGraph, actioner, vocabulary, tolerant, format, defaultLang, 0);
+    }
+
     /**
      * Constructor
      *
@@ -148,20 +213,52 @@ public final class JenaSkosImporter implements SkosImporter {
     public JenaSkosImporter setTolerant(boolean tolerant) {
         logger.debug("Setting importer to tolerant: " + tolerant);
         return new JenaSkosImporter(
-                framedGraph, actioner, vocabulary, tolerant, format, defaultLang);
+                framedGraph, actioner, vocabulary, tolerant, format, defaultLang, batchSize);
     }
 
     @Override
     public JenaSkosImporter setFormat(String format) {
         return new JenaSkosImporter(
-                framedGraph, actioner, vocabulary, tolerant, format, defaultLang);
+                framedGraph, actioner, vocabulary, tolerant, format, defaultLang, batchSize);
     }
 
     @Override
     public JenaSkosImporter setDefaultLang(String lang) {
         return new JenaSkosImporter(
                 framedGraph, actioner, vocabulary, tolerant, format,
-                Helpers.iso639DashTwoCode(lang));
+                Helpers.iso639DashTwoCode(lang), batchSize);
+    }
+
+    /**
+     * Import concepts in batches of the given size, committing the
+     * transaction after each batch. In this mode the input is read a
+     * statement at a time rather than being loaded into memory, and
+     * each concept is imported once all statements about it have been
+     * read. Since only a limited number of subjects are buffered at
+     * any one time the input should have its statements grouped by
+     * subject, as is the case for RDF/XML and for sorted N-Triples;
+     * the import fails if statements about a subject are read after it
+     * has left the buffer.
+     * Statements about blank nodes are included with those of the
+     * subjects that refer to them.
+     * <p/>
+     * Concepts are recognised by their type being skos:Concept or a
+     * class declared, with rdfs:subClassOf, as a subclass of it. Unlike
+     * the in-memory import no other inference is done, and a subclass
+     * declaration is only seen if it is read before the concepts of
+     * that class leave the buffer, e.g. if it comes near the start.
+     * <p/>
+     * NB: Since batches are committed as the import proceeds, an error
+     * will only roll back the current batch.
+     *
+     * @param batchSize The number of concepts per batch, or zero to
+     *                  import everything in a single transaction
+     * @return A new SKOS importer with the given batch size
+     */
+    @Override
+    public JenaSkosImporter setBatchSize(int batchSize) {
+        return new JenaSkosImporter(
+                framedGraph, actioner, vocabulary, tolerant, format, defaultLang, batchSize);
     }
 
     /**
@@ -171,11 +268,12 @@ public final class JenaSkosImporter implements SkosImporter {
      * @param logMessage A log message
      * @return A log of imported nodes
      * @throws IOException
+     * @throws InputParseError
      * @throws ValidationError
      */
     @Override
     public ImportLog importFile(String filePath, String logMessage)
-            throws IOException, ValidationError {
+            throws IOException, InputParseError, ValidationError {
         FileInputStream ios = new FileInputStream(filePath);
         try {
             return importFile(ios, logMessage);
@@ -191,74 +289,226 @@ public final class JenaSkosImporter implements SkosImporter {
      * @param logMessage A log message
      * @return A log of imported nodes
      * @throws IOException
+     * @throws InputParseError
      * @throws ValidationError
      */
     @Override
     public ImportLog importFile(InputStream ios, String logMessage)
-            throws IOException, ValidationError {
+            throws IOException, InputParseError, ValidationError {
         try {
             // Create a new action for this import
             final ActionManager.EventContext eventContext = new ActionManager(framedGraph, vocabulary).logEvent(
                     actioner, EventTypes.ingest, getLogMessage(logMessage));
             // Create a manifest to store the results of the import.
             final ImportLog log = new ImportLog(eventContext);
+            itemLookup = new AuthoritativeItemLookup(framedGraph);
+
+            if (batchSize > 0) {
+                importInBatches(ios, eventContext, log);
+            } else {
+                importModel(ios, eventContext, log);
+            }
+
+            if (log.hasDoneWork()) {
+                framedGraph.getBaseGraph().commit();
+            } else {
+                framedGraph.getBaseGraph().rollback();
+            }
 
-            OntModel model = ModelFactory.createOntologyModel();
-            model.read(ios, null, format);
-            OntClass conceptClass = model.getOntClass(SkosRDFVocabulary.CONCEPT.getURI().toString());
-            logger.debug("in import file: " + SkosRDFVocabulary.CONCEPT.getURI().toString());
-            ExtendedIterator<? extends OntResource> extendedIterator = conceptClass.listInstances();
-            Map<Resource, Concept> imported = Maps.newHashMap();
+            return log;
+        } catch (ValidationError error) {
+            framedGraph.getBaseGraph().rollback();
+            throw error;
+        } catch (InputParseError error) {
+            framedGraph.getBaseGraph().rollback();
+            throw error;
+        }
+    }
 
-            while (extendedIterator.hasNext()) {
-                Resource item = extendedIterator.next();
+    private void importModel(InputStream ios, ActionManager.EventContext eventContext,
+            ImportLog log) throws ValidationError {
+        OntModel model = ModelFactory.createOntologyModel();
+        model.read(ios, null, format);
+        OntClass conceptClass = model.getOntClass(SkosRDFVocabulary.CONCEPT.getURI().toString());
+        logger.debug("in import file: " + SkosRDFVocabulary.CONCEPT.getURI().toString());
+        ExtendedIterator<? extends OntResource> extendedIterator = conceptClass.listInstances();
+        Map<Resource, Concept> imported = Maps.newHashMap();
+
+        while (extendedIterator.hasNext()) {
+            Resource item = extendedIterator.next();
+
+            Optional<Concept> concept = importConcept(item, eventContext, log);
+            if (concept.isPresent()) {
+                imported.put(item, concept.get());
+            }
+        }
 
-                try {
-                    Mutation<Concept> graphConcept = importConcept(item);
-                    imported.put(item, graphConcept.getNode());
-
-                    switch (graphConcept.getState()) {
-                        case UNCHANGED:
-                            log.addUnchanged();
-                            break;
-                        case CREATED:
-                            log.addCreated();
-                            eventContext.addSubjects(graphConcept.getNode());
-                            break;
-                        case UPDATED:
-                            log.addUpdated();
-                            eventContext.addSubjects(graphConcept.getNode());
-                            break;
+        for (Map.Entry<Resource, Concept> pair : imported.entrySet()) {
+            hookupRelationships(pair.getKey(), pair.getValue(), imported);
+        }
+
+        for (Concept concept : imported.values()) {
+            addToVocabulary(concept);
+        }
+    }
+
+    /**
+     * Import the input a statement at a time, importing each concept
+     * as soon as its statements have been read and committing every
+     * {@code batchSize} concepts. Relations between concepts are
+     * recorded as (predicate, subject, object) URIs and connected once
+     * all concepts have been imported, using an index of concept URIs
+     * to graph IDs.
+     */
+    private void importInBatches(InputStream ios, final ActionManager.EventContext eventContext,
+            final ImportLog log) throws ValidationError, InputParseError {
+        final Map<String, Object> conceptIds = Maps.newHashMap();
+        final List<String[]> relations = Lists.newArrayList();
+
+        // Classes declared as subclasses of other classes, for
+        // recognising instances of subclasses of skos:Concept
+        final Map<Node, Set<Node>> superClasses = Maps.newHashMap();
+
+        SubjectGroupingGraph sink = new SubjectGroupingGraph(SUBJECT_BUFFER_SIZE) {
+            @Override
+            public void performAdd(Triple triple) {
+                if (triple.getPredicate().equals(RDFS.subClassOf.asNode())) {
+                    Set<Node> classes = superClasses.get(triple.getSubject());
+                    if (classes == null) {
+                        classes = Sets.newHashSet();
+                        superClasses.put(triple.getSubject(), classes);
                     }
-                } catch (ValidationError validationError) {
-                    if (tolerant) {
-                        logger.error(validationError.getMessage());
-                        log.setErrored(item.toString(), validationError.getMessage());
-                    } else {
-                        throw validationError;
+                    classes.add(triple.getObject());
+                }
+                super.performAdd(triple);
+            }
+
+            @Override
+            protected void handleSubject(Node subject, List<Triple> triples) throws ValidationError {
+                if (!isConcept(subject, triples, superClasses)) {
+                    return;
+                }
+                Model model = ModelFactory.createDefaultModel();
+                for (Triple triple : triples) {
+                    model.getGraph().add(triple);
+                }
+                Optional<Concept> concept = importConcept(
+                        model.wrapAsResource(subject), eventContext, log);
+                if (concept.isPresent()) {
+                    addToVocabulary(concept.get());
+                    conceptIds.put(subject.getURI(), concept.get().asVertex().getId());
+                    for (Triple triple : triples) {
+                        if (triple.getSubject().equals(subject)
+                                && triple.getObject().isURI() && CONCEPT_RELATIONS.containsKey(
+                                URI.create(triple.getPredicate().getURI()))) {
+                            relations.add(new String[]{triple.getPredicate().getURI(),
+                                    subject.getURI(), triple.getObject().getURI()});
+                        }
+                    }
+                    if (conceptIds.size() % batchSize == 0) {
+                        commitBatch(log, conceptIds.size());
                     }
                 }
             }
+        };
 
-            for (Map.Entry<Resource, Concept> pair : imported.entrySet()) {
-                hookupRelationships(pair.getKey(), pair.getValue(), imported);
+        try {
+            ModelFactory.createModelForGraph(sink).read(ios, null, format);
+            sink.flush();
+        } catch (SubjectGroupingGraph.HandlerError e) {
+            if (e.getCause() instanceof InputParseError) {
+                throw (InputParseError) e.getCause();
             }
+            throw (ValidationError) e.getCause();
+        }
 
-            for (Concept concept : imported.values()) {
-                vocabulary.addItem(concept);
-                concept.setPermissionScope(vocabulary);
+        int done = 0;
+        for (String[] relation : relations) {
+            Object relatedId = conceptIds.get(relation[2]);
+            if (relatedId != null) {
+                CONCEPT_RELATIONS.get(URI.create(relation[0])).connect(
+                        framedGraph.getVertex(conceptIds.get(relation[1]), Concept.class),
+                        framedGraph.getVertex(relatedId, Concept.class));
+                if (++done % batchSize == 0) {
+                    commitBatch(log, done);
+                }
             }
+        }
+    }
 
-            if (log.hasDoneWork()) {
-                framedGraph.getBaseGraph().commit();
-            } else {
-                framedGraph.getBaseGraph().rollback();
+    private static boolean isConcept(Node subject, List<Triple> triples,
+            Map<Node, Set<Node>> superClasses) {
+        if (!subject.isURI()) {
+            return false;
+        }
+        for (Triple triple : triples) {
+            if (triple.getSubject().equals(subject)
+                    && triple.getPredicate().equals(RDF.type.asNode())
+                    && isConceptClass(triple.getObject(), superClasses, Sets.<Node>newHashSet())) {
+                return true;
             }
+        }
+        return false;
+    }
 
-            return log;
-        } catch (ValidationError error) {
-            framedGraph.getBaseGraph().rollback();
-            throw error;
+    private static boolean isConceptClass(Node cls, Map<Node, Set<Node>> superClasses,
+            Set<Node> seen) {
+        if (cls.equals(CONCEPT_NODE)) {
+            return true;
+        }
+        Set<Node> classes = superClasses.get(cls);
+        if (classes != null && seen.add(cls)) {
+            for (Node superClass : classes) {
+                if (isConceptClass(superClass, superClasses, seen)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void commitBatch(ImportLog log, int count) {
+        // NB: If nothing has changed yet we leave the transaction
+        // open so the ingest event can be rolled back at the end.
+        if (log.hasDoneWork()) {
+            logger.debug("Committing batch: {}", count);
+            framedGraph.getBaseGraph().commit();
+        }
+    }
+
+    private void addToVocabulary(Concept concept) {
+        vocabulary.addItem(concept);
+        concept.setPermissionScope(vocabulary);
+        itemLookup.add(vocabulary, concept);
+    }
+
+    private Optional<Concept> importConcept(Resource item, ActionManager.EventContext eventContext,
+            ImportLog log) throws ValidationError {
+        try {
+            Mutation<Concept> graphConcept = importConcept(item);
+
+            switch (graphConcept.getState()) {
+                case UNCHANGED:
+                    log.addUnchanged();
+                    break;
+                case CREATED:
+                    log.addCreated();
+                    eventContext.addSubjects(graphConcept.getNode());
+                    break;
+                case UPDATED:
+                    log.addUpdated();
+                    eventContext.addSubjects(graphConcept.getNode());
+                    break;
+            }
+            return Optional.of(graphConcept.getNode());
+        } catch (ValidationError validationError) {
+            if (tolerant) {
+                logger.error(validationError.getMessage());
+                log.setErrored(item.toString(), validationError.getMessage());
+                return Optional.absent();
+            } else {
+                throw validationError;
+            }
         }
     }
 
@@ -340,14 +590,11 @@ public final class JenaSkosImporter implements SkosImporter {
             if (domains.length > 2) {
                 String cvoc_id = domains[domains.length - 2];
                 String concept_id = domains[domains.length - 1];
-                AuthoritativeSet referredSet;
                 try {
-                    GraphManager manager = GraphManagerFactory.getInstance(framedGraph);
-                    referredSet = manager.getFrame(cvoc_id, AuthoritativeSet.class);
-                    for (AuthoritativeItem authItem : referredSet.getAuthoritativeItems()) {
-                        if (authItem.getIdentifier().equals(concept_id)) {
-                            return authItem;
-                        }
+                    List<AuthoritativeItem> items = itemLookup.find(cvoc_id, concept_id,
+                            AuthoritativeItem.class);
+                    if (!items.isEmpty()) {
+                        return items.get(0);
                     }
                 } catch (ItemNotFound ex) {
                     logger.error("AuthoritativeSet with id " + cvoc_id + " not found. " + ex.getMessage());
@@ -357,6 +604,117 @@ public final class JenaSkosImporter implements SkosImporter {
         return null;
     }
 
+    /**
+     * A write-only graph which passes on the statements added to it
+     * grouped by subject. Statements are buffered until either the
+     * number of distinct subjects in the buffer exceeds its size, in
+     * which case the subject seen first is handled, or the graph is
+     * flushed. Each subject is handled once, so a statement about one
+     * that has already been handled is an error.
+     * <p/>
+     * Blank nodes are not handled as subjects in their own right.
+     * Instead their statements, and those of any blank nodes they
+     * refer to in turn, are passed on along with those of each
+     * subject that refers to them. A bounded number of the most
+     * recently seen blank nodes are retained for this purpose.
+     */
+    private static abstract class SubjectGroupingGraph extends GraphBase {
+        private final int bufferSize;
+        private final Map<Node, List<Triple>> buffer = Maps.newLinkedHashMap();
+        private final Map<Node, List<Triple>> blankNodes = Maps.newLinkedHashMap();
+        private final Set<Node> handled = Sets.newHashSet();
+
+        /**
+         * Wrapper for errors thrown by the subject handler, or for
+         * statements that are not grouped by subject, which cannot
+         * propagate directly from the graph's add method.
+         */
+        static class HandlerError extends RuntimeException {
+            HandlerError(Exception cause) {
+                super(cause);
+            }
+        }
+
+        SubjectGroupingGraph(int bufferSize) {
+            this.bufferSize = bufferSize;
+        }
+
+        /**
+         * Handle the statements about a subject, including those about
+         * any blank nodes it refers to.
+         *
+         * @param subject the subject node
+         * @param triples the statements about it
+         * @throws ValidationError
+         */
+        protected abstract void handleSubject(Node subject, List<Triple> triples)
+                throws ValidationError;
+
+        @Override
+        public void performAdd(Triple triple) {
+            Node subject = triple.getSubject();
+            if (subject.isBlank()) {
+                List<Triple> triples = blankNodes.get(subject);
+                if (triples == null) {
+                    if (blankNodes.size() >= bufferSize) {
+                        Iterator<Node> iterator = blankNodes.keySet().iterator();
+                        iterator.next();
+                        iterator.remove();
+                    }
+                    triples = Lists.newArrayList();
+                    blankNodes.put(subject, triples);
+                }
+                triples.add(triple);
+                return;
+            }
+            List<Triple> triples = buffer.get(subject);
+            if (triples == null) {
+                if (handled.contains(subject)) {
+                    throw new HandlerError(new InputParseError(
+                            "Statements about " + subject + " are not grouped together"));
+                }
+                if (buffer.size() >= bufferSize) {
+                    handleFirst();
+                }
+                triples = Lists.newArrayList();
+                buffer.put(subject, triples);
+            }
+            triples.add(triple);
+        }
+
+        @Override
+        protected ExtendedIterator<Triple> graphBaseFind(TripleMatch m) {
+            return NullIterator.instance();
+        }
+
+        void flush() {
+            while (!buffer.isEmpty()) {
+                handleFirst();
+            }
+        }
+
+        private void handleFirst() {
+            Iterator<Map.Entry<Node, List<Triple>>> iterator = buffer.entrySet().iterator();
+            Map.Entry<Node, List<Triple>> first = iterator.next();
+            iterator.remove();
+            handled.add(first.getKey());
+            List<Triple> triples = Lists.newArrayList(first.getValue());
+            Set<Node> seen = Sets.newHashSet();
+            // NB: The list grows as blank node statements are added
+            for (int i = 0; i < triples.size(); i++) {
+                Node object = triples.get(i).getObject();
+                if (object.isBlank() && seen.add(object) && blankNodes.containsKey(object)) {
+                    triples.addAll(blankNodes.get(object));
+                }
+            }
+            try {
+                handleSubject(first.getKey(), triples);
+            } catch (ValidationError e) {
+                throw new HandlerError(e);
+            }
+        }
+    }
+
     private static interface ConnectFunc {
 
         public void connect(Concept current, Concept related);
@@ -392,27 +750,9 @@ public final class JenaSkosImporter implements SkosImporter {
 
     private void hookupRelationships(Resource item, Concept current,
             Map<Resource, Concept> conceptMap) {
-
-        connectRelation(current, item, conceptMap, SkosRDFVocabulary.BROADER.getURI(), new ConnectFunc() {
-            @Override
-            public void connect(Concept current, Concept related) {
-                related.addNarrowerConcept(current);
-            }
-        });
-
-        connectRelation(current, item, conceptMap, SkosRDFVocabulary.NARROWER.getURI(), new ConnectFunc() {
-            @Override
-            public void connect(Concept current, Concept related) {
-                current.addNarrowerConcept(related);
-            }
-        });
-
-        connectRelation(current, item, conceptMap, SkosRDFVocabulary.RELATED.getURI(), new ConnectFunc() {
-            @Override
-            public void connect(Concept current, Concept related) {
-                current.addRelatedConcept(related);
-            }
-        });
+        for (Map.Entry<URI, ConnectFunc> relation : CONCEPT_RELATIONS.entrySet()) {
+            connectRelation(current, item, conceptMap, relation.getKey(), relation.getValue());
+        }
     }
 
     private List<Bundle> getDescriptions(Resource item) {
@@ -435,15 +775,16 @@ public final class JenaSkosImporter implements SkosImporter {
 
             for (Map.Entry<String, URI> prop : GENERAL_PROPS.entrySet()) {
                 for (RDFNode target : getObjectWithPredicate(item, prop.getValue())) {
-                    if (target.isLiteral()) {
+                    Literal literal = getLiteral(target);
+                    if (literal != null) {
                         if (prop.getKey().equals("latitude/longitude")) {
-                            String[] latlong = target.asLiteral().getString().split(",");
+                            String[] latlong = literal.getString().split(",");
                             if (latlong.length > 1) {
                                 builder.addDataValue("latitude", latlong[0]);
                                 builder.addDataValue("longitude", latlong[1]);
                             }
                         } else {
-                            builder.addDataValue(prop.getKey(), target.asLiteral().getString());
+                            builder.addDataValue(prop.getKey(), literal.getString());
                         }
                     } else {
                         builder.addDataValue(prop.getKey(), target.toString());
@@ -455,8 +796,8 @@ public final class JenaSkosImporter implements SkosImporter {
                 List<String> values = Lists.newArrayList();
                 for (URI uri : prop.getValue()) {
                     for (RDFNode target : getObjectWithPredicate(item, uri)) {
-                        if (target.isLiteral()) {
-                            Literal literal = target.asLiteral();
+                        Literal literal = getLiteral(target);
+                        if (literal != null) {
                             String propLanguageCode = isValidLanguageCode(literal.getLanguage())
                                     ? Helpers.iso639DashTwoCode(literal.getLanguage())
                                     : defaultLang;
@@ -478,6 +819,26 @@ public final class JenaSkosImporter implements SkosImporter {
         return descriptions;
     }
 
+    /**
+     * Get the literal value of a property, which may either be given
+     * directly or, as with SKOS structured notes, as the rdf:value
+     * of a blank node.
+     *
+     * @param target the property value
+     * @return a literal, or null if the value has none
+     */
+    private static Literal getLiteral(RDFNode target) {
+        if (target.isLiteral()) {
+            return target.asLiteral();
+        } else if (target.isAnon()) {
+            Statement value = target.asResource().getProperty(RDF.value);
+            if (value != null && value.getObject().isLiteral()) {
+                return value.getObject().asLiteral();
+            }
+        }
+        return null;
+    }
+
     private String getId(URI uri) {
         return uri.getPath().substring(uri.getPath().lastIndexOf("/") + 1)
                 + (uri.getQuery() != null ? uri.getQuery() : "")
@@ -95,6 +95,14 @@ public final class OwlApiSkosImporter implements SkosImporter {
                 Helpers.iso639DashTwoCode(lang));
     }
 
+    public OwlApiSkosImporter setBatchSize(int batchSize) {
+        if (batchSize != 0) {
+            throw new UnsupportedOperationException(
+                    "Importing in batches is not currently supported");
+        }
+        return this;
+    }
+
     public ImportLog importFile(String filePath, String logMessage)
             throws IOException, InputParseError, ValidationError {
         FileInputStream ios = new FileInputStream(filePath);
@@ -63,4 +63,13 @@ public interface SkosImporter {
      * @return A new SKOS importer with the given default language
      */
     public SkosImporter setDefaultLang(String lang);
+
+    /**
+     * Set the number of concepts to import per transaction.
+     *
+     * @param batchSize The batch size, or zero to import everything
+     *                  in a single transaction
+     * @return A new SKOS importer with the given batch size
+     */
+    public SkosImporter setBatchSize(int batchSize);
 }
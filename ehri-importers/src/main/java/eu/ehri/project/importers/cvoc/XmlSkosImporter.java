@@ -1,6 +1,12 @@
 package eu.ehri.project.importers.cvoc;
 
+import com.google.common.base.Joiner;
 import com.google.common.base.Optional;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.tinkerpop.blueprints.TransactionalGraph;
 import com.tinkerpop.frames.FramedGraph;
 import eu.ehri.project.definitions.EventTypes;
@@ -8,10 +14,7 @@ import eu.ehri.project.definitions.Ontology;
 import eu.ehri.project.exceptions.ValidationError;
 import eu.ehri.project.importers.ImportLog;
 import eu.ehri.project.importers.exceptions.InputParseError;
-import eu.ehri.project.importers.exceptions.InvalidInputFormatError;
-import eu.ehri.project.importers.exceptions.InvalidXmlDocument;
 import eu.ehri.project.models.EntityClass;
-import eu.ehri.project.models.annotations.EntityType;
 import eu.ehri.project.models.base.AccessibleEntity;
 import eu.ehri.project.models.base.Actioner;
 import eu.ehri.project.models.cvoc.Concept;
@@ -24,25 +27,23 @@ import eu.ehri.project.persistence.Mutation;
 import eu.ehri.project.utils.TxCheckedNeo4jGraph;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.EntityResolver;
-import org.xml.sax.InputSource;
-import org.xml.sax.SAXException;
-
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLResolver;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Importer for the controlled vocabulary (TemaTres thesaurus)
@@ -53,6 +54,11 @@ import java.util.Map;
  * <p/>
  * Note: most code was copied from the EadImportManager and its base classes
  * Also note that: We don't have an Repository for the CVOCs, but a Vocabulary instead!
+ * <p/>
+ * The input is read with a streaming (StAX) parser, one top-level node
+ * element at a time, so memory use does not depend on the size of the
+ * file. The broader/related relations between newly-created concepts are buffered
+ * as URI pairs and created in a second pass, once all the concepts exist.
  *
  * @author Paul Boon (http://github.com/PaulBoon)
  */
@@ -68,8 +74,26 @@ public final class XmlSkosImporter implements SkosImporter {
 
     private static final String CONCEPT_URL = "url";
 
-    // map from the internal Skos identifier to the placeholder
-    private Map<String, ConceptPlaceholder> conceptLookup = new HashMap<String, ConceptPlaceholder>();
+    private static final String RDF_NS = "http://www.w3.org/1999/02/22-rdf-syntax-ns#";
+    private static final String SKOS_NS = "http://www.w3.org/2004/02/skos/core#";
+    private static final String OWL_NS = "http://www.w3.org/2002/07/owl#";
+    private static final String GEO_NS = "http://www.w3.org/2003/01/geo/wgs84_pos#";
+
+    private static final String SKOS_CONCEPT = SKOS_NS + "Concept";
+
+    private static final QName RDF_ROOT = new QName(RDF_NS, "RDF");
+    private static final QName RDF_DESCRIPTION = new QName(RDF_NS, "Description");
+    private static final QName RDF_TYPE = new QName(RDF_NS, "type");
+    private static final QName RDF_VALUE = new QName(RDF_NS, "value");
+    private static final QName SKOS_BROADER = new QName(SKOS_NS, "broader");
+    private static final QName SKOS_RELATED = new QName(SKOS_NS, "related");
+    private static final QName SKOS_PREF_LABEL = new QName(SKOS_NS, "prefLabel");
+    private static final QName SKOS_ALT_LABEL = new QName(SKOS_NS, "altLabel");
+    private static final QName SKOS_SCOPE_NOTE = new QName(SKOS_NS, "scopeNote");
+    private static final QName SKOS_DEFINITION = new QName(SKOS_NS, "definition");
+    private static final QName OWL_SAME_AS = new QName(OWL_NS, "sameAs", "owl");
+    private static final QName GEO_LAT = new QName(GEO_NS, "lat");
+    private static final QName GEO_LONG = new QName(GEO_NS, "long");
 
     private Optional<String> getLogMessage(String msg) {
         return msg.trim().isEmpty() ? Optional.<String>absent() : Optional.of(msg);
@@ -119,6 +143,14 @@ public final class XmlSkosImporter implements SkosImporter {
                 "Setting default lang is not currently supported");
     }
 
+    public XmlSkosImporter setBatchSize(int batchSize) {
+        if (batchSize != 0) {
+            throw new UnsupportedOperationException(
+                    "Importing in batches is not currently supported");
+        }
+        return this;
+    }
+
     /**
      * management part **
      */
@@ -150,6 +182,9 @@ public final class XmlSkosImporter implements SkosImporter {
         } catch (ValidationError e) {
             commitOrRollback(false);
             throw e;
+        } catch (InputParseError e) {
+            commitOrRollback(false);
+            throw e;
         } catch (Exception e) {
             commitOrRollback(false);
             throw new RuntimeException(e);
@@ -157,121 +192,121 @@ public final class XmlSkosImporter implements SkosImporter {
     }
 
     private void importFile(InputStream ios, final ActionManager.EventContext eventContext,
-            final ImportLog log) throws IOException, ValidationError,
-            InputParseError, InvalidXmlDocument, InvalidInputFormatError {
+            final ImportLog log) throws IOException, ValidationError, InputParseError {
 
         // XML parsing boilerplate...
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        factory.setNamespaceAware(true);
-        factory.setValidating(!tolerant);
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        if (tolerant) {
+            // Don't go looking for external DTDs, but still read any
+            // internal subset, since RDF/XML commonly declares entities
+            // there for namespace URIs.
+            factory.setXMLResolver(new XMLResolver() {
+                @Override
+                public Object resolveEntity(String publicID, String systemID,
+                        String baseURI, String namespace) {
+                    return new ByteArrayInputStream(new byte[0]);
+                }
+            });
+        }
 
         try {
-            DocumentBuilder builder = factory.newDocumentBuilder();
-            if (tolerant)
-                builder.setEntityResolver(new DummyEntityResolver());
-            Document doc = builder.parse(ios);
-            logger.debug("xml encoding: " + doc.getXmlEncoding());
-            importDocWithinAction(doc, eventContext, log);
-        } catch (ParserConfigurationException e) {
-            logger.error(e.getMessage());
-            throw new RuntimeException(e);
-        } catch (SAXException e) {
+            XMLStreamReader reader = factory.createXMLStreamReader(ios);
+            try {
+                logger.debug("xml encoding: " + reader.getEncoding());
+                RelationBuffer relations = new RelationBuffer();
+                createConcepts(reader, eventContext, log, relations);
+                createVocabularyStructure(relations);
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
             logger.error(e.getMessage());
             throw new InputParseError(e);
         }
-
     }
 
     /*** End of management part, Vocabulary/Concept code below ***/
 
     /**
-     * Import an RDF/XML doc using the given action.
+     * Do the Concept data extraction and create all the Concepts. Each
+     * top-level node element is read and persisted in turn, so only
+     * a single node's data is held in memory at any time. The
+     * broader and related references of newly-created concepts are
+     * added to the relation buffer, to be resolved once all concepts
+     * exist.
      *
-     * @param doc
-     * @param eventContext
+     * @param reader    the XML stream reader
+     * @param action    the event context
+     * @param manifest  the import log
+     * @param relations the buffer of deferred relations
      * @throws ValidationError
-     * @throws InvalidInputFormatError
+     * @throws XMLStreamException
      */
-    private void importDocWithinAction(Document doc, final ActionManager.EventContext eventContext,
-            final ImportLog manifest) throws ValidationError,
-            InvalidInputFormatError {
-
-        createConcepts(doc, eventContext, manifest);
-        createVocabularyStructure(doc, eventContext, manifest);
+    private void createConcepts(XMLStreamReader reader, final ActionManager.EventContext action,
+            final ImportLog manifest, RelationBuffer relations)
+            throws ValidationError, XMLStreamException {
+
+        // Skip the prolog, i.e. any DOCTYPE, comments or processing
+        // instructions, to the root element, which must be rdf:RDF.
+        while (reader.hasNext() && reader.next() != XMLStreamConstants.START_ELEMENT) {
+            // ignore
+        }
+        if (!reader.isStartElement() || !RDF_ROOT.equals(reader.getName())) {
+            throw new XMLStreamException("Expected an rdf:RDF root element but found: "
+                    + (reader.isStartElement() ? reader.getName() : "none"), reader.getLocation());
+        }
+        String lang = reader.getAttributeValue(XMLConstants.XML_NS_URI, "lang");
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            List<ConceptElement> nested = Lists.newArrayList();
+            ConceptElement element = readNodeElement(reader, lang, nested);
+            if (element.isConcept()) {
+                createConcept(element, action, manifest, relations);
+            }
+            // Concepts given in full as the values of another's
+            // properties are imported in their own right.
+            for (ConceptElement nestedElement : nested) {
+                createConcept(nestedElement, action, manifest, relations);
+            }
+        }
     }
 
-    /**
-     * Do the Concept data extraction and create all the Concepts
-     *
-     * @param doc
-     * @param action
-     * @param manifest
-     * @throws ValidationError
-     * @throws InvalidInputFormatError
-     */
-    private void createConcepts(Document doc, final ActionManager.EventContext action,
-            final ImportLog manifest) throws ValidationError,
-            InvalidInputFormatError {
-
-        // the Concept is extracted from the XML
-        // but how to use the namespacing properly?
-        // for now suppose the root node is rdf:RDF
-        if (doc.getDocumentElement().getNodeName().equals("rdf:RDF")) {
-            Element rdfElement = doc.getDocumentElement();
-            // get all concepts,  without XPath
-            // NOTE the concept can be in a skos:Concept or an rdf:Description
-            // for now assume we have RDF !
-            NodeList nodeList = rdfElement.getElementsByTagName("rdf:Description");
-            for (int i = 0; i < nodeList.getLength(); i++) {
-                Node childNode = nodeList.item(i);
-                Element element = (Element) childNode; // it should be!
-
-                if (isConceptElement(element)) {
-                    try {
-                        Bundle unit = constructBundleForConcept(element);
-
-                        BundleDAO persister = new BundleDAO(framedGraph, vocabulary.idPath());
-                        Mutation<Concept> mutation = persister.createOrUpdate(unit,
-                                Concept.class);
-                        Concept frame = mutation.getNode();
-
-
-                        // Set the vocabulary/concept relationship
-                        handleCallbacks(mutation, manifest);
-
-                        if (mutation.created() || mutation.unchanged()) {
-                            // when concept was successfully persisted!
-                            action.addSubjects(frame);
-                        }
+    private void createConcept(ConceptElement element, final ActionManager.EventContext action,
+            final ImportLog manifest, RelationBuffer relations) throws ValidationError {
+        try {
+            Bundle unit = constructBundleForConcept(element);
 
-                        // FIXME: Handle case where relationships have changed on update???
-                        if (mutation.created()) {
-                            frame.setVocabulary(vocabulary);
-                            frame.setPermissionScope(vocabulary);
-
-                            // Create and add a ConceptPlaceholder
-                            // for making the vocabulary (relation) structure in the next step
-                            List<String> broaderIds = getBroaderConceptIds(element);
-                            logger.debug("Concept has " + broaderIds.size()
-                                    + " broader ids: " + broaderIds.toString());
-                            List<String> relatedIds = getRelatedConceptIds(element);
-                            logger.debug("Concept has " + relatedIds.size()
-                                    + " related ids: " + relatedIds.toString());
-
-                            String storeId = unit.getId();//id;
-                            String skosId = (String) unit.getDataValue(CONCEPT_URL);
-                            // referal
-                            logger.debug("Concept store id = " + storeId + ", skos id = " + skosId);
-                            conceptLookup.put(skosId, new ConceptPlaceholder(storeId, broaderIds, relatedIds, frame));
-                        }
-                    } catch (ValidationError validationError) {
-                        if (tolerant) {
-                            logger.error(validationError.getMessage());
-                        } else {
-                            throw validationError;
-                        }
-                    }
-                }
+            BundleDAO persister = new BundleDAO(framedGraph, vocabulary.idPath());
+            Mutation<Concept> mutation = persister.createOrUpdate(unit,
+                    Concept.class);
+            Concept frame = mutation.getNode();
+
+            // Set the vocabulary/concept relationship
+            handleCallbacks(mutation, manifest);
+
+            if (mutation.created() || mutation.unchanged()) {
+                // when concept was successfully persisted!
+                action.addSubjects(frame);
+            }
+
+            // FIXME: Handle case where relationships have changed on update???
+            if (mutation.created()) {
+                frame.setVocabulary(vocabulary);
+                frame.setPermissionScope(vocabulary);
+
+                logger.debug("Concept has " + element.broaderIds.size()
+                        + " broader ids: " + element.broaderIds);
+                logger.debug("Concept has " + element.relatedIds.size()
+                        + " related ids: " + element.relatedIds);
+                relations.addConcept(element.about, frame, element.broaderIds,
+                        element.relatedIds);
+            }
+        } catch (ValidationError validationError) {
+            if (tolerant) {
+                logger.error(validationError.getMessage());
+            } else {
+                throw validationError;
             }
         }
     }
@@ -282,7 +317,7 @@ public final class XmlSkosImporter implements SkosImporter {
      * @param element
      * @throws ValidationError
      */
-    private Bundle constructBundleForConcept(Element element) throws ValidationError {
+    private Bundle constructBundleForConcept(ConceptElement element) throws ValidationError {
         Bundle unit = new Bundle(EntityClass.CVOC_CONCEPT, extractCvocConcept(element));
 
         // add the description data to the concept as relationship
@@ -294,7 +329,7 @@ public final class XmlSkosImporter implements SkosImporter {
             logger.debug("languageCode = " + d.get(Ontology.LANGUAGE_OF_DESCRIPTION));
 
             Bundle descBundle = new Bundle(EntityClass.CVOC_CONCEPT_DESCRIPTION, d);
-            Map<String, Object> rel = extractRelations(element, "owl:sameAs");
+            Map<String, Object> rel = extractRelations(element, OWL_SAME_AS);
             if (!rel.isEmpty()) {
                 descBundle = descBundle.withRelation(Ontology.HAS_ACCESS_POINT,
                         new Bundle(EntityClass.UNDETERMINED_RELATIONSHIP, rel));
@@ -308,235 +343,201 @@ public final class XmlSkosImporter implements SkosImporter {
     }
 
     /**
-     * Get the list of id's of the Concept's broader concepts
+     * Create the Vocabulary structure by creating all relations (BT/NT/RT)
+     * between the concepts created in this import.
      *
-     * @param element
+     * @param relations the buffer of deferred relations
      */
-    private List<String> getBroaderConceptIds(Element element) {
-        List<String> ids = new ArrayList<String>();
-
-        NodeList nodeList = element.getElementsByTagName("skos:broader");
-        for (int i = 0; i < nodeList.getLength(); i++) {
-            Node typeNode = nodeList.item(i);
-            Node namedItem = typeNode.getAttributes().getNamedItem("rdf:resource");
-            ids.add(namedItem.getNodeValue());
-        }
+    private void createVocabularyStructure(RelationBuffer relations) {
+        logger.debug("Number of concepts in lookup: " + relations.conceptIds.size());
 
-        return ids;
+        createBroaderNarrowerRelations(relations);
+        createNonspecificRelations(relations);
     }
 
     /**
-     * Get the list of id's of the Concept's related concepts
+     * Create the broader/narrower relations for all the concepts
      *
-     * @param element
+     * @param relations the buffer of deferred relations
      */
-    private List<String> getRelatedConceptIds(Element element) {
-        List<String> ids = new ArrayList<String>();
-
-        NodeList nodeList = element.getElementsByTagName("skos:related");
-        for (int i = 0; i < nodeList.getLength(); i++) {
-            Node typeNode = nodeList.item(i);
-            Node namedItem = typeNode.getAttributes().getNamedItem("rdf:resource");
-            ids.add(namedItem.getNodeValue());
+    private void createBroaderNarrowerRelations(RelationBuffer relations) {
+        for (int i = 0; i < relations.broader.size(); i += 2) {
+            String skosId = relations.broader.get(i);
+            String bsId = relations.broader.get(i + 1);
+            Object broaderId = relations.conceptIds.get(bsId);
+            if (broaderId != null) {
+                logger.debug("Found mapping from: " + bsId + " to: " + broaderId);
+                Concept narrower = getConcept(relations.conceptIds.get(skosId));
+                Concept broader = getConcept(broaderId);
+                // An item CANNOT be a narrower version of itself!
+                if (broader.equals(narrower)) {
+                    logger.error("Ignoring cyclic narrower relationship on {}", broader.getId());
+                } else {
+                    broader.addNarrowerConcept(narrower);
+                }
+            } else {
+                // NOTE What does this mean; refers to an External resource, not in this file?
+                logger.debug("Found NO mapping for: " + bsId);
+            }
         }
-
-        return ids;
     }
 
     /**
-     * Create the Vocabulary structure by creating all relations (BT/NT/RT) between the concepts
-     * <p/>
-     * Note that we want this to be done in the same database 'transaction'
-     * and this 'current' one is not finished.
-     * Therefore the Concepts are not retrievable from the database yet
-     * and we need to keep them in out lookup!
+     * Create the 'non-specific' relations for all the concepts; this
+     * is the 'skos:related' on a concept. Since related concepts are
+     * typically declared from both sides the relation is only created
+     * in the first direction encountered.
      *
-     * @param doc
-     * @param eventContext
-     * @param manifest
-     * @throws ValidationError
-     * @throws InvalidInputFormatError
-     */
-    private void createVocabularyStructure(Document doc, final EventContext eventContext,
-            final ImportLog manifest) throws ValidationError,
-            InvalidInputFormatError {
-
-        logger.debug("Number of concepts in lookup: " + conceptLookup.size());
-
-        createBroaderNarrowerRelations(doc, eventContext, manifest);
-        createNonspecificRelations(doc, eventContext, manifest);
-    }
-
-    /**
-     * Create the broader/narrower relations for all the concepts
-     *
-     * @param doc
-     * @param eventContext
-     * @param manifest
-     * @throws ValidationError
-     * @throws InvalidInputFormatError
+     * @param relations the buffer of deferred relations
      */
-    private void createBroaderNarrowerRelations(Document doc, final EventContext eventContext,
-            final ImportLog manifest) throws ValidationError,
-            InvalidInputFormatError {
-
-        // check the lookup and start making the BT relations (and narrower implicit)
-        // visit all concepts an see if they have broader concepts
-        for (String skosId : conceptLookup.keySet()) {
-            ConceptPlaceholder conceptPlaceholder = conceptLookup.get(skosId);
-            if (!conceptPlaceholder.broaderIds.isEmpty()) {
-                logger.debug("Concept with skos id [" + skosId
-                        + "] has broader concepts of " + conceptPlaceholder.broaderIds.size());
-                // find them in the lookup
-                for (String bsId : conceptPlaceholder.broaderIds) {
-                    logger.debug(bsId);
-                    if (conceptLookup.containsKey(bsId)) {
-                        // found
-                        logger.debug("Found mapping from: " + bsId
-                                + " to: " + conceptLookup.get(bsId).storeId);
-
-                        createBroaderNarrowerRelation(conceptLookup.get(bsId), conceptPlaceholder);
-                    } else {
-                        // not found
-                        logger.debug("Found NO mapping for: " + bsId);
-                        // NOTE What does this mean; refers to an External resource, not in this file?
-                    }
+    private void createNonspecificRelations(RelationBuffer relations) {
+        Set<String> created = Sets.newHashSet();
+        for (int i = 0; i < relations.related.size(); i += 2) {
+            String skosId = relations.related.get(i);
+            String toCId = relations.related.get(i + 1);
+            Object toId = relations.conceptIds.get(toCId);
+            if (toId != null) {
+                logger.debug("Found mapping from: " + toCId + " to: " + toId);
+                Object fromId = relations.conceptIds.get(skosId);
+                if (!created.contains(toId + " " + fromId)
+                        && created.add(fromId + " " + toId)) {
+                    logger.debug("Creating relation from: " + fromId + " to: " + toId);
+                    getConcept(fromId).addRelatedConcept(getConcept(toId));
                 }
+            } else {
+                // NOTE What does this mean; refers to an External resource, not in this file?
+                logger.debug("Found NO mapping for: " + toCId);
             }
         }
     }
 
+    private Concept getConcept(Object vertexId) {
+        return framedGraph.getVertex(vertexId, Concept.class);
+    }
+
+    /*** data extraction from XML below ***/
+
     /**
-     * Create the Broader to Narrower Concept relation
-     * Note that we cannot use the storeId's and retrieve them from the database.
-     * we need to use the Concept objects from the placeholders in the lookup.
+     * Read a node element, i.e. an rdf:Description or a typed node
+     * such as skos:Concept, leaving the reader positioned on its end
+     * tag. Node elements given as property values are read recursively
+     * and, if they are themselves concepts, added to the given list.
      *
-     * @param bcp
-     * @param ncp
+     * @param reader the XML stream reader
+     * @param lang   the inherited xml:lang, or null
+     * @param nested the list to which nested concepts are added
+     * @return the element's data
+     * @throws XMLStreamException
      */
-    private void createBroaderNarrowerRelation(ConceptPlaceholder bcp, ConceptPlaceholder ncp) {
-        logger.debug("Creating Broader: " + bcp.storeId + " to Narrower: " + ncp.storeId);
-
-        // An item CANNOT be a narrower version of itself!
-        if (bcp.concept.equals(ncp.concept)) {
-            logger.error("Ignoring cyclic narrower relationship on {}", bcp.concept.getId());
-        } else {
-            bcp.concept.addNarrowerConcept(ncp.concept);
+    private ConceptElement readNodeElement(XMLStreamReader reader, String lang,
+            List<ConceptElement> nested) throws XMLStreamException {
+        ConceptElement element = new ConceptElement(
+                reader.getAttributeValue(RDF_NS, "about"));
+        if (!RDF_DESCRIPTION.equals(reader.getName())) {
+            element.types.add(reader.getNamespaceURI() + reader.getLocalName());
         }
+        readPropertyElements(reader, element, getLang(reader, lang), nested);
+        return element;
     }
 
     /**
-     * Create the 'non-specific' relations for all the concepts
-     *
-     * @param doc
-     * @param eventContext
-     * @param manifest
-     * @throws ValidationError
-     * @throws InvalidInputFormatError
+     * Read the property elements of a node, up to the end tag of the
+     * element containing them.
      */
-    private void createNonspecificRelations(Document doc, final EventContext eventContext,
-            final ImportLog manifest) throws ValidationError,
-            InvalidInputFormatError {
-
-        // check the lookup and start making the relations
-        // visit all concepts an see if they have a related concept
-        for (String skosId : conceptLookup.keySet()) {
-            ConceptPlaceholder conceptPlaceholder = conceptLookup.get(skosId);
-            if (!conceptPlaceholder.relatedIds.isEmpty()) {
-                logger.debug("Concept with skos id [" + skosId
-                        + "] has related concepts");
-                // find them in the lookup
-                for (String toCId : conceptPlaceholder.relatedIds) {
-                    if (conceptLookup.containsKey(toCId)) {
-                        // found
-                        logger.debug("Found mapping from: " + toCId
-                                + " to: " + conceptLookup.get(toCId).storeId);
-
-                        createNonspecificRelation(conceptPlaceholder, conceptLookup.get(toCId));
-                    } else {
-                        // not found
-                        logger.debug("Found NO mapping for: " + toCId);
-                        // NOTE What does this mean; refers to an External resource, not in this file?
+    private void readPropertyElements(XMLStreamReader reader, ConceptElement element,
+            String lang, List<ConceptElement> nested) throws XMLStreamException {
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            QName name = reader.getName();
+            String propertyLang = getLang(reader, lang);
+            String resource = reader.getAttributeValue(RDF_NS, "resource");
+            String parseType = reader.getAttributeValue(RDF_NS, "parseType");
+            String text;
+            if ("Resource".equals(parseType)) {
+                // The property's children are those of a blank node
+                ConceptElement blankNode = new ConceptElement(null);
+                readPropertyElements(reader, blankNode, propertyLang, nested);
+                String[] value = blankNode.getValue();
+                propertyLang = value[0];
+                text = value[1];
+            } else if ("Literal".equals(parseType)) {
+                text = readText(reader);
+            } else {
+                StringBuilder buffer = new StringBuilder();
+                String nodeText = null;
+                int event;
+                while ((event = reader.next()) != XMLStreamConstants.END_ELEMENT) {
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        ConceptElement node = readNodeElement(reader, propertyLang, nested);
+                        nodeText = "";
+                        if (node.about != null) {
+                            resource = node.about;
+                            if (node.isConcept()) {
+                                nested.add(node);
+                            }
+                        } else {
+                            String[] value = node.getValue();
+                            propertyLang = value[0];
+                            nodeText = value[1];
+                        }
+                    } else if (event == XMLStreamConstants.CHARACTERS
+                            || event == XMLStreamConstants.CDATA
+                            || event == XMLStreamConstants.SPACE) {
+                        buffer.append(reader.getText());
                     }
                 }
+                // If the value is a node, any text around it is just
+                // whitespace
+                text = nodeText != null ? nodeText : buffer.toString();
+            }
+            if (RDF_TYPE.equals(name)) {
+                element.types.add(resource);
+            } else if (SKOS_BROADER.equals(name) && resource != null) {
+                element.broaderIds.add(resource);
+            } else if (SKOS_RELATED.equals(name) && resource != null) {
+                element.relatedIds.add(resource);
+            } else {
+                element.addProperty(name, propertyLang, text);
             }
         }
     }
 
-    /**
-     * Create a non specific relation; this is the 'skos:related' on a concept
-     *
-     * @param from
-     * @param to
-     */
-    private void createNonspecificRelation(ConceptPlaceholder from, ConceptPlaceholder to) {
-
-        // Prevent creating the relation both ways
-        // NOTE, optimization possible if we could prevent for checking everything twice!
-        if (!reverseRelationExists(from, to)) {
-            logger.debug("Creating relation from: " + from.storeId + " to: " + to.storeId);
-            from.concept.addRelatedConcept(to.concept);
-        }
-    }
-
-    /**
-     * Check if the 'reverse' relation is exists already, via relatedBy
-     *
-     * @param from
-     * @param to
-     */
-    private boolean reverseRelationExists(ConceptPlaceholder from, ConceptPlaceholder to) {
-        boolean result = false;
-        for (Concept relatedBy : from.concept.getRelatedByConcepts()) {
-            //logger.debug("Related By: " + relatedBy.asVertex().getProperty(EntityType.ID_KEY));
-            String relatedByStoreId = (String) relatedBy.asVertex().getProperty(EntityType.ID_KEY);
-            if (relatedByStoreId == to.storeId) {
-                result = true;
-                break; // found
-            }
-        }
-        logger.debug("Relation exists: " + result + " for: " + to.storeId);
-        return result;
+    private static String getLang(XMLStreamReader reader, String inherited) {
+        String lang = reader.getAttributeValue(XMLConstants.XML_NS_URI, "lang");
+        return lang == null ? inherited : lang;
     }
 
     /**
-     * Check if the element represents a Concept
-     *
-     * @param element
+     * Read the text content of the current element and its descendants,
+     * leaving the reader positioned on its end tag.
      */
-    private boolean isConceptElement(Element element) {
-        boolean result = false;
-
-        // For now check if it has an rdf:type element
-        // with the attribute rdf:resource="http://www.w3.org/2004/02/skos/core#Concept"
-
-        NodeList nodeList = element.getElementsByTagName("rdf:type");
-        for (int i = 0; i < nodeList.getLength(); i++) {
-            Node typeNode = nodeList.item(i);
-            Node namedItem = typeNode.getAttributes().getNamedItem("rdf:resource");
-            if (namedItem.getNodeValue().contentEquals("http://www.w3.org/2004/02/skos/core#Concept")) {
-                result = true;
+    private static String readText(XMLStreamReader reader) throws XMLStreamException {
+        StringBuilder text = new StringBuilder();
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            } else if (event == XMLStreamConstants.CHARACTERS
+                    || event == XMLStreamConstants.CDATA
+                    || event == XMLStreamConstants.SPACE) {
+                text.append(reader.getText());
             }
         }
-
-        return result;
+        return text.toString();
     }
 
-    /*** data extraction from XML below ***/
-
     /**
      * Extract the Concept information (but not the descriptions)
      *
-     * @param conceptNode
-     * @throws ValidationError
+     * @param element
      */
-    Map<String, Object> extractCvocConcept(Node conceptNode)
-            throws ValidationError {
+    Map<String, Object> extractCvocConcept(ConceptElement element) {
         Map<String, Object> dataMap = new HashMap<String, Object>();
 
         // are we using the rdf:about attribute as 'identifier'
-        Node namedItem = conceptNode.getAttributes().getNamedItem("rdf:about");
-        String value = namedItem.getNodeValue();
+        String value = element.about;
         // Hack! Use everything after the last '/'
         String idvalue = value.substring(value.lastIndexOf('/') + 1);
         dataMap.put(Ontology.IDENTIFIER_KEY, idvalue);
@@ -547,18 +548,16 @@ public final class XmlSkosImporter implements SkosImporter {
         return dataMap;
     }
 
-    private Map<String, Object> extractRelations(Element element, String skosName) {
+    private Map<String, Object> extractRelations(ConceptElement element, QName skosName) {
         Map<String, Object> relationNode = new HashMap<String, Object>();
-
-        NodeList textNodeList = element.getElementsByTagName(skosName);
-        for (int i = 0; i < textNodeList.getLength(); i++) {
-            Node textNode = textNodeList.item(i);
+        String annotationType = skosName.getPrefix() + ":" + skosName.getLocalPart();
+        for (String[] property : element.getProperties(skosName)) {
             // get value
-            String text = textNode.getTextContent();
-            logger.debug("text: \"" + text + "\", skos name: " + skosName);
+            String text = property[1];
+            logger.debug("text: \"" + text + "\", skos name: " + annotationType);
 
             // add to all descriptionData maps
-            relationNode.put(Ontology.ANNOTATION_TYPE, skosName);
+            relationNode.put(Ontology.ANNOTATION_TYPE, annotationType);
             relationNode.put(Ontology.NAME_KEY, text);
         }
         return relationNode;
@@ -569,26 +568,27 @@ public final class XmlSkosImporter implements SkosImporter {
      *
      * @param conceptElement
      */
-    Map<String, Object> extractCvocConceptDescriptions(Element conceptElement) {
+    Map<String, Object> extractCvocConceptDescriptions(ConceptElement conceptElement) {
         // extract and process the textual items (with a language)
         // one description for each language, so the languageCode serve as a key into the map
         Map<String, Object> descriptionData = new HashMap<String, Object>();
 
         // one and only one
-        extractAndAddToLanguageMapSingleValuedTextToDescriptionData(descriptionData, Ontology.NAME_KEY, "skos:prefLabel", conceptElement);
+        extractAndAddToLanguageMapSingleValuedTextToDescriptionData(descriptionData,
+                Ontology.NAME_KEY, SKOS_PREF_LABEL, conceptElement);
         // multiple alternatives is logical
         extractAndAddMultiValuedTextToDescriptionData(descriptionData,
-                Ontology.CONCEPT_ALTLABEL, "skos:altLabel", conceptElement);
+                Ontology.CONCEPT_ALTLABEL, SKOS_ALT_LABEL, conceptElement);
         // just allow multiple, its not forbidden by Skos
         extractAndAddMultiValuedTextToDescriptionData(descriptionData,
-                Ontology.CONCEPT_SCOPENOTE, "skos:scopeNote", conceptElement);
+                Ontology.CONCEPT_SCOPENOTE, SKOS_SCOPE_NOTE, conceptElement);
         // just allow multiple, its not forbidden by Skos
         extractAndAddMultiValuedTextToDescriptionData(descriptionData,
-                Ontology.CONCEPT_DEFINITION, "skos:definition", conceptElement);
+                Ontology.CONCEPT_DEFINITION, SKOS_DEFINITION, conceptElement);
         //<geo:lat>52.43333333333333</geo:lat>
-        extractAndAddToAllMapsSingleValuedTextToDescriptionData(descriptionData, "latitude", "geo:lat", conceptElement);
+        extractAndAddToAllMapsSingleValuedTextToDescriptionData(descriptionData, "latitude", GEO_LAT, conceptElement);
         //<geo:long>20.716666666666665</geo:long>
-        extractAndAddToAllMapsSingleValuedTextToDescriptionData(descriptionData, "longitude", "geo:long", conceptElement);
+        extractAndAddToAllMapsSingleValuedTextToDescriptionData(descriptionData, "longitude", GEO_LONG, conceptElement);
 
         //<owl:sameAs>http://www.yadvashem.org/yv/he/research/ghettos_encyclopedia/ghetto_details.asp?cid=1</owl:sameAs>
         //TODO: must be an UndeterminedRelation, which can then later be resolved
@@ -599,12 +599,10 @@ public final class XmlSkosImporter implements SkosImporter {
     }
 
     private void extractAndAddToAllMapsSingleValuedTextToDescriptionData(Map<String, Object> descriptionData,
-            String textName, String skosName, Element conceptElement) {
-        NodeList textNodeList = conceptElement.getElementsByTagName(skosName);
-        for (int i = 0; i < textNodeList.getLength(); i++) {
-            Node textNode = textNodeList.item(i);
+            String textName, QName skosName, ConceptElement conceptElement) {
+        for (String[] property : conceptElement.getProperties(skosName)) {
             // get value
-            String text = textNode.getTextContent();
+            String text = property[1];
             logger.debug("text: \"" + text + "\", skos name: " + skosName + ", property: " + textName);
 
             // add to all descriptionData maps
@@ -628,16 +626,12 @@ public final class XmlSkosImporter implements SkosImporter {
      * @param conceptElement
      */
     private void extractAndAddToLanguageMapSingleValuedTextToDescriptionData(Map<String, Object> descriptionData,
-            String textName, String skosName, Element conceptElement) {
-
-        NodeList textNodeList = conceptElement.getElementsByTagName(skosName);
-        for (int i = 0; i < textNodeList.getLength(); i++) {
-            Node textNode = textNodeList.item(i);
+            String textName, QName skosName, ConceptElement conceptElement) {
+        for (String[] property : conceptElement.getProperties(skosName)) {
             // get lang attribute, we must have that!
-            Node langItem = textNode.getAttributes().getNamedItem("xml:lang");
-            String lang = langItem.getNodeValue();
+            String lang = getLanguage(property, skosName);
             // get value
-            String text = textNode.getTextContent();
+            String text = property[1];
             logger.debug("text: \"" + text + "\" lang: \"" + lang + "\"" + ", skos name: " + skosName);
 
             // add to descriptionData
@@ -655,16 +649,12 @@ public final class XmlSkosImporter implements SkosImporter {
      * @param conceptElement
      */
     private void extractAndAddMultiValuedTextToDescriptionData(Map<String, Object> descriptionData,
-            String textName, String skosName, Element conceptElement) {
-
-        NodeList textNodeList = conceptElement.getElementsByTagName(skosName);
-        for (int i = 0; i < textNodeList.getLength(); i++) {
-            Node textNode = textNodeList.item(i);
+            String textName, QName skosName, ConceptElement conceptElement) {
+        for (String[] property : conceptElement.getProperties(skosName)) {
             // get lang attribute, we must have that!
-            Node langItem = textNode.getAttributes().getNamedItem("xml:lang");
-            String lang = langItem.getNodeValue();
+            String lang = getLanguage(property, skosName);
             // get value
-            String text = textNode.getTextContent();
+            String text = property[1];
             logger.debug("text: \"" + text + "\" lang: \"" + lang + "\"" + ", skos name: " + skosName);
             // add to descriptionData
             Map<String, Object> d = getOrCreateDescriptionForLanguage(descriptionData, lang);
@@ -681,6 +671,13 @@ public final class XmlSkosImporter implements SkosImporter {
         }
     }
 
+    private String getLanguage(String[] property, QName skosName) {
+        if (property[0] == null) {
+            throw new IllegalArgumentException("Missing xml:lang attribute on " + skosName);
+        }
+        return property[0];
+    }
+
     /**
      * Create a description for a specific language or return the one created before
      *
@@ -703,37 +700,79 @@ public final class XmlSkosImporter implements SkosImporter {
     /*** ***/
 
     /**
-     * Used in the lookup which is needed for creating the Vocabulary structure
+     * The data read from a single rdf:Description element.
      */
-    private class ConceptPlaceholder {
-        public String storeId; // the identifier used for storage and referring in the repository
-        List<String> broaderIds;
-        List<String> relatedIds;
-        Concept concept;
-
-        public ConceptPlaceholder(String storeId,
-                List<String> broaderIds,
-                List<String> relatedIds,
-                Concept concept) {
-            this.storeId = storeId;
-            this.broaderIds = broaderIds;
-            this.relatedIds = relatedIds;
-
-            // NOTE if we have the concept; why do we need those other members?
-            this.concept = concept;
+    private static class ConceptElement {
+        final String about;
+        final List<String> types = Lists.newArrayList();
+        final List<String> broaderIds = Lists.newArrayList();
+        final List<String> relatedIds = Lists.newArrayList();
+        // property name -> [lang, text] pairs, in document order
+        final ListMultimap<QName, String[]> properties = ArrayListMultimap.create();
+
+        ConceptElement(String about) {
+            this.about = about;
+        }
+
+        boolean isConcept() {
+            // For now check if it has an rdf:type element
+            // with the attribute rdf:resource="http://www.w3.org/2004/02/skos/core#Concept"
+            return about != null && types.contains(SKOS_CONCEPT);
+        }
+
+        void addProperty(QName name, String lang, String text) {
+            properties.put(name, new String[]{lang, text});
+        }
+
+        /**
+         * Get the [lang, text] value of a blank node given as a
+         * property value, i.e. that of its rdf:value if it has one,
+         * or otherwise its other literal values joined together.
+         */
+        String[] getValue() {
+            List<String[]> values = properties.get(RDF_VALUE);
+            if (!values.isEmpty()) {
+                return values.get(0);
+            }
+            String lang = null;
+            List<String> texts = Lists.newArrayList();
+            for (String[] value : properties.values()) {
+                lang = lang == null ? value[0] : lang;
+                if (!value[1].trim().isEmpty()) {
+                    texts.add(value[1].trim());
+                }
+            }
+            return new String[]{lang, Joiner.on(' ').join(texts)};
+        }
+
+        List<String[]> getProperties(QName name) {
+            return properties.get(name);
         }
     }
 
     /**
-     * Dummy resolver that does nothing. This is used to ensure that, in
-     * tolerant mode, the EAD parser does not lookup the DTD and validateData the
-     * document, which is both slow and error prone.
+     * Buffer of the relations between concepts created in an import,
+     * which can only be resolved once all concepts exist. Rather than
+     * retaining the concepts themselves this holds only the graph id
+     * of each concept, keyed by its SKOS URI, and flat lists of
+     * (from, to) URI pairs.
      */
-    public class DummyEntityResolver implements EntityResolver {
-        public InputSource resolveEntity(String publicID, String systemID)
-                throws SAXException {
-
-            return new InputSource(new StringReader(""));
+    private static class RelationBuffer {
+        final Map<String, Object> conceptIds = Maps.newHashMap();
+        final List<String> broader = Lists.newArrayList();
+        final List<String> related = Lists.newArrayList();
+
+        void addConcept(String skosId, Concept concept, List<String> broaderIds,
+                List<String> relatedIds) {
+            conceptIds.put(skosId, concept.asVertex().getId());
+            for (String id : broaderIds) {
+                broader.add(skosId);
+                broader.add(id);
+            }
+            for (String id : relatedIds) {
+                related.add(skosId);
+                related.add(id);
+            }
         }
     }
 
@@ -16,4 +16,13 @@ public class InputParseError extends Exception {
     public InputParseError(Throwable cause) {
         super(cause);
     }
+
+    /**
+     * Constructor.
+     *
+     * @param message
+     */
+    public InputParseError(String message) {
+        super(message);
+    }
 }
@@ -0,0 +1,104 @@
+package eu.ehri.project.importers.properties;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * An immutable trie of the path keys in an import properties file,
+ * stored in reverse so that the mapping for the shortest matching
+ * suffix of an element path can be found by walking from the current
+ * element back towards the root, without building any strings.
+ * <p/>
+ * A key such as {@code did/unitid/@ehrilabel$ehri_main_identifier} is
+ * stored under the nodes {@code unitid} -&gt; {@code did}, with the
+ * remainder of the key, here {@code @ehrilabel$ehri_main_identifier},
+ * identifying the value at that node. Keys that are not paths (i.e.
+ * do not end with a '/' before any attribute part) are not stored.
+ *
+ * @author Mike Bryant (http://github.com/mikesname)
+ */
+final class PathTrie {
+
+    private final Map<String, PathTrie> children;
+    private final Map<String, String> values;
+
+    private PathTrie(Map<String, PathTrie> children, Map<String, String> values) {
+        this.children = children;
+        this.values = values;
+    }
+
+    /**
+     * Compile the path keys of the given properties into a trie.
+     *
+     * @param properties import properties
+     * @return a trie
+     */
+    static PathTrie compile(Properties properties) {
+        Node root = new Node();
+        for (String key : properties.stringPropertyNames()) {
+            int attr = key.indexOf('@');
+            String path = attr == -1 ? key : key.substring(0, attr);
+            String rest = attr == -1 ? "" : key.substring(attr);
+            if (path.isEmpty() || !path.endsWith("/")) {
+                continue;
+            }
+            String[] elements = path.substring(0, path.length() - 1).split("/");
+            Node node = root;
+            for (int i = elements.length - 1; i >= 0; i--) {
+                node = node.child(elements[i]);
+            }
+            node.values.put(rest, properties.getProperty(key));
+        }
+        return root.freeze();
+    }
+
+    /**
+     * Find the value for the shortest suffix of the given path
+     * which, followed by the given remainder, is a key.
+     *
+     * @param path the element path, outermost first
+     * @param rest the remainder of the key after the path, e.g.
+     *             an attribute part, or an empty string
+     * @return the value, or null if there is no matching key
+     */
+    String lookup(List<String> path, String rest) {
+        PathTrie node = this;
+        for (int i = path.size() - 1; i >= 0; i--) {
+            node = node.children.get(path.get(i));
+            if (node == null) {
+                return null;
+            }
+            String value = node.values.get(rest);
+            if (value != null) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    private static class Node {
+        private final Map<String, Node> children = Maps.newHashMap();
+        private final Map<String, String> values = Maps.newHashMap();
+
+        Node child(String name) {
+            Node node = children.get(name);
+            if (node == null) {
+                node = new Node();
+                children.put(name, node);
+            }
+            return node;
+        }
+
+        PathTrie freeze() {
+            ImmutableMap.Builder<String, PathTrie> frozen = ImmutableMap.builder();
+            for (Map.Entry<String, Node> entry : children.entrySet()) {
+                frozen.put(entry.getKey(), entry.getValue().freeze());
+            }
+            return new PathTrie(frozen.build(), ImmutableMap.copyOf(values));
+        }
+    }
+}
@@ -1,37 +1,103 @@
 package eu.ehri.project.importers.properties;
 
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.Maps;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
 import java.util.Enumeration;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.ResourceBundle;
 import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * wrapper class for the mapping of xml files to be imported.
+ * <p/>
+ * The mappings are loaded once per properties file and compiled into
+ * a {@link PathTrie} for path lookups and an index of keys by value.
+ * These are shared by all instances for the same file (unless a local
+ * file has since been modified), so handlers for each file of an import
+ * do not reload them.
  *
  * @author Linda Reijnhoudt (https://github.com/lindareijnhoudt)
  */
 public class XmlImportProperties implements ImportProperties {
 
+    private static final ConcurrentMap<String, Mappings> mappingsCache = Maps.newConcurrentMap();
+
     private String configFileName;
-    private Properties cachedProperties = null;
+    private Mappings mappings = null;
 
     public XmlImportProperties(String configFile) {
         setConfigFileName(configFile);
     }
 
-    private Properties getProperties() {
-        if (cachedProperties == null) {
-            cachedProperties = PropertyLoader.loadProperties(this.configFileName);
+    /**
+     * The loaded properties and their compiled forms.
+     */
+    private static class Mappings {
+        private final Properties properties;
+        private final PathTrie paths;
+        private final ImmutableListMultimap<String, String> keysByValue;
+
+        Mappings(Properties properties) {
+            this.properties = properties;
+            this.paths = PathTrie.compile(properties);
+            ImmutableListMultimap.Builder<String, String> builder = ImmutableListMultimap.builder();
+            for (Entry<Object, Object> property : properties.entrySet()) {
+                builder.put(property.getValue().toString(), property.getKey().toString());
+            }
+            this.keysByValue = builder.build();
         }
-        return cachedProperties;
+    }
+
+    private Mappings getMappings() {
+        if (mappings == null) {
+            File file = new File(configFileName);
+            String key = file.isFile()
+                    ? configFileName + ":" + file.lastModified()
+                    : configFileName;
+            Mappings cached = mappingsCache.get(key);
+            if (cached == null) {
+                cached = new Mappings(PropertyLoader.loadProperties(configFileName));
+                mappingsCache.putIfAbsent(key, cached);
+            }
+            mappings = cached;
+        }
+        return mappings;
+    }
+
+    private Properties getProperties() {
+        return getMappings().properties;
+    }
+
+    /**
+     * Get the value for the shortest suffix of an element path which,
+     * followed by the given remainder, is a key, i.e. for the path
+     * [ead, archdesc, did, unitid] and remainder "@ehrilabel" the
+     * first of the following keys found:
+     * <p/>
+     * <ul>
+     *     <li>unitid/@ehrilabel</li>
+     *     <li>did/unitid/@ehrilabel</li>
+     *     <li>archdesc/did/unitid/@ehrilabel</li>
+     *     <li>ead/archdesc/did/unitid/@ehrilabel</li>
+     * </ul>
+     *
+     * @param path the element path, outermost first
+     * @param rest the remainder of the key, or an empty string
+     * @return the value, or null if there is no matching key
+     */
+    public String getPathProperty(List<String> path, String rest) {
+        return getMappings().paths.lookup(path, rest);
     }
 
     /**
@@ -48,22 +114,12 @@ public class XmlImportProperties implements ImportProperties {
      * @return a set of key names that have the given value
      */
     public Set<String> getPropertiesWithValue(String value) {
-        Set<String> ps = new HashSet<String>();
-        Properties p = getProperties();
-        for (Entry<Object, Object> property : p.entrySet()) {
-            if (value.equals(property.getValue().toString()))
-                ps.add(property.getKey().toString());
-        }
-        return ps;
+        return new HashSet<String>(getMappings().keysByValue.get(value));
     }
 
     public String getFirstPropertyWithValue(String value) {
-        Properties p = getProperties();
-        for (Entry<Object, Object> property : p.entrySet()) {
-            if (value.equals(property.getValue().toString()))
-                return property.getKey().toString();
-        }
-        return null;
+        List<String> keys = getMappings().keysByValue.get(value);
+        return keys.isEmpty() ? null : keys.get(0);
     }
 
     public Set<String> getAllNonAttributeProperties() {
@@ -82,7 +138,7 @@ public class XmlImportProperties implements ImportProperties {
 
     @Override
     public boolean containsPropertyValue(String value) {
-        return getProperties().containsValue(value);
+        return getMappings().keysByValue.containsKey(value);
     }
 
     private void setConfigFileName(String configFileName) {
@@ -0,0 +1,345 @@
+package eu.ehri.project.importers.util;
+
+import com.google.common.io.ByteStreams;
+import eu.ehri.project.importers.exceptions.InvalidInputFormatError;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Sequential, streaming access to the files in a zip, tar or
+ * gzipped tar archive, without extracting them to disk.
+ * <p/>
+ * The archive format is detected from the first bytes of the
+ * stream. Directory and other non-file entries are skipped, as
+ * are hidden files, i.e. those whose path has a component
+ * starting with a dot, and the resource forks which macOS puts
+ * under <code>__MACOSX/</code>.
+ * Usage:
+ * <pre>
+ * <code>ArchiveEntryStream archive = ArchiveEntryStream.open(stream);
+ * String name;
+ * while ((name = archive.nextEntry()) != null) {
+ *     doSomething(name, archive.getEntryStream());
+ * }
+ * </code>
+ * </pre>
+ *
+ * @author Mike Bryant (http://github.com/mikesname)
+ */
+public abstract class ArchiveEntryStream {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Advance to the next file in the archive. Any unread data
+     * from the previous entry is skipped.
+     *
+     * @return the entry name, or null if there are no more entries
+     * @throws IOException
+     */
+    public abstract String nextEntry() throws IOException;
+
+    /**
+     * Get a stream of the current entry's data. Closing it
+     * does not close the archive.
+     *
+     * @return an input stream
+     */
+    public abstract InputStream getEntryStream();
+
+    /**
+     * Open an archive, detecting its format.
+     *
+     * @param stream a zip, tar, or gzipped tar stream
+     * @return an archive entry stream
+     * @throws IOException
+     * @throws InvalidInputFormatError if the stream is not a recognised archive
+     */
+    public static ArchiveEntryStream open(InputStream stream)
+            throws IOException, InvalidInputFormatError {
+        InputStream in = stream.markSupported() ? stream : new BufferedInputStream(stream);
+        byte[] magic = peek(in, 2);
+        if (magic.length == 2 && magic[0] == 'P' && magic[1] == 'K') {
+            return new Zip(in);
+        } else if (magic.length == 2 && (magic[0] & 0xff) == 0x1f && (magic[1] & 0xff) == 0x8b) {
+            in = new BufferedInputStream(new GZIPInputStream(in));
+        }
+        byte[] header = peek(in, Tar.BLOCK);
+        if (!Tar.isHeader(header)) {
+            throw new InvalidInputFormatError("Unrecognised archive format: expected zip, tar, or tar.gz");
+        }
+        return new Tar(in);
+    }
+
+    /**
+     * Determine whether an entry is a hidden or macOS metadata file.
+     *
+     * @param name the entry name
+     * @return whether the entry should be skipped
+     */
+    static boolean isHidden(String name) {
+        for (String part : name.split("/")) {
+            if ((part.startsWith(".") && !part.equals(".") && !part.equals(".."))
+                    || part.equals("__MACOSX")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static byte[] peek(InputStream in, int count) throws IOException {
+        in.mark(count);
+        try {
+            byte[] bytes = new byte[count];
+            int read = ByteStreams.read(in, bytes, 0, count);
+            return read == count ? bytes : Arrays.copyOf(bytes, read);
+        } finally {
+            in.reset();
+        }
+    }
+
+    /**
+     * A stream that ignores close(), so that parsers which close
+     * their input do not close the archive.
+     */
+    private static class EntryStream extends FilterInputStream {
+        EntryStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class Zip extends ArchiveEntryStream {
+        private final ZipInputStream zip;
+        private final InputStream entryStream;
+
+        Zip(InputStream in) {
+            zip = new ZipInputStream(in);
+            entryStream = new EntryStream(zip);
+        }
+
+        @Override
+        public String nextEntry() throws IOException {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (!entry.isDirectory() && !isHidden(entry.getName())) {
+                    return entry.getName();
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public InputStream getEntryStream() {
+            return entryStream;
+        }
+    }
+
+    /**
+     * A minimal reader of POSIX (ustar) and GNU tar archives.
+     */
+    private static class Tar extends ArchiveEntryStream {
+        static final int BLOCK = 512;
+        // Long names and extended headers are read into memory,
+        // so limit them to a sane size.
+        static final int MAX_METADATA_SIZE = 64 * 1024;
+
+        private final InputStream archive;
+        private long remaining = 0;
+        private long padding = 0;
+        private final InputStream entryStream = new EntryStream(null) {
+            @Override
+            public int read() throws IOException {
+                if (remaining <= 0) {
+                    return -1;
+                }
+                int b = archive.read();
+                if (b == -1) {
+                    throw new EOFException("Truncated tar entry");
+                }
+                remaining--;
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (remaining <= 0) {
+                    return -1;
+                }
+                int read = archive.read(b, off, (int) Math.min(len, remaining));
+                if (read == -1) {
+                    throw new EOFException("Truncated tar entry");
+                }
+                remaining -= read;
+                return read;
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                long skipped = archive.skip(Math.min(n, remaining));
+                remaining -= skipped;
+                return skipped;
+            }
+
+            @Override
+            public int available() throws IOException {
+                return (int) Math.min(archive.available(), remaining);
+            }
+        };
+
+        Tar(InputStream in) {
+            this.archive = in;
+        }
+
+        static boolean isHeader(byte[] header) {
+            if (header.length < BLOCK) {
+                return false;
+            }
+            // The checksum is computed with its own field as spaces
+            long sum = 0;
+            for (int i = 0; i < BLOCK; i++) {
+                sum += (i >= 148 && i < 156) ? ' ' : (header[i] & 0xff);
+            }
+            try {
+                return sum == parseOctal(header, 148, 8);
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public String nextEntry() throws IOException {
+            String longName = null;
+            while (true) {
+                ByteStreams.skipFully(archive, remaining + padding);
+                remaining = padding = 0;
+                byte[] header = new byte[BLOCK];
+                if (ByteStreams.read(archive, header, 0, BLOCK) < BLOCK || isEmpty(header)) {
+                    return null;
+                }
+                if (!isHeader(header)) {
+                    throw new IOException("Invalid tar header checksum");
+                }
+                long size = parseSize(header);
+                char type = (char) header[156];
+                remaining = size;
+                padding = (BLOCK - (size % BLOCK)) % BLOCK;
+                if (type == 'L') {
+                    // GNU long name for the next entry
+                    longName = trim(readEntry(size));
+                } else if (type == 'x') {
+                    // POSIX extended header: 'length key=value\n' records
+                    for (String record : new String(readEntry(size), UTF8).split("\n")) {
+                        int eq = record.indexOf('=');
+                        int space = record.indexOf(' ');
+                        if (eq > space && space != -1 && record.substring(space + 1, eq).equals("path")) {
+                            longName = record.substring(eq + 1);
+                        }
+                    }
+                } else if (type == '0' || type == '\0' || type == '7') {
+                    String name = longName;
+                    if (name == null) {
+                        name = getString(header, 0, 100);
+                        if (isUstar(header)) {
+                            String prefix = getString(header, 345, 155);
+                            if (!prefix.isEmpty()) {
+                                name = prefix + "/" + name;
+                            }
+                        }
+                    }
+                    if (!isHidden(name)) {
+                        return name;
+                    }
+                    longName = null;
+                } else {
+                    // directories, links, global headers etc
+                    longName = null;
+                }
+            }
+        }
+
+        @Override
+        public InputStream getEntryStream() {
+            return entryStream;
+        }
+
+        private byte[] readEntry(long size) throws IOException {
+            if (size > MAX_METADATA_SIZE) {
+                throw new IOException("Tar metadata entry too large: " + size + " bytes");
+            }
+            byte[] data = new byte[(int) size];
+            ByteStreams.readFully(archive, data);
+            remaining = 0;
+            return data;
+        }
+
+        private static long parseSize(byte[] header) throws IOException {
+            if ((header[124] & 0x80) != 0) {
+                // GNU base-256 encoding, for sizes too large for octal.
+                if ((header[124] & 0x40) != 0) {
+                    throw new IOException("Invalid tar entry size: negative");
+                }
+                long size = header[124] & 0x3f;
+                for (int i = 125; i < 136; i++) {
+                    if (size > Long.MAX_VALUE >> 8) {
+                        throw new IOException("Invalid tar entry size: too large");
+                    }
+                    size = (size << 8) | (header[i] & 0xff);
+                }
+                return size;
+            }
+            long size;
+            try {
+                size = parseOctal(header, 124, 12);
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid tar entry size: " + e.getMessage());
+            }
+            if (size < 0) {
+                throw new IOException("Invalid tar entry size: negative");
+            }
+            return size;
+        }
+
+        private static boolean isEmpty(byte[] header) {
+            for (byte b : header) {
+                if (b != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean isUstar(byte[] header) {
+            return getString(header, 257, 5).equals("ustar");
+        }
+
+        private static String trim(byte[] bytes) {
+            return getString(bytes, 0, bytes.length);
+        }
+
+        private static String getString(byte[] bytes, int offset, int length) {
+            int end = offset;
+            while (end < offset + length && bytes[end] != 0) {
+                end++;
+            }
+            return new String(bytes, offset, end - offset, UTF8);
+        }
+
+        private static long parseOctal(byte[] bytes, int offset, int length) {
+            String value = getString(bytes, offset, length).trim();
+            return value.isEmpty() ? 0 : Long.parseLong(value, 8);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package eu.ehri.project.importers.util;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.tinkerpop.blueprints.Direction;
+import com.tinkerpop.blueprints.Vertex;
+import com.tinkerpop.frames.FramedGraph;
+import eu.ehri.project.core.GraphManager;
+import eu.ehri.project.core.GraphManagerFactory;
+import eu.ehri.project.definitions.Ontology;
+import eu.ehri.project.exceptions.ItemNotFound;
+import eu.ehri.project.models.cvoc.AuthoritativeItem;
+import eu.ehri.project.models.cvoc.AuthoritativeSet;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * An in-memory lookup of the items in authoritative sets (such
+ * as vocabularies) by their identifier.
+ * <p/>
+ * The identifiers of a set's items are read once, the first time
+ * the set is queried, so resolving many links against the same
+ * vocabulary does not require scanning all of its items each time.
+ * Items added to a set during an import should be registered via
+ * {@link #add(AuthoritativeSet, AuthoritativeItem)} to keep the
+ * lookup in sync.
+ * <p/>
+ * NB: A lookup is intended to last for a single import run and is
+ * not thread-safe.
+ *
+ * @author Mike Bryant (http://github.com/mikesname)
+ */
+public class AuthoritativeItemLookup {
+
+    private final FramedGraph<?> graph;
+    private final GraphManager manager;
+    private final Map<String, ListMultimap<String, Vertex>> sets = Maps.newHashMap();
+
+    public AuthoritativeItemLookup(FramedGraph<?> graph) {
+        this.graph = graph;
+        this.manager = GraphManagerFactory.getInstance(graph);
+    }
+
+    /**
+     * Find the items in a set with the given identifier.
+     *
+     * @param setId      the ID of the authoritative set
+     * @param identifier the item's local identifier
+     * @param cls        the frame class of the returned items
+     * @return a list of matching items
+     * @throws ItemNotFound if the set does not exist
+     */
+    public <T extends AuthoritativeItem> List<T> find(String setId, String identifier,
+            Class<T> cls) throws ItemNotFound {
+        List<T> items = Lists.newArrayList();
+        for (T item : findIgnoreCase(setId, identifier, cls)) {
+            if (identifier.equals(item.getIdentifier())) {
+                items.add(item);
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Find the items in a set with the given identifier, disregarding
+     * case.
+     *
+     * @param setId      the ID of the authoritative set
+     * @param identifier the item's local identifier
+     * @param cls        the frame class of the returned items
+     * @return a list of matching items
+     * @throws ItemNotFound if the set does not exist
+     */
+    public <T extends AuthoritativeItem> List<T> findIgnoreCase(String setId, String identifier,
+            Class<T> cls) throws ItemNotFound {
+        List<T> items = Lists.newArrayList();
+        if (identifier != null) {
+            for (Vertex vertex : getItems(setId).get(normalise(identifier))) {
+                items.add(graph.frame(vertex, cls));
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Register an item that has been newly added to a set.
+     *
+     * @param set  the authoritative set
+     * @param item the new item
+     */
+    public void add(AuthoritativeSet set, AuthoritativeItem item) {
+        // If the set's not loaded yet the item will be picked
+        // up along with all the others when it is.
+        ListMultimap<String, Vertex> items = sets.get(set.getId());
+        String identifier = item.getIdentifier();
+        if (items != null && identifier != null
+                && !items.containsEntry(normalise(identifier), item.asVertex())) {
+            items.put(normalise(identifier), item.asVertex());
+        }
+    }
+
+    private ListMultimap<String, Vertex> getItems(String setId) throws ItemNotFound {
+        ListMultimap<String, Vertex> items = sets.get(setId);
+        if (items == null) {
+            AuthoritativeSet set = manager.getFrame(setId, AuthoritativeSet.class);
+            items = ArrayListMultimap.create();
+            for (Vertex vertex : set.asVertex().getVertices(Direction.IN,
+                    Ontology.ITEM_IN_AUTHORITATIVE_SET)) {
+                Object identifier = vertex.getProperty(Ontology.IDENTIFIER_KEY);
+                if (identifier != null) {
+                    items.put(normalise(identifier.toString()), vertex);
+                }
+            }
+            sets.put(setId, items);
+        }
+        return items;
+    }
+
+    private static String normalise(String identifier) {
+        return identifier.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,151 @@
+package eu.ehri.project.importers.util;
+
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import eu.ehri.project.definitions.Ontology;
+import org.joda.time.DateTime;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Recognise date periods in free-text date values and normalise
+ * their start and end dates to ISO form.
+ * <p/>
+ * The recognised formats are combined into a single pattern, with
+ * alternatives in order of precedence, so each value is matched in
+ * one pass. Since archival data repeats the same date strings a great
+ * deal the results for recently seen values are cached. All state is
+ * shared and thread-safe.
+ *
+ * @author Mike Bryant (http://github.com/mikesname)
+ */
+public final class DateNormaliser {
+
+    private static final int CACHE_SIZE = 10000;
+
+    private static final DateTimeFormatter isoDate = ISODateTimeFormat.date();
+
+    // Various date patterns, in order of precedence. Each must
+    // have at least one group, the first being the start date
+    // and the second, if present, the end date.
+    private static final String[] datePatterns = {
+            // Yad Vashem, ICA-Atom style: 1924-1-1 - 1947-12-31
+            // Yad Vashem in Wp2: 12-15-1941, 9-30-1944
+            "(\\d{4}-\\d{1,2}-\\d{1,2})\\s?-\\s?(\\d{4}-\\d{1,2}-\\d{1,2})",
+            "(\\d{4}-\\d{1,2}-\\d{1,2})",
+            "(\\d{4})\\s?-\\s?(\\d{4})",
+            "(\\d{4})-\\[(\\d{4})\\]",
+            "(\\d{4}s)-\\[(\\d{4}s)\\]",
+            "\\[(\\d{4})\\]",
+            "(\\d{4})",
+            "(\\d{2})th century",
+            "\\s*(\\d{4})\\s*-\\s*(\\d{4})",
+            //bundesarchive: 1906/19
+            "\\s*(\\d{4})/(\\d{2})",
+            "\\s*(\\d{4})\\s*/\\s*(\\d{4})",
+            // 1935-03/1935-05
+            "(\\d{4}-\\d{1,2})/(\\d{4}-\\d{1,2})",
+            "(\\d{4}-\\d{1,2}-\\d{1,2})/(\\d{4}-\\d{1,2}-\\d{1,2})"
+    };
+
+    private static final Pattern datePattern;
+    // The group enclosing each alternative of the combined pattern
+    private static final int[] alternativeGroups = new int[datePatterns.length];
+
+    static {
+        StringBuilder combined = new StringBuilder();
+        int group = 1;
+        for (int i = 0; i < datePatterns.length; i++) {
+            if (i > 0) {
+                combined.append("|");
+            }
+            combined.append("(").append(datePatterns[i]).append(")");
+            alternativeGroups[i] = group;
+            group += Pattern.compile(datePatterns[i]).matcher("").groupCount() + 1;
+        }
+        datePattern = Pattern.compile(combined.toString());
+    }
+
+    private static final Pattern yearMonthPrefix = Pattern.compile("\\d+-\\d+");
+    private static final Pattern yearPrefix = Pattern.compile("\\d+");
+
+    private static final Cache<String, Optional<ImmutableMap<String, Object>>> cache
+            = CacheBuilder.newBuilder().maximumSize(CACHE_SIZE).build();
+
+    private DateNormaliser() {
+    }
+
+    /**
+     * Attempt to extract a date period from a date value.
+     *
+     * @param date a date value
+     * @return a new map with {@link Ontology#DATE_PERIOD_START_DATE},
+     *         {@link Ontology#DATE_PERIOD_END_DATE} and
+     *         {@link Ontology#DATE_HAS_DESCRIPTION} values, or null
+     *         if the value was not recognised
+     */
+    public static Map<String, Object> extractDate(String date) {
+        Optional<ImmutableMap<String, Object>> period = cache.getIfPresent(date);
+        if (period == null) {
+            period = Optional.fromNullable(matchDate(date));
+            cache.put(date, period);
+        }
+        return period.isPresent() ? new HashMap<String, Object>(period.get()) : null;
+    }
+
+    private static ImmutableMap<String, Object> matchDate(String date) {
+        Matcher matcher = datePattern.matcher(date);
+        if (!matcher.matches()) {
+            return null;
+        }
+        for (int i = 0; i < alternativeGroups.length; i++) {
+            int group = alternativeGroups[i];
+            if (matcher.group(group) != null) {
+                int last = i + 1 < alternativeGroups.length
+                        ? alternativeGroups[i + 1] - 1
+                        : matcher.groupCount();
+                String start = matcher.group(group + 1);
+                String end = matcher.group(last > group + 1 ? group + 2 : group + 1);
+                return ImmutableMap.<String, Object>of(
+                        Ontology.DATE_PERIOD_START_DATE,
+                        normaliseDate(start, Ontology.DATE_PERIOD_START_DATE),
+                        Ontology.DATE_PERIOD_END_DATE,
+                        normaliseDate(end, Ontology.DATE_PERIOD_END_DATE),
+                        Ontology.DATE_HAS_DESCRIPTION, date);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Normalise a date in a string.
+     *
+     * @param date       a String date that needs formatting
+     * @param beginOrEnd a string signifying whether this date is the begin of
+     *                   a period or the end of a period
+     * @return a String containing the formatted date.
+     */
+    public static String normaliseDate(String date, String beginOrEnd) {
+        String returndate = isoDate.print(DateTime.parse(date));
+        if (returndate.startsWith("00")) {
+            returndate = "19" + returndate.substring(2);
+            date = "19" + date;
+        }
+        if (Ontology.DATE_PERIOD_END_DATE.equals(beginOrEnd) && !date.equals(returndate)) {
+            // Extend a partial date to the end of its month or year
+            if (yearMonthPrefix.matcher(date).lookingAt()) {
+                returndate = isoDate.print(DateTime.parse(date).plusMonths(1).minusDays(1));
+            } else if (yearPrefix.matcher(date).lookingAt()) {
+                returndate = isoDate.print(DateTime.parse(date).plusYears(1).minusDays(1));
+            }
+        }
+        return returndate;
+    }
+}
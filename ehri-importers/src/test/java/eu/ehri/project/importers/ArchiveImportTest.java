@@ -0,0 +1,60 @@
+package eu.ehri.project.importers;
+
+import com.google.common.io.Resources;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Mike Bryant (http://github.com/mikesname)
+ */
+public class ArchiveImportTest extends AbstractImporterTest {
+
+    @Test
+    public void testImportArchive() throws Exception {
+        int origCount = getNodeCount(graph);
+
+        // The archive contains two copies of single-ead.xml
+        InputStream stream = ClassLoader.getSystemResourceAsStream("ead-archive.tar.gz");
+        ImportLog log = new SaxImportManager(graph, repository, validUser,
+                IcaAtomEadImporter.class, IcaAtomEadHandler.class)
+                .setTolerant(true)
+                .importArchive(stream, "Importing an archive");
+
+        assertEquals(1, log.getCreated());
+        assertEquals(1, log.getUnchanged());
+        assertEquals(2, log.getSources().size());
+        Map<String, Object> first = log.getSources().get("ead/single-ead.xml");
+        assertEquals(1, first.get("created"));
+        assertEquals(0, first.get("unchanged"));
+        assertEquals(origCount + 13, getNodeCount(graph));
+    }
+
+    @Test
+    public void testImportArchiveSkipsOtherFiles() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ZipOutputStream zip = new ZipOutputStream(bytes);
+        for (String name : new String[]{"__MACOSX/._single-ead.xml", ".DS_Store", "README.txt"}) {
+            zip.putNextEntry(new ZipEntry(name));
+            zip.write("Not EAD".getBytes("UTF-8"));
+        }
+        zip.putNextEntry(new ZipEntry("single-ead.xml"));
+        zip.write(Resources.toByteArray(Resources.getResource("single-ead.xml")));
+        zip.close();
+
+        // Not being tolerant, any attempt to import the other files would fail
+        ImportLog log = new SaxImportManager(graph, repository, validUser,
+                IcaAtomEadImporter.class, IcaAtomEadHandler.class)
+                .importArchive(new ByteArrayInputStream(bytes.toByteArray()), "Importing an archive");
+
+        assertEquals(1, log.getCreated());
+        assertEquals(1, log.getSources().size());
+    }
+}
@@ -1,10 +1,17 @@
 package eu.ehri.project.importers.cvoc;
 
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import eu.ehri.project.definitions.Ontology;
 import eu.ehri.project.importers.ImportLog;
+import eu.ehri.project.importers.exceptions.InputParseError;
 import eu.ehri.project.models.base.AccessibleEntity;
+import eu.ehri.project.models.base.Description;
 import eu.ehri.project.models.cvoc.Concept;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+
 import static org.junit.Assert.assertEquals;
 import org.junit.Ignore;
 
@@ -12,6 +19,8 @@ import org.junit.Ignore;
  * @author Mike Bryant (http://github.com/mikesname)
  */
 public class JenaSkosImporterTest extends AbstractSkosImporterTest {
+    public static final String STRUCTURED_FILE = "cvoc/structured-skos.rdf";
+
     @Test
     public void testImportFile1() throws Exception {
         SkosImporter importer = new JenaSkosImporter(graph, actioner, vocabulary);
@@ -85,4 +94,66 @@ public class JenaSkosImporterTest extends AbstractSkosImporterTest {
                 .importFile(ClassLoader.getSystemResourceAsStream(FILE5), "ghettos");
         assertEquals(2, importLog2.getUnchanged());
     }
+
+    @Test
+    public void testImportFileInBatches() throws Exception {
+        JenaSkosImporter importer = new JenaSkosImporter(graph, actioner, vocabulary)
+                .setBatchSize(5);
+        ImportLog importLog1 = importer
+                .importFile(ClassLoader.getSystemResourceAsStream(FILE3), "repositories");
+        assertEquals(23, importLog1.getCreated());
+        int narrower = 0;
+        for (Concept concept : vocabulary.getConcepts()) {
+            narrower += Iterables.size(concept.getNarrowerConcepts());
+        }
+        assertEquals(19, narrower);
+        ImportLog importLog2 = importer
+                .importFile(ClassLoader.getSystemResourceAsStream(FILE3), "repositories");
+        assertEquals(23, importLog2.getUnchanged());
+    }
+
+    @Test
+    public void testImportN3FileInBatches() throws Exception {
+        SkosImporter importer = new JenaSkosImporter(graph, actioner, vocabulary)
+                .setBatchSize(1)
+                .setFormat("N3");
+        ImportLog importLog = importer
+                .importFile(ClassLoader.getSystemResourceAsStream(FILE2), "simple 2");
+        assertEquals(1, importLog.getCreated());
+    }
+
+    @Test(expected = InputParseError.class)
+    public void testImportUngroupedStatementsInBatches() throws Exception {
+        // A concept whose statements are split by enough other
+        // subjects that it is imported before its last statement
+        StringBuilder data = new StringBuilder();
+        String concept = "<http://example.com/c1>";
+        data.append(concept).append(" <http://www.w3.org/1999/02/22-rdf-syntax-ns#type> "
+                + "<http://www.w3.org/2004/02/skos/core#Concept> .\n");
+        for (int i = 0; i <= JenaSkosImporter.SUBJECT_BUFFER_SIZE; i++) {
+            data.append("<http://example.com/other").append(i)
+                    .append("> <http://example.com/p> \"other\" .\n");
+        }
+        data.append(concept).append(" <http://www.w3.org/2004/02/skos/core#prefLabel> \"c1\"@en .\n");
+        SkosImporter importer = new JenaSkosImporter(graph, actioner, vocabulary)
+                .setBatchSize(1)
+                .setFormat("N-TRIPLE");
+        importer.importFile(new ByteArrayInputStream(data.toString().getBytes("UTF-8")), "ungrouped");
+    }
+
+    @Test
+    public void testImportConceptSubclassWithStructuredNote() throws Exception {
+        for (int batchSize : new int[]{0, 1}) {
+            SkosImporter importer = new JenaSkosImporter(graph, actioner, vocabulary)
+                    .setBatchSize(batchSize);
+            ImportLog importLog = importer
+                    .importFile(ClassLoader.getSystemResourceAsStream(STRUCTURED_FILE), "structured");
+            assertEquals(batchSize == 0 ? 1 : 0, importLog.getCreated());
+            assertEquals(batchSize == 0 ? 0 : 1, importLog.getUnchanged());
+        }
+        Concept concept = manager.getFrame("cvoc2-place1", Concept.class);
+        Description description = concept.getDescriptions().iterator().next();
+        assertEquals(Lists.newArrayList("A place with a structured definition"),
+                description.asVertex().getProperty(Ontology.CONCEPT_DEFINITION));
+    }
 }
@@ -1,6 +1,11 @@
 package eu.ehri.project.importers.cvoc;
 
+import com.google.common.collect.Lists;
+import eu.ehri.project.definitions.Ontology;
 import eu.ehri.project.importers.ImportLog;
+import eu.ehri.project.importers.exceptions.InputParseError;
+import eu.ehri.project.models.base.Description;
+import eu.ehri.project.models.cvoc.Concept;
 import org.junit.Ignore;
 import org.junit.Test;
 
@@ -10,6 +15,10 @@ import static org.junit.Assert.assertEquals;
  * @author Mike Bryant (http://github.com/mikesname)
  */
 public class XmlSkosImporterTest extends AbstractSkosImporterTest {
+    public static final String DOCTYPE_FILE = "cvoc/doctype-skos.rdf";
+    public static final String WRONG_ROOT_FILE = "cvoc/wrong-root.xml";
+    public static final String NESTED_FILE = "cvoc/nested-skos.rdf";
+
     @Ignore("XML SKOS importer fails for simple file")
     @Test
     public void testImportFile1() throws Exception {
@@ -62,4 +71,51 @@ public class XmlSkosImporterTest extends AbstractSkosImporterTest {
                 .importFile(ClassLoader.getSystemResourceAsStream(FILE5), "ghettos");
         assertEquals(2, importLog2.getUnchanged());
     }
+
+    @Test
+    public void testImportWithDoctype() throws Exception {
+        SkosImporter importer = new XmlSkosImporter(graph, actioner, vocabulary)
+                .setTolerant(true);
+        ImportLog importLog = importer
+                .importFile(ClassLoader.getSystemResourceAsStream(DOCTYPE_FILE), "doctype");
+        assertEquals(1, importLog.getCreated());
+        Concept concept = getConcept("doctype1");
+        Description description = concept.getDescriptions().iterator().next();
+        assertEquals("Doctype concept", description.getName());
+    }
+
+    @Test(expected = InputParseError.class)
+    public void testImportWithWrongRoot() throws Exception {
+        SkosImporter importer = new XmlSkosImporter(graph, actioner, vocabulary);
+        importer.importFile(ClassLoader.getSystemResourceAsStream(WRONG_ROOT_FILE), "wrong root");
+    }
+
+    @Test
+    public void testImportNestedValues() throws Exception {
+        SkosImporter importer = new XmlSkosImporter(graph, actioner, vocabulary);
+        ImportLog importLog = importer
+                .importFile(ClassLoader.getSystemResourceAsStream(NESTED_FILE), "nested");
+        assertEquals(2, importLog.getCreated());
+
+        Concept concept = getConcept("nested1");
+        Description description = concept.getDescriptions().iterator().next();
+        assertEquals("Nested concept", description.getName());
+        assertEquals(Lists.newArrayList("Blank node label"),
+                description.asVertex().getProperty(Ontology.CONCEPT_ALTLABEL));
+        assertEquals(Lists.newArrayList("Blank node note"),
+                description.asVertex().getProperty(Ontology.CONCEPT_SCOPENOTE));
+
+        Concept broader = getConcept("nested2");
+        assertEquals(Lists.newArrayList(broader), Lists.newArrayList(concept.getBroaderConcepts()));
+        assertEquals("Broader concept", broader.getDescriptions().iterator().next().getName());
+    }
+
+    private Concept getConcept(String identifier) {
+        for (Concept concept : vocabulary.getConcepts()) {
+            if (identifier.equals(concept.getIdentifier())) {
+                return concept;
+            }
+        }
+        throw new AssertionError("Concept not found: " + identifier);
+    }
 }
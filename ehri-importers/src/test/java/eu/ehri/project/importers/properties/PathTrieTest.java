@@ -0,0 +1,70 @@
+package eu.ehri.project.importers.properties;
+
+import com.google.common.collect.Lists;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author Mike Bryant (http://github.com/mikesname)
+ */
+public class PathTrieTest {
+
+    private PathTrie trie;
+
+    @Before
+    public void setUp() {
+        Properties properties = new Properties();
+        properties.setProperty("unitid/", "identifier");
+        properties.setProperty("did/unitid/", "didIdentifier");
+        properties.setProperty("eadheader/eadid/", "eadId");
+        properties.setProperty("did/unitid/@ehrilabel$ehri_main_identifier", "objectIdentifier");
+        properties.setProperty("unitid/@label", "label");
+        properties.setProperty("@ehrilabel", "ehrilabel");
+        properties.setProperty("role", "notAPath");
+        trie = PathTrie.compile(properties);
+    }
+
+    @Test
+    public void testShortestSuffixWins() {
+        assertEquals("identifier", trie.lookup(path("ead", "archdesc", "did", "unitid"), ""));
+        assertEquals("eadId", trie.lookup(path("ead", "eadheader", "eadid"), ""));
+        assertNull(trie.lookup(path("ead", "eadid"), ""));
+        assertNull(trie.lookup(path("ead", "archdesc", "did"), ""));
+    }
+
+    @Test
+    public void testAttributeKeys() {
+        assertEquals("objectIdentifier", trie.lookup(path("archdesc", "did", "unitid"),
+                "@ehrilabel$ehri_main_identifier"));
+        assertEquals("label", trie.lookup(path("did", "unitid"), "@label"));
+        assertNull(trie.lookup(path("unitid"), "@ehrilabel$ehri_main_identifier"));
+        assertNull(trie.lookup(path("unitid"), "@other"));
+    }
+
+    @Test
+    public void testNonPathKeysIgnored() {
+        assertNull(trie.lookup(path("role"), ""));
+        assertNull(trie.lookup(path(), "@ehrilabel"));
+    }
+
+    @Test
+    public void testPropertiesLookupAndValueIndex() {
+        XmlImportProperties p = new XmlImportProperties("bundesarchive.properties");
+        List<String> path = path("ead", "archdesc", "phystech", "p");
+        assertEquals("physicalCharacteristics", p.getPathProperty(path, ""));
+        assertEquals(p.getProperty("phystech/p/"), p.getPathProperty(path, ""));
+        assertEquals("phystech/p/", p.getFirstPropertyWithValue("physicalCharacteristics"));
+        assertEquals(p.getPropertiesWithValue("physicalCharacteristics").contains("phystech/p/"),
+                p.containsPropertyValue("physicalCharacteristics"));
+    }
+
+    private static List<String> path(String... elements) {
+        return Lists.newArrayList(elements);
+    }
+}
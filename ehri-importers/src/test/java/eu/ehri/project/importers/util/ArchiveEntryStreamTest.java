@@ -0,0 +1,143 @@
+package eu.ehri.project.importers.util;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
+import eu.ehri.project.importers.exceptions.InvalidInputFormatError;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Mike Bryant (http://github.com/mikesname)
+ */
+public class ArchiveEntryStreamTest {
+
+    private static final String LONG_NAME = "ead/" + new String(new char[110]).replace('\0', 'a') + ".xml";
+
+    @Test
+    public void testTarGz() throws Exception {
+        InputStream stream = ClassLoader.getSystemResourceAsStream("ead-archive.tar.gz");
+        ArchiveEntryStream archive = ArchiveEntryStream.open(stream);
+        List<String> names = Lists.newArrayList();
+        String name;
+        while ((name = archive.nextEntry()) != null) {
+            names.add(name);
+            String data = new String(ByteStreams.toByteArray(archive.getEntryStream()), "UTF-8");
+            assertEquals(3592, data.getBytes("UTF-8").length);
+            assertTrue(data.trim().endsWith("</ead>"));
+        }
+        assertEquals(Lists.newArrayList("ead/single-ead.xml", LONG_NAME), names);
+    }
+
+    @Test
+    public void testZipSkipsDirectoriesHiddenFilesAndUnreadData() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ZipOutputStream zip = new ZipOutputStream(bytes);
+        zip.putNextEntry(new ZipEntry("dir/"));
+        zip.putNextEntry(new ZipEntry("__MACOSX/dir/._one.xml"));
+        zip.write("resource fork".getBytes("UTF-8"));
+        zip.putNextEntry(new ZipEntry("dir/.hidden.xml"));
+        zip.putNextEntry(new ZipEntry("dir/one.xml"));
+        zip.write("<one/>".getBytes("UTF-8"));
+        zip.putNextEntry(new ZipEntry("dir/two.xml"));
+        zip.write("<two/>".getBytes("UTF-8"));
+        zip.close();
+
+        ArchiveEntryStream archive = ArchiveEntryStream.open(
+                new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals("dir/one.xml", archive.nextEntry());
+        // Closing an entry's stream does not close the archive
+        archive.getEntryStream().close();
+        assertEquals("dir/two.xml", archive.nextEntry());
+        assertEquals("<two/>", new String(ByteStreams.toByteArray(archive.getEntryStream()), "UTF-8"));
+        assertNull(archive.nextEntry());
+    }
+
+    @Test
+    public void testTarBase256Size() throws Exception {
+        byte[] header = tarHeader("one.xml", '0', new byte[0]);
+        header[124] = (byte) 0x80;
+        header[135] = 6;
+        setChecksum(header);
+        ArchiveEntryStream archive = ArchiveEntryStream.open(new ByteArrayInputStream(
+                tar(header, "<one/>".getBytes("UTF-8"))));
+        assertEquals("one.xml", archive.nextEntry());
+        assertEquals("<one/>", new String(ByteStreams.toByteArray(archive.getEntryStream()), "UTF-8"));
+        assertNull(archive.nextEntry());
+    }
+
+    @Test(expected = IOException.class)
+    public void testTarOversizeLongName() throws Exception {
+        byte[] header = tarHeader("././@LongLink", 'L', "10000000".getBytes("UTF-8"));
+        ArchiveEntryStream.open(new ByteArrayInputStream(tar(header, new byte[0]))).nextEntry();
+    }
+
+    @Test(expected = IOException.class)
+    public void testTarNegativeSize() throws Exception {
+        byte[] header = tarHeader("one.xml", '0', new byte[0]);
+        header[124] = (byte) 0xff;
+        setChecksum(header);
+        ArchiveEntryStream.open(new ByteArrayInputStream(tar(header, new byte[0]))).nextEntry();
+    }
+
+    @Test(expected = IOException.class)
+    public void testTarUnparseableSize() throws Exception {
+        byte[] header = tarHeader("one.xml", '0', "9x".getBytes("UTF-8"));
+        ArchiveEntryStream.open(new ByteArrayInputStream(tar(header, new byte[0]))).nextEntry();
+    }
+
+    @Test(expected = InvalidInputFormatError.class)
+    public void testUnrecognisedFormat() throws Exception {
+        ArchiveEntryStream.open(new ByteArrayInputStream("<ead/>".getBytes("UTF-8")));
+    }
+
+    @Test
+    public void testIsHidden() throws Exception {
+        assertTrue(ArchiveEntryStream.isHidden(".DS_Store"));
+        assertTrue(ArchiveEntryStream.isHidden("ead/._single-ead.xml"));
+        assertTrue(ArchiveEntryStream.isHidden("__MACOSX/ead/single-ead.xml"));
+        assertTrue(ArchiveEntryStream.isHidden(".git/config"));
+        assertFalse(ArchiveEntryStream.isHidden("./ead/single-ead.xml"));
+        assertFalse(ArchiveEntryStream.isHidden("ead/single-ead.xml"));
+    }
+
+    private static byte[] tarHeader(String name, char type, byte[] size) throws Exception {
+        byte[] header = new byte[512];
+        byte[] nameBytes = name.getBytes("UTF-8");
+        System.arraycopy(nameBytes, 0, header, 0, nameBytes.length);
+        System.arraycopy(size, 0, header, 124, size.length);
+        header[156] = (byte) type;
+        setChecksum(header);
+        return header;
+    }
+
+    private static void setChecksum(byte[] header) throws Exception {
+        Arrays.fill(header, 148, 156, (byte) ' ');
+        long sum = 0;
+        for (byte b : header) {
+            sum += b & 0xff;
+        }
+        byte[] checksum = String.format("%06o\0", sum).getBytes("UTF-8");
+        System.arraycopy(checksum, 0, header, 148, checksum.length);
+    }
+
+    private static byte[] tar(byte[] header, byte[] data) {
+        // Header, data padded to a whole block, and two empty end blocks
+        byte[] bytes = new byte[512 * (3 + (data.length + 511) / 512)];
+        System.arraycopy(header, 0, bytes, 0, header.length);
+        System.arraycopy(data, 0, bytes, 512, data.length);
+        return bytes;
+    }
+}
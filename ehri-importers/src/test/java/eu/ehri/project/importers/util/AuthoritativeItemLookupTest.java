@@ -0,0 +1,70 @@
+package eu.ehri.project.importers.util;
+
+import com.google.common.collect.Lists;
+import eu.ehri.project.definitions.Ontology;
+import eu.ehri.project.exceptions.ItemNotFound;
+import eu.ehri.project.models.EntityClass;
+import eu.ehri.project.models.cvoc.Concept;
+import eu.ehri.project.models.cvoc.Vocabulary;
+import eu.ehri.project.persistence.Bundle;
+import eu.ehri.project.persistence.BundleDAO;
+import eu.ehri.project.test.AbstractFixtureTest;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Mike Bryant (http://github.com/mikesname)
+ */
+public class AuthoritativeItemLookupTest extends AbstractFixtureTest {
+
+    private AuthoritativeItemLookup lookup;
+
+    @Before
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        lookup = new AuthoritativeItemLookup(graph);
+    }
+
+    @Test
+    public void testFind() throws Exception {
+        Concept concept = manager.getFrame("cvocc1", Concept.class);
+        assertEquals(Lists.newArrayList(concept),
+                lookup.find("cvoc1", "cvocc1", Concept.class));
+        assertTrue(lookup.find("cvoc1", "CVOCC1", Concept.class).isEmpty());
+        assertTrue(lookup.find("cvoc2", "cvocc1", Concept.class).isEmpty());
+    }
+
+    @Test
+    public void testFindIgnoreCase() throws Exception {
+        Concept concept = manager.getFrame("cvocc1", Concept.class);
+        assertEquals(Lists.newArrayList(concept),
+                lookup.findIgnoreCase("cvoc1", "CVOCC1", Concept.class));
+    }
+
+    @Test(expected = ItemNotFound.class)
+    public void testFindInNonExistentSet() throws Exception {
+        lookup.find("does-not-exist", "cvocc1", Concept.class);
+    }
+
+    @Test
+    public void testAdd() throws Exception {
+        Vocabulary vocabulary = manager.getFrame("cvoc1", Vocabulary.class);
+        // Load the set before adding a new concept to it
+        assertTrue(lookup.find("cvoc1", "foo", Concept.class).isEmpty());
+
+        Bundle bundle = Bundle.Builder.withClass(EntityClass.CVOC_CONCEPT)
+                .addDataValue(Ontology.IDENTIFIER_KEY, "foo")
+                .build();
+        Concept concept = new BundleDAO(graph, vocabulary.idPath())
+                .create(bundle, Concept.class);
+        vocabulary.addItem(concept);
+        lookup.add(vocabulary, concept);
+
+        assertEquals(Lists.newArrayList(concept),
+                lookup.find("cvoc1", "foo", Concept.class));
+    }
+}
@@ -0,0 +1,162 @@
+package eu.ehri.project.importers.util;
+
+import com.google.common.collect.Lists;
+import eu.ehri.project.definitions.Ontology;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compare the throughput of the shared {@link DateNormaliser} with
+ * matching each of its patterns in turn, as importers used to do,
+ * over the date values found in the test data.
+ * <p/>
+ * Run from the ehri-importers directory with:
+ * <p/>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ * -Dexec.mainClass=eu.ehri.project.importers.util.DateNormaliserBenchmark \
+ * [-Dexec.args="src/test/resources 20"]
+ *
+ * @author Mike Bryant (http://github.com/mikesname)
+ */
+public class DateNormaliserBenchmark {
+
+    private static final Pattern[] sequentialPatterns = {
+            Pattern.compile("^(\\d{4}-\\d{1,2}-\\d{1,2})\\s?-\\s?(\\d{4}-\\d{1,2}-\\d{1,2})$"),
+            Pattern.compile("^(\\d{4}-\\d{1,2}-\\d{1,2})$"),
+            Pattern.compile("^(\\d{4})\\s?-\\s?(\\d{4})$"),
+            Pattern.compile("^(\\d{4})-\\[(\\d{4})\\]$"),
+            Pattern.compile("^(\\d{4}s)-\\[(\\d{4}s)\\]$"),
+            Pattern.compile("^\\[(\\d{4})\\]$"), Pattern.compile("^(\\d{4})$"),
+            Pattern.compile("^(\\d{2})th century$"),
+            Pattern.compile("^\\s*(\\d{4})\\s*-\\s*(\\d{4})"),
+            Pattern.compile("^\\s*(\\d{4})/(\\d{2})"),
+            Pattern.compile("^\\s*(\\d{4})\\s*/\\s*(\\d{4})"),
+            Pattern.compile("^(\\d{4}-\\d{1,2})/(\\d{4}-\\d{1,2})"),
+            Pattern.compile("^(\\d{4}-\\d{1,2}-\\d{1,2})/(\\d{4}-\\d{1,2}-\\d{1,2})")
+    };
+
+    private static final String END = Ontology.DATE_PERIOD_END_DATE;
+
+    public static void main(String[] args) throws Exception {
+        File dir = new File(args.length > 0 ? args[0] : "src/test/resources");
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        List<String> corpus = readCorpus(dir);
+        System.out.printf("Corpus: %d date values from %s%n", corpus.size(), dir);
+
+        // Warm up both before timing
+        for (int i = 0; i < 3; i++) {
+            runSequential(corpus);
+            runNormaliser(corpus);
+        }
+        long sequential = 0, normaliser = 0;
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            runSequential(corpus);
+            sequential += System.nanoTime() - start;
+            start = System.nanoTime();
+            runNormaliser(corpus);
+            normaliser += System.nanoTime() - start;
+        }
+        report("sequential patterns", sequential, corpus.size() * rounds);
+        report("DateNormaliser", normaliser, corpus.size() * rounds);
+    }
+
+    private static void report(String name, long nanos, long values) {
+        System.out.printf("%-20s %8.1f ms %12.0f values/s%n", name, nanos / 1e6,
+                values * 1e9 / Math.max(1, nanos));
+    }
+
+    private static int runNormaliser(List<String> corpus) {
+        int found = 0;
+        for (String value : corpus) {
+            try {
+                if (DateNormaliser.extractDate(value) != null) {
+                    found++;
+                }
+            } catch (IllegalArgumentException e) {
+                // unparseable matched value, e.g. 1940s
+            }
+        }
+        return found;
+    }
+
+    private static int runSequential(List<String> corpus) {
+        int found = 0;
+        for (String value : corpus) {
+            for (Pattern re : sequentialPatterns) {
+                Matcher matcher = re.matcher(value);
+                if (matcher.matches()) {
+                    try {
+                        DateNormaliser.normaliseDate(matcher.group(1), Ontology.DATE_PERIOD_START_DATE);
+                        DateNormaliser.normaliseDate(matcher.group(matcher.groupCount() > 1 ? 2 : 1), END);
+                        found++;
+                    } catch (IllegalArgumentException e) {
+                        // as above
+                    }
+                    break;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Collect the text of all elements with 'date' in their name.
+     */
+    private static List<String> readCorpus(File dir) throws Exception {
+        final List<String> corpus = Lists.newArrayList();
+        File[] files = dir.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(".xml");
+            }
+        });
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        for (File file : files) {
+            SAXParser parser = factory.newSAXParser();
+            try {
+                parser.parse(file, new DefaultHandler() {
+                    private StringBuilder text = null;
+
+                    @Override
+                    public void startElement(String uri, String localName, String qName,
+                            Attributes attributes) {
+                        if (qName.toLowerCase().contains("date")) {
+                            text = new StringBuilder();
+                        }
+                    }
+
+                    @Override
+                    public void characters(char[] ch, int start, int length) {
+                        if (text != null) {
+                            text.append(ch, start, length);
+                        }
+                    }
+
+                    @Override
+                    public void endElement(String uri, String localName, String qName) {
+                        if (text != null) {
+                            for (String value : text.toString().split(",")) {
+                                if (!value.trim().isEmpty()) {
+                                    corpus.add(value);
+                                }
+                            }
+                            text = null;
+                        }
+                    }
+                });
+            } catch (Exception e) {
+                System.err.println("Skipping " + file.getName() + ": " + e.getMessage());
+            }
+        }
+        return corpus;
+    }
+}
@@ -0,0 +1,62 @@
+package eu.ehri.project.importers.util;
+
+import eu.ehri.project.definitions.Ontology;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author Mike Bryant (http://github.com/mikesname)
+ */
+public class DateNormaliserTest {
+
+    @Test
+    public void testExtractDate() {
+        assertPeriod("1924-01-01", "1947-12-31", "1924-1-1 - 1947-12-31");
+        assertPeriod("1944-03-05", "1944-03-05", "1944-03-05");
+        assertPeriod("1939-01-01", "1945-12-31", "1939 - 1945");
+        assertPeriod("1939-01-01", "1945-12-31", "1939-[1945]");
+        assertPeriod("1942-01-01", "1942-12-31", "[1942]");
+        assertPeriod("1942-01-01", "1942-12-31", "1942");
+        assertPeriod("1906-01-01", "1919-12-31", "1906/19");
+        assertPeriod("1934-01-01", "1936-12-31", "1934/1936");
+        assertPeriod("1935-03-01", "1935-05-31", "1935-03/1935-05");
+        assertPeriod("1935-03-01", "1935-05-02", "1935-03-01/1935-05-02");
+    }
+
+    @Test
+    public void testUnrecognisedDate() {
+        assertNull(DateNormaliser.extractDate("summer 1978"));
+        assertNull(DateNormaliser.extractDate(""));
+        // Cached results are handled in the same way
+        assertNull(DateNormaliser.extractDate("summer 1978"));
+    }
+
+    @Test
+    public void testExtractDateReturnsCopies() {
+        Map<String, Object> first = DateNormaliser.extractDate("1933");
+        first.put(Ontology.DATE_PERIOD_START_DATE, "changed");
+        Map<String, Object> second = DateNormaliser.extractDate("1933");
+        assertNotSame(first, second);
+        assertEquals("1933-01-01", second.get(Ontology.DATE_PERIOD_START_DATE));
+    }
+
+    @Test
+    public void testNormaliseDate() {
+        assertEquals("1944-01-01", DateNormaliser.normaliseDate("1944", Ontology.DATE_PERIOD_START_DATE));
+        assertEquals("1944-12-31", DateNormaliser.normaliseDate("1944", Ontology.DATE_PERIOD_END_DATE));
+        assertEquals("1944-02-29", DateNormaliser.normaliseDate("1944-02", Ontology.DATE_PERIOD_END_DATE));
+        assertEquals("1944-02-03", DateNormaliser.normaliseDate("1944-02-03", Ontology.DATE_PERIOD_END_DATE));
+    }
+
+    private static void assertPeriod(String start, String end, String date) {
+        Map<String, Object> period = DateNormaliser.extractDate(date);
+        assertEquals(start, period.get(Ontology.DATE_PERIOD_START_DATE));
+        assertEquals(end, period.get(Ontology.DATE_PERIOD_END_DATE));
+        assertEquals(date, period.get(Ontology.DATE_HAS_DESCRIPTION));
+    }
+}